@@ -0,0 +1,187 @@
+package fr.univnantes.document;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the edits of a document on a single thread.
+ * <p>
+ *     Every benchmark undoes its edits, so the document keeps its shape during the whole run.
+ *     The scores are given per edit, an edit being one character, one line break or one pasted character.
+ *     <ul>
+ *         <li>MANY_LINES - 10 000 lines of 80 characters</li>
+ *         <li>LONG_LINE - a single line of 100 000 characters</li>
+ *     </ul>
+ *
+ *     Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="DocumentBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentBenchmark {
+
+    private static final int WORD_LENGTH = 16;
+    private static final String PASTE = pasteText(1_000, 80);
+
+    @Param({"LINKED_LINES", "STRIPED_LINES", "ROPE"})
+    public String engine;
+
+    @Param({"MANY_LINES", "LONG_LINE"})
+    public String shape;
+
+    private Document document;
+    private SplittableRandom random;
+    private int lines;
+    private int lineLength;
+
+    /**
+     * Returns a pasted text, made of lines separated by line breaks
+     *
+     * @param length        The number of characters of the text, line breaks included
+     * @param lineLength    The number of characters between two line breaks
+     * @return              The text
+     */
+    private static String pasteText(int length, int lineLength) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(i % (lineLength + 1) == lineLength ? '\n' : (char) ('a' + i % 26));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Creates a document of the given shape
+     *
+     * @param engineType    The engine of the document
+     * @param lines         The number of lines
+     * @param lineLength    The number of characters per line
+     * @return              The document
+     */
+    static Document filledDocument(DocumentEngineType engineType, int lines, int lineLength) {
+        Document document = new Document("benchmark", engineType);
+        for (int line = 0; line < lines; line++) {
+            for (int column = 0; column < lineLength; column++) {
+                document.insert(line, column, (char) ('a' + column % 26));
+            }
+            if (line < lines - 1) document.insertLineBreak(line, lineLength);
+        }
+        return document;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (shape) {
+            case "MANY_LINES" -> {
+                lines = 10_000;
+                lineLength = 80;
+            }
+            case "LONG_LINE" -> {
+                lines = 1;
+                lineLength = 100_000;
+            }
+            default -> throw new IllegalArgumentException("Shape is unknown");
+        }
+        document = filledDocument(DocumentEngineType.fromString(engine), lines, lineLength);
+        random = new SplittableRandom(42);
+    }
+
+    /**
+     * Types a word at the end of a line then erases it with backspace
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * WORD_LENGTH)
+    public boolean typingAtEndOfLine() {
+        int line = random.nextInt(lines);
+        boolean done = true;
+        for (int i = 0; i < WORD_LENGTH; i++) {
+            done &= document.insert(line, lineLength + i, 'x');
+        }
+        for (int i = WORD_LENGTH - 1; i >= 0; i--) {
+            done &= document.delete(line, lineLength + i);
+        }
+        return done;
+    }
+
+    /**
+     * Inserts a character at a random position then deletes it
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean randomEdit() {
+        int line = random.nextInt(lines);
+        int column = random.nextInt(lineLength);
+        return document.insert(line, column, 'x') & document.delete(line, column);
+    }
+
+    /**
+     * Splits a line at a random position then merges it back
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean randomLineBreak() {
+        int line = random.nextInt(lines);
+        int column = random.nextInt(lineLength);
+        return document.insertLineBreak(line, column) & document.deleteLineBreak(line + 1);
+    }
+
+    /**
+     * Pastes a text of 1 000 characters at a random position, character by character as the clients send it,
+     * then deletes it
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * 1_000)
+    public boolean paste() {
+        int line = random.nextInt(lines);
+        int column = random.nextInt(lineLength);
+
+        boolean done = true;
+        int currentLine = line;
+        int currentColumn = column;
+        for (int i = 0; i < PASTE.length(); i++) {
+            char c = PASTE.charAt(i);
+            if (c == '\n') {
+                done &= document.insertLineBreak(currentLine++, currentColumn);
+                currentColumn = 0;
+            } else {
+                done &= document.insert(currentLine, currentColumn++, c);
+            }
+        }
+
+        //  The pasted characters are always the first ones after the paste position
+        for (int i = 0; i < PASTE.length(); i++) {
+            if (PASTE.charAt(i) == '\n') {
+                done &= document.deleteLineBreak(line + 1);
+            } else {
+                done &= document.delete(line, column);
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Turns the whole document into a string, as done for every connecting user
+     */
+    @Benchmark
+    public String toStringDocument() {
+        return document.toString();
+    }
+}
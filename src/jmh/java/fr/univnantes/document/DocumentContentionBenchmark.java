@@ -0,0 +1,109 @@
+package fr.univnantes.document;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the edits of a document shared by several threads.
+ * <p>
+ *     Each thread plays a user editing its own line of a document of 1 000 lines of 80 characters,
+ *     inserting a character at a random column then deleting it.
+ *     The same edit is run with 1, 2, 4 and 8 threads, the scores are the edits per second of all threads together.
+ *
+ *     Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="DocumentContentionBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentContentionBenchmark {
+
+    private static final int LINES = 1_000;
+    private static final int LINE_LENGTH = 80;
+
+    @Param({"LINKED_LINES", "STRIPED_LINES", "ROPE"})
+    public String engine;
+
+    private Document document;
+    private final AtomicInteger nextUser = new AtomicInteger(0);
+
+    /**
+     * Represents a user editing its own line
+     */
+    @State(Scope.Thread)
+    public static class User {
+        private int line;
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setup(DocumentContentionBenchmark benchmark) {
+            int user = benchmark.nextUser.getAndIncrement();
+            line = (user * 97) % LINES;
+            random = new SplittableRandom(user);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        document = DocumentBenchmark.filledDocument(DocumentEngineType.fromString(engine), LINES, LINE_LENGTH);
+    }
+
+    /**
+     * Inserts a character at a random column of the line of the user then deletes it
+     *
+     * @param user  The user
+     * @return      True if both edits succeeded
+     */
+    private boolean edit(User user) {
+        int column = user.random.nextInt(LINE_LENGTH);
+        return document.insert(user.line, column, 'x') & document.delete(user.line, column);
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(2)
+    public boolean editOwnLine1(User user) {
+        return edit(user);
+    }
+
+    @Benchmark
+    @Threads(2)
+    @OperationsPerInvocation(2)
+    public boolean editOwnLine2(User user) {
+        return edit(user);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(2)
+    public boolean editOwnLine4(User user) {
+        return edit(user);
+    }
+
+    @Benchmark
+    @Threads(8)
+    @OperationsPerInvocation(2)
+    public boolean editOwnLine8(User user) {
+        return edit(user);
+    }
+}
@@ -0,0 +1,103 @@
+package fr.univnantes.document;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import fr.univnantes.document.persistence.Edit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a user typing at the same place of documents of growing sizes.
+ * <p>
+ *     The user types a word in the middle of the document then erases it with backspace, so the document keeps its shape.
+ *     With an author, the edits start from the finger of the user, without one the line is looked up at every character.
+ *     The score per character with an author should not depend on the number of lines.
+ *
+ *     Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="TypingBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypingBenchmark {
+
+    private static final int WORD_LENGTH = 16;
+    private static final int LINE_LENGTH = 40;
+
+    @Param({"LINKED_LINES", "STRIPED_LINES"})
+    public String engine;
+
+    @Param({"1000", "100000", "1000000"})
+    public int lines;
+
+    private Document document;
+    private final UUID author = UUID.randomUUID();
+    private int line;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        //  The lines are loaded like a mapped snapshot, each line is decoded at its first edit
+        byte[] text = "x".repeat(LINE_LENGTH).getBytes(StandardCharsets.UTF_8);
+        List<ByteBuffer> content = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) content.add(ByteBuffer.wrap(text));
+
+        document = new Document("benchmark", DocumentEngineType.fromString(engine));
+        document.load(content);
+        line = lines / 2;
+    }
+
+    /**
+     * Types a word starting from the finger of the user, then erases it
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * WORD_LENGTH)
+    public boolean typingWithFinger() {
+        return type(author);
+    }
+
+    /**
+     * Types a word looking the line up at every character, then erases it
+     */
+    @Benchmark
+    @OperationsPerInvocation(2 * WORD_LENGTH)
+    public boolean typingWithLookup() {
+        return type(null);
+    }
+
+    /**
+     * Types a word then erases it
+     *
+     * @param user  The author of the edits, null to look the line up at every character
+     * @return      True if every edit has been applied
+     */
+    private boolean type(UUID user) {
+        boolean done = true;
+        for (int i = 0; i < WORD_LENGTH; i++) {
+            done &= document.apply(Edit.insert(line, LINE_LENGTH + i, 'a'), user, -1) != null;
+        }
+        for (int i = WORD_LENGTH - 1; i >= 0; i--) {
+            done &= document.apply(Edit.delete(line, LINE_LENGTH + i), user, -1) != null;
+        }
+        return done;
+    }
+}
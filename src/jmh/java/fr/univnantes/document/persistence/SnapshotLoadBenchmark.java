@@ -0,0 +1,94 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the restore of a 10 MB document from its snapshot.
+ * <p>
+ *     The decode benchmark reads the snapshot into a string and fills the engine from it.
+ *     The map benchmark maps the snapshot and fills the engine with the slices of its lines.
+ *     The edit benchmark restores the document from the mapping and edits one line, as a joining user would.
+ *
+ *     Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="SnapshotLoadBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotLoadBenchmark {
+
+    private static final UUID DOC_ID = UUID.randomUUID();
+    private static final int LINES = 125_000;
+    private static final int LINE_LENGTH = 80;
+
+    @Param({"LINKED_LINES", "ROPE"})
+    public DocumentEngineType engine;
+
+    private Path directory;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder(LINES * (LINE_LENGTH + 1));
+        for (int line = 0; line < LINES; line++) {
+            if (line > 0) sb.append('\n');
+            for (int column = 0; column < LINE_LENGTH; column++) sb.append((char) ('a' + (line + column) % 26));
+        }
+
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        snapshot = new Snapshot(DOC_ID, engine, "benchmark", 0, sb.toString()).write(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Document decode() throws IOException {
+        Document document = new Document(DOC_ID, "benchmark", engine);
+        document.load(Snapshot.read(snapshot).content());
+        return document;
+    }
+
+    @Benchmark
+    public Document map() throws IOException {
+        Document document = new Document(DOC_ID, "benchmark", engine);
+        document.load(Snapshot.map(snapshot).lines());
+        return document;
+    }
+
+    @Benchmark
+    public Document mapAndEdit() throws IOException {
+        Document document = map();
+        document.insert(LINES / 2, 10, '!');
+        return document;
+    }
+}
@@ -0,0 +1,75 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the appends to a write-ahead log.
+ * <p>
+ *     A flush interval of 0 forces every append to the disk, as a log without group commit would do.
+ *     The other settings buffer the appends and force them to the disk every interval or at the threshold.
+ *
+ *     Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="WriteAheadLogBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+    @Param({"0", "10", "50"})
+    public long flushIntervalMillis;
+
+    @Param({"65536"})
+    public int flushThresholdBytes;
+
+    private Path directory;
+    private WriteAheadLog log;
+    private int column = 0;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        log = WriteAheadLog.create(directory, 0, UUID.randomUUID(),
+                DocumentEngineType.LINKED_LINES, "benchmark", flushIntervalMillis, flushThresholdBytes);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        log.delete();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Appends the insertion of a typed character
+     */
+    @Benchmark
+    public void appendInsert() {
+        log.append(Edit.insert(0, column++ & 0xFFFF, 'a'));
+    }
+}
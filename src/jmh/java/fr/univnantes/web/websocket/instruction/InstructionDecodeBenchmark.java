@@ -0,0 +1,146 @@
+package fr.univnantes.web.websocket.instruction;
+
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction.JSONAttributes;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of decoding a websocket instruction.
+ * <p>
+ *     The legacy benchmarks reproduce the former pipeline: the payload is parsed to find the type,
+ *     the type is found by scanning the values, and a copy of the former constructor parses the payload again
+ *     and reports an invalid message by throwing.
+ *     The decode benchmarks use {@link InstructionType#decode(TextMessage)}, which parses the payload once.
+ *
+ *     Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="InstructionDecodeBenchmark -prof gc"
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionDecodeBenchmark {
+
+    private static final UUID USER_ID = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+
+    private final TextMessage insertChar = new TextMessage(new JSONObject()
+            .put("type", "INSERT_CHAR")
+            .put("lineIdx", 12)
+            .put("columnIdx", 300)
+            .put("char", "a")
+            .put("userId", USER_ID)
+            .toString());
+
+    private final TextMessage invalidInsertChar = new TextMessage(new JSONObject()
+            .put("type", "INSERT_CHAR")
+            .put("lineIdx", -1)
+            .put("columnIdx", 300)
+            .put("char", "a")
+            .put("userId", USER_ID)
+            .toString());
+
+    /**
+     * Decodes a message with the former pipeline, only for insert character instructions
+     *
+     * @param message   The message
+     * @return          The instruction, null if the message is invalid
+     */
+    private static WebSocketInstruction legacyDecode(TextMessage message) {
+        try {
+            String type = new JSONObject(message.getPayload()).getString(JSONAttributes.TYPE);
+            for (InstructionType instructionType : InstructionType.values()) {
+                if (instructionType.type.equalsIgnoreCase(type)) {
+                    return instructionType == InstructionType.INSERT_CHAR ? legacyInsertChar(message) : null;
+                }
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses an insert character instruction the way its former TextMessage constructor did
+     *
+     * @param message   The message
+     * @return          The instruction
+     * @throws IllegalArgumentException If the message is not a valid insert character instruction
+     */
+    private static InsertCharInstruction legacyInsertChar(TextMessage message) {
+        String payload = message.getPayload();
+        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
+
+        //  Parse the payload type
+        JSONObject json = new JSONObject(payload);
+        if (!json.has(JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
+
+        String type = json.getString(JSONAttributes.TYPE);
+        if (type == null) throw new IllegalArgumentException("Does not contain a type");
+
+        if (!type.equals(InstructionType.INSERT_CHAR.type)) throw new IllegalArgumentException("Type is not " + InstructionType.INSERT_CHAR.type);
+
+        //  Parse the payload lineIndex
+        if (!json.has(JSONAttributes.LINE_IDX)) throw new IllegalArgumentException("Does not contain a lineIdx");
+        int lineIdx = json.getInt(JSONAttributes.LINE_IDX);
+        if (lineIdx < 0) throw new IllegalArgumentException("lineIdx is negative");
+
+        //  Parse the payload columnIndex
+        if (!json.has(JSONAttributes.COLUMN_IDX)) throw new IllegalArgumentException("Does not contain a columnIdx");
+        int columnIdx = json.getInt(JSONAttributes.COLUMN_IDX);
+        if (columnIdx < 0) throw new IllegalArgumentException("columnIdx is negative");
+
+        //  Parse the payload character
+        if (!json.has(JSONAttributes.CHAR)) throw new IllegalArgumentException("Does not contain a char");
+        String chr = json.getString(JSONAttributes.CHAR);
+        if (chr == null) throw new IllegalArgumentException("char is null");
+        if (chr.length() != 1) throw new IllegalArgumentException("char is not a single character");
+
+        //  Parse the optional base revision
+        long baseRevision = -1;
+        if (json.has(JSONAttributes.BASE_REVISION)) {
+            baseRevision = json.getLong(JSONAttributes.BASE_REVISION);
+            if (baseRevision < 0) throw new IllegalArgumentException("baseRevision is negative");
+        }
+
+        //  Parse the payload userIdentifier
+        if (!json.has(JSONAttributes.USER_ID)) throw new IllegalArgumentException("Does not contain a userId");
+        String userId = json.getString(JSONAttributes.USER_ID);
+        if (userId == null) throw new IllegalArgumentException("userId is null");
+
+        return new InsertCharInstruction(lineIdx, columnIdx, chr.charAt(0), UUID.fromString(userId), baseRevision);
+    }
+
+    @Benchmark
+    public WebSocketInstruction legacyValid() {
+        return legacyDecode(insertChar);
+    }
+
+    @Benchmark
+    public DecodeResult decodeValid() {
+        return InstructionType.decode(insertChar);
+    }
+
+    @Benchmark
+    public WebSocketInstruction legacyInvalid() {
+        return legacyDecode(invalidInsertChar);
+    }
+
+    @Benchmark
+    public DecodeResult decodeInvalid() {
+        return InstructionType.decode(invalidInsertChar);
+    }
+}
@@ -10,6 +10,10 @@ import java.util.concurrent.atomic.AtomicReference;
  *     It also contains a reference to the parent line node
  *     It is used to represent a character in a document
  * </p>
+ * <p>
+ *     This class is unused, {@link LineNode} now stores its characters in a {@link GapBuffer}
+ *     and column nodes are no longer part of the document structure
+ * </p>
  */
 public class ColumnNode {
     private final AtomicReference<ColumnNode> next;
@@ -1,34 +1,85 @@
 package fr.univnantes.document;
 
+import fr.univnantes.document.engine.DocumentEngine;
+import fr.univnantes.document.engine.DocumentEngineType;
+import fr.univnantes.document.engine.Finger;
+import fr.univnantes.document.persistence.Edit;
+import fr.univnantes.document.persistence.EditType;
+import fr.univnantes.document.persistence.WriteAheadLog;
+import fr.univnantes.document.transform.AppliedEdit;
+import fr.univnantes.document.transform.EditHistory;
+import fr.univnantes.document.transform.StaleRevisionException;
 import fr.univnantes.user.User;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 /**
  * Represents a document
  * <p>
- *     A document is a list of line nodes
- *     It contains a name, a UUID and a reference to the first line node
+ *     A document contains a name, a UUID, its users and its content
+ *     The content is stored by a {@link DocumentEngine} chosen when the document is created
  *     It is used to represent a text document
  * </p>
+ * <p>
+ *     When a {@link WriteAheadLog} is attached, every applied edit is appended to it
+ *     The edits are then applied one at a time, so the log holds them in the order they were applied
+ * </p>
+ * <p>
+ *     When an {@link EditHistory} is attached, every applied edit is recorded in it with its revision and the edits are applied one at a time too
+ *     An edit made by a client on an older revision is then moved past the edits applied since then, see {@link #apply(Edit, UUID, long)}
+ * </p>
+ * <p>
+ *     The edits applied by {@link #apply(Edit, UUID, long)} start from the {@link Finger} of their author,
+ *     so a user typing on the same line does not look it up again at every character
+ * </p>
+ * <p>
+ *     Every applied edit increments the revision of the document
+ *     The content of the current revision is serialized at most once by {@link #snapshot()}, however many users read it
+ * </p>
+ * <p>
+ *     When a {@link MemoryBudget} is attached, the document reports the changes of its estimated footprint to it
+ *     by steps of {@link #ACCOUNTING_STEP} bytes, and refuses to grow once the budget is exceeded
+ * </p>
  */
 public class Document {
 
+    //  The name, the user maps and the other fields of an empty document
+    static final int DOCUMENT_OVERHEAD = 512;
+    public static final int ACCOUNTING_STEP = 1024;
+
     private final UUID uuid;
     private String name;
     private final ConcurrentHashMap<UUID, User> joiningUsers = new ConcurrentHashMap<UUID, User>();
 
     private final ConcurrentHashMap<UUID, User> users = new ConcurrentHashMap<UUID, User>();
-    private final AtomicInteger lineCount = new AtomicInteger(1);
 
-    private final LineNode content;
+    private final DocumentEngineType engineType;
+    private final DocumentEngine content;
+    private final ConcurrentHashMap<UUID, Finger> fingers = new ConcurrentHashMap<>();
+
+    private final Object logLock = new Object();
+    private volatile WriteAheadLog log = null;
+    private volatile EditHistory history = null;
+
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    private volatile MemoryBudget budget = null;
+    private final AtomicLong accountedFootprint = new AtomicLong();
+
+    private final AtomicLong revision = new AtomicLong();
+    private final Object snapshotLock = new Object();
+    private volatile DocumentSnapshot snapshot = null;
 
     /**
-     * Create a new document
+     * Create a new document using the default engine
      *
      * @param name      The name of the document
      *                  Must not be null or empty
@@ -36,63 +87,46 @@ public class Document {
      * @throws IllegalArgumentException If the name is not valid like specified in {@link Document#isDocumentNameValid(String)}
      */
     public Document(String name) {
-        if (name == null) throw new IllegalArgumentException("Document name is null");
-        if (name.isEmpty()) throw new IllegalArgumentException("Document name is empty");
-        if (!isDocumentNameValid(name)) throw new IllegalArgumentException("Document name is not valid");
-
-        this.name = name;
-        uuid = UUID.randomUUID();
-        content = new LineNode();
-    }
-
-    /**
-     * Returns the line node at the given position
-     * @param line  The position of the line node
-     * @return      The line node at the given position
-     */
-    private LineNode getLineNode(int line) {
-        if (line < 0) return null;
-
-        int currentLine = 0;
-        LineNode lineNode = content;
-        while (currentLine < line) {
-            lineNode = lineNode.getNext();
-            if (lineNode == null) break;
-            currentLine++;
-        }
-        if (currentLine < line) return null;
-
-        return lineNode;
+        this(name, DocumentEngineType.LINKED_LINES);
     }
 
     /**
-     * Returns the last line node of the document
-     * @return  The last line node of the document
+     * Create a new document using the given engine
+     *
+     * @param name          The name of the document
+     *                      Must not be null or empty
+     * @param engineType    The type of engine storing the content of the document
+     * @throws IllegalArgumentException If the name is null or empty
+     * @throws IllegalArgumentException If the name is not valid like specified in {@link Document#isDocumentNameValid(String)}
+     * @throws IllegalArgumentException If the engine type is null
      */
-    private LineNode getLastLineNode() {
-        LineNode lineNode = content;
-        while (lineNode.getNext() != null) {
-            lineNode = lineNode.getNext();
-        }
-        return lineNode;
+    public Document(String name, DocumentEngineType engineType) {
+        this(UUID.randomUUID(), name, engineType);
     }
 
     /**
-     * Create a new line node after the given line node
-     * @param previousLineNode  The line node after which the new line node is created
-     * @return                  True if the line node has been created, false otherwise
+     * Create a document with a known UUID, used to recover a document
+     *
+     * @param uuid          The UUID of the document
+     * @param name          The name of the document
+     *                      Must not be null or empty
+     * @param engineType    The type of engine storing the content of the document
+     * @throws IllegalArgumentException If the UUID is null
+     * @throws IllegalArgumentException If the name is null or empty
+     * @throws IllegalArgumentException If the name is not valid like specified in {@link Document#isDocumentNameValid(String)}
+     * @throws IllegalArgumentException If the engine type is null
      */
-    private synchronized boolean createLineNode(LineNode previousLineNode) {
-        if (previousLineNode == null) return false;
+    public Document(UUID uuid, String name, DocumentEngineType engineType) {
+        if (uuid == null) throw new IllegalArgumentException("Document UUID is null");
+        if (name == null) throw new IllegalArgumentException("Document name is null");
+        if (name.isEmpty()) throw new IllegalArgumentException("Document name is empty");
+        if (!isDocumentNameValid(name)) throw new IllegalArgumentException("Document name is not valid");
+        if (engineType == null) throw new IllegalArgumentException("Engine type is null");
 
-        LineNode lineNode = new LineNode();
-        lineNode.setPrevious(previousLineNode);
-        lineNode.setNext(previousLineNode.getNextAcquire());
-        previousLineNode.setNextRelease(lineNode);
-        if (lineNode.getNext() != null) {
-            lineNode.getNext().setPrevious(lineNode);
-        }
-        return true;
+        this.name = name;
+        this.uuid = uuid;
+        this.engineType = engineType;
+        content = engineType.create();
     }
 
     /**
@@ -103,6 +137,14 @@ public class Document {
         return uuid;
     }
 
+    /**
+     * Returns the type of engine storing the content of the document
+     * @return  The engine type of the document
+     */
+    public DocumentEngineType getEngineType() {
+        return engineType;
+    }
+
     /**
      * Returns the name of the document
      * @return  The name of the document
@@ -122,7 +164,215 @@ public class Document {
         if (name.isEmpty()) throw new IllegalArgumentException("Document name is empty");
         if (!isDocumentNameValid(name)) throw new IllegalArgumentException("Document name is not valid");
 
-        this.name = name;
+        WriteAheadLog currentLog = log;
+        if (currentLog == null) {
+            this.name = name;
+            revise(true);
+            return;
+        }
+        synchronized (logLock) {
+            this.name = name;
+            currentLog.append(Edit.rename(name));
+            revise(true);
+        }
+    }
+
+    /**
+     * Returns the write-ahead log receiving the edits of the document
+     * @return  The write-ahead log, null if the document is not persisted
+     */
+    public WriteAheadLog getWriteAheadLog() {
+        return log;
+    }
+
+    /**
+     * Attaches the write-ahead log receiving the edits of the document
+     * The edits applied before are not appended, the log must already hold them
+     *
+     * @param log   The write-ahead log, null to stop persisting the document
+     */
+    public void setWriteAheadLog(WriteAheadLog log) {
+        synchronized (logLock) {
+            this.log = log;
+        }
+    }
+
+    /**
+     * Returns the history of the edits applied to the document
+     * @return  The edit history, null if the edits made on an older revision are not transformed
+     */
+    public EditHistory getEditHistory() {
+        return history;
+    }
+
+    /**
+     * Attaches the history recording the edits applied to the document from now on
+     *
+     * @param history   The edit history, starting at the current revision, null to stop recording the edits
+     */
+    public void setEditHistory(EditHistory history) {
+        synchronized (logLock) {
+            this.history = history;
+        }
+    }
+
+    /**
+     * Fills the document with the given text, used to load a snapshot
+     * The text is not appended to the write-ahead log
+     *
+     * @param text  The content, lines separated by line breaks
+     * @throws IllegalStateException If a write-ahead log is attached
+     */
+    public void load(String text) {
+        if (text == null) throw new IllegalArgumentException("Text is null");
+
+        synchronized (logLock) {
+            if (log != null) throw new IllegalStateException("Write-ahead log is attached");
+            content.load(text);
+            revise(true);
+        }
+    }
+
+    /**
+     * Fills the document with the given lines, used to load a mapped snapshot
+     * The lines are not appended to the write-ahead log
+     *
+     * @param lines The lines encoded in UTF-8, without their line breaks
+     * @throws IllegalStateException If a write-ahead log is attached
+     */
+    public void load(List<ByteBuffer> lines) {
+        if (lines == null) throw new IllegalArgumentException("Lines are null");
+
+        synchronized (logLock) {
+            if (log != null) throw new IllegalStateException("Write-ahead log is attached");
+            content.load(lines);
+            revise(true);
+        }
+    }
+
+    /**
+     * Starts a new segment of the write-ahead log and captures the state of the document at the same point of its history
+     * Edits wait while the log is rolled and the content is captured, the content is built later by the returned supplier
+     *
+     * @return  The captured state, null if no write-ahead log is attached
+     * @throws IOException If the new segment cannot be created
+     */
+    public WriteAheadLog.Checkpoint checkpoint() throws IOException {
+        synchronized (logLock) {
+            WriteAheadLog currentLog = log;
+            if (currentLog == null) return null;
+
+            long segment = currentLog.roll(name);
+            return new WriteAheadLog.Checkpoint(segment, name, content.capture());
+        }
+    }
+
+    /**
+     * Applies an edit made by a client, moved past the edits applied since the revision it was made on
+     * The client must have received the acknowledgement of the previous edit of the author before sending this one
+     * Without edit history, the edit is applied at its raw positions
+     *
+     * @param edit          The edit, with the positions it had on its base revision
+     * @param author        The user who made the edit
+     * @param baseRevision  The revision of the document the edit was made on, -1 to apply it as it is
+     * @return              The edit as it has been applied, null if it vanished or could not be applied,
+     *                      its revision is distinct from the ones of the other edits,
+     *                      it follows the order of the edits in the content only if they are applied one at a time
+     * @throws IllegalArgumentException If the edit is a renaming or the base revision is after the current one
+     * @throws StaleRevisionException If the base revision is older than the edits kept by the history,
+     *                                or than the acknowledgement of the previous edit of the author
+     * @throws MemoryBudgetExceededException If the memory budget of the document is exceeded
+     */
+    public AppliedEdit apply(Edit edit, UUID author, long baseRevision) {
+        if (edit == null) throw new IllegalArgumentException("Edit is null");
+        if (edit.type() == EditType.RENAME) throw new IllegalArgumentException("Renaming is not a content edit");
+
+        switch (edit.type()) {
+            case INSERT_CHAR -> checkGrowth("the insertion of a character");
+            case INSERT_TEXT -> checkGrowth("the insertion of a text");
+            case INSERT_LINE_BRK -> checkGrowth("the insertion of a line break");
+            default -> { }
+        }
+
+        //  Without history nor log, the edits of different lines may still run in parallel
+        if (!isSequential()) {
+            if (!applyContent(edit, author)) return null;
+            long applied = revise();
+            account(true);
+            return new AppliedEdit(applied, edit, author, 0);
+        }
+
+        AppliedEdit applied;
+        synchronized (logLock) {
+            Edit rebased = edit;
+            EditHistory currentHistory = history;
+            if (baseRevision >= 0 && currentHistory != null) {
+                if (baseRevision > revision.get()) throw new IllegalArgumentException("Revision " + baseRevision + " is after the current one");
+
+                rebased = currentHistory.transform(edit, author, baseRevision);
+                if (rebased == null) return null;
+            }
+            applied = applyLogged(rebased, author);
+        }
+        account(applied != null);
+        return applied;
+    }
+
+    /**
+     * Returns true if the edits are applied one at a time, to be logged or recorded in the order they are applied
+     * @return  True if a write-ahead log or an edit history is attached
+     */
+    private boolean isSequential() {
+        return log != null || history != null;
+    }
+
+    /**
+     * Applies an edit, appending it to the write-ahead log and recording it in the edit history if it has been applied
+     *
+     * @param edit      The edit
+     * @param author    The user who made the edit, null if it is unknown
+     * @return          The edit as it has been applied, null if it has not been applied
+     */
+    private AppliedEdit applyLogged(Edit edit, UUID author) {
+        synchronized (logLock) {
+            //  The positions of the merged line move to the end of the previous one, its length is needed to transform them
+            EditHistory currentHistory = history;
+            int joinColumn = currentHistory != null && edit.type() == EditType.DELETE_LINE_BRK && edit.line() > 0 && edit.line() < content.getLineCount()
+                    ? content.getLines(edit.line() - 1, edit.line()).length()
+                    : 0;
+
+            if (!applyContent(edit, author)) return null;
+
+            //  The log may have been detached while waiting for the lock
+            WriteAheadLog currentLog = log;
+            if (currentLog != null) currentLog.append(edit);
+
+            //  The revision is incremented under the lock, so the history holds the edits in the order of their revisions
+            AppliedEdit appliedEdit = new AppliedEdit(revise(), edit, author, joinColumn);
+            if (currentHistory != null) currentHistory.record(appliedEdit);
+            return appliedEdit;
+        }
+    }
+
+    /**
+     * Applies an edit to the content, the edits of a single character start from the finger of their author
+     *
+     * @param edit      The edit
+     * @param author    The user who made the edit, null if it is unknown
+     * @return          True if the edit has been applied, false otherwise
+     */
+    private boolean applyContent(Edit edit, UUID author) {
+        Finger finger = author == null ? null : fingers.computeIfAbsent(author, user -> new Finger());
+        return switch (edit.type()) {
+            case INSERT_CHAR -> content.insert(finger, edit.line(), edit.column(), edit.character());
+            case INSERT_TEXT -> content.insertText(edit.line(), edit.column(), edit.text());
+            case MODIFY_CHAR -> content.modify(finger, edit.line(), edit.column(), edit.character());
+            case INSERT_LINE_BRK -> content.insertLineBreak(edit.line(), edit.column());
+            case DELETE_CHAR -> content.delete(finger, edit.line(), edit.column());
+            case DELETE_LINE_BRK -> content.deleteLineBreak(edit.line());
+            case DELETE_RANGE -> content.deleteRange(edit.line(), edit.column(), edit.endLine(), edit.endColumn());
+            case RENAME -> throw new IllegalArgumentException("Renaming is not a content edit");
+        };
     }
 
     /**
@@ -152,6 +402,7 @@ public class Document {
     public boolean removeUser(User user) {
         if (user == null) throw new IllegalArgumentException("User is null");
 
+        fingers.remove(user.getUUID());
         return users.remove(user.getUUID()) != null;
     }
 
@@ -200,12 +451,161 @@ public class Document {
         return joiningUsers.containsKey(user.getUUID());
     }
 
+    /**
+     * Check if the document has neither users nor joining users, so it can be evicted from memory
+     * @return  True if the document is idle, false otherwise
+     */
+    public boolean isIdle() {
+        return users.isEmpty() && joiningUsers.isEmpty();
+    }
+
+    /**
+     * Records an access to the document, used to evict the least recently used documents first
+     */
+    public void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the time of the last access to the document
+     * @return  The time of the last access, in milliseconds since the epoch
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Returns an estimate of the heap retained by the document, in bytes
+     * @return  The estimated footprint of the document, in bytes
+     */
+    public long getFootprint() {
+        return DOCUMENT_OVERHEAD + content.getFootprint();
+    }
+
+    /**
+     * Returns the memory budget the document reports to
+     * @return  The memory budget, null if the document is not accounted
+     */
+    public MemoryBudget getMemoryBudget() {
+        return budget;
+    }
+
+    /**
+     * Attaches the document to a memory budget, its footprint is moved from the previous budget to the new one
+     *
+     * @param budget    The memory budget, null to stop accounting the document
+     */
+    public void setMemoryBudget(MemoryBudget budget) {
+        synchronized (accountedFootprint) {
+            MemoryBudget previous = this.budget;
+            long footprint = budget == null ? 0 : getFootprint();
+            long released = accountedFootprint.getAndSet(footprint);
+
+            this.budget = budget;
+            if (previous != null) previous.add(-released);
+            if (budget != null) budget.add(footprint);
+        }
+    }
+
+    /**
+     * Rejects an edit growing the document if its memory budget is exceeded
+     *
+     * @param operation The edit, used in the error message
+     * @throws MemoryBudgetExceededException If the budget is exceeded
+     */
+    private void checkGrowth(String operation) {
+        MemoryBudget currentBudget = budget;
+        if (currentBudget != null) currentBudget.checkGrowth(operation);
+    }
+
+    /**
+     * Reports the change of footprint to the memory budget once it reaches the accounting step
+     * Small edits are accumulated, so the shared budget is not updated on every key stroke
+     *
+     * @param changed   True if the edit has been applied, nothing is reported otherwise
+     * @return          The given result
+     */
+    private boolean account(boolean changed) {
+        MemoryBudget currentBudget = budget;
+        if (!changed || currentBudget == null) return changed;
+
+        long footprint = getFootprint();
+        long accounted = accountedFootprint.get();
+        if (Math.abs(footprint - accounted) >= ACCOUNTING_STEP && accountedFootprint.compareAndSet(accounted, footprint)) {
+            currentBudget.add(footprint - accounted);
+        }
+        return true;
+    }
+
+    /**
+     * Counts an applied edit in the revision of the document, the snapshot of the previous revision is released
+     *
+     * @param changed   True if the edit has been applied, nothing is counted otherwise
+     * @return          The given result
+     */
+    private boolean revise(boolean changed) {
+        if (changed) revise();
+        return changed;
+    }
+
+    /**
+     * Counts an applied edit in the revision of the document, the snapshot of the previous revision is released
+     *
+     * @return  The revision of the edit, distinct for every edit even when edits are applied concurrently
+     */
+    private long revise() {
+        long revised = revision.incrementAndGet();
+        if (snapshot != null) snapshot = null;
+        return revised;
+    }
+
+    /**
+     * Returns the revision of the document, incremented by every applied edit and renaming
+     * @return  The revision of the document
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+
+    /**
+     * Returns the content of the document at its current revision
+     * The snapshot is built once per revision, concurrent readers of the same revision wait for it and share it
+     * When the edits are applied one at a time, the content holds exactly the edits counted by the revision,
+     * otherwise edits applied while the snapshot is taken may be in the content but not yet counted
+     *
+     * @return  The snapshot of the current revision
+     */
+    public DocumentSnapshot snapshot() {
+        DocumentSnapshot current = snapshot;
+        if (current != null && current.getRevision() == revision.get()) return current;
+
+        synchronized (snapshotLock) {
+            current = snapshot;
+            if (current != null && current.getRevision() == revision.get()) return current;
+
+            //  The revision and the content are captured together while the edits wait, the content is built outside the lock
+            long currentRevision;
+            String currentName;
+            Supplier<String> capture;
+            synchronized (logLock) {
+                currentRevision = revision.get();
+                currentName = name;
+                capture = content.capture();
+            }
+            current = new DocumentSnapshot(currentRevision, currentName, capture.get());
+
+            //  An edit applied meanwhile makes the snapshot stale, it is returned but not kept
+            if (revision.get() == currentRevision) snapshot = current;
+            return current;
+        }
+    }
+
     /**
      * Returns the number of lines in the document
      * @return  The number of lines in the document
      */
     public int getLineCount() {
-        return lineCount.get();
+        return content.getLineCount();
     }
 
     /**
@@ -217,27 +617,31 @@ public class Document {
      * @param column        Coordinate of the column, starts at 0
      * @param character     Character to insert
      * @return          True if the character has been inserted, false otherwise
+     * @throws MemoryBudgetExceededException If the memory budget of the document is exceeded
      */
-    public synchronized boolean insert(int line, int column, char character) {
-        if (line < 0 || column < 0) return false;
-
-        LineNode lineNode = getLineNode(line);
-
-        //  The requested line node does not exist
-        //  Create it
+    public boolean insert(int line, int column, char character) {
+        checkGrowth("the insertion of a character");
+        if (isSequential()) return account(applyLogged(Edit.insert(line, column, character), null) != null);
+        return account(revise(content.insert(line, column, character)));
+    }
 
-        if (lineNode == null) {
-            lineNode = getLastLineNode();
-            int actualLine = lineCount.getAcquire() - 1;
+    /**
+     * Insert a text at the given position in one operation, used to paste
+     * The line breaks of the text split the line, the missing lines and columns are created like {@link #insert(int, int, char)} does
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param text          Text to insert, lines separated by line breaks
+     * @return          True if the text has been inserted, false otherwise
+     * @throws IllegalArgumentException If the text is null
+     * @throws MemoryBudgetExceededException If the memory budget of the document is exceeded
+     */
+    public boolean insertText(int line, int column, CharSequence text) {
+        if (text == null) throw new IllegalArgumentException("Text is null");
 
-            while (actualLine < line) {
-                createLineNode(lineNode);
-                lineNode = lineNode.getNext();
-                actualLine++;
-            }
-            lineCount.setRelease(actualLine + 1);
-        }
-        return lineNode.insert(column, character);
+        checkGrowth("the insertion of a text");
+        if (isSequential()) return account(applyLogged(Edit.insertText(line, column, text.toString()), null) != null);
+        return account(revise(content.insertText(line, column, text)));
     }
 
     /**
@@ -248,16 +652,9 @@ public class Document {
      * @param character     Character to insert
      * @return          True if the character has been modified, false otherwise
      */
-    public synchronized boolean modify(int line, int column, char character) {
-        if (line < 0 || column < 0) return false;
-
-        LineNode lineNode = getLineNode(line);
-
-        //  The requested line node does not exist
-        if (lineNode == null) {
-            return false;
-        }
-        return lineNode.modify(column, character);
+    public boolean modify(int line, int column, char character) {
+        if (isSequential()) return applyLogged(Edit.modify(line, column, character), null) != null;
+        return revise(content.modify(line, column, character));
     }
 
     /**
@@ -267,38 +664,36 @@ public class Document {
      * @param column        Coordinate of the column, starts at 0
      * @return          True if the character has been deleted, false otherwise
      */
-    public synchronized boolean delete(int line, int column) {
-        if (line < 0 || column < 0) return false;
-
-        LineNode lineNode = getLineNode(line);
-
-        //  The requested line node does not exist
-        //  Nothing to remove
-
-        if (lineNode == null) return false;
-
-        return lineNode.delete(column);
+    public boolean delete(int line, int column) {
+        if (isSequential()) return account(applyLogged(Edit.delete(line, column), null) != null);
+        return account(revise(content.delete(line, column)));
     }
 
     /**
-     * Delete a line break between two lines, the selected line is merged with the next line
+     * Delete a line break between two lines, the selected line is merged with the previous line
      *
      * @param line        Coordinate of the line, starts at 0
      * @return      True if the line has been removed, false otherwise
      */
-    public synchronized boolean deleteLineBreak(int line) {
-        if (line < 0) return false;
-
-        LineNode lineNode = getLineNode(line);
-
-        //  The requested line node does not exist
-        //  Nothing to remove
-        if (lineNode == null) return false;
-
-        boolean result = lineNode.deleteLineBreak();
-        if (result) lineCount.decrementAndGet();
+    public boolean deleteLineBreak(int line) {
+        if (isSequential()) return account(applyLogged(Edit.deleteLineBreak(line), null) != null);
+        return account(revise(content.deleteLineBreak(line)));
+    }
 
-        return result;
+    /**
+     * Delete the characters between two positions in one operation, used to delete a selection
+     * The line breaks between both positions are deleted too, the character at the end position is kept
+     *
+     * @param startLine     Coordinate of the line of the first deleted character, starts at 0
+     * @param startColumn   Coordinate of the column of the first deleted character, starts at 0
+     * @param endLine       Coordinate of the line of the end of the range, starts at 0
+     * @param endColumn     Coordinate of the column of the end of the range, starts at 0
+     * @return          True if the characters have been deleted,
+     *                  false if a position does not exist or the end is not after the start
+     */
+    public boolean deleteRange(int startLine, int startColumn, int endLine, int endColumn) {
+        if (isSequential()) return account(applyLogged(Edit.deleteRange(startLine, startColumn, endLine, endColumn), null) != null);
+        return account(revise(content.deleteRange(startLine, startColumn, endLine, endColumn)));
     }
 
     /**
@@ -309,20 +704,41 @@ public class Document {
      * @param line        Coordinate of the line, starts at 0
      * @param column      Coordinate of the column, starts at 0
      * @return      True if the line break has been inserted, false otherwise
+     * @throws MemoryBudgetExceededException If the memory budget of the document is exceeded
      */
-    public synchronized boolean insertLineBreak(int line, int column) {
-        if (line < 0 || column < 0) return false;
-
-        LineNode lineNode = getLineNode(line);
-
-        //  The requested line node does not exist
-        //  Nothing to remove
-        if (lineNode == null) return false;
+    public boolean insertLineBreak(int line, int column) {
+        checkGrowth("the insertion of a line break");
+        if (isSequential()) return account(applyLogged(Edit.insertLineBreak(line, column), null) != null);
+        return account(revise(content.insertLineBreak(line, column)));
+    }
 
-        boolean result = lineNode.insertLineBreak(column);
-        if (result) lineCount.incrementAndGet();
+    /**
+     * Returns the content of a range of lines, used to send the visible part of the document
+     * Each line is separated by a line break, the lines past the end of the document are ignored
+     *
+     * @param from  Coordinate of the first line, starts at 0
+     * @param to    Coordinate after the last line
+     * @return      The lines as a string, empty if the range holds no existing line
+     * @throws IllegalArgumentException If the first line is negative or the range is reversed
+     */
+    public String getLines(int from, int to) {
+        return content.getLines(from, to);
+    }
 
-        return result;
+    /**
+     * Returns the content of a range of lines with the revision and the number of lines of the document they were read at
+     * The lines are read while the edits wait, so when the edits are applied one at a time
+     * they hold exactly the edits counted by the revision, see {@link #snapshot()}
+     *
+     * @param from  Coordinate of the first line, starts at 0
+     * @param to    Coordinate after the last line
+     * @return      The lines read at the returned revision
+     * @throws IllegalArgumentException If the first line is negative or the range is reversed
+     */
+    public DocumentLines readLines(int from, int to) {
+        synchronized (logLock) {
+            return new DocumentLines(revision.get(), content.getLineCount(), content.getLines(from, to));
+        }
     }
 
     /**
@@ -332,18 +748,7 @@ public class Document {
      * @return    The document as a string
      */
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        LineNode lineNode = content;
-        while (lineNode != null) {
-            sb.append(lineNode);
-            lineNode = lineNode.getNext();
-        }
-
-        // Remove the last line break
-        if (!sb.isEmpty()) {
-            sb.deleteCharAt(sb.length() - 1);
-        }
-        return sb.toString();
+        return content.toString();
     }
 
     /**
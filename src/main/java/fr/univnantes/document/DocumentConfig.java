@@ -0,0 +1,54 @@
+package fr.univnantes.document;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Holds the document configuration.
+ * <p>
+ *     The property documents.heap-budget-percent sets the {@link MemoryBudget} of the documents as a percentage of the maximum heap,
+ *     0 disables it. Once it is exceeded, the documents refuse to grow and no document can be created.
+ * </p>
+ * <p>
+ *     The property documents.edit-history.size sets the number of edits recorded by each document to transform the edits
+ *     made by clients on an older revision, 0 disables it and lets the edits of different lines run in parallel again.
+ * </p>
+ */
+@Configuration
+public class DocumentConfig {
+
+    @Value("${documents.heap-budget-percent:50}")
+    private int heapBudgetPercent;
+
+    @Value("${documents.edit-history.size:1024}")
+    private int editHistorySize;
+
+    /**
+     * Sets the limit of the memory budget of the document manager
+     *
+     * @return  The memory budget
+     */
+    @Bean
+    public MemoryBudget memoryBudget() {
+        if (heapBudgetPercent < 0 || heapBudgetPercent > 100) {
+            throw new IllegalArgumentException("Heap budget percentage is invalid: " + heapBudgetPercent);
+        }
+
+        MemoryBudget budget = DocumentManager.getInstance().getMemoryBudget();
+        budget.setLimit(Runtime.getRuntime().maxMemory() / 100 * heapBudgetPercent);
+        return budget;
+    }
+
+    /**
+     * Sets the size of the edit history of the documents
+     *
+     * @return  The document manager
+     */
+    @Bean
+    public DocumentManager documentManager() {
+        DocumentManager documentManager = DocumentManager.getInstance();
+        documentManager.setEditHistorySize(editHistorySize);
+        return documentManager;
+    }
+}
@@ -0,0 +1,11 @@
+package fr.univnantes.document;
+
+/**
+ * Represents a range of lines of a document read at a given revision, see {@link Document#readLines(int, int)}
+ *
+ * @param revision  The revision of the document when the lines were read
+ * @param lineCount The number of lines of the document at that revision
+ * @param content   The lines, separated by line breaks
+ */
+public record DocumentLines(long revision, int lineCount, String content) {
+}
@@ -1,20 +1,44 @@
 package fr.univnantes.document;
 
+import fr.univnantes.document.engine.DocumentEngineType;
+import fr.univnantes.document.persistence.DocumentStore;
+import fr.univnantes.document.transform.EditHistory;
+import fr.univnantes.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Class used to manage documents
  * <p>
  *     This class is used to create, get and remove documents
+ *     When a {@link DocumentStore} is set, the created documents are persisted and the removed ones are deleted from the disk
+ *     The documents of the store may then be evicted from memory, see {@link ResidencyManager},
+ *     and are loaded back transparently the next time they are requested
+ *     The documents in memory share a {@link MemoryBudget}, no document is created once it is exceeded
+ *     Each document in memory records its last edits in an {@link EditHistory}, unless the history size is 0
  *     It is a singleton
  * </p>
  */
 public class DocumentManager {
 
     private static final AtomicReference<DocumentManager> instance = new AtomicReference<>(null);
+    private final Logger logger = LoggerFactory.getLogger(DocumentManager.class);
     private final ConcurrentHashMap<UUID, Document> documents;
+    private final ConcurrentHashMap<UUID, CompletableFuture<Document>> transitions = new ConcurrentHashMap<>();
+    private volatile DocumentStore store = null;
+    private final List<Consumer<UUID>> evictionListeners = new CopyOnWriteArrayList<>();
+    private final MemoryBudget memoryBudget = new MemoryBudget(0);
+    private volatile int editHistorySize = EditHistory.DEFAULT_CAPACITY;
 
 
     /**
@@ -39,36 +63,324 @@ public class DocumentManager {
         return instance.get();
     }
 
+    /**
+     * Returns the store persisting the documents
+     * @return  The store, null if the documents are not persisted
+     */
+    public DocumentStore getStore() {
+        return store;
+    }
+
+    /**
+     * Sets the store persisting the documents created from now on
+     *
+     * @param store The store, null to stop persisting the new documents
+     */
+    public void setStore(DocumentStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the memory budget shared by the documents in memory
+     * @return  The memory budget
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the number of edits recorded by each document in memory
+     * @return  The size of the edit histories, 0 if the edits are not recorded
+     */
+    public int getEditHistorySize() {
+        return editHistorySize;
+    }
+
+    /**
+     * Sets the number of edits recorded by the documents added, created or loaded from now on
+     *
+     * @param editHistorySize   The size of the edit histories, 0 to stop recording the edits
+     * @throws IllegalArgumentException If the size is negative
+     */
+    public void setEditHistorySize(int editHistorySize) {
+        if (editHistorySize < 0) throw new IllegalArgumentException("Edit history size is negative");
+        this.editHistorySize = editHistorySize;
+    }
+
+    /**
+     * Attaches the shared memory budget and a new edit history to a document entering the memory
+     *
+     * @param document  The document
+     */
+    private void attach(Document document) {
+        document.setMemoryBudget(memoryBudget);
+
+        int size = editHistorySize;
+        if (size > 0) document.setEditHistory(new EditHistory(size, document.getRevision()));
+    }
+
+    /**
+     * Adds an existing document, used to add the recovered documents
+     *
+     * @param document  The document
+     * @return          True if the document was added, false if a document with the same UUID exists
+     */
+    public boolean addDocument(Document document) {
+        if (document == null) throw new IllegalArgumentException("Document is null");
+        if (documents.putIfAbsent(document.getUUID(), document) != null) return false;
+
+        attach(document);
+        return true;
+    }
+
     /**
      * Returns the document with the given UUID
+     * A document evicted from memory is loaded back from the store
      *
      * @param documentId    The UUID of the document
-     * @return              The document with the given UUID
+     * @return              The document with the given UUID, null if it does not exist
      */
     public Document getDocument(UUID documentId) {
-        return documents.get(documentId);
+        if (documentId == null) return null;
+
+        Document document = resolve(documentId);
+        if (document == null) return null;
+
+        document.touch();
+        return document;
+    }
+
+    /**
+     * Returns the document with the given UUID in memory, loading it back from the store if it was evicted
+     * <p>
+     *     A document is loaded or evicted by a single thread, which registers the transition of the document first,
+     *     the other threads wait for it instead of reading the store. The disk is never read or written in a mapping function
+     *     of the documents, so a transition never blocks the requests for the other documents.
+     * </p>
+     *
+     * @param documentId    The UUID of the document
+     * @return              The document, null if it does not exist
+     */
+    private Document resolve(UUID documentId) {
+        while (true) {
+            Document document = documents.get(documentId);
+            if (document != null) return document;
+
+            CompletableFuture<Document> transition = transitions.get(documentId);
+            if (transition != null) {
+                transition.join();
+                continue;
+            }
+
+            DocumentStore currentStore = store;
+            if (currentStore == null || !currentStore.contains(documentId)) return null;
+
+            CompletableFuture<Document> loading = new CompletableFuture<>();
+            if (transitions.putIfAbsent(documentId, loading) != null) continue;
+
+            Document loaded = null;
+            try {
+                //  A failed eviction may have put the document back before the load was registered
+                loaded = documents.get(documentId);
+                if (loaded != null) return loaded;
+
+                loaded = load(currentStore, documentId);
+                if (loaded != null) documents.put(documentId, loaded);
+                return loaded;
+            } finally {
+                transitions.remove(documentId, loading);
+                loading.complete(loaded);
+            }
+        }
+    }
+
+    /**
+     * Adds a joining user to the document with the given UUID, loading it back from the store if it was evicted
+     * The document is resolved and the user registered in one step, so the document cannot be evicted in between
+     *
+     * @param documentId    The UUID of the document
+     * @param user          The joining user
+     * @return              The joined document, null if it does not exist
+     */
+    public Document joinDocument(UUID documentId, User user) {
+        if (user == null) throw new IllegalArgumentException("User is null");
+        if (documentId == null) return null;
+
+        while (true) {
+            Document document = resolve(documentId);
+            if (document == null) return null;
+
+            //  The user is registered in the mapping function where an eviction checks that the document is idle,
+            //  a document evicted after it was resolved is loaded again
+            Document joined = documents.computeIfPresent(documentId, (id, resident) -> {
+                if (resident == document) resident.addJoiningUser(user);
+                return resident;
+            });
+            if (joined == document) {
+                document.touch();
+                return document;
+            }
+        }
+    }
+
+    /**
+     * Loads a document evicted from memory
+     *
+     * @param currentStore  The store holding the document
+     * @param documentId    The UUID of the document
+     * @return              The document, null if it cannot be loaded
+     */
+    private Document load(DocumentStore currentStore, UUID documentId) {
+        try {
+            Document document = currentStore.load(documentId);
+            if (document != null) attach(document);
+            return document;
+        } catch (IOException | IllegalStateException e) {
+            logger.error("An error occurred while loading document {}, {}", documentId, e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Creates a new document with the given name
+     * Returns the documents in memory
+     * @return  A view of the documents in memory
+     */
+    public Collection<Document> getResidentDocuments() {
+        return documents.values();
+    }
+
+    /**
+     * Returns the number of documents in memory
+     * @return  The number of documents in memory
+     */
+    public int getResidentCount() {
+        return documents.size();
+    }
+
+    /**
+     * Adds a listener called with the UUID of each document evicted from memory
+     * It lets the holders of per-document state release it
+     *
+     * @param listener  The listener
+     */
+    public void addEvictionListener(Consumer<UUID> listener) {
+        if (listener == null) throw new IllegalArgumentException("Listener is null");
+        evictionListeners.add(listener);
+    }
+
+    /**
+     * Evicts an idle document from memory, writing it to the store
+     * A document with users or joining users is never evicted
+     *
+     * @param documentId    The UUID of the document
+     * @return              True if the document has been evicted, false otherwise
+     */
+    public boolean evictDocument(UUID documentId) {
+        DocumentStore currentStore = store;
+        if (currentStore == null) return false;
+
+        //  The idle document leaves the map while its eviction is registered, the requests for it wait for the eviction
+        CompletableFuture<Document> eviction = new CompletableFuture<>();
+        Document[] removed = {null};
+        documents.computeIfPresent(documentId, (id, document) -> {
+            if (!document.isIdle() || transitions.putIfAbsent(id, eviction) != null) return document;
+            removed[0] = document;
+            return null;
+        });
+        Document document = removed[0];
+        if (document == null) return false;
+
+        boolean evicted = false;
+        try {
+            evicted = currentStore.evict(documentId);
+        } catch (IOException e) {
+            logger.error("An error occurred while evicting document {}, {}", documentId, e.getMessage());
+        } finally {
+            if (evicted) {
+                document.setMemoryBudget(null);
+            } else {
+                documents.put(documentId, document);
+            }
+            transitions.remove(documentId, eviction);
+            eviction.complete(evicted ? null : document);
+        }
+
+        if (evicted) evictionListeners.forEach(listener -> listener.accept(documentId));
+        return evicted;
+    }
+
+    /**
+     * Creates a new document with the given name using the default engine
      *
      * @param name  The name of the document
      * @return      The created document
      */
     public Document createDocument(String name) {
-        Document document = new Document(name);
+        return createDocument(name, DocumentEngineType.LINKED_LINES);
+    }
+
+    /**
+     * Creates a new document with the given name using the given engine
+     *
+     * @param name          The name of the document
+     * @param engineType    The type of engine storing the content of the document
+     * @return              The created document
+     * @throws MemoryBudgetExceededException If the memory budget of the documents is exceeded
+     */
+    public Document createDocument(String name, DocumentEngineType engineType) {
+        return createDocument(name, engineType, null);
+    }
+
+    /**
+     * Creates a new document with the given name using the given engine, joined by its creator
+     * The creator is registered before the document is visible, so the document cannot be evicted before the creator connects
+     *
+     * @param name          The name of the document
+     * @param engineType    The type of engine storing the content of the document
+     * @param creator       The user joining the created document, null for none
+     * @return              The created document
+     * @throws MemoryBudgetExceededException If the memory budget of the documents is exceeded
+     */
+    public Document createDocument(String name, DocumentEngineType engineType, User creator) {
+        memoryBudget.checkGrowth("the creation of a document");
+        Document document = new Document(name, engineType);
+
+        DocumentStore currentStore = store;
+        if (currentStore != null) {
+            try {
+                currentStore.create(document);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not persist the document", e);
+            }
+        }
+
+        attach(document);
+        if (creator != null) document.addJoiningUser(creator);
         documents.put(document.getUUID(), document);
         return document;
     }
 
     /**
-     * Removes the document with the given UUID
+     * Removes the document with the given UUID, from memory and from the store
      *
      * @param documentId    The UUID of the document
      * @return              True if the document was removed, false otherwise
      */
     public boolean removeDocument(UUID documentId) {
-        return documents.remove(documentId) != null;
+        DocumentStore currentStore = store;
+        Document removed = documents.remove(documentId);
+        boolean resident = removed != null;
+        if (resident) removed.setMemoryBudget(null);
+        if (!resident && (currentStore == null || !currentStore.contains(documentId))) return false;
+
+        if (currentStore != null) {
+            try {
+                currentStore.remove(documentId);
+            } catch (IOException e) {
+                logger.error("An error occurred while deleting the log of document {}, {}", documentId, e.getMessage());
+            }
+        }
+        return true;
     }
 
 }
@@ -0,0 +1,97 @@
+package fr.univnantes.document;
+
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the content of a document at a given revision
+ * <p>
+ *     A snapshot is built by {@link Document#snapshot()} once per revision and shared by every reader of that revision,
+ *     so the users joining a document at the same time serialize its content only once
+ *     Its JSON and UTF-8 encodings are computed on first use and shared the same way
+ * </p>
+ * <p>
+ *     The content holds exactly the edits counted by the revision when the edits of the document are applied one at a time,
+ *     see {@link Document#snapshot()}, so a user applying the edits after the revision applies none of them twice
+ * </p>
+ */
+public class DocumentSnapshot {
+    private final long revision;
+    private final String name;
+    private final String content;
+    private volatile String json;
+    private volatile byte[] utf8;
+
+    /**
+     * Create a new snapshot
+     *
+     * @param revision  The revision of the document when the snapshot was taken
+     * @param name      The name of the document
+     * @param content   The content of the document, lines separated by line breaks
+     */
+    public DocumentSnapshot(long revision, String name, String content) {
+        if (name == null) throw new IllegalArgumentException("Document name is null");
+        if (content == null) throw new IllegalArgumentException("Content is null");
+
+        this.revision = revision;
+        this.name = name;
+        this.content = content;
+    }
+
+    /**
+     * Returns the revision of the document when the snapshot was taken
+     * @return  The revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Returns the name of the document when the snapshot was taken
+     * @return  The name of the document
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the content of the document
+     * @return  The content, lines separated by line breaks
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Returns the content as a quoted and escaped JSON string, computed once
+     * @return  The JSON string literal of the content
+     */
+    public String getJson() {
+        String value = json;
+        if (value == null) {
+            synchronized (this) {
+                value = json;
+                if (value == null) json = value = JSONObject.quote(content);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the content encoded in UTF-8, computed once
+     * The array is shared by every reader of the snapshot, it must not be modified
+     *
+     * @return  The UTF-8 bytes of the content
+     */
+    public byte[] getUtf8() {
+        byte[] value = utf8;
+        if (value == null) {
+            synchronized (this) {
+                value = utf8;
+                if (value == null) utf8 = value = content.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,515 @@
+package fr.univnantes.document;
+
+import java.util.Arrays;
+
+/**
+ * Represents the characters of a line stored in a gap buffer
+ * <p>
+ *     A gap buffer is a char array with a movable hole (the gap) placed at the last edited position
+ *     Inserting or deleting at the gap is O(1), moving the gap costs the distance it travels
+ *     Since users mostly type at the same place, edits are amortized O(1)
+ *     It is used by {@link LineNode} to store its characters
+ * </p>
+ * <p>
+ *     The blank characters appended by {@link #fill(char, int)} are not stored but kept as a virtual run,
+ *     so padding a line up to a far column costs O(1) whatever the column
+ *     The buffer holds at most one run, an edit inside it only stores the shorter side of the run
+ * </p>
+ * <p>
+ *     This class is not thread safe, the owning line node is responsible for the synchronization
+ * </p>
+ */
+public class GapBuffer {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final char[] EMPTY = new char[0];
+
+    private char[] buffer;
+    private int gapStart;
+    private int gapEnd;
+
+    //  The virtual run of blank characters, placed before the stored character at blankStart
+    private int blankStart;
+    private int blankCount;
+
+    /**
+     * Create a new empty gap buffer
+     */
+    public GapBuffer() {
+        buffer = EMPTY;
+        gapStart = 0;
+        gapEnd = 0;
+    }
+
+    /**
+     * Create a new gap buffer holding the given characters
+     *
+     * @param content the initial characters of the buffer
+     */
+    public GapBuffer(CharSequence content) {
+        this();
+        insert(0, content);
+    }
+
+    /**
+     * Create a new gap buffer holding a copy of the characters of another one
+     *
+     * @param other the buffer to copy, it is left untouched
+     */
+    public GapBuffer(GapBuffer other) {
+        buffer = other.buffer.length == 0 ? EMPTY : other.buffer.clone();
+        gapStart = other.gapStart;
+        gapEnd = other.gapEnd;
+        blankStart = other.blankStart;
+        blankCount = other.blankCount;
+    }
+
+    /**
+     * Returns the number of characters in the buffer, the virtual blank characters included
+     *
+     * @return the number of characters
+     */
+    public int length() {
+        return storedLength() + blankCount;
+    }
+
+    /**
+     * Returns the number of characters stored in the backing array, without the virtual blank characters
+     *
+     * @return the number of stored characters
+     */
+    public int storedLength() {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    /**
+     * Returns the size of the backing array
+     *
+     * @return the capacity of the buffer
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns the character at the given index
+     *
+     * @param index the index of the character, starts at 0
+     * @return the character at the given index
+     * @throws IndexOutOfBoundsException if the index is out of the buffer
+     */
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+        if (isBlank(index)) return ' ';
+
+        int stored = stored(index);
+        return stored < gapStart ? buffer[stored] : buffer[stored + gapEnd - gapStart];
+    }
+
+    /**
+     * Replaces the character at the given index
+     *
+     * @param index     the index of the character, starts at 0
+     * @param character the new character
+     * @throws IndexOutOfBoundsException if the index is out of the buffer
+     */
+    public void set(int index, char character) {
+        if (index < 0 || index >= length()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        if (isBlank(index)) {
+            if (character == ' ') return;
+
+            //  Once detached, the replaced character is either stored or the first one of the run
+            detach(index);
+            if (isBlank(index)) {
+                storeBlanks(blankStart, 1);
+                blankStart++;
+                shrinkRun(1);
+            }
+        }
+
+        int stored = stored(index);
+        if (stored < gapStart) buffer[stored] = character;
+        else buffer[stored + gapEnd - gapStart] = character;
+    }
+
+    /**
+     * Inserts a character at the given index
+     *
+     * @param index     the index of the character, between 0 and {@link #length()}
+     * @param character the character to insert
+     * @throws IndexOutOfBoundsException if the index is out of the buffer
+     */
+    public void insert(int index, char character) {
+        if (index < 0 || index > length()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        moveGap(reserve(index, 1));
+        ensureGap(1);
+        buffer[gapStart++] = character;
+    }
+
+    /**
+     * Inserts the given characters at the given index
+     *
+     * @param index     the index of the first inserted character, between 0 and {@link #length()}
+     * @param sequence  the characters to insert
+     * @throws IndexOutOfBoundsException if the index is out of the buffer
+     */
+    public void insert(int index, CharSequence sequence) {
+        if (index < 0 || index > length()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        int count = sequence.length();
+        if (count == 0) return;
+
+        moveGap(reserve(index, count));
+        ensureGap(count);
+        for (int i = 0; i < count; i++) {
+            buffer[gapStart++] = sequence.charAt(i);
+        }
+    }
+
+    /**
+     * Appends the given character several times at the end of the buffer
+     * Blank characters join the virtual run when it ends the buffer, or become the run if there is none
+     *
+     * @param character the character to append
+     * @param count     the number of times the character is appended
+     */
+    public void fill(char character, int count) {
+        if (count <= 0) return;
+
+        if (character == ' ') {
+            if (blankCount > 0 && blankStart == storedLength()) {
+                blankCount += count;
+                return;
+            }
+
+            //  Only one run is kept virtual, the shorter one is stored
+            if (blankCount < count) {
+                if (blankCount > 0) storeBlanks(blankStart, blankCount);
+                blankStart = storedLength();
+                blankCount = count;
+                return;
+            }
+        }
+
+        moveGap(storedLength());
+        ensureGap(count);
+        Arrays.fill(buffer, gapStart, gapStart + count, character);
+        gapStart += count;
+    }
+
+    /**
+     * Deletes the character at the given index
+     *
+     * @param index the index of the character to delete, starts at 0
+     * @throws IndexOutOfBoundsException if the index is out of the buffer
+     */
+    public void delete(int index) {
+        if (index < 0 || index >= length()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        if (isBlank(index)) {
+            shrinkRun(1);
+            return;
+        }
+
+        moveGap(stored(index));
+        gapEnd++;
+        if (index < blankStart) blankStart--;
+    }
+
+    /**
+     * Deletes the characters between the given indexes in one move of the gap
+     * The part of the virtual run inside the range is removed without being stored
+     *
+     * @param from  the index of the first character to delete
+     * @param to    the index after the last character to delete, between from and {@link #length()}
+     * @throws IndexOutOfBoundsException if the range is out of the buffer
+     */
+    public void delete(int from, int to) {
+        if (from < 0 || to > length() || from > to) throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length());
+
+        int storedFrom = storedBefore(from);
+        int storedTo = storedBefore(to);
+        int blanks = Math.max(0, Math.min(to, blankStart + blankCount) - Math.max(from, blankStart));
+        int storedBeforeRun = Math.max(0, Math.min(storedTo, blankStart) - storedFrom);
+
+        moveGap(storedFrom);
+        gapEnd += storedTo - storedFrom;
+        blankStart -= storedBeforeRun;
+        shrinkRun(blanks);
+    }
+
+    /**
+     * Splits the buffer at the given index
+     * The buffer keeps the characters before the index, the others are moved to the returned buffer
+     * A virtual run across the index is shared between both buffers
+     *
+     * @param index the index of the split, between 0 and {@link #length()}
+     * @return a new buffer holding the characters from the index to the end
+     * @throws IndexOutOfBoundsException if the index is out of the buffer
+     */
+    public GapBuffer split(int index) {
+        if (index < 0 || index > length()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        //  The run stays in this buffer
+        if (blankCount == 0 || blankStart + blankCount <= index) return splitStored(stored(index));
+
+        //  The run moves to the tail
+        if (blankStart >= index) {
+            GapBuffer tail = splitStored(index);
+            tail.blankStart = blankStart - index;
+            tail.blankCount = blankCount;
+            shrinkRun(blankCount);
+            return tail;
+        }
+
+        GapBuffer tail = splitStored(blankStart);
+        tail.blankCount = blankStart + blankCount - index;
+        blankCount = index - blankStart;
+        return tail;
+    }
+
+    /**
+     * Appends the characters of another buffer at the end of this one
+     * When both buffers have a virtual run, they are joined if they touch, otherwise the shorter one is stored
+     *
+     * @param other the buffer to append, it is left untouched
+     */
+    public void append(GapBuffer other) {
+        if (other.length() == 0) return;
+
+        int offset = storedLength();
+        if (other.blankCount == 0) {
+            appendStored(other, 0, other.storedLength());
+            return;
+        }
+
+        if (blankCount > 0 && blankStart == offset && other.blankStart == 0) {
+            blankCount += other.blankCount;
+            appendStored(other, 0, other.storedLength());
+            return;
+        }
+
+        //  Keep this run virtual, store the run of the other buffer
+        if (blankCount >= other.blankCount) {
+            appendStored(other, 0, other.blankStart);
+            storeBlanks(storedLength(), other.blankCount);
+            appendStored(other, other.blankStart, other.storedLength());
+            return;
+        }
+
+        //  Store this run, keep the run of the other buffer virtual
+        if (blankCount > 0) {
+            storeBlanks(blankStart, blankCount);
+            offset = storedLength();
+        }
+        blankStart = offset + other.blankStart;
+        blankCount = other.blankCount;
+        appendStored(other, 0, other.storedLength());
+    }
+
+    /**
+     * Appends the characters of the buffer to the given string builder
+     *
+     * @param sb the string builder to append to
+     */
+    public void appendTo(StringBuilder sb) {
+        appendStoredTo(sb, 0, blankStart);
+        sb.repeat(' ', blankCount);
+        appendStoredTo(sb, blankStart, storedLength());
+    }
+
+    /**
+     * Converts the buffer to a string
+     *
+     * @return the characters of the buffer as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Returns true if the character at the given index belongs to the virtual run
+     *
+     * @param index the index of the character
+     * @return true if the character is virtual, false otherwise
+     */
+    private boolean isBlank(int index) {
+        return index >= blankStart && index < blankStart + blankCount;
+    }
+
+    /**
+     * Returns the position among the stored characters of an index outside of the virtual run
+     *
+     * @param index the index of the character
+     * @return the position of the character among the stored characters
+     */
+    private int stored(int index) {
+        return index < blankStart ? index : index - blankCount;
+    }
+
+    /**
+     * Returns the number of stored characters before the given index, the index may be inside the virtual run
+     *
+     * @param index the index, between 0 and {@link #length()}
+     * @return the number of stored characters before the index
+     */
+    private int storedBefore(int index) {
+        if (index <= blankStart) return index;
+        return index >= blankStart + blankCount ? index - blankCount : blankStart;
+    }
+
+    /**
+     * Returns the position among the stored characters where characters are inserted at the given index
+     * The virtual run is detached from the index first, and moved after the inserted characters if they come before it
+     *
+     * @param index the index of the first inserted character
+     * @param count the number of inserted characters
+     * @return the position of the first inserted character among the stored characters
+     */
+    private int reserve(int index, int count) {
+        detach(index);
+        if (blankCount > 0 && index <= blankStart) {
+            blankStart += count;
+            return index;
+        }
+        return stored(index);
+    }
+
+    /**
+     * Stores the shorter side of the virtual run around the given index, so the index is no longer inside the run
+     *
+     * @param index the index of the edit
+     */
+    private void detach(int index) {
+        if (index <= blankStart || index >= blankStart + blankCount) return;
+
+        int before = index - blankStart;
+        int after = blankStart + blankCount - index;
+        storeBlanks(blankStart, Math.min(before, after));
+        if (before <= after) blankStart += before;
+        shrinkRun(Math.min(before, after));
+    }
+
+    /**
+     * Removes characters from the virtual run
+     *
+     * @param count the number of removed characters
+     */
+    private void shrinkRun(int count) {
+        blankCount -= count;
+        if (blankCount == 0) blankStart = 0;
+    }
+
+    /**
+     * Stores blank characters at the given position among the stored characters
+     * The caller is responsible for updating the virtual run
+     *
+     * @param stored    the position of the first blank character among the stored characters
+     * @param count     the number of blank characters
+     */
+    private void storeBlanks(int stored, int count) {
+        moveGap(stored);
+        ensureGap(count);
+        Arrays.fill(buffer, gapStart, gapStart + count, ' ');
+        gapStart += count;
+    }
+
+    /**
+     * Splits the stored characters at the given position, the virtual run is left to the caller
+     *
+     * @param stored the position of the split among the stored characters
+     * @return a new buffer holding the stored characters from the position to the end
+     */
+    private GapBuffer splitStored(int stored) {
+        moveGap(stored);
+        GapBuffer tail = new GapBuffer();
+        int tailLength = buffer.length - gapEnd;
+        if (tailLength > 0) {
+            tail.buffer = Arrays.copyOfRange(buffer, gapEnd, buffer.length);
+            tail.gapStart = tailLength;
+            tail.gapEnd = tailLength;
+        }
+        gapEnd = buffer.length;
+        return tail;
+    }
+
+    /**
+     * Appends stored characters of another buffer at the end of the stored characters of this one
+     *
+     * @param other the buffer holding the characters
+     * @param from  the position of the first character among the stored characters of the other buffer
+     * @param to    the position after the last character among the stored characters of the other buffer
+     */
+    private void appendStored(GapBuffer other, int from, int to) {
+        int count = to - from;
+        if (count <= 0) return;
+
+        moveGap(storedLength());
+        ensureGap(count);
+        int beforeGap = Math.max(0, Math.min(to, other.gapStart) - from);
+        System.arraycopy(other.buffer, from, buffer, gapStart, beforeGap);
+        int otherGap = other.gapEnd - other.gapStart;
+        System.arraycopy(other.buffer, from + beforeGap + otherGap, buffer, gapStart + beforeGap, count - beforeGap);
+        gapStart += count;
+    }
+
+    /**
+     * Appends stored characters of the buffer to the given string builder
+     *
+     * @param sb    the string builder to append to
+     * @param from  the position of the first character among the stored characters
+     * @param to    the position after the last character among the stored characters
+     */
+    private void appendStoredTo(StringBuilder sb, int from, int to) {
+        int beforeGap = Math.max(0, Math.min(to, gapStart) - from);
+        sb.append(buffer, from, beforeGap);
+        sb.append(buffer, from + beforeGap + gapEnd - gapStart, to - from - beforeGap);
+    }
+
+    /**
+     * Moves the gap so it starts at the given index
+     *
+     * @param index the new start of the gap
+     */
+    private void moveGap(int index) {
+        if (index == gapStart) return;
+
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(buffer, index, buffer, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else {
+            int count = index - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * Grows the backing array if the gap is smaller than the requested size
+     * The capacity is doubled to keep insertions amortized O(1), it only holds the stored characters, never the virtual padding
+     *
+     * @param required the number of free slots needed in the gap
+     */
+    private void ensureGap(int required) {
+        int gapSize = gapEnd - gapStart;
+        if (gapSize >= required) return;
+
+        int newCapacity = Math.max(Math.max(DEFAULT_CAPACITY, buffer.length * 2), storedLength() + required);
+        char[] newBuffer = new char[newCapacity];
+        int tailLength = buffer.length - gapEnd;
+
+        System.arraycopy(buffer, 0, newBuffer, 0, gapStart);
+        System.arraycopy(buffer, gapEnd, newBuffer, newCapacity - tailLength, tailLength);
+
+        buffer = newBuffer;
+        gapEnd = newCapacity - tailLength;
+    }
+}
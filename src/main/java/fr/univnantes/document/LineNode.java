@@ -1,29 +1,199 @@
 package fr.univnantes.document;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a line node
  * <p>
  * A line node is a node of a document
  * It contains a reference to the next and previous line node
- * It also contains a reference to the first column node of the line
+ * It also contains the characters of the line stored in a {@link GapBuffer}
  * It is used to represent a line in a document
  * </p>
+ * <p>
+ * A line node loaded from a snapshot keeps its UTF-8 bytes, usually a slice of a mapped file,
+ * and only decodes them into its gap buffer when it is first edited
+ * </p>
+ * <p>
+ * A line node may stand for several empty lines, so missing lines are created in O(1) whatever their number
+ * Its lines are only set by the owning engine, which is responsible for the synchronization
+ * </p>
+ * <p>
+ * A captured line node shares its gap buffer with its capture, the buffer is copied by the next edit of the line
+ * instead of being modified, so capturing a document copies no character
+ * </p>
  */
 public class LineNode {
     private final AtomicReference<LineNode> next;
     private final AtomicReference<LineNode> previous;
-    private final AtomicReference<ColumnNode> content;
-
+    private GapBuffer content;
+    private ByteBuffer source;
+    private final LongAdder characters;
+    private int lines = 1;
+    private boolean captured;
 
     /**
      * Create a new line node
      */
     public LineNode() {
+        this((LongAdder) null);
+    }
+
+    /**
+     * Create a new line node counting its stored characters
+     *
+     * @param characters the counter of the stored characters, shared by the lines of a document, null to not count them
+     */
+    public LineNode(LongAdder characters) {
+        next = new AtomicReference<>(null);
+        previous = new AtomicReference<>(null);
+        content = new GapBuffer();
+        this.characters = characters;
+    }
+
+    /**
+     * Create a new line node holding encoded characters, decoded when the line is first edited
+     *
+     * @param source the characters of the line encoded in UTF-8, without the line break
+     */
+    public LineNode(ByteBuffer source) {
+        this(source, null);
+    }
+
+    /**
+     * Create a new line node holding encoded characters, decoded when the line is first edited
+     * The encoded characters are not counted, the caller counts them when it loads the line
+     *
+     * @param source     the characters of the line encoded in UTF-8, without the line break
+     * @param characters the counter of the stored characters, shared by the lines of a document, null to not count them
+     */
+    public LineNode(ByteBuffer source, LongAdder characters) {
+        this(characters);
+        load(source);
+    }
+
+    /**
+     * Create a detached line node holding the captured characters of another one
+     *
+     * @param content the gap buffer of the captured line node, null if its characters are still encoded
+     * @param source  the encoded characters of the captured line node, null if they are decoded
+     * @param lines   the number of lines the captured line node stands for
+     */
+    private LineNode(GapBuffer content, ByteBuffer source, int lines) {
         next = new AtomicReference<>(null);
         previous = new AtomicReference<>(null);
-        content = new AtomicReference<>(null);
+        this.content = content;
+        this.source = source;
+        this.characters = null;
+        this.lines = lines;
+        this.captured = true;
+    }
+
+    /**
+     * Decodes the characters of a line
+     * The bytes are copied to decode them with the fast paths of {@link String}, much faster than a charset decoder
+     *
+     * @param source the characters of the line encoded in UTF-8
+     * @return the characters of the line
+     */
+    public static String decode(ByteBuffer source) {
+        byte[] bytes = new byte[source.remaining()];
+        source.get(source.position(), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces the characters of the line by encoded characters, decoded when the line is first edited
+     *
+     * @param source the characters of the line encoded in UTF-8, without the line break
+     */
+    public void load(ByteBuffer source) {
+        synchronized (this) {
+            this.content = null;
+            this.source = source;
+            this.captured = false;
+        }
+    }
+
+    /**
+     * Returns the characters of the line, decoding them if they are still encoded
+     * The caller must hold the monitor of the line node
+     *
+     * @return the characters of the line
+     */
+    private GapBuffer content() {
+        if (source != null) {
+            String decoded = decode(source);
+            content = new GapBuffer(decoded);
+            //  The encoded characters were counted by their encoded length, the decoded ones may be fewer
+            if (characters != null) characters.add(decoded.length() - source.remaining());
+            source = null;
+        }
+        return content;
+    }
+
+    /**
+     * Returns the characters of the line about to be edited, copying them first if they are shared with a capture
+     * The caller must hold the monitor of the line node
+     *
+     * @return the characters of the line
+     */
+    private GapBuffer edited() {
+        content();
+        if (captured) {
+            content = new GapBuffer(content);
+            captured = false;
+        }
+        return content;
+    }
+
+    /**
+     * Captures the characters of the line node, later edits of the line node do not change the capture
+     * The gap buffer is shared rather than copied, the line node copies it on its next edit
+     *
+     * @return a detached line node holding the captured characters and the number of lines
+     */
+    public LineNode capture() {
+        synchronized (this) {
+            if (source != null) return new LineNode(null, source.duplicate(), lines);
+
+            captured = true;
+            return new LineNode(content, null, lines);
+        }
+    }
+
+    /**
+     * Adds the characters stored since the given count to the counter
+     * The caller must hold the monitor of the line node
+     *
+     * @param before the number of stored characters before the edit
+     */
+    private void count(int before) {
+        if (characters != null) characters.add(content.storedLength() - before);
+    }
+
+    /**
+     * Returns the number of lines the line node stands for
+     * A line node standing for several lines is empty, each of its lines is empty
+     *
+     * @return the number of lines
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Sets the number of lines the line node stands for, only for an empty line node
+     *
+     * @param lines the number of lines, at least 1
+     * @throws IllegalArgumentException if the number of lines is not positive
+     */
+    public void setLines(int lines) {
+        if (lines < 1) throw new IllegalArgumentException("Number of lines must be positive");
+        this.lines = lines;
     }
 
     /**
@@ -33,7 +203,12 @@ public class LineNode {
         synchronized (this) {
             next.set(null);
             previous.set(null);
-            content.set(null);
+            //  The encoded characters were counted by their encoded length when they were loaded
+            if (characters != null) characters.add(source == null ? -content.storedLength() : -source.remaining());
+            content = new GapBuffer();
+            source = null;
+            lines = 1;
+            captured = false;
         }
     }
 
@@ -110,85 +285,22 @@ public class LineNode {
     }
 
     /**
-     * Returns the first column node of the line
+     * Returns the number of characters in the line
      *
-     * @return the first column node of the line
+     * @return the number of characters in the line
      */
-    public ColumnNode getContent() {
-        return content.get();
-    }
-
-    /**
-     * Returns the first column node of the line and acquires the lock
-     *
-     * @return the first column node of the line
-     */
-    public ColumnNode getContentAcquire() {
-        return this.content.getAcquire();
-    }
-
-    /**
-     * Sets the first column node of the line
-     *
-     * @param content the first column node of the line
-     */
-    public void setContent(ColumnNode content) {
-        this.content.set(content);
-    }
-
-    /**
-     * Sets the first column node of the line and releases the lock
-     *
-     * @param content the first column node of the line
-     */
-    public void setContentRelease(ColumnNode content) {
-        this.content.setRelease(content);
-    }
-
-    /**
-     * Returns the last column node of the line
-     *
-     * @return the last column node of the line
-     */
-    private ColumnNode getLastColumnNode() {
-        ColumnNode columnNode = content.get();
-        if (columnNode == null) return null;
-
-        while (columnNode.getNext() != null) {
-            columnNode = columnNode.getNext();
-        }
-        return columnNode;
-    }
-
-    /**
-     * Returns the column node at the given index in the line, the index starts at 0
-     *
-     * @param index the index of the column node to return, the index starts at 0
-     * @return the column node if it exists, null otherwise
-     */
-    private ColumnNode getColumnNodeAtIndex(int index) {
-        ColumnNode columnNode = content.get();
-        int currentIndex = 0;
-
-        if (columnNode == null) return null;
-
-        while (currentIndex < index && columnNode.getNext() != null) {
-            columnNode = columnNode.getNext();
-            currentIndex++;
-        }
-
-        if (currentIndex == index) {
-            return columnNode;
+    public int getLength() {
+        synchronized (this) {
+            return content().length();
         }
-        return null;
     }
 
     /**
      * Inserts a new character at the given index in the line, the index starts at 0
      *
      * @param index     the index of the character to insert, the index starts at 0
-     *                  If the index is greater than the number of column nodes,
-     *                  new column nodes will be created to fill the gap
+     *                  If the index is greater than the number of characters,
+     *                  blank characters will be added to fill the gap
      * @param character the character to insert
      * @return true if the character has been inserted, false otherwise
      */
@@ -196,105 +308,47 @@ public class LineNode {
         if (index < 0) return false;
 
         synchronized (this) {
-            ColumnNode firstColumnNode = getContent();
-            ColumnNode referenceColumnNode = getColumnNodeAtIndex(index);
-            ColumnNode newColumnNode = new ColumnNode();
-            newColumnNode.setCharacter(character);
-            newColumnNode.setParent(this);
-
-            //  If the index is less than the number of column nodes
-            if (referenceColumnNode != null) {
-                ColumnNode previousNode = referenceColumnNode.getPrevious();
-
-                //  If the column node is the first column node
-                if (previousNode == null) {
-                    //  If the line is empty
-                    //  Set the content of the line to the new column node
-                    if (firstColumnNode == null) {
-                        setContent(newColumnNode);
-                        return true;
-                    }
+            int length = edited().length();
+            int before = content.storedLength();
 
-                    //  If the line is not empty
-                    //  Link the new column node to the first column node
-                    firstColumnNode.setPrevious(newColumnNode);
-                    newColumnNode.setNext(firstColumnNode);
-                    setContent(newColumnNode);
-                    return true;
-                }
-
-                //  If the column node is in the middle
-                //  Link the previous column node to the new column node
-                previousNode.setNext(newColumnNode);
-                newColumnNode.setPrevious(previousNode);
+            //  The length of the line must stay within an int
+            if (Math.max(index, length) == Integer.MAX_VALUE) return false;
 
-                //  Link the new column node to the reference column node
-                newColumnNode.setNext(referenceColumnNode);
-                referenceColumnNode.setPrevious(newColumnNode);
-                return true;
+            //  If the index is greater than the number of characters
+            //  Fill the gap with blank characters, kept virtual by the gap buffer
+            if (index > length) {
+                content.fill(' ', index - length);
             }
 
-            //  If the index is greater than the number of column nodes
-            //  Create new blank column nodes to fill the gap
-            int numberOfColumnNodes = getNumberOfColumnNodes();
-            ColumnNode lastColumnNode = getLastColumnNode();
-
-            //  If the line is empty
-            if (firstColumnNode == null) {
-                //  Fill the line with blank column nodes
-                while (numberOfColumnNodes < index) {
-                    ColumnNode blankColumnNode = new ColumnNode();
-                    blankColumnNode.setParent(this);
-                    blankColumnNode.setCharacter(' ');
-
-                    //  If the line is empty
-                    //  Set the content of the line to the blank column node
-                    if (lastColumnNode == null) {
-                        setContent(blankColumnNode);
-                    }
-                    //  If the line is not empty
-                    //  Link the last column node to the blank column node
-                    else {
-                        lastColumnNode.setNext(blankColumnNode);
-                        blankColumnNode.setPrevious(lastColumnNode);
-                    }
-
-                    lastColumnNode = blankColumnNode;
-                    numberOfColumnNodes++;
-                }
-
-                //  If the line is empty
-                //  Set the content of the line to the new column node
-                if (lastColumnNode == null) {
-                    setContent(newColumnNode);
-                    return true;
-                }
-
-                //  If the line is not empty
-                //  Link the last column node to the new column node
-                lastColumnNode.setNext(newColumnNode);
-                newColumnNode.setPrevious(lastColumnNode);
-                return true;
-            }
+            content.insert(index, character);
+            count(before);
+            return true;
+        }
+    }
 
-            //  If the line is not empty
-            //  Fill the line with blank column nodes
-            while (numberOfColumnNodes < index) {
-                ColumnNode blankColumnNode = new ColumnNode();
-                blankColumnNode.setParent(this);
-                blankColumnNode.setCharacter(' ');
+    /**
+     * Inserts characters at the given index in the line, the index starts at 0
+     *
+     * @param index the index of the first character to insert, the index starts at 0
+     *              If the index is greater than the number of characters,
+     *              blank characters will be added to fill the gap
+     * @param text  the characters to insert, without line break
+     * @return true if the characters have been inserted, false otherwise
+     */
+    public boolean insert(int index, CharSequence text) {
+        if (index < 0 || text.isEmpty()) return false;
 
-                //  Link the last column node to the blank column node
-                lastColumnNode.setNext(blankColumnNode);
-                blankColumnNode.setPrevious(lastColumnNode);
+        synchronized (this) {
+            int length = edited().length();
+            int before = content.storedLength();
 
-                lastColumnNode = blankColumnNode;
-                numberOfColumnNodes++;
+            if ((long) Math.max(index, length) + text.length() > Integer.MAX_VALUE) return false;
+            if (index > length) {
+                content.fill(' ', index - length);
             }
 
-            //  Link the last column node to the new column node
-            lastColumnNode.setNext(newColumnNode);
-            newColumnNode.setPrevious(lastColumnNode);
+            content.insert(index, text);
+            count(before);
             return true;
         }
     }
@@ -310,14 +364,12 @@ public class LineNode {
         if (index < 0) return false;
 
         synchronized (this) {
-            ColumnNode columnNode = getColumnNodeAtIndex(index);
-
-            if (columnNode != null) {
-                columnNode.setCharacter(character);
-                return true;
-            }
+            if (index >= edited().length()) return false;
 
-            return false;
+            int before = content.storedLength();
+            content.set(index, character);
+            count(before);
+            return true;
         }
     }
 
@@ -331,39 +383,39 @@ public class LineNode {
         if (index < 0) return false;
 
         synchronized (this) {
-            ColumnNode columnNode = getColumnNodeAtIndex(index);
-
-            if (columnNode != null) {
-                ColumnNode previousNode = columnNode.getPrevious();
-                ColumnNode nextNode = columnNode.getNext();
+            if (index >= edited().length()) return false;
 
-                //  If the column node is the first column node
-                if (previousNode == null) {
-                    this.content.set(nextNode);
-                    if (nextNode != null) {
-                        nextNode.setPrevious(null);
-                    }
-                    return true;
-                }
+            int before = content.storedLength();
+            content.delete(index);
+            count(before);
+            return true;
+        }
+    }
 
-                //  If the column node is the last column node
-                if (nextNode == null) {
-                    previousNode.setNext(null);
-                    return true;
-                }
+    /**
+     * Deletes the characters between the given indexes in the line, the indexes start at 0
+     *
+     * @param from  the index of the first character to delete
+     * @param to    the index after the last character to delete
+     * @return true if the characters have been deleted, false if the range is empty or out of the line
+     */
+    public boolean delete(int from, int to) {
+        if (from < 0 || to <= from) return false;
 
-                //  If the column node is in the middle
-                previousNode.setNext(nextNode);
-                nextNode.setPrevious(previousNode);
-                return true;
-            }
+        synchronized (this) {
+            if (to > edited().length()) return false;
 
-            return false;
+            int before = content.storedLength();
+            content.delete(from, to);
+            count(before);
+            return true;
         }
     }
 
     /**
-     * Deletes the line break at the end of the line
+     * Deletes the line break at the end of the previous line
+     * The content of the line is moved at the end of the previous line
+     * and the line is detached from the document
      *
      * @return true if the line break has been deleted, false otherwise
      */
@@ -371,73 +423,26 @@ public class LineNode {
         synchronized (this) {
             LineNode previousLineNode = getPrevious();
             LineNode nextLineNode = getNext();
-            ColumnNode actualContent = getContent();
-            //  If the line is empty
+            //  If the line is the first line of the document
             if (previousLineNode == null) return false;
 
             //  Lock on the previous line node
             synchronized (previousLineNode) {
-
+                //  Detach the current line node from the document
+                //  Link the previous line node to the next line node
                 if (nextLineNode != null) {
-                    //  Detach the current line node from the document
-                    //  Link the previous line node to the next line node
-                    if (actualContent == null) {
-                        synchronized (nextLineNode) {
-                            previousLineNode.setNext(nextLineNode);
-                            nextLineNode.setPrevious(previousLineNode);
-
-                            return true;
-                        }
-                    }
-
-                    //  The content of the current line node will be moved to the previous line node
-                    //  Link the previous line node to the next line node
                     synchronized (nextLineNode) {
                         previousLineNode.setNext(nextLineNode);
                         nextLineNode.setPrevious(previousLineNode);
                     }
-
-                    //  Merge the content of the current line node with the content of the previous line node
-                    ColumnNode lastColumnNode = previousLineNode.getLastColumnNode();
-
-                    if (lastColumnNode == null) {
-                        previousLineNode.setContent(actualContent);
-                    } else {
-                        lastColumnNode.setNext(actualContent);
-                    }
-
-                    //  Set parent of other column nodes
-                    ColumnNode currentColumnNode = actualContent;
-                    while (currentColumnNode != null) {
-                        currentColumnNode.setParent(previousLineNode);
-                        currentColumnNode = currentColumnNode.getNext();
-                    }
-                    return true;
-                }
-
-                //  If the line is the last line of the document
-                //  Detach the current line node from the document
-                previousLineNode.setNext(null);
-
-                if (actualContent == null) return true;
-
-                //  The content of the current line node will be moved to the previous line node
-                //  Merge the content of the current line node with the content of the previous line node
-                ColumnNode lastColumnNode = previousLineNode.getLastColumnNode();
-
-                if (lastColumnNode == null) {
-                    previousLineNode.setContent(actualContent);
                 } else {
-                    lastColumnNode.setNext(actualContent);
-                }
-
-                //  Set parent of other column nodes
-                ColumnNode currentColumnNode = actualContent;
-                while (currentColumnNode != null) {
-                    currentColumnNode.setParent(previousLineNode);
-                    currentColumnNode = currentColumnNode.getNext();
+                    previousLineNode.setNext(null);
                 }
 
+                //  Merge the content of the current line node with the content of the previous line node
+                int before = previousLineNode.edited().storedLength() + content().storedLength();
+                previousLineNode.content.append(content);
+                if (characters != null) characters.add(previousLineNode.content.storedLength() - before);
                 return true;
             }
         }
@@ -457,63 +462,25 @@ public class LineNode {
         if (column < 0) return false;
 
         synchronized (this) {
-            //  Get the column node at the given index
-            ColumnNode columnNode = getColumnNodeAtIndex(column);
-
-            //  If the column node does not exist
-            //  Just create a new line node
-            if (columnNode == null) {
-                LineNode newLineNode = new LineNode();
-                LineNode nextLineNode = getNext();
-
-                //  If the next line node does not exist
-                //  Just link the new line node to the current line node
-                if (nextLineNode == null) {
-                    setNext(newLineNode);
-                    newLineNode.setPrevious(this);
-                    return true;
-                }
+            LineNode newLineNode = new LineNode(characters);
 
-                //  If the next line node exists
-                //  Lock on the next line node
-                synchronized (nextLineNode) {
-                    //  Attach the new line node to the document
-                    //  Link the current line node to the new line node to the next line node
-                    setNext(newLineNode);
-                    newLineNode.setPrevious(this);
-                    newLineNode.setNext(nextLineNode);
-                    nextLineNode.setPrevious(newLineNode);
-
-                    return true;
-                }
+            //  If the column is inside the line
+            //  Move the second part of the line into the new line node
+            if (column < content().length()) {
+                newLineNode.content = edited().split(column);
             }
 
-            //  If the column node exists
-            //  Split the line in two
-            //  But first, check if the column node is the last column node
             LineNode nextLineNode = getNext();
-            LineNode newLineNode = new LineNode();
-
-            //  Set the second part of the line into the new line node
-            newLineNode.setContent(columnNode);
-            if (columnNode.getNext() != null)   columnNode.getNext().setPrevious(null);
-            columnNode.setNext(null);
-
-            //  Set parents of the column nodes
-            ColumnNode currentColumnNode = newLineNode.getContent();
-            while (currentColumnNode != null) {
-                currentColumnNode.setParent(newLineNode);
-                currentColumnNode = currentColumnNode.getNext();
-            }
 
-            //  If the column node is the last column node
+            //  If the next line node does not exist
+            //  Just link the new line node to the current line node
             if (nextLineNode == null) {
                 setNext(newLineNode);
                 newLineNode.setPrevious(this);
                 return true;
             }
 
-            //  If the column node is not the last column node
+            //  If the next line node exists
             //  Lock on the next line node
             synchronized (nextLineNode) {
                 //  Attach the new line node to the document
@@ -529,20 +496,19 @@ public class LineNode {
     }
 
     /**
-     * Returns the number of column nodes in the line
+     * Appends the characters of the line node to the given string builder, without the line break
      *
-     * @return The number of column nodes in the line
+     * @param sb the string builder to append to
      */
-    private int getNumberOfColumnNodes() {
-        ColumnNode columnNode = content.get();
-        int numberOfColumnNodes = 0;
-
-        while (columnNode != null) {
-            numberOfColumnNodes++;
-            columnNode = columnNode.getNext();
+    public void appendTo(StringBuilder sb) {
+        synchronized (this) {
+            //  Reading a line does not need to decode it for good
+            if (source != null) {
+                sb.append(decode(source));
+            } else {
+                content.appendTo(sb);
+            }
         }
-
-        return numberOfColumnNodes;
     }
 
     /**
@@ -552,12 +518,8 @@ public class LineNode {
      */
     public String toString() {
         synchronized (this) {
-            StringBuilder sb = new StringBuilder();
-            ColumnNode columnNode = content.get();
-            while (columnNode != null) {
-                sb.append(columnNode.getCharacter());
-                columnNode = columnNode.getNext();
-            }
+            StringBuilder sb = new StringBuilder(content().length() + 1);
+            content.appendTo(sb);
             sb.append('\n');
 
             return sb.toString();
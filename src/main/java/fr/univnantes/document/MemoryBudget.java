@@ -0,0 +1,84 @@
+package fr.univnantes.document;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents the heap budget shared by the documents in memory
+ * <p>
+ *     Each document attached to the budget reports the changes of its estimated footprint after its edits,
+ *     so the used amount is known without walking the documents
+ *     Once the used amount reaches the limit, the documents refuse to grow and no document can be created,
+ *     while the edits which do not grow a document are still accepted
+ * </p>
+ */
+public class MemoryBudget {
+
+    private final AtomicLong used = new AtomicLong();
+    private volatile long limit;
+
+    /**
+     * Creates a new budget
+     *
+     * @param limit The number of bytes the documents may use, 0 for no limit
+     */
+    public MemoryBudget(long limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * Returns the number of bytes the documents may use
+     * @return  The limit in bytes, 0 for no limit
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the number of bytes the documents may use
+     *
+     * @param limit The limit in bytes, 0 for no limit
+     */
+    public void setLimit(long limit) {
+        if (limit < 0) throw new IllegalArgumentException("Limit is negative");
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the attached documents
+     * @return  The used bytes
+     */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /**
+     * Adds a change of footprint
+     *
+     * @param delta The number of bytes used or released, negative when released
+     */
+    public void add(long delta) {
+        if (delta != 0) used.addAndGet(delta);
+    }
+
+    /**
+     * Check if the documents use their whole budget
+     * @return  True if the limit is reached, false otherwise or if there is no limit
+     */
+    public boolean isExceeded() {
+        long currentLimit = limit;
+        return currentLimit > 0 && used.get() >= currentLimit;
+    }
+
+    /**
+     * Rejects an operation growing the documents if the budget is exceeded
+     *
+     * @param operation The rejected operation, used in the error message
+     * @throws MemoryBudgetExceededException If the budget is exceeded
+     */
+    public void checkGrowth(String operation) {
+        if (isExceeded()) {
+            throw new MemoryBudgetExceededException("The documents use " + used.get() / 1024 + " KiB of their "
+                    + limit / 1024 + " KiB memory budget, " + operation + " is rejected");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package fr.univnantes.document;
+
+/**
+ * Thrown when an operation would grow the documents beyond their {@link MemoryBudget}
+ * <p>
+ *     The operation has not been applied, the caller should tell the client and keep it in sync
+ * </p>
+ */
+public class MemoryBudgetExceededException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception
+     *
+     * @param message   The message explaining which operation has been rejected
+     */
+    public MemoryBudgetExceededException(String message) {
+        super(message);
+    }
+}
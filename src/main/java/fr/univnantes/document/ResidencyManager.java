@@ -0,0 +1,107 @@
+package fr.univnantes.document;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class used to keep the documents in memory within a budget
+ * <p>
+ *     Every interval, the idle documents, without users nor joining users, are evicted from the {@link DocumentManager}
+ *     to its store in least recently used order:
+ *     every idle document not accessed for the idle time is evicted,
+ *     then the least recently used idle documents are evicted until the resident documents fit the budget,
+ *     both in number of documents and in the {@link MemoryBudget} of the document manager
+ *     An evicted document is loaded back by {@link DocumentManager#getDocument(java.util.UUID)} on its next join or connection
+ * </p>
+ * <p>
+ *     Documents with users are never evicted, so the budget may be exceeded while they are used
+ * </p>
+ */
+public class ResidencyManager implements Closeable {
+
+    private static final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("document-evictor").daemon().factory());
+
+    private final Logger logger = LoggerFactory.getLogger(ResidencyManager.class);
+    private final DocumentManager documentManager;
+    private final long idleMillis;
+    private final int maxResidentDocuments;
+    private final ScheduledFuture<?> evictionTask;
+
+    /**
+     * Creates a new residency manager
+     *
+     * @param documentManager       The document manager whose documents are evicted, it must have a store
+     * @param idleMillis            The time after which an idle document is evicted, in milliseconds
+     * @param maxResidentDocuments  The number of documents kept in memory before evicting the least recently used idle ones
+     * @param intervalMillis        The interval between two eviction rounds, in milliseconds, 0 to only evict on demand
+     */
+    public ResidencyManager(DocumentManager documentManager, long idleMillis, int maxResidentDocuments, long intervalMillis) {
+        if (documentManager == null) throw new IllegalArgumentException("Document manager is null");
+        if (idleMillis < 0) throw new IllegalArgumentException("Idle time is negative");
+        if (maxResidentDocuments < 0) throw new IllegalArgumentException("Maximum resident documents is negative");
+        if (intervalMillis < 0) throw new IllegalArgumentException("Eviction interval is negative");
+
+        this.documentManager = documentManager;
+        this.idleMillis = idleMillis;
+        this.maxResidentDocuments = maxResidentDocuments;
+        evictionTask = intervalMillis == 0 ? null : evictor.scheduleWithFixedDelay(
+                this::evictSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evicts the idle documents exceeding the idle time or the budget
+     *
+     * @return  The number of evicted documents
+     */
+    public int evict() {
+        long now = System.currentTimeMillis();
+        int excess = documentManager.getResidentCount() - maxResidentDocuments;
+
+        //  Least recently used first, so the documents evicted for the budget are the coldest ones
+        List<Document> candidates = documentManager.getResidentDocuments().stream()
+                .filter(Document::isIdle)
+                .sorted(Comparator.comparingLong(Document::getLastAccess))
+                .toList();
+
+        int evicted = 0;
+        for (Document document : candidates) {
+            boolean expired = now - document.getLastAccess() >= idleMillis;
+            if (!expired && evicted >= excess && !documentManager.getMemoryBudget().isExceeded()) break;
+
+            if (documentManager.evictDocument(document.getUUID())) evicted++;
+        }
+
+        if (evicted > 0) {
+            logger.info("Evicted {} documents, {} remain in memory", evicted, documentManager.getResidentCount());
+        }
+        return evicted;
+    }
+
+    /**
+     * Evicts the documents from the scheduled task, which must not be stopped by an error
+     */
+    private void evictSafely() {
+        try {
+            evict();
+        } catch (RuntimeException e) {
+            logger.error("An error occurred while evicting documents, {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the eviction rounds
+     */
+    @Override
+    public void close() {
+        if (evictionTask != null) evictionTask.cancel(false);
+    }
+}
@@ -0,0 +1,144 @@
+package fr.univnantes.document.crdt;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Represents an operation of a {@link RgaSequence}, exchanged between the replicas of a document
+ * <p>
+ *     An insertion carries the identifier of the new character, the identifier of the character it was inserted after and its value
+ *     A deletion carries its own stamp, used to know when its tombstone may be collected, and the identifier of the deleted character
+ *     The operations commute: each replica applies them in any order respecting causality and reaches the same content
+ * </p>
+ * <p>
+ *     The binary form starts with the kind, followed by the identifiers as unsigned LEB128 varints,
+ *     an identifier taking 3 to 5 bytes for the clocks reached in practice, then the character of an insertion as a varint
+ * </p>
+ *
+ * @param kind      The kind of the operation
+ * @param id        The identifier of the inserted character, or the stamp of the deletion
+ * @param reference The identifier of the character the insertion follows, {@link RgaSequence#HEAD} for the start, or of the deleted character
+ * @param value     The inserted character, 0 for a deletion
+ */
+public record RgaOperation(Kind kind, long id, long reference, char value) {
+
+    /**
+     * Represents the kinds of operations
+     */
+    public enum Kind {
+        INSERT((byte) 0x01),
+        DELETE((byte) 0x02);
+
+        public final byte opcode;
+
+        /**
+         * Creates a new kind of operation
+         *
+         * @param opcode    The first byte of the binary form of the operations of this kind
+         */
+        Kind(byte opcode) {
+            this.opcode = opcode;
+        }
+    }
+
+    /**
+     * Creates a new operation
+     *
+     * @throws IllegalArgumentException If the kind is null or an identifier is negative
+     */
+    public RgaOperation {
+        if (kind == null) throw new IllegalArgumentException("Kind is null");
+        if (id <= 0) throw new IllegalArgumentException("Identifier is not positive");
+        if (reference < 0) throw new IllegalArgumentException("Reference is negative");
+    }
+
+    /**
+     * Returns the insertion of a character
+     *
+     * @param id        The identifier of the new character
+     * @param origin    The identifier of the character it follows, {@link RgaSequence#HEAD} for the start
+     * @param value     The character
+     * @return          The operation
+     */
+    public static RgaOperation insert(long id, long origin, char value) {
+        return new RgaOperation(Kind.INSERT, id, origin, value);
+    }
+
+    /**
+     * Returns the deletion of a character
+     *
+     * @param stamp     The stamp of the deletion, taken from the clock of the deleting replica
+     * @param target    The identifier of the deleted character
+     * @return          The operation
+     */
+    public static RgaOperation delete(long stamp, long target) {
+        return new RgaOperation(Kind.DELETE, stamp, target, '\0');
+    }
+
+    /**
+     * Writes the binary form of the operation
+     *
+     * @param out   The output
+     */
+    public void write(ByteArrayOutputStream out) {
+        out.write(kind.opcode);
+        writeVarLong(out, id);
+        writeVarLong(out, reference);
+        if (kind == Kind.INSERT) writeVarLong(out, value);
+    }
+
+    /**
+     * Reads the binary form of an operation
+     *
+     * @param buffer    The buffer, positioned on the kind of the operation
+     * @return          The operation
+     * @throws IllegalArgumentException If the buffer does not hold a valid operation
+     */
+    public static RgaOperation read(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) throw new IllegalArgumentException("Operation is empty");
+
+        byte opcode = buffer.get();
+        long id = readVarLong(buffer);
+        long reference = readVarLong(buffer);
+        if (opcode == Kind.INSERT.opcode) {
+            long value = readVarLong(buffer);
+            if (value > Character.MAX_VALUE) throw new IllegalArgumentException("Value is not a single character");
+            return insert(id, reference, (char) value);
+        }
+        if (opcode == Kind.DELETE.opcode) return delete(id, reference);
+        throw new IllegalArgumentException("Opcode is unknown");
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte, least significant group first
+     *
+     * @param out   The output
+     * @param value The value, must not be negative
+     */
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint
+     *
+     * @param buffer    The input
+     * @return          The value
+     * @throws IllegalArgumentException If the varint is truncated or does not fit in a positive long
+     */
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            if (!buffer.hasRemaining()) throw new IllegalArgumentException("Varint is truncated");
+
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Varint is too large");
+    }
+}
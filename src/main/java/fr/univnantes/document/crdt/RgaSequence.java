@@ -0,0 +1,510 @@
+package fr.univnantes.document.crdt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/**
+ * Replicated sequence of characters, a Replicated Growable Array (RGA)
+ * <p>
+ *     Each character is identified by a stable identifier instead of its position: a Lamport clock and the replica which inserted it,
+ *     packed in a long so the identifiers are ordered by clock then by replica
+ *     An insertion names the character it follows, a deletion leaves a tombstone, so the operations commute
+ *     and the replicas of a document converge once they applied the same operations, without any central sequencer
+ * </p>
+ * <p>
+ *     The characters are a singly linked list after a head, concurrent insertions after the same character
+ *     are ordered by decreasing identifier, the rule skipping the characters with a greater identifier
+ *     An insertion is linked with a compare-and-set and a deletion sets its tombstone with another one,
+ *     so the local and remote operations are applied concurrently without lock
+ * </p>
+ * <p>
+ *     The operations of each replica are applied in the order it made them, so the sequence knows, for each replica,
+ *     the clock of the last operation it applied from it, its version vector
+ *     A tombstone is collected once every replica applied its deletion, see {@link #collect(Map)}
+ *     A position is resolved by walking the visible characters, in O(n)
+ * </p>
+ */
+public class RgaSequence {
+
+    public static final long HEAD = 0;
+    public static final int REPLICA_BITS = 16;
+    public static final int MAX_REPLICA = (1 << REPLICA_BITS) - 1;
+
+    private static final AtomicLongFieldUpdater<Node> DELETED_AT = AtomicLongFieldUpdater.newUpdater(Node.class, "deletedAt");
+
+    private final int replica;
+    private final AtomicLong clock = new AtomicLong();
+    private final Node head = new Node(HEAD, '\0');
+    private final ConcurrentHashMap<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final AtomicInteger length = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, Long> delivered = new ConcurrentHashMap<>();
+    private final Object collectLock = new Object();
+
+    /**
+     * Creates a new empty sequence
+     *
+     * @param replica   The identifier of the replica, unique among the replicas of the document
+     * @throws IllegalArgumentException If the replica does not fit in {@link #REPLICA_BITS} bits
+     */
+    public RgaSequence(int replica) {
+        if (replica < 0 || replica > MAX_REPLICA) throw new IllegalArgumentException("Replica is out of range");
+
+        this.replica = replica;
+        head.linked = true;
+    }
+
+    /**
+     * Returns the identifier of a character from its clock and replica
+     *
+     * @param clock     The Lamport clock of the insertion, positive
+     * @param replica   The replica which inserted the character
+     * @return          The packed identifier
+     */
+    public static long id(long clock, int replica) {
+        return (clock << REPLICA_BITS) | replica;
+    }
+
+    /**
+     * Returns the Lamport clock of an identifier
+     *
+     * @param id    The identifier
+     * @return      The clock
+     */
+    public static long clockOf(long id) {
+        return id >>> REPLICA_BITS;
+    }
+
+    /**
+     * Returns the replica of an identifier
+     *
+     * @param id    The identifier
+     * @return      The replica
+     */
+    public static int replicaOf(long id) {
+        return (int) (id & MAX_REPLICA);
+    }
+
+    /**
+     * Returns the identifier of the replica
+     * @return  The replica
+     */
+    public int getReplica() {
+        return replica;
+    }
+
+    /**
+     * Returns the Lamport clock of the replica, the greatest clock it generated or received
+     * @return  The clock
+     */
+    public long getClock() {
+        return clock.get();
+    }
+
+    /**
+     * Returns the version vector of the replica, to be sent to the other replicas for {@link #collect(Map)}
+     * @return  The clock of the last operation applied from each replica, the replica itself included
+     */
+    public Map<Integer, Long> getVersionVector() {
+        return new HashMap<>(delivered);
+    }
+
+    /**
+     * Returns the number of visible characters
+     * @return  The length of the sequence
+     */
+    public int length() {
+        return length.get();
+    }
+
+    /**
+     * Returns the number of stored characters, the tombstones included
+     * @return  The number of characters
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Inserts a character at a position, made on this replica
+     *
+     * @param index The position of the character among the visible characters, between 0 and {@link #length()}
+     * @param value The character
+     * @return      The operation to send to the other replicas
+     * @throws IndexOutOfBoundsException If the position does not exist
+     */
+    public RgaOperation insert(int index, char value) {
+        Node origin = index == 0 ? head : visible(index - 1);
+        if (origin == null) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        RgaOperation operation = RgaOperation.insert(nextId(), origin.id, value);
+        integrate(operation.id(), origin, value);
+        deliver(operation.id());
+        return operation;
+    }
+
+    /**
+     * Inserts a text at a position, made on this replica, each character following the previous one
+     *
+     * @param index The position of the first character among the visible characters, between 0 and {@link #length()}
+     * @param text  The text
+     * @return      The operations to send to the other replicas, in order
+     * @throws IndexOutOfBoundsException If the position does not exist
+     */
+    public List<RgaOperation> insertText(int index, CharSequence text) {
+        if (text == null) throw new IllegalArgumentException("Text is null");
+
+        Node origin = index == 0 ? head : visible(index - 1);
+        if (origin == null) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        List<RgaOperation> operations = new ArrayList<>(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            RgaOperation operation = RgaOperation.insert(nextId(), origin.id, text.charAt(i));
+            origin = integrate(operation.id(), origin, operation.value());
+            deliver(operation.id());
+            operations.add(operation);
+        }
+        return operations;
+    }
+
+    /**
+     * Deletes the character at a position, made on this replica
+     *
+     * @param index The position of the character among the visible characters
+     * @return      The operation to send to the other replicas, null if the character has been deleted concurrently
+     * @throws IndexOutOfBoundsException If the position does not exist
+     */
+    public RgaOperation delete(int index) {
+        Node node = visible(index);
+        if (node == null) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+
+        long stamp = nextId();
+        if (!bury(node, stamp)) return null;
+
+        deliver(stamp);
+        return RgaOperation.delete(stamp, node.id);
+    }
+
+    /**
+     * Applies an operation received from another replica, or received again
+     * The operations of a replica must be applied in the order it made them, and after the ones they depend on:
+     * an insertion after its origin, a deletion after its target
+     *
+     * @param operation The operation
+     * @return          True if the operation changed the sequence,
+     *                  false if it was already applied or depends on a character not applied yet
+     */
+    public boolean apply(RgaOperation operation) {
+        if (operation == null) throw new IllegalArgumentException("Operation is null");
+
+        observe(operation.id());
+        if (operation.kind() == RgaOperation.Kind.DELETE) {
+            Node target = nodes.get(operation.reference());
+            if (target == null || !target.linked || !bury(target, operation.id())) return false;
+
+            deliver(operation.id());
+            return true;
+        }
+
+        if (nodes.containsKey(operation.id())) return false;
+        Node origin = operation.reference() == HEAD ? head : nodes.get(operation.reference());
+        if (origin == null || !origin.linked) return false;
+        if (integrate(operation.id(), origin, operation.value()) == null) return false;
+
+        deliver(operation.id());
+        return true;
+    }
+
+    /**
+     * Fills an empty sequence with a text in one pass, used to load a document
+     * The characters are identified by consecutive clocks of this replica, as if they had been typed in order
+     *
+     * @param text  The text
+     * @return      The operations building the same content on another replica, in order
+     * @throws IllegalStateException If the sequence is not empty
+     */
+    public List<RgaOperation> load(CharSequence text) {
+        if (text == null) throw new IllegalArgumentException("Text is null");
+        if (text.isEmpty()) return List.of();
+
+        //  The characters are chained before being published, no insertion can interleave with them
+        long first = clock.getAndAdd(text.length()) + 1;
+        List<RgaOperation> operations = new ArrayList<>(text.length());
+        Node firstNode = null;
+        Node previous = null;
+        for (int i = 0; i < text.length(); i++) {
+            Node node = new Node(id(first + i, replica), text.charAt(i));
+            node.linked = true;
+            if (previous == null) {
+                firstNode = node;
+            } else {
+                previous.next.set(node, false);
+            }
+            operations.add(RgaOperation.insert(node.id, previous == null ? HEAD : previous.id, node.value));
+            previous = node;
+        }
+
+        if (!head.next.compareAndSet(null, firstNode, false, false)) throw new IllegalStateException("Sequence is not empty");
+        for (Node node = firstNode; node != null; node = node.next.getReference()) nodes.put(node.id, node);
+        length.addAndGet(text.length());
+        deliver(previous.id);
+        return operations;
+    }
+
+    /**
+     * Removes the tombstones whose deletion is stable, applied by every replica
+     * <p>
+     *     An operation is stable once the version vector of every replica covers it
+     *     Once a deletion is stable, the replicas made their following operations knowing the character is deleted, so none refers to it,
+     *     and the operations they made before, which may refer to it, are covered by their version vectors
+     *     Nothing is collected until this replica applied every operation covered by the version vectors of the other replicas
+     * </p>
+     * <p>
+     *     A tombstone is kept while the character following it is neither stable nor older than it,
+     *     an insertion still to come could otherwise be ordered differently than on the replicas keeping it
+     * </p>
+     *
+     * @param versionVectors    The last version vector received from each other replica, by replica
+     * @return                  The number of removed tombstones
+     */
+    public int collect(Map<Integer, Map<Integer, Long>> versionVectors) {
+        if (versionVectors == null) throw new IllegalArgumentException("Version vectors are null");
+
+        synchronized (collectLock) {
+            //  An operation the other replicas applied, and which may refer to a tombstone, must have been applied here too
+            for (Map.Entry<Integer, Map<Integer, Long>> entry : versionVectors.entrySet()) {
+                if (delivered.getOrDefault(entry.getKey(), 0L) < entry.getValue().getOrDefault(entry.getKey(), 0L)) return 0;
+            }
+
+            //  The clock up to which every replica applied the operations of each replica
+            Map<Integer, Long> stable = getVersionVector();
+            for (Map<Integer, Long> vector : versionVectors.values()) {
+                stable.replaceAll((origin, clock) -> Math.min(clock, vector.getOrDefault(origin, 0L)));
+            }
+
+            int removed = 0;
+            Node predecessor = head;
+            Node current = head.next.getReference();
+            while (current != null) {
+                long deletedAt = current.deletedAt;
+                if (deletedAt == 0 || !isStable(stable, deletedAt)) {
+                    predecessor = current;
+                    current = current.next.getReference();
+                    continue;
+                }
+
+                //  Freeze the tombstone so nothing is linked after it while it is removed
+                Node successor;
+                do {
+                    successor = current.next.getReference();
+                } while (!current.next.attemptMark(successor, true));
+
+                if (successor != null && successor.id > current.id && !isStable(stable, successor.id)) {
+                    current.next.set(successor, false);
+                    predecessor = current;
+                    current = successor;
+                    continue;
+                }
+
+                //  A character inserted meanwhile between the predecessor and the tombstone becomes the predecessor
+                while (!predecessor.next.compareAndSet(current, successor, false, false)) {
+                    Node node = predecessor;
+                    while (node.next.getReference() != current) node = node.next.getReference();
+                    predecessor = node;
+                }
+                nodes.remove(current.id);
+                removed++;
+                current = successor;
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Returns the position of a line and a column among the visible characters, lines being separated by line breaks
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     * @return          The position, -1 if the line or the column does not exist
+     */
+    public int indexOf(int line, int column) {
+        if (line < 0 || column < 0) return -1;
+
+        int index = 0;
+        int currentLine = 0;
+        int currentColumn = 0;
+        for (Node node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            if (node.deletedAt != 0) continue;
+            if (currentLine == line && currentColumn == column) return index;
+            if (node.value == '\n') {
+                if (currentLine == line) return -1;
+                currentLine++;
+                currentColumn = 0;
+            } else {
+                currentColumn++;
+            }
+            index++;
+        }
+        return currentLine == line && currentColumn == column ? index : -1;
+    }
+
+    /**
+     * Returns the identifier of the visible character at a position
+     *
+     * @param index The position among the visible characters
+     * @return      The identifier, -1 if the position does not exist
+     */
+    public long idAt(int index) {
+        Node node = visible(index);
+        return node == null ? -1 : node.id;
+    }
+
+    /**
+     * Turns the visible characters into a string
+     *
+     * @return  The content of the sequence
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        for (Node node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            if (node.deletedAt == 0) sb.append(node.value);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Represents a character of the sequence
+     */
+    private static final class Node {
+        final long id;
+        final char value;
+        final AtomicMarkableReference<Node> next = new AtomicMarkableReference<>(null, false);
+        volatile long deletedAt;
+        volatile boolean linked;
+
+        /**
+         * Create a new visible character
+         *
+         * @param id    The identifier of the character
+         * @param value The character
+         */
+        Node(long id, char value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Returns true if every replica applied an operation
+     *
+     * @param stable    The clock up to which every replica applied the operations of each replica
+     * @param id        The identifier of the operation
+     * @return          True if the operation is stable
+     */
+    private static boolean isStable(Map<Integer, Long> stable, long id) {
+        return clockOf(id) <= stable.getOrDefault(replicaOf(id), 0L);
+    }
+
+    /**
+     * Records that an operation has been applied, in the version vector
+     *
+     * @param id    The identifier of the operation
+     */
+    private void deliver(long id) {
+        delivered.merge(replicaOf(id), clockOf(id), Math::max);
+    }
+
+    /**
+     * Returns the identifier of a new operation of this replica
+     * @return  The identifier, after every identifier known by the replica
+     */
+    private long nextId() {
+        return id(clock.incrementAndGet(), replica);
+    }
+
+    /**
+     * Advances the clock past an identifier received from another replica
+     *
+     * @param id    The received identifier
+     */
+    private void observe(long id) {
+        long received = clockOf(id);
+        clock.accumulateAndGet(received, Math::max);
+    }
+
+    /**
+     * Returns the visible character at a position
+     *
+     * @param index The position among the visible characters
+     * @return      The character, null if the position does not exist
+     */
+    private Node visible(int index) {
+        if (index < 0) return null;
+
+        for (Node node = head.next.getReference(); node != null; node = node.next.getReference()) {
+            if (node.deletedAt == 0 && index-- == 0) return node;
+        }
+        return null;
+    }
+
+    /**
+     * Links a new character after its origin, after the characters inserted concurrently after it with a greater identifier
+     *
+     * @param id        The identifier of the character
+     * @param origin    The character it follows
+     * @param value     The character
+     * @return          The linked character, null if the identifier is already known or the origin is being collected
+     */
+    private Node integrate(long id, Node origin, char value) {
+        Node node = new Node(id, value);
+
+        //  The identifier is claimed first, an operation received twice concurrently is linked once
+        if (nodes.putIfAbsent(id, node) != null) return null;
+
+        Node predecessor = origin;
+        while (true) {
+            Node successor = predecessor.next.getReference();
+            if (predecessor.next.isMarked()) {
+                //  The predecessor is a tombstone being collected, start again from the origin
+                if (predecessor == origin) {
+                    nodes.remove(id);
+                    return null;
+                }
+                predecessor = origin;
+                continue;
+            }
+            if (successor != null && successor.id > id) {
+                predecessor = successor;
+                continue;
+            }
+
+            node.next.set(successor, false);
+            if (predecessor.next.compareAndSet(successor, node, false, false)) break;
+        }
+
+        node.linked = true;
+        length.incrementAndGet();
+        return node;
+    }
+
+    /**
+     * Turns a character into a tombstone
+     *
+     * @param node  The character
+     * @param stamp The stamp of the deletion
+     * @return      True if the character was visible
+     */
+    private boolean bury(Node node, long stamp) {
+        if (!DELETED_AT.compareAndSet(node, 0, stamp)) return false;
+
+        length.decrementAndGet();
+        return true;
+    }
+}
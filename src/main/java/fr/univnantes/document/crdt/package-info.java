@@ -0,0 +1,10 @@
+/**
+ * Provides a replicated sequence whose characters are identified by stable identifiers instead of positions.
+ * <p>
+ * This package includes the following classes:
+ * <ul>
+ * <li>{@link fr.univnantes.document.crdt.RgaSequence} - Sequence of characters replicated without central sequencer, applied without lock.
+ * <li>{@link fr.univnantes.document.crdt.RgaOperation} - Insertion or deletion exchanged between the replicas, with its compact binary form.
+ * </ul>
+ */
+package fr.univnantes.document.crdt;
@@ -0,0 +1,216 @@
+package fr.univnantes.document.engine;
+
+import fr.univnantes.document.LineNode;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Represents the storage engine of a document content
+ * <p>
+ *     A document engine stores the text of a document and applies the positional edits on it
+ *     Positions are given as a line and a column, both starting at 0
+ *     Implementations are responsible for their own synchronization
+ * </p>
+ */
+public interface DocumentEngine {
+
+    /**
+     * Returns the number of lines in the document
+     *
+     * @return The number of lines in the document
+     */
+    int getLineCount();
+
+    /**
+     * Insert a character at the given position
+     * If the position does not exist, it is created
+     * If the position already exists, the character is inserted before the existing character
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been inserted, false otherwise
+     */
+    boolean insert(int line, int column, char character);
+
+    /**
+     * Insert a character at the given position, starting from the line remembered by the finger of its author
+     * The default implementation ignores the finger
+     *
+     * @param finger        The finger of the author, null to look the line up
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been inserted, false otherwise
+     */
+    default boolean insert(Finger finger, int line, int column, char character) {
+        return insert(line, column, character);
+    }
+
+    /**
+     * Insert characters at the given position in one operation, the line breaks of the text split the line
+     * If the line does not exist, the missing lines are created
+     * If the column is past the end of the line, the gap is filled with blank characters before the first line of the text,
+     * unless the text starts with a line break, which is inserted at the end of the line like {@link #insertLineBreak(int, int)} does
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param text          Characters to insert, lines separated by line breaks
+     * @return          True if the characters have been inserted, false otherwise
+     */
+    boolean insertText(int line, int column, CharSequence text);
+
+    /**
+     * Modify a character at the given position
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been modified, false otherwise
+     */
+    boolean modify(int line, int column, char character);
+
+    /**
+     * Modify a character at the given position, starting from the line remembered by the finger of its author
+     * The default implementation ignores the finger
+     *
+     * @param finger        The finger of the author, null to look the line up
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been modified, false otherwise
+     */
+    default boolean modify(Finger finger, int line, int column, char character) {
+        return modify(line, column, character);
+    }
+
+    /**
+     * Delete a character at the given position
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @return          True if the character has been deleted, false otherwise
+     */
+    boolean delete(int line, int column);
+
+    /**
+     * Delete a character at the given position, starting from the line remembered by the finger of its author
+     * The default implementation ignores the finger
+     *
+     * @param finger        The finger of the author, null to look the line up
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @return          True if the character has been deleted, false otherwise
+     */
+    default boolean delete(Finger finger, int line, int column) {
+        return delete(line, column);
+    }
+
+    /**
+     * Delete the characters between two positions in one operation, the line breaks between them included
+     * The character at the end position is kept, the lines of both positions are merged
+     *
+     * @param startLine     Coordinate of the line of the first deleted character, starts at 0
+     * @param startColumn   Coordinate of the column of the first deleted character, starts at 0
+     * @param endLine       Coordinate of the line of the end of the range, starts at 0
+     * @param endColumn     Coordinate of the column of the end of the range, starts at 0
+     * @return          True if the characters have been deleted,
+     *                  false if a position does not exist or the end is not after the start
+     */
+    boolean deleteRange(int startLine, int startColumn, int endLine, int endColumn);
+
+    /**
+     * Insert a line break between two lines, the selected line is split in two
+     * The first line contains the characters before the line break
+     * The second (new) line contains the characters after the line break
+     *
+     * @param line        Coordinate of the line, starts at 0
+     * @param column      Coordinate of the column, starts at 0
+     * @return      True if the line break has been inserted, false otherwise
+     */
+    boolean insertLineBreak(int line, int column);
+
+    /**
+     * Delete the line break before the selected line, the selected line is merged with the previous line
+     *
+     * @param line        Coordinate of the line, starts at 0
+     * @return      True if the line break has been removed, false otherwise
+     */
+    boolean deleteLineBreak(int line);
+
+    /**
+     * Returns an estimate of the heap retained by the content, in bytes
+     * The estimate covers the characters and the overhead of the nodes holding them,
+     * it is maintained by the edits so reading it never walks the content
+     *
+     * @return The estimated footprint of the content, in bytes
+     */
+    long getFootprint();
+
+    /**
+     * Turns the document content into a string
+     * Each line is separated by a line break
+     *
+     * @return    The document content as a string
+     */
+    String toString();
+
+    /**
+     * Returns the content of a range of lines, without walking the lines before it
+     * Each line is separated by a line break, the lines past the end of the document are ignored
+     *
+     * @param from  Coordinate of the first line, starts at 0
+     * @param to    Coordinate after the last line
+     * @return      The lines as a string, empty if the range holds no existing line
+     * @throws IllegalArgumentException If the first line is negative or the range is reversed
+     */
+    String getLines(int from, int to);
+
+    /**
+     * Fills an empty engine with the given text, used to load a snapshot
+     * The default implementation inserts the characters one by one
+     *
+     * @param text  The content, lines separated by line breaks
+     */
+    default void load(String text) {
+        int line = 0;
+        int column = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                insertLineBreak(line++, column);
+                column = 0;
+            } else {
+                insert(line, column++, c);
+            }
+        }
+    }
+
+    /**
+     * Fills an empty engine with the given lines, used to load a mapped snapshot
+     * The default implementation decodes every line and loads the resulting text
+     *
+     * @param lines The lines encoded in UTF-8, without their line breaks
+     */
+    default void load(List<ByteBuffer> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) sb.append('\n');
+            sb.append(LineNode.decode(lines.get(i)));
+        }
+        load(sb.toString());
+    }
+
+    /**
+     * Captures the current content, the returned supplier builds it later without blocking the edits
+     * The default implementation copies the content when it is captured
+     *
+     * @return  The supplier of the captured content
+     */
+    default Supplier<String> capture() {
+        String content = toString();
+        return () -> content;
+    }
+}
@@ -0,0 +1,72 @@
+package fr.univnantes.document.engine;
+
+import java.util.function.Supplier;
+
+/**
+ * Represents the available document engines.
+ * <p>
+ *     The engine of a document is chosen when the document is created.
+ *     <ul>
+ *         <li>LINKED_LINES - A doubly linked list of lines, every operation is serialized</li>
+ *         <li>STRIPED_LINES - A doubly linked list of lines, edits on distinct lines run in parallel</li>
+ *         <li>ROPE - A balanced rope, edits cost O(log n) wherever they happen in the document</li>
+ *     </ul>
+ * </p>
+ * <p>
+ *     The edits of a document recording an edit history or a write-ahead log are applied one at a time, in the order of their revisions,
+ *     whatever its engine. STRIPED_LINES only edits distinct lines in parallel with documents.edit-history.size=0 and without persistence,
+ *     the edits made on an older revision are then applied at their raw positions.
+ * </p>
+ */
+public enum DocumentEngineType {
+    LINKED_LINES("LINKED_LINES", LinkedLineEngine::new),
+    STRIPED_LINES("STRIPED_LINES", () -> new LinkedLineEngine(true)),
+    ROPE("ROPE", RopeEngine::new);
+
+    public final String type;
+    private final Supplier<DocumentEngine> factory;
+
+    /**
+     * Creates a new engine type
+     *
+     * @param type      The name of the engine type
+     * @param factory   The factory used to create an empty engine of this type
+     */
+    DocumentEngineType(String type, Supplier<DocumentEngine> factory) {
+        this.type = type;
+        this.factory = factory;
+    }
+
+    /**
+     * Creates a new empty engine of this type
+     *
+     * @return  The created engine
+     */
+    public DocumentEngine create() {
+        return factory.get();
+    }
+
+    /**
+     * Returns the engine type from its string representation
+     *
+     * @param text  The string representation of the engine type
+     * @return      The engine type, null if it does not exist
+     */
+    public static DocumentEngineType fromString(String text) {
+        for (DocumentEngineType t : DocumentEngineType.values()) {
+            if (t.type.equalsIgnoreCase(text)) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the type of the engine.
+     * @return The type.
+     */
+    @Override
+    public String toString() {
+        return type;
+    }
+}
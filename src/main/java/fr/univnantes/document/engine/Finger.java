@@ -0,0 +1,68 @@
+package fr.univnantes.document.engine;
+
+import fr.univnantes.document.LineNode;
+
+/**
+ * Remembers the last line edited by a user, so its next edits on that line or a neighbouring one skip the line index
+ * <p>
+ *     A finger is given to the edits of a single user, see {@link DocumentEngine#insert(Finger, int, int, char)}
+ *     The engine moves it past the lines added or removed since it was last used, or forgets it if its line was removed,
+ *     so it stays valid while the other users add or remove lines
+ * </p>
+ * <p>
+ *     The remembered position is replaced as a whole, a finger may be used by several threads but is meant for one user
+ * </p>
+ */
+public class Finger {
+
+    private volatile Position position = null;
+
+    /**
+     * Create a new finger remembering no line
+     */
+    public Finger() {
+    }
+
+    /**
+     * Returns the remembered line, as it was when the finger was last used
+     * @return  The line, -1 if no line is remembered
+     */
+    public int getLine() {
+        Position current = position;
+        return current == null ? -1 : current.line();
+    }
+
+    /**
+     * Forgets the remembered line, the next edit looks it up in the line index
+     */
+    public void forget() {
+        position = null;
+    }
+
+    /**
+     * Returns the remembered position
+     * @return  The position, null if no line is remembered
+     */
+    Position get() {
+        return position;
+    }
+
+    /**
+     * Remembers a position
+     *
+     * @param position  The position, null to forget it
+     */
+    void set(Position position) {
+        this.position = position;
+    }
+
+    /**
+     * Represents a remembered line
+     *
+     * @param epoch     The number of structural changes of the engine when the line was remembered
+     * @param line      Coordinate of the line, starts at 0
+     * @param lineNode  The line node of the line
+     */
+    record Position(long epoch, int line, LineNode lineNode) {
+    }
+}
@@ -0,0 +1,230 @@
+package fr.univnantes.document.engine;
+
+import fr.univnantes.document.LineNode;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Order statistic index of the line nodes of a document
+ * <p>
+ *     The index is a treap ordered by line position, each node knows the size of its subtree
+ *     so the line node at a given position is found, inserted or removed in O(log n)
+ *     instead of walking the linked list from the first line
+ * </p>
+ * <p>
+ *     A line node standing for several lines takes as many positions, given by {@link LineNode#getLines()} when it is indexed
+ *     Its lines must not change while it is indexed, it is removed and indexed again instead
+ * </p>
+ * <p>
+ *     This class is not thread safe, the owning engine is responsible for the synchronization
+ * </p>
+ */
+public class LineIndex {
+
+    private Node root;
+
+    /**
+     * Create a new empty index
+     */
+    public LineIndex() {
+        root = null;
+    }
+
+    /**
+     * Returns the number of indexed lines, the lines of each line node included
+     *
+     * @return the number of lines
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the line node at the given position
+     *
+     * @param index the position of the line, starts at 0
+     * @return the line node at the given position, null if it does not exist
+     */
+    public LineNode get(int index) {
+        if (index < 0 || index >= size()) return null;
+
+        Node node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index < leftSize + node.weight) {
+                return node.line;
+            } else {
+                index -= leftSize + node.weight;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the position of the first line of the line node holding the given position
+     *
+     * @param index the position of the line, starts at 0
+     * @return the position of the first line of its line node, -1 if it does not exist
+     */
+    public int start(int index) {
+        if (index < 0 || index >= size()) return -1;
+
+        int start = 0;
+        Node node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index < leftSize + node.weight) {
+                return start + leftSize;
+            } else {
+                index -= leftSize + node.weight;
+                start += leftSize + node.weight;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts a line node at the given position, the following lines are shifted by its lines
+     *
+     * @param index the position of the new line, between 0 and {@link #size()}, not inside the lines of a line node
+     * @param line  the line node to insert
+     * @throws IndexOutOfBoundsException if the position is out of the index
+     */
+    public void insert(int index, LineNode line) {
+        if (index < 0 || index > size()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+
+        Node[] parts = split(root, index);
+        root = merge(merge(parts[0], new Node(line)), parts[1]);
+    }
+
+    /**
+     * Appends a line node after the last line
+     *
+     * @param line  the line node to append
+     */
+    public void add(LineNode line) {
+        root = merge(root, new Node(line));
+    }
+
+    /**
+     * Removes the line node at the given position, the following lines are shifted by its lines
+     *
+     * @param index the position of the first line of the line node to remove, starts at 0
+     * @return the removed line node
+     * @throws IndexOutOfBoundsException if the position is out of the index
+     */
+    public LineNode remove(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+
+        Node[] parts = split(root, index);
+        Node[] rest = split(parts[1], 1);
+        root = merge(parts[0], rest[1]);
+        return rest[0].line;
+    }
+
+    /**
+     * Removes the line nodes between the given positions in one split, the following lines are shifted back
+     *
+     * @param from  the position of the first line of the first line node to remove
+     * @param to    the position after the last line of the last line node to remove, between from and {@link #size()}
+     * @throws IndexOutOfBoundsException if the range is out of the index
+     */
+    public void remove(int from, int to) {
+        if (from < 0 || to > size() || from > to) throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + size());
+
+        Node[] parts = split(root, from);
+        Node[] rest = split(parts[1], to - from);
+        root = merge(parts[0], rest[1]);
+    }
+
+    /**
+     * Represents a node of the index
+     */
+    private static final class Node {
+        final LineNode line;
+        final int priority;
+        final int weight;
+        Node left;
+        Node right;
+        int size;
+
+        /**
+         * Create a new leaf node
+         *
+         * @param line  the indexed line node
+         */
+        Node(LineNode line) {
+            this.line = line;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            this.weight = line.getLines();
+            this.size = weight;
+        }
+
+        /**
+         * Updates the size of the subtree after its children changed
+         */
+        void update() {
+            size = weight + size(left) + size(right);
+        }
+    }
+
+    /**
+     * Returns the number of lines in a subtree
+     *
+     * @param node  the root of the subtree
+     * @return      the number of lines
+     */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Splits a subtree in two
+     *
+     * @param node  the root of the subtree
+     * @param count the number of lines kept in the first part
+     * @return      an array holding the first part and the second part
+     */
+    private static Node[] split(Node node, int count) {
+        if (node == null) return new Node[]{null, null};
+
+        if (count <= size(node.left)) {
+            Node[] parts = split(node.left, count);
+            node.left = parts[1];
+            node.update();
+            return new Node[]{parts[0], node};
+        }
+
+        Node[] parts = split(node.right, count - size(node.left) - node.weight);
+        node.right = parts[0];
+        node.update();
+        return new Node[]{node, parts[1]};
+    }
+
+    /**
+     * Merges two subtrees, all the lines of the first one come before the ones of the second one
+     *
+     * @param first     the first subtree
+     * @param second    the second subtree
+     * @return          the merged subtree
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) return second;
+        if (second == null) return first;
+
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+        second.left = merge(first, second.left);
+        second.update();
+        return second;
+    }
+}
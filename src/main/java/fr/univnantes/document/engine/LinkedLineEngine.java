@@ -0,0 +1,762 @@
+package fr.univnantes.document.engine;
+
+import fr.univnantes.document.LineNode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Document engine backed by a doubly linked list of line nodes
+ * <p>
+ *     Each line is a {@link LineNode} holding its characters
+ *     Lines are found in O(log n) through a {@link LineIndex} kept consistent with the list
+ * </p>
+ * <p>
+ *     Structural changes (line breaks, creation of missing lines) take the write side of a read write lock
+ *     By default, edits inside a line take it too, so every operation is serialized
+ *     In striped mode, edits inside a line only take the read side and rely on the monitor of their line node,
+ *     so edits on distinct lines run in parallel
+ * </p>
+ * <p>
+ *     Missing lines created by an insertion past the end of the document are a single line node standing for all of them,
+ *     it is split when one of its lines is edited, so the padding costs O(1) whatever the number of lines
+ * </p>
+ * <p>
+ *     The edits inside a line may start from the {@link Finger} of their author, the line it remembers or a neighbouring one
+ *     is reached from its line node in O(1) instead of through the index
+ *     Each structural change records how it moved the following lines in a ring of {@link #SHIFT_CAPACITY} entries,
+ *     a finger is moved past the changes made since its last use, or forgotten if its line was removed or it is too old
+ * </p>
+ * <p>
+ *     The stored characters are counted by the line nodes, the footprint is estimated from it and the number of line nodes,
+ *     virtual padding is not counted
+ * </p>
+ */
+public class LinkedLineEngine implements DocumentEngine {
+
+    //  A line node with its two atomic references, its empty gap buffer and its node in the line index
+    static final int LINE_OVERHEAD = 120;
+    static final int ENGINE_OVERHEAD = 128;
+    static final int SHIFT_CAPACITY = 64;
+
+    private final AtomicInteger lineCount = new AtomicInteger(1);
+    private final AtomicInteger lineNodes = new AtomicInteger(1);
+    private final LongAdder characters = new LongAdder();
+    private final LineNode content;
+    private final LineIndex index = new LineIndex();
+
+    //  Structural changes, written under the structure lock and read under the line lock
+    private long epoch = 0;
+    private final int[] shiftFrom = new int[SHIFT_CAPACITY];
+    private final int[] shiftTo = new int[SHIFT_CAPACITY];
+    private final int[] shiftDelta = new int[SHIFT_CAPACITY];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock lineLock;
+    private final Lock structureLock;
+
+    /**
+     * Create a new engine holding an empty document, every operation is serialized
+     */
+    public LinkedLineEngine() {
+        this(false);
+    }
+
+    /**
+     * Create a new engine holding an empty document
+     *
+     * @param striped   True if edits inside distinct lines may run in parallel, false to serialize every operation
+     */
+    public LinkedLineEngine(boolean striped) {
+        content = new LineNode(characters);
+        index.add(content);
+        structureLock = lock.writeLock();
+        lineLock = striped ? lock.readLock() : structureLock;
+    }
+
+    /**
+     * Returns the line node at the given position
+     * @param line  The position of the line node
+     * @return      The line node at the given position
+     */
+    LineNode getLineNode(int line) {
+        return index.get(line);
+    }
+
+    /**
+     * Returns the line node at the given position, starting from the finger when it remembers the line or a neighbouring one
+     * The finger then remembers the line, the caller must hold the line lock
+     *
+     * @param finger    The finger of the author of the edit, null to look the line up in the index
+     * @param line      The position of the line node
+     * @return          The line node at the given position
+     */
+    private LineNode getLineNode(Finger finger, int line) {
+        if (finger == null) return getLineNode(line);
+
+        LineNode lineNode = getLineNodeNear(finger.get(), line);
+        if (lineNode == null) lineNode = getLineNode(line);
+
+        //  A line node standing for several lines is split by the edit, it is not remembered
+        finger.set(lineNode != null && lineNode.getLines() == 1 ? new Finger.Position(epoch, line, lineNode) : null);
+        return lineNode;
+    }
+
+    /**
+     * Returns the line node at the given position if it is the remembered one or one of its neighbours
+     * The remembered line is first moved past the structural changes made since it was remembered
+     *
+     * @param position  The remembered position
+     * @param line      The position of the line node
+     * @return          The line node at the given position, null if it is not near the remembered one
+     */
+    private LineNode getLineNodeNear(Finger.Position position, int line) {
+        if (position == null || epoch - position.epoch() > SHIFT_CAPACITY) return null;
+
+        int rememberedLine = position.line();
+        for (long change = position.epoch() + 1; change <= epoch; change++) {
+            int slot = (int) (change % SHIFT_CAPACITY);
+            if (rememberedLine >= shiftTo[slot]) {
+                rememberedLine += shiftDelta[slot];
+            } else if (rememberedLine >= shiftFrom[slot]) {
+                return null;
+            }
+        }
+
+        if (line == rememberedLine) return position.lineNode();
+        if (line == rememberedLine + 1) return position.lineNode().getNext();
+        if (line == rememberedLine - 1) return position.lineNode().getPrevious();
+        return null;
+    }
+
+    /**
+     * Records a structural change for the fingers, the caller must hold the structure lock
+     *
+     * @param from  The first line whose line node may have been removed
+     * @param to    The first line moved by the change, its line node and the following ones are kept
+     * @param delta The number of lines added, negative if lines were removed
+     */
+    private void shift(int from, int to, int delta) {
+        int slot = (int) (++epoch % SHIFT_CAPACITY);
+        shiftFrom[slot] = from;
+        shiftTo[slot] = to;
+        shiftDelta[slot] = delta;
+    }
+
+    /**
+     * Returns the last line node of the document
+     * @return  The last line node of the document
+     */
+    private LineNode getLastLineNode() {
+        return index.get(index.size() - 1);
+    }
+
+    /**
+     * Create a new line node after the given line node, the index is left to the caller
+     * @param previousLineNode  The line node before the new one
+     * @param lines             The number of empty lines the new line node stands for
+     * @return                  The new line node
+     */
+    private LineNode createLineNode(LineNode previousLineNode, int lines) {
+        LineNode lineNode = new LineNode(characters);
+        lineNode.setLines(lines);
+        lineNode.setPrevious(previousLineNode);
+        lineNode.setNext(previousLineNode.getNextAcquire());
+        previousLineNode.setNextRelease(lineNode);
+        if (lineNode.getNext() != null) {
+            lineNode.getNext().setPrevious(lineNode);
+        }
+        lineNodes.incrementAndGet();
+        return lineNode;
+    }
+
+    /**
+     * Appends the missing lines up to the given line, the lines between the document and it are a single line node
+     * The caller must hold the structure lock
+     * @param line  The line to create, after the last line of the document
+     * @return      The line node of the created line
+     */
+    private LineNode appendLineNode(int line) {
+        LineNode lineNode = getLastLineNode();
+        int missingLines = line - lineCount.get();
+
+        if (missingLines > 0) {
+            lineNode = createLineNode(lineNode, missingLines);
+            index.add(lineNode);
+        }
+        lineNode = createLineNode(lineNode, 1);
+        index.add(lineNode);
+        lineCount.setRelease(line + 1);
+        return lineNode;
+    }
+
+    /**
+     * Returns the line node of the given line, splitting the line node standing for it with other lines
+     * The caller must hold the structure lock
+     * @param line  The line, must exist
+     * @return      The line node standing for the line only
+     */
+    private LineNode materializeLineNode(int line) {
+        LineNode lineNode = getLineNode(line);
+        int lines = lineNode.getLines();
+        if (lines == 1) return lineNode;
+
+        int start = index.start(line);
+        int offset = line - start;
+        index.remove(start);
+
+        //  The lines before the requested one stay in the original line node
+        if (offset > 0) {
+            lineNode.setLines(offset);
+            index.insert(start, lineNode);
+            lineNode = createLineNode(lineNode, 1);
+        } else {
+            lineNode.setLines(1);
+        }
+        index.insert(line, lineNode);
+
+        if (lines - offset - 1 > 0) {
+            index.insert(line + 1, createLineNode(lineNode, lines - offset - 1));
+        }
+        return lineNode;
+    }
+
+    /**
+     * Removes one of the lines a line node stands for
+     * The caller must hold the structure lock
+     * @param line      A line of the line node
+     * @param lineNode  The line node standing for several lines
+     */
+    private void removeVirtualLine(int line, LineNode lineNode) {
+        int start = index.start(line);
+        index.remove(start);
+        lineNode.setLines(lineNode.getLines() - 1);
+        index.insert(start, lineNode);
+        lineCount.decrementAndGet();
+        shift(line, line + 1, -1);
+    }
+
+    /**
+     * Returns true if a text inserted at the given position keeps the line count and the length of its lines within an int
+     *
+     * @param line      Coordinate of the line, starts at 0
+     * @param column    Coordinate of the column, starts at 0
+     * @param text      The inserted text, lines separated by line breaks
+     * @return          True if the position of every inserted character fits in an int
+     */
+    private boolean fits(int line, int column, String text) {
+        int lineBreaks = 0;
+        int lastLineBreak = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lineBreaks++;
+                lastLineBreak = i;
+            }
+        }
+
+        long lines = Math.max((long) lineCount.get(), line + 1L) + lineBreaks;
+        long firstLineLength = (long) column + (lastLineBreak < 0 ? text.length() : text.indexOf('\n'));
+        return lines <= Integer.MAX_VALUE && firstLineLength <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns an estimate of the heap retained by the lines, in bytes
+     * @return  The estimated footprint of the lines, in bytes
+     */
+    @Override
+    public long getFootprint() {
+        return ENGINE_OVERHEAD + (long) lineNodes.get() * LINE_OVERHEAD + characters.sum() * Character.BYTES;
+    }
+
+    /**
+     * Returns the number of lines in the document
+     * @return  The number of lines in the document
+     */
+    @Override
+    public int getLineCount() {
+        return lineCount.get();
+    }
+
+    /**
+     * Insert a character at the given position
+     * If the position does not exist, it is created
+     * If the position already exists, the character is inserted before the existing character
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been inserted, false otherwise
+     */
+    @Override
+    public boolean insert(int line, int column, char character) {
+        return insert(null, line, column, character);
+    }
+
+    /**
+     * Insert a character at the given position, starting from the line remembered by the finger of its author
+     *
+     * @param finger        The finger of the author, null to look the line up
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been inserted, false otherwise
+     */
+    @Override
+    public boolean insert(Finger finger, int line, int column, char character) {
+        //  The line count and the length of the line must stay within an int
+        if (line < 0 || column < 0 || line == Integer.MAX_VALUE || column == Integer.MAX_VALUE) return false;
+
+        lineLock.lock();
+        try {
+            LineNode lineNode = getLineNode(finger, line);
+            if (lineNode != null && lineNode.getLines() == 1) return lineNode.insert(column, character);
+        } finally {
+            lineLock.unlock();
+        }
+
+        //  The requested line node does not exist or stands for several lines
+        //  Create it, which is a structural change
+        structureLock.lock();
+        try {
+            LineNode lineNode = line < lineCount.get() ? materializeLineNode(line) : appendLineNode(line);
+            return lineNode.insert(column, character);
+        } finally {
+            structureLock.unlock();
+        }
+    }
+
+    /**
+     * Insert characters at the given position in one operation, the line breaks of the text split the line
+     * A text without line break is inserted like a character, otherwise the line is split once
+     * and a line node is created for each line of the text, under a single acquisition of the structure lock
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param text          Characters to insert, lines separated by line breaks
+     * @return          True if the characters have been inserted, false otherwise
+     */
+    @Override
+    public boolean insertText(int line, int column, CharSequence text) {
+        if (line < 0 || column < 0 || text.isEmpty()) return false;
+
+        String inserted = text.toString();
+        int lineBreak = inserted.indexOf('\n');
+        if (!fits(line, column, inserted)) return false;
+
+        if (lineBreak < 0) {
+            lineLock.lock();
+            try {
+                LineNode lineNode = getLineNode(line);
+                if (lineNode != null && lineNode.getLines() == 1) return lineNode.insert(column, inserted);
+            } finally {
+                lineLock.unlock();
+            }
+        }
+
+        structureLock.lock();
+        try {
+            LineNode lineNode = line < lineCount.get() ? materializeLineNode(line) : appendLineNode(line);
+            if (lineBreak < 0) return lineNode.insert(column, inserted);
+
+            //  The first part of the text is inserted before the end of the line is moved after the last part,
+            //  both must stay within an int so that no part is rejected once the line is split
+            int length = lineNode.getLength();
+            int lastLineBreak = inserted.lastIndexOf('\n');
+            if ((long) Math.max(column, length) + lineBreak > Integer.MAX_VALUE) return false;
+            if ((long) inserted.length() - lastLineBreak - 1 + Math.max(0, length - column) > Integer.MAX_VALUE) return false;
+
+            //  Insert the first line of the text, then move the end of the line to a new line node
+            int first = line;
+            lineNode.insert(column, inserted.substring(0, lineBreak));
+            lineNode.insertLineBreak(column + lineBreak);
+            LineNode tail = lineNode.getNext();
+            index.insert(line + 1, tail);
+            lineCount.incrementAndGet();
+            lineNodes.incrementAndGet();
+
+            //  Create the lines of the middle of the text between the two parts of the line
+            LineNode previousLineNode = lineNode;
+            int start = lineBreak + 1;
+            while ((lineBreak = inserted.indexOf('\n', start)) >= 0) {
+                LineNode middle = createLineNode(previousLineNode, 1);
+                middle.insert(0, inserted.substring(start, lineBreak));
+                index.insert(++line, middle);
+                lineCount.incrementAndGet();
+                previousLineNode = middle;
+                start = lineBreak + 1;
+            }
+
+            tail.insert(0, inserted.substring(start));
+            shift(first + 1, first + 1, line + 1 - first);
+            return true;
+        } finally {
+            structureLock.unlock();
+        }
+    }
+
+    /**
+     * Modify a character at the given position
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been modified, false otherwise
+     */
+    @Override
+    public boolean modify(int line, int column, char character) {
+        return modify(null, line, column, character);
+    }
+
+    /**
+     * Modify a character at the given position, starting from the line remembered by the finger of its author
+     *
+     * @param finger        The finger of the author, null to look the line up
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been modified, false otherwise
+     */
+    @Override
+    public boolean modify(Finger finger, int line, int column, char character) {
+        if (line < 0 || column < 0) return false;
+
+        lineLock.lock();
+        try {
+            LineNode lineNode = getLineNode(finger, line);
+
+            //  The requested line node does not exist
+            if (lineNode == null) {
+                return false;
+            }
+            return lineNode.modify(column, character);
+        } finally {
+            lineLock.unlock();
+        }
+    }
+
+    /**
+     * Delete a character at the given position
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @return          True if the character has been deleted, false otherwise
+     */
+    @Override
+    public boolean delete(int line, int column) {
+        return delete(null, line, column);
+    }
+
+    /**
+     * Delete a character at the given position, starting from the line remembered by the finger of its author
+     *
+     * @param finger        The finger of the author, null to look the line up
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @return          True if the character has been deleted, false otherwise
+     */
+    @Override
+    public boolean delete(Finger finger, int line, int column) {
+        if (line < 0 || column < 0) return false;
+
+        lineLock.lock();
+        try {
+            LineNode lineNode = getLineNode(finger, line);
+
+            //  The requested line node does not exist
+            //  Nothing to remove
+            if (lineNode == null) return false;
+
+            return lineNode.delete(column);
+        } finally {
+            lineLock.unlock();
+        }
+    }
+
+    /**
+     * Delete a line break between two lines, the selected line is merged with the previous line
+     *
+     * @param line        Coordinate of the line, starts at 0
+     * @return      True if the line has been removed, false otherwise
+     */
+    @Override
+    public boolean deleteLineBreak(int line) {
+        if (line < 0) return false;
+
+        structureLock.lock();
+        try {
+            LineNode lineNode = getLineNode(line);
+
+            //  The requested line node does not exist or is the first line
+            //  Nothing to remove
+            if (lineNode == null || line == 0) return false;
+
+            //  Merging an empty line with its previous line removes one of the empty lines
+            if (lineNode.getLines() > 1) {
+                removeVirtualLine(line, lineNode);
+                return true;
+            }
+            LineNode previousLineNode = lineNode.getPrevious();
+            if (previousLineNode.getLines() > 1) {
+                removeVirtualLine(line - 1, previousLineNode);
+                return true;
+            }
+
+            boolean result = lineNode.deleteLineBreak();
+            if (result) {
+                index.remove(line);
+                lineCount.decrementAndGet();
+                lineNodes.decrementAndGet();
+                shift(line, line + 1, -1);
+            }
+
+            return result;
+        } finally {
+            structureLock.unlock();
+        }
+    }
+
+    /**
+     * Delete the characters between two positions in one operation, the line breaks between them included
+     * A range inside a line is deleted like a character, otherwise both ends are cut,
+     * the lines between them are unlinked and removed from the index at once, and the ends are merged,
+     * under a single acquisition of the structure lock
+     *
+     * @param startLine     Coordinate of the line of the first deleted character, starts at 0
+     * @param startColumn   Coordinate of the column of the first deleted character, starts at 0
+     * @param endLine       Coordinate of the line of the end of the range, starts at 0
+     * @param endColumn     Coordinate of the column of the end of the range, starts at 0
+     * @return          True if the characters have been deleted,
+     *                  false if a position does not exist or the end is not after the start
+     */
+    @Override
+    public boolean deleteRange(int startLine, int startColumn, int endLine, int endColumn) {
+        if (startLine < 0 || startColumn < 0 || endColumn < 0 || endLine < startLine) return false;
+
+        if (startLine == endLine) {
+            lineLock.lock();
+            try {
+                LineNode lineNode = getLineNode(startLine);
+
+                //  The requested line node does not exist
+                //  Nothing to remove
+                if (lineNode == null) return false;
+
+                return lineNode.delete(startColumn, endColumn);
+            } finally {
+                lineLock.unlock();
+            }
+        }
+
+        structureLock.lock();
+        try {
+            if (endLine >= lineCount.get()) return false;
+            if (startColumn > getLineNode(startLine).getLength() || endColumn > getLineNode(endLine).getLength()) return false;
+
+            LineNode first = materializeLineNode(startLine);
+            LineNode last = materializeLineNode(endLine);
+            first.delete(startColumn, first.getLength());
+            last.delete(0, endColumn);
+
+            //  Unlink the line nodes between both ends, their characters are no longer counted
+            LineNode lineNode = first.getNext();
+            while (lineNode != last) {
+                LineNode nextLineNode = lineNode.getNext();
+                lineNode.clear();
+                lineNodes.decrementAndGet();
+                lineNode = nextLineNode;
+            }
+            first.setNext(last);
+            last.setPrevious(first);
+
+            //  Merge what remains of the last line into the first one
+            last.deleteLineBreak();
+            lineNodes.decrementAndGet();
+            index.remove(startLine + 1, endLine + 1);
+            lineCount.addAndGet(startLine - endLine);
+            shift(startLine + 1, endLine + 1, startLine - endLine);
+            return true;
+        } finally {
+            structureLock.unlock();
+        }
+    }
+
+    /**
+     * Insert a line break between two lines, the selected line is split in two
+     * The first line contains the characters before the line break
+     * The second (new) line contains the characters after the line break
+     *
+     * @param line        Coordinate of the line, starts at 0
+     * @param column      Coordinate of the column, starts at 0
+     * @return      True if the line break has been inserted, false otherwise
+     */
+    @Override
+    public boolean insertLineBreak(int line, int column) {
+        if (line < 0 || column < 0) return false;
+
+        structureLock.lock();
+        try {
+            LineNode lineNode = getLineNode(line);
+
+            //  The requested line node does not exist
+            //  Nothing to remove
+            if (lineNode == null || lineCount.get() == Integer.MAX_VALUE) return false;
+
+            lineNode = materializeLineNode(line);
+            boolean result = lineNode.insertLineBreak(column);
+            if (result) {
+                index.insert(line + 1, lineNode.getNext());
+                lineCount.incrementAndGet();
+                lineNodes.incrementAndGet();
+                shift(line + 1, line + 1, 1);
+            }
+
+            return result;
+        } finally {
+            structureLock.unlock();
+        }
+    }
+
+    /**
+     * Fills an empty engine with the given lines, used to load a mapped snapshot
+     * Each line node keeps its encoded characters and only decodes them when it is first edited,
+     * so loading costs a node per line whatever the length of the lines
+     *
+     * @param lines The lines encoded in UTF-8, without their line breaks
+     * @throws IllegalStateException If the engine is not empty
+     */
+    @Override
+    public void load(List<ByteBuffer> lines) {
+        structureLock.lock();
+        try {
+            if (lineCount.get() != 1 || content.getLength() != 0) throw new IllegalStateException("Engine is not empty");
+            if (lines.isEmpty()) return;
+
+            content.load(lines.getFirst());
+            //  The encoded length is exact for ASCII text, a line node corrects it when it decodes its line
+            for (ByteBuffer line : lines) characters.add(line.remaining());
+            LineNode previousLineNode = content;
+            for (int i = 1; i < lines.size(); i++) {
+                LineNode lineNode = new LineNode(lines.get(i), characters);
+                lineNode.setPrevious(previousLineNode);
+                previousLineNode.setNextRelease(lineNode);
+                index.add(lineNode);
+                previousLineNode = lineNode;
+            }
+            lineCount.setRelease(lines.size());
+            lineNodes.set(lines.size());
+            shift(0, Integer.MAX_VALUE, 0);
+        } finally {
+            structureLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the content of a range of lines
+     * The first line node is found through the index, the following ones are walked from it
+     *
+     * @param from  Coordinate of the first line, starts at 0
+     * @param to    Coordinate after the last line
+     * @return      The lines as a string, empty if the range holds no existing line
+     */
+    @Override
+    public String getLines(int from, int to) {
+        if (from < 0 || to < from) throw new IllegalArgumentException("Line range [" + from + ", " + to + ") is invalid");
+
+        StringBuilder sb = new StringBuilder();
+        lock.readLock().lock();
+        try {
+            int end = Math.min(to, index.size());
+            if (from >= end) return "";
+
+            //  A line node stands for its content followed by its blank lines
+            int line = index.start(from);
+            LineNode lineNode = index.get(from);
+            while (lineNode != null && line < end) {
+                if (line >= from) {
+                    lineNode.appendTo(sb);
+                    sb.append('\n');
+                }
+                sb.repeat('\n', Math.min(line + lineNode.getLines(), end) - Math.max(line + 1, from));
+                line += lineNode.getLines();
+                lineNode = lineNode.getNext();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Remove the last line break
+        sb.deleteCharAt(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * Captures the current content in O(line nodes), without copying any character
+     * Each line node shares its characters with its capture and copies them on its next edit,
+     * so the content is built later from the captured lines while the document is edited
+     *
+     * @return  The supplier of the captured content
+     */
+    @Override
+    public Supplier<String> capture() {
+        List<LineNode> captured;
+
+        lock.readLock().lock();
+        try {
+            captured = new ArrayList<>(lineNodes.get());
+            for (LineNode lineNode = content; lineNode != null; lineNode = lineNode.getNext()) {
+                captured.add(lineNode.capture());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return () -> {
+            StringBuilder sb = new StringBuilder();
+            for (LineNode lineNode : captured) {
+                lineNode.appendTo(sb);
+                sb.repeat('\n', lineNode.getLines());
+            }
+
+            // Remove the last line break
+            sb.deleteCharAt(sb.length() - 1);
+            return sb.toString();
+        };
+    }
+
+    /**
+     * Turns the document into a string
+     * Each line is separated by a line break
+     *
+     * @return    The document as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        //  The read side is enough, the lines cannot be relinked while it is held
+        //  and each line node is read under its own monitor
+        lock.readLock().lock();
+        try {
+            LineNode lineNode = content;
+            while (lineNode != null) {
+                lineNode.appendTo(sb);
+                sb.repeat('\n', lineNode.getLines());
+                lineNode = lineNode.getNext();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Remove the last line break
+        if (!sb.isEmpty()) {
+            sb.deleteCharAt(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+}
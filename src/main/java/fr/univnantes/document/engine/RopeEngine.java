@@ -0,0 +1,777 @@
+package fr.univnantes.document.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Document engine backed by a balanced rope
+ * <p>
+ *     The whole text of the document, line breaks included, is stored in a treap of character chunks
+ *     Each node knows the number of characters and line breaks of its subtree
+ *     so a line and a column are turned into an offset in O(log n) and every edit costs O(log n)
+ *     wherever it happens in the document
+ * </p>
+ * <p>
+ *     Nodes are immutable, an edit copies the path from the root to the modified chunk
+ *     Reading the content never blocks writers, it works on the root seen when it started
+ *     Edits are synchronized on the engine
+ * </p>
+ * <p>
+ *     The padding of an insertion past the end of a line or of the document is a run, a node repeating one character
+ *     without storing it, so it costs O(log n) whatever its length
+ *     A run is split when one of its characters is modified, inserting inside it only splits it
+ * </p>
+ */
+public class RopeEngine implements DocumentEngine {
+
+    static final int MAX_CHUNK = 256;
+    private static final int PRIORITY_BAND_BITS = 26;
+
+    //  A node with its chunk array header, chunks hold about three quarters of the maximum once split
+    static final int NODE_OVERHEAD = 64;
+    static final int ENGINE_OVERHEAD = 64;
+
+    private volatile Node root;
+
+    /**
+     * Create a new engine holding an empty document
+     */
+    public RopeEngine() {
+        root = null;
+    }
+
+    /**
+     * Returns the number of lines in the document
+     * @return  The number of lines in the document
+     */
+    @Override
+    public int getLineCount() {
+        return lines(root) + 1;
+    }
+
+    /**
+     * Insert a character at the given position
+     * If the position does not exist, it is created
+     * If the position already exists, the character is inserted before the existing character
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been inserted, false otherwise
+     */
+    @Override
+    public synchronized boolean insert(int line, int column, char character) {
+        if (line < 0 || column < 0) return false;
+
+        Node current = root;
+        int lineCount = lines(current) + 1;
+
+        //  The requested line does not exist
+        //  Append the missing lines, the blank characters and the character at the end of the document
+        if (line >= lineCount) {
+            if (!fits(current, (long) line - lineCount + 1 + column + 1)) return false;
+            Node padding = merge(run('\n', line - lineCount + 1), run(' ', column));
+            root = merge(merge(current, padding), build(new char[]{character}));
+            return true;
+        }
+
+        int start = lineStart(current, line);
+        int length = lineEnd(current, line, lineCount) - start;
+
+        //  The requested column is past the end of the line
+        //  Fill the gap with blank characters
+        if (column > length) {
+            if (!fits(current, (long) column - length + 1)) return false;
+            Node[] parts = split(current, start + length);
+            Node padding = merge(run(' ', column - length), build(new char[]{character}));
+            root = merge(merge(parts[0], padding), parts[1]);
+            return true;
+        }
+
+        if (!fits(current, 1)) return false;
+        root = insertText(current, start + column, new char[]{character});
+        return true;
+    }
+
+    /**
+     * Insert characters at the given position in one operation, the line breaks of the text split the line
+     * The chunks of the text are built once and merged in the rope, the padding being runs
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param text          Characters to insert, lines separated by line breaks
+     * @return          True if the characters have been inserted, false otherwise
+     */
+    @Override
+    public synchronized boolean insertText(int line, int column, CharSequence text) {
+        if (line < 0 || column < 0 || text.isEmpty()) return false;
+
+        char[] characters = text.toString().toCharArray();
+        boolean padded = characters[0] != '\n';
+        Node current = root;
+        int lineCount = lines(current) + 1;
+
+        //  The requested line does not exist
+        //  Append the missing lines, the blank characters and the text at the end of the document
+        if (line >= lineCount) {
+            if (!fits(current, (long) line - lineCount + 1 + (padded ? column : 0) + characters.length)) return false;
+            Node padding = merge(run('\n', line - lineCount + 1), padded ? run(' ', column) : null);
+            root = merge(merge(current, padding), build(characters));
+            return true;
+        }
+
+        int start = lineStart(current, line);
+        int length = lineEnd(current, line, lineCount) - start;
+
+        //  The requested column is past the end of the line
+        //  Fill the gap with blank characters, unless the text starts with a line break
+        if (column > length) {
+            if (!fits(current, (padded ? (long) column - length : 0) + characters.length)) return false;
+            Node[] parts = split(current, start + length);
+            Node padding = merge(padded ? run(' ', column - length) : null, build(characters));
+            root = merge(merge(parts[0], padding), parts[1]);
+            return true;
+        }
+
+        if (!fits(current, characters.length)) return false;
+        root = insertText(current, start + column, characters);
+        return true;
+    }
+
+    /**
+     * Modify a character at the given position
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @param character     Character to insert
+     * @return          True if the character has been modified, false otherwise
+     */
+    @Override
+    public synchronized boolean modify(int line, int column, char character) {
+        if (line < 0 || column < 0) return false;
+
+        Node current = root;
+        int lineCount = lines(current) + 1;
+        if (line >= lineCount) return false;
+
+        int start = lineStart(current, line);
+        if (column >= lineEnd(current, line, lineCount) - start) return false;
+
+        root = setAt(current, start + column, character);
+        return true;
+    }
+
+    /**
+     * Delete a character at the given position
+     *
+     * @param line          Coordinate of the line, starts at 0
+     * @param column        Coordinate of the column, starts at 0
+     * @return          True if the character has been deleted, false otherwise
+     */
+    @Override
+    public synchronized boolean delete(int line, int column) {
+        if (line < 0 || column < 0) return false;
+
+        Node current = root;
+        int lineCount = lines(current) + 1;
+        if (line >= lineCount) return false;
+
+        int start = lineStart(current, line);
+        if (column >= lineEnd(current, line, lineCount) - start) return false;
+
+        root = deleteAt(current, start + column);
+        return true;
+    }
+
+    /**
+     * Delete the characters between two positions in one operation, the line breaks between them included
+     * The rope is split at both ends and the outer parts are merged, so the deletion costs O(log n) whatever its length
+     *
+     * @param startLine     Coordinate of the line of the first deleted character, starts at 0
+     * @param startColumn   Coordinate of the column of the first deleted character, starts at 0
+     * @param endLine       Coordinate of the line of the end of the range, starts at 0
+     * @param endColumn     Coordinate of the column of the end of the range, starts at 0
+     * @return          True if the characters have been deleted,
+     *                  false if a position does not exist or the end is not after the start
+     */
+    @Override
+    public synchronized boolean deleteRange(int startLine, int startColumn, int endLine, int endColumn) {
+        if (startLine < 0 || startColumn < 0 || endColumn < 0 || endLine < startLine) return false;
+        if (startLine == endLine && endColumn <= startColumn) return false;
+
+        Node current = root;
+        int lineCount = lines(current) + 1;
+        if (endLine >= lineCount) return false;
+
+        int start = lineStart(current, startLine);
+        if (startColumn > lineEnd(current, startLine, lineCount) - start) return false;
+        int end = lineStart(current, endLine);
+        if (endColumn > lineEnd(current, endLine, lineCount) - end) return false;
+
+        Node[] before = split(current, start + startColumn);
+        Node[] after = split(before[1], end + endColumn - start - startColumn);
+        root = merge(before[0], after[1]);
+        return true;
+    }
+
+    /**
+     * Insert a line break between two lines, the selected line is split in two
+     * The first line contains the characters before the line break
+     * The second (new) line contains the characters after the line break
+     *
+     * @param line        Coordinate of the line, starts at 0
+     * @param column      Coordinate of the column, starts at 0
+     * @return      True if the line break has been inserted, false otherwise
+     */
+    @Override
+    public synchronized boolean insertLineBreak(int line, int column) {
+        if (line < 0 || column < 0) return false;
+
+        Node current = root;
+        int lineCount = lines(current) + 1;
+        if (line >= lineCount || !fits(current, 1)) return false;
+
+        int start = lineStart(current, line);
+        int length = lineEnd(current, line, lineCount) - start;
+
+        root = insertText(current, start + Math.min(column, length), new char[]{'\n'});
+        return true;
+    }
+
+    /**
+     * Delete the line break before the selected line, the selected line is merged with the previous line
+     *
+     * @param line        Coordinate of the line, starts at 0
+     * @return      True if the line break has been removed, false otherwise
+     */
+    @Override
+    public synchronized boolean deleteLineBreak(int line) {
+        if (line <= 0) return false;
+
+        Node current = root;
+        if (line > lines(current)) return false;
+
+        root = deleteAt(current, lineStart(current, line) - 1);
+        return true;
+    }
+
+    /**
+     * Returns the content of a range of lines
+     * The offsets of the range are found through the line counts of the rope, only the nodes overlapping it are read
+     *
+     * @param from  Coordinate of the first line, starts at 0
+     * @param to    Coordinate after the last line
+     * @return      The lines as a string, empty if the range holds no existing line
+     */
+    @Override
+    public String getLines(int from, int to) {
+        if (from < 0 || to < from) throw new IllegalArgumentException("Line range [" + from + ", " + to + ") is invalid");
+
+        Node current = root;
+        int lineCount = lines(current) + 1;
+        int end = Math.min(to, lineCount);
+        if (from >= end) return "";
+
+        int start = lineStart(current, from);
+        int stop = lineEnd(current, end - 1, lineCount);
+        StringBuilder sb = new StringBuilder(stop - start);
+        appendRange(current, start, stop, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Turns the document into a string
+     * Each line is separated by a line break
+     *
+     * @return    The document as a string
+     */
+    @Override
+    public String toString() {
+        Node current = root;
+        StringBuilder sb = new StringBuilder(size(current));
+        appendTo(current, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Fills an empty engine with the given text, used to load a snapshot
+     * The rope is built balanced in one pass instead of inserting the characters one by one
+     *
+     * @param text  The content, lines separated by line breaks
+     * @throws IllegalStateException If the engine is not empty
+     */
+    @Override
+    public synchronized void load(String text) {
+        if (root != null) throw new IllegalStateException("Engine is not empty");
+        char[] characters = text.toCharArray();
+        root = buildBalanced(characters, 0, (characters.length + MAX_CHUNK - 1) / MAX_CHUNK, 0);
+    }
+
+    /**
+     * Returns an estimate of the heap retained by the rope, in bytes
+     * The stored characters are read from the root, the number of nodes is estimated from them
+     *
+     * @return  The estimated footprint of the rope, in bytes
+     */
+    @Override
+    public long getFootprint() {
+        long size = stored(root);
+        return ENGINE_OVERHEAD + size * Character.BYTES + (size * 4 / (MAX_CHUNK * 3) + 1) * NODE_OVERHEAD;
+    }
+
+    /**
+     * Captures the current content in O(1)
+     * The nodes being immutable, the root seen now is enough to build the content later
+     *
+     * @return  The supplier of the captured content
+     */
+    @Override
+    public Supplier<String> capture() {
+        Node current = root;
+        return () -> {
+            StringBuilder sb = new StringBuilder(size(current));
+            appendTo(current, sb);
+            return sb.toString();
+        };
+    }
+
+    /**
+     * Represents a node of the rope
+     * <p>
+     *     A node holds a chunk of characters, or a run repeating a character without a chunk,
+     *     its children hold the characters before and after it
+     *     Nodes are ordered like a binary search tree on the offsets and like a heap on the priorities
+     * </p>
+     */
+    static final class Node {
+        final char[] chunk;
+        final char fill;
+        final int length;
+        final int chunkLines;
+        final Node left;
+        final Node right;
+        final int priority;
+        final int size;
+        final int lines;
+        final int stored;
+
+        /**
+         * Create a new node
+         *
+         * @param chunk         The characters of the node
+         * @param chunkLines    The number of line breaks in the chunk
+         * @param left          The subtree holding the characters before the chunk
+         * @param right         The subtree holding the characters after the chunk
+         * @param priority      The heap priority of the node
+         */
+        Node(char[] chunk, int chunkLines, Node left, Node right, int priority) {
+            this(chunk, '\0', chunk.length, chunkLines, left, right, priority);
+        }
+
+        /**
+         * Create a new run
+         *
+         * @param fill          The repeated character
+         * @param length        The number of repetitions
+         * @param left          The subtree holding the characters before the run
+         * @param right         The subtree holding the characters after the run
+         * @param priority      The heap priority of the node
+         */
+        Node(char fill, int length, Node left, Node right, int priority) {
+            this(null, fill, length, fill == '\n' ? length : 0, left, right, priority);
+        }
+
+        /**
+         * Create a new node holding a chunk or a run
+         *
+         * @param chunk         The characters of the node, null for a run
+         * @param fill          The repeated character of a run
+         * @param length        The number of characters of the node
+         * @param chunkLines    The number of line breaks in the node
+         * @param left          The subtree holding the characters before the node
+         * @param right         The subtree holding the characters after the node
+         * @param priority      The heap priority of the node
+         */
+        private Node(char[] chunk, char fill, int length, int chunkLines, Node left, Node right, int priority) {
+            this.chunk = chunk;
+            this.fill = fill;
+            this.length = length;
+            this.chunkLines = chunkLines;
+            this.left = left;
+            this.right = right;
+            this.priority = priority;
+            this.size = length + size(left) + size(right);
+            this.lines = chunkLines + lines(left) + lines(right);
+            this.stored = (chunk == null ? 0 : length) + stored(left) + stored(right);
+        }
+
+        /**
+         * Returns a copy of the node with other children
+         *
+         * @param left  The new left subtree
+         * @param right The new right subtree
+         * @return      The new node
+         */
+        Node with(Node left, Node right) {
+            return new Node(chunk, fill, length, chunkLines, left, right, priority);
+        }
+    }
+
+    /**
+     * Returns true if the rope can grow by the given number of characters
+     * Its size and its line count, one more than its line breaks, must stay within an int
+     *
+     * @param node  The root of the rope
+     * @param added The number of added characters, padding included
+     * @return      True if the grown rope fits
+     */
+    private static boolean fits(Node node, long added) {
+        return size(node) + added < Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of characters in a subtree
+     * @param node  The root of the subtree
+     * @return      The number of characters
+     */
+    static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Returns the number of characters stored in the chunks of a subtree, the runs excluded
+     * @param node  The root of the subtree
+     * @return      The number of stored characters
+     */
+    static int stored(Node node) {
+        return node == null ? 0 : node.stored;
+    }
+
+    /**
+     * Returns a run repeating a character
+     * @param fill      The repeated character
+     * @param length    The number of repetitions
+     * @return          The run, null if the length is 0
+     */
+    private static Node run(char fill, int length) {
+        return length == 0 ? null : new Node(fill, length, null, null, ThreadLocalRandom.current().nextInt());
+    }
+
+    /**
+     * Returns the number of line breaks in a subtree
+     * @param node  The root of the subtree
+     * @return      The number of line breaks
+     */
+    static int lines(Node node) {
+        return node == null ? 0 : node.lines;
+    }
+
+    /**
+     * Counts the line breaks of a chunk
+     * @param chunk The characters to scan
+     * @return      The number of line breaks
+     */
+    private static int countLines(char[] chunk) {
+        int count = 0;
+        for (char c : chunk) {
+            if (c == '\n') count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the offset of the first character of a line
+     *
+     * @param node  The root of the rope
+     * @param line  The line, must exist
+     * @return      The offset of the line
+     */
+    private static int lineStart(Node node, int line) {
+        return line == 0 ? 0 : lineBreakOffset(node, line) + 1;
+    }
+
+    /**
+     * Returns the offset right after the last character of a line (its line break or the end of the document)
+     *
+     * @param node      The root of the rope
+     * @param line      The line, must exist
+     * @param lineCount The number of lines of the rope
+     * @return          The offset of the end of the line
+     */
+    private static int lineEnd(Node node, int line, int lineCount) {
+        return line == lineCount - 1 ? size(node) : lineBreakOffset(node, line + 1);
+    }
+
+    /**
+     * Returns the offset of the n-th line break of the rope
+     *
+     * @param node  The root of the rope
+     * @param n     The rank of the line break, starts at 1
+     * @return      The offset of the line break
+     */
+    private static int lineBreakOffset(Node node, int n) {
+        int base = 0;
+        while (node != null) {
+            int leftLines = lines(node.left);
+            if (n <= leftLines) {
+                node = node.left;
+                continue;
+            }
+            n -= leftLines;
+            base += size(node.left);
+
+            if (n <= node.chunkLines) {
+                if (node.chunk == null) return base + n - 1;
+                for (int i = 0; i < node.chunk.length; i++) {
+                    if (node.chunk[i] == '\n' && --n == 0) return base + i;
+                }
+            }
+            n -= node.chunkLines;
+            base += node.length;
+            node = node.right;
+        }
+        throw new IllegalStateException("Line break not found");
+    }
+
+    /**
+     * Inserts characters at the given offset
+     * Small insertions are done in an existing chunk when it has room for them
+     *
+     * @param node      The root of the rope
+     * @param offset    The offset of the first inserted character
+     * @param text      The characters to insert
+     * @return          The new root
+     */
+    static Node insertText(Node node, int offset, char[] text) {
+        if (text.length <= MAX_CHUNK) {
+            Node inPlace = insertInChunk(node, offset, text);
+            if (inPlace != null) return inPlace;
+        }
+
+        Node[] parts = split(node, offset);
+        return merge(merge(parts[0], build(text)), parts[1]);
+    }
+
+    /**
+     * Inserts characters in the chunk holding the given offset
+     *
+     * @param node      The root of the subtree
+     * @param offset    The offset in the subtree
+     * @param text      The characters to insert
+     * @return          The new subtree, null if the chunk has no room for the characters
+     */
+    private static Node insertInChunk(Node node, int offset, char[] text) {
+        if (node == null) return null;
+
+        int leftSize = size(node.left);
+        int length = node.length;
+
+        if (offset < leftSize) {
+            Node left = insertInChunk(node.left, offset, text);
+            return left == null ? null : node.with(left, node.right);
+        }
+        if (offset <= leftSize + length) {
+            if (node.chunk == null || length + text.length > MAX_CHUNK) return null;
+
+            int index = offset - leftSize;
+            char[] chunk = new char[length + text.length];
+            System.arraycopy(node.chunk, 0, chunk, 0, index);
+            System.arraycopy(text, 0, chunk, index, text.length);
+            System.arraycopy(node.chunk, index, chunk, index + text.length, length - index);
+            return new Node(chunk, node.chunkLines + countLines(text), node.left, node.right, node.priority);
+        }
+        Node right = insertInChunk(node.right, offset - leftSize - length, text);
+        return right == null ? null : node.with(node.left, right);
+    }
+
+    /**
+     * Replaces the character at the given offset
+     *
+     * @param node      The root of the subtree
+     * @param offset    The offset of the character, must exist
+     * @param character The new character
+     * @return          The new subtree
+     */
+    private static Node setAt(Node node, int offset, char character) {
+        int leftSize = size(node.left);
+        int length = node.length;
+
+        if (offset < leftSize) return node.with(setAt(node.left, offset, character), node.right);
+        if (offset >= leftSize + length) return node.with(node.left, setAt(node.right, offset - leftSize - length, character));
+
+        int index = offset - leftSize;
+
+        //  Split the run around the modified character
+        if (node.chunk == null) {
+            if (node.fill == character) return node;
+
+            Node before = index == 0 ? null : new Node(node.fill, index, null, null, node.priority);
+            Node after = index == length - 1 ? null : new Node(node.fill, length - index - 1, null, null, node.priority);
+            Node modified = new Node(new char[]{character}, character == '\n' ? 1 : 0, null, null, node.priority);
+            return merge(merge(merge(node.left, before), modified), merge(after, node.right));
+        }
+
+        char[] chunk = node.chunk.clone();
+        int chunkLines = node.chunkLines - (chunk[index] == '\n' ? 1 : 0) + (character == '\n' ? 1 : 0);
+        chunk[index] = character;
+        return new Node(chunk, chunkLines, node.left, node.right, node.priority);
+    }
+
+    /**
+     * Deletes the character at the given offset
+     *
+     * @param node      The root of the subtree
+     * @param offset    The offset of the character, must exist
+     * @return          The new subtree
+     */
+    private static Node deleteAt(Node node, int offset) {
+        int leftSize = size(node.left);
+        int length = node.length;
+
+        if (offset < leftSize) return node.with(deleteAt(node.left, offset), node.right);
+        if (offset >= leftSize + length) return node.with(node.left, deleteAt(node.right, offset - leftSize - length));
+
+        //  The chunk becomes empty, remove the node
+        if (length == 1) return merge(node.left, node.right);
+        if (node.chunk == null) return new Node(node.fill, length - 1, node.left, node.right, node.priority);
+
+        int index = offset - leftSize;
+        char[] chunk = new char[length - 1];
+        System.arraycopy(node.chunk, 0, chunk, 0, index);
+        System.arraycopy(node.chunk, index + 1, chunk, index, length - index - 1);
+        int chunkLines = node.chunkLines - (node.chunk[index] == '\n' ? 1 : 0);
+        return new Node(chunk, chunkLines, node.left, node.right, node.priority);
+    }
+
+    /**
+     * Splits a subtree in two at the given offset
+     *
+     * @param node      The root of the subtree
+     * @param offset    The number of characters kept in the first part
+     * @return          An array holding the first part and the second part
+     */
+    static Node[] split(Node node, int offset) {
+        if (node == null) return new Node[]{null, null};
+
+        int leftSize = size(node.left);
+        int length = node.length;
+
+        if (offset <= leftSize) {
+            Node[] parts = split(node.left, offset);
+            return new Node[]{parts[0], node.with(parts[1], node.right)};
+        }
+        if (offset >= leftSize + length) {
+            Node[] parts = split(node.right, offset - leftSize - length);
+            return new Node[]{node.with(node.left, parts[0]), parts[1]};
+        }
+
+        //  The offset is inside the chunk, split the chunk itself
+        int index = offset - leftSize;
+        if (node.chunk == null) {
+            return new Node[]{
+                    new Node(node.fill, index, node.left, null, node.priority),
+                    new Node(node.fill, length - index, null, node.right, node.priority)
+            };
+        }
+        char[] first = Arrays.copyOfRange(node.chunk, 0, index);
+        char[] second = Arrays.copyOfRange(node.chunk, index, length);
+        return new Node[]{
+                new Node(first, countLines(first), node.left, null, node.priority),
+                new Node(second, countLines(second), null, node.right, node.priority)
+        };
+    }
+
+    /**
+     * Merges two subtrees, all the characters of the first one come before the ones of the second one
+     *
+     * @param first     The first subtree
+     * @param second    The second subtree
+     * @return          The merged subtree
+     */
+    static Node merge(Node first, Node second) {
+        if (first == null) return second;
+        if (second == null) return first;
+
+        if (first.priority > second.priority) {
+            return first.with(first.left, merge(first.right, second));
+        }
+        return second.with(merge(first, second.left), second.right);
+    }
+
+    /**
+     * Builds a subtree holding the given characters
+     *
+     * @param text  The characters of the subtree
+     * @return      The root of the subtree
+     */
+    static Node build(char[] text) {
+        Node node = null;
+        for (int from = 0; from < text.length; from += MAX_CHUNK) {
+            char[] chunk = Arrays.copyOfRange(text, from, Math.min(text.length, from + MAX_CHUNK));
+            node = merge(node, new Node(chunk, countLines(chunk), null, null, ThreadLocalRandom.current().nextInt()));
+        }
+        return node;
+    }
+
+    /**
+     * Builds a balanced subtree holding chunks of the given characters, without copying paths as {@link #merge} does
+     * The priorities decrease with the depth, randomly inside the band of each depth, so the subtree is a valid treap
+     *
+     * @param text  The characters
+     * @param from  The first chunk of the subtree
+     * @param to    The chunk following the last chunk of the subtree
+     * @param depth The depth of the root of the subtree
+     * @return      The root of the subtree, null if it is empty
+     */
+    private static Node buildBalanced(char[] text, int from, int to, int depth) {
+        if (from >= to) return null;
+
+        int middle = (from + to) >>> 1;
+        char[] chunk = Arrays.copyOfRange(text, middle * MAX_CHUNK, Math.min(text.length, (middle + 1) * MAX_CHUNK));
+        int priority = Integer.MAX_VALUE - (depth << PRIORITY_BAND_BITS) - ThreadLocalRandom.current().nextInt(1 << PRIORITY_BAND_BITS);
+        return new Node(chunk, countLines(chunk),
+                buildBalanced(text, from, middle, depth + 1), buildBalanced(text, middle + 1, to, depth + 1), priority);
+    }
+
+    /**
+     * Appends the characters of a subtree to a string builder
+     *
+     * @param node  The root of the subtree
+     * @param sb    The string builder to append to
+     */
+    private static void appendTo(Node node, StringBuilder sb) {
+        while (node != null) {
+            appendTo(node.left, sb);
+            if (node.chunk == null) sb.repeat(node.fill, node.length);
+            else sb.append(node.chunk);
+            node = node.right;
+        }
+    }
+
+    /**
+     * Appends the characters of a subtree between two offsets to a string builder
+     *
+     * @param node  The root of the subtree
+     * @param from  The offset of the first character, relative to the subtree
+     * @param to    The offset after the last character, relative to the subtree
+     * @param sb    The string builder to append to
+     */
+    private static void appendRange(Node node, int from, int to, StringBuilder sb) {
+        while (node != null && from < to) {
+            int leftSize = size(node.left);
+            if (from < leftSize) appendRange(node.left, from, Math.min(to, leftSize), sb);
+
+            int start = Math.max(from - leftSize, 0);
+            int end = Math.min(to - leftSize, node.length);
+            if (start < end) {
+                if (node.chunk == null) sb.repeat(node.fill, end - start);
+                else sb.append(node.chunk, start, end - start);
+            }
+
+            from = Math.max(from - leftSize - node.length, 0);
+            to -= leftSize + node.length;
+            node = node.right;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Provides the engines storing the content of a document.
+ * <p>
+ * This package includes the following classes:
+ * <ul>
+ * <li>{@link fr.univnantes.document.engine.DocumentEngine} - Interface of the operations applied on the content of a document.
+ * <li>{@link fr.univnantes.document.engine.DocumentEngineType} - Enum of the available engines.
+ * <li>{@link fr.univnantes.document.engine.LinkedLineEngine} - Engine storing the document as a doubly linked list of lines, optionally with per-line lock striping.
+ * <li>{@link fr.univnantes.document.engine.LineIndex} - Order statistic index of the lines of a linked line engine.
+ * <li>{@link fr.univnantes.document.engine.RopeEngine} - Engine storing the document as a balanced rope.
+ * <li>{@link fr.univnantes.document.engine.Finger} - Last line edited by a user, reached again without the index.
+ * </ul>
+ */
+package fr.univnantes.document.engine;
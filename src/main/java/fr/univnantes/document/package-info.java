@@ -5,9 +5,16 @@
  * <ul>
  * <li>{@link fr.univnantes.document.Document} - Represents the document as a whole.
  * <li>{@link fr.univnantes.document.DocumentManager} - Manages various operations for the document.
+ * <li>{@link fr.univnantes.document.ResidencyManager} - Evicts the idle documents from memory.
+ * <li>{@link fr.univnantes.document.MemoryBudget} - Accounts for the heap used by the documents and limits it.
  * <li>{@link fr.univnantes.document.LineNode} - Represents a line in the document.
- * <li>{@link fr.univnantes.document.ColumnNode} - Represents a column in the document.
+ * <li>{@link fr.univnantes.document.GapBuffer} - Stores the characters of a line.
+ * <li>{@link fr.univnantes.document.ColumnNode} - Represents a column in the document (unused, replaced by the gap buffer).
  * </ul>
+ * The content of a document is stored by one of the engines of {@link fr.univnantes.document.engine}.
+ * The documents are persisted by {@link fr.univnantes.document.persistence}.
+ * The edits made on an older revision are transformed by {@link fr.univnantes.document.transform}.
+ * A replicated sequence converging without central sequencer is provided by {@link fr.univnantes.document.crdt}.
  * Together, these classes allow for the representation and manipulation of a document in a manner similar to Google Docs.
  */
 package fr.univnantes.document;
\ No newline at end of file
@@ -0,0 +1,461 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stores the documents on the disk
+ * <p>
+ *     Each document has its own directory in the directory of the store, named after the UUID of the document,
+ *     holding the segments of its {@link WriteAheadLog} and its {@link Snapshot}s
+ *     A document created through the store is persisted from its creation, a recovered document resumes its log
+ * </p>
+ * <p>
+ *     A checkpoint rolls the log of a document and captures its content while its edits wait,
+ *     then writes the snapshot in the background and deletes the segments and the snapshots preceding it
+ *     Documents are checkpointed every snapshot interval once enough edits have been appended since their last snapshot,
+ *     so a recovery loads a snapshot and replays a bounded number of edits, whatever the age of the document
+ * </p>
+ * <p>
+ *     The checkpoints, evictions and removals of a document are serialized by a lock of the document,
+ *     the lock of the store is only held to update the bookkeeping, so the snapshots of different documents are written in parallel
+ * </p>
+ */
+public class DocumentStore implements Closeable {
+
+    private static final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("snapshot-writer").daemon().factory());
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentStore.class);
+    private final Path directory;
+    private final long flushIntervalMillis;
+    private final int flushThresholdBytes;
+    private final long snapshotMinEdits;
+    private final ScheduledFuture<?> checkpointTask;
+
+    private final ConcurrentHashMap<UUID, Document> documents = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Long> checkpointedAppends = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Object> documentLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new store without periodic checkpoints, the directory is created if it does not exist
+     *
+     * @param directory             The directory holding the documents
+     * @param flushIntervalMillis   The interval between two group commits of a log, in milliseconds, 0 to force every edit
+     * @param flushThresholdBytes   The number of buffered bytes starting a group commit before the end of the interval
+     * @throws IOException If the directory cannot be created
+     */
+    public DocumentStore(Path directory, long flushIntervalMillis, int flushThresholdBytes) throws IOException {
+        this(directory, flushIntervalMillis, flushThresholdBytes, 0, 1);
+    }
+
+    /**
+     * Creates a new store, the directory is created if it does not exist
+     *
+     * @param directory             The directory holding the documents
+     * @param flushIntervalMillis   The interval between two group commits of a log, in milliseconds, 0 to force every edit
+     * @param flushThresholdBytes   The number of buffered bytes starting a group commit before the end of the interval
+     * @param snapshotIntervalMillis The interval between two checkpoint rounds, in milliseconds, 0 to disable them
+     * @param snapshotMinEdits      The number of edits since the last snapshot of a document required to checkpoint it
+     * @throws IOException If the directory cannot be created
+     */
+    public DocumentStore(Path directory, long flushIntervalMillis, int flushThresholdBytes,
+                         long snapshotIntervalMillis, long snapshotMinEdits) throws IOException {
+        if (directory == null) throw new IllegalArgumentException("Directory is null");
+        if (flushIntervalMillis < 0) throw new IllegalArgumentException("Flush interval is negative");
+        if (flushThresholdBytes < 1) throw new IllegalArgumentException("Flush threshold is not positive");
+        if (snapshotIntervalMillis < 0) throw new IllegalArgumentException("Snapshot interval is negative");
+        if (snapshotMinEdits < 1) throw new IllegalArgumentException("Snapshot minimum edits is not positive");
+
+        this.directory = Files.createDirectories(directory);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushThresholdBytes = flushThresholdBytes;
+        this.snapshotMinEdits = snapshotMinEdits;
+        checkpointTask = snapshotIntervalMillis == 0 ? null : checkpointer.scheduleWithFixedDelay(
+                this::checkpointAll, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the directory holding the documents
+     * @return  The directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the directory of a document
+     *
+     * @param documentId    The UUID of the document
+     * @return              The directory of the document
+     */
+    public Path getDocumentDirectory(UUID documentId) {
+        return directory.resolve(documentId.toString());
+    }
+
+    /**
+     * Returns the log of a document
+     *
+     * @param documentId    The UUID of the document
+     * @return              The log, null if the document is not stored
+     */
+    public WriteAheadLog getLog(UUID documentId) {
+        Document document = documents.get(documentId);
+        return document == null ? null : document.getWriteAheadLog();
+    }
+
+    /**
+     * Starts persisting a new document
+     * The document must not hold any content yet
+     *
+     * @param document  The document
+     * @throws IOException If the log cannot be created
+     */
+    public void create(Document document) throws IOException {
+        if (document == null) throw new IllegalArgumentException("Document is null");
+
+        Path documentDirectory = Files.createDirectories(getDocumentDirectory(document.getUUID()));
+        WriteAheadLog log = WriteAheadLog.create(documentDirectory, 0, document.getUUID(),
+                document.getEngineType(), document.getName(), flushIntervalMillis, flushThresholdBytes);
+        attach(document, log);
+    }
+
+    /**
+     * Attaches a log to a document and starts tracking it
+     *
+     * @param document  The document
+     * @param log       The log of the document
+     */
+    private void attach(Document document, WriteAheadLog log) {
+        document.setWriteAheadLog(log);
+        checkpointedAppends.put(document.getUUID(), 0L);
+        documents.put(document.getUUID(), document);
+    }
+
+    /**
+     * Check if a document is stored on the disk, whether it is in memory or not
+     *
+     * @param documentId    The UUID of the document
+     * @return              True if the document is stored, false otherwise
+     */
+    public boolean contains(UUID documentId) {
+        return Files.isDirectory(getDocumentDirectory(documentId));
+    }
+
+    /**
+     * Loads a document evicted from memory, from its latest snapshot and the following segments
+     *
+     * @param documentId    The UUID of the document
+     * @return              The document, persisted from now on, null if it is not stored
+     * @throws IOException If the document cannot be read
+     */
+    public Document load(UUID documentId) throws IOException {
+        if (documentId == null) throw new IllegalArgumentException("Document identifier is null");
+        if (documents.containsKey(documentId)) throw new IllegalStateException("Document is already loaded");
+
+        Path documentDirectory = getDocumentDirectory(documentId);
+        if (!Files.isDirectory(documentDirectory)) return null;
+        return recover(documentId, documentDirectory);
+    }
+
+    /**
+     * Writes a document to the disk and stops tracking it, so it can be dropped from memory
+     * The document is checkpointed first if it has been edited since its last snapshot, so it is loaded back from a mapped snapshot
+     * The document must not be edited anymore, its log is closed
+     *
+     * @param documentId    The UUID of the document
+     * @return              True if the document has been written, false if it is not stored
+     * @throws IOException If the document cannot be written, it is then still tracked
+     */
+    public boolean evict(UUID documentId) throws IOException {
+        Document document = documents.get(documentId);
+        if (document == null) return false;
+
+        Object lock = lockOf(documentId);
+        synchronized (lock) {
+            WriteAheadLog log = document.getWriteAheadLog();
+            if (log != null && log.getAppendCount() > checkpointedAppends.getOrDefault(documentId, 0L)) {
+                checkpoint(documentId);
+            }
+
+            synchronized (this) {
+                if (!documents.remove(documentId, document)) return false;
+                checkpointedAppends.remove(documentId);
+                documentLocks.remove(documentId, lock);
+                document.setWriteAheadLog(null);
+                if (log != null) log.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops persisting a document and deletes its directory, whether it is in memory or not
+     *
+     * @param documentId    The UUID of the document
+     * @throws IOException If the directory cannot be deleted
+     */
+    public void remove(UUID documentId) throws IOException {
+        Object lock = lockOf(documentId);
+        synchronized (lock) {
+            Document document;
+            synchronized (this) {
+                document = documents.remove(documentId);
+                checkpointedAppends.remove(documentId);
+                documentLocks.remove(documentId, lock);
+            }
+
+            //  An evicted document is not tracked anymore, but its directory is still on the disk
+            if (document != null) {
+                WriteAheadLog log = document.getWriteAheadLog();
+                document.setWriteAheadLog(null);
+                if (log != null) log.delete();
+            }
+            deleteRecursively(getDocumentDirectory(documentId));
+        }
+    }
+
+    /**
+     * Returns the lock serializing the checkpoints, the eviction and the removal of a document
+     *
+     * @param documentId    The UUID of the document
+     * @return              The lock of the document
+     */
+    private Object lockOf(UUID documentId) {
+        return documentLocks.computeIfAbsent(documentId, id -> new Object());
+    }
+
+    /**
+     * Takes a snapshot of a document and deletes the segments and snapshots it makes useless
+     *
+     * @param documentId    The UUID of the document
+     * @return              The file of the snapshot, null if the document is not stored
+     * @throws IOException If the snapshot cannot be written
+     */
+    public Path checkpoint(UUID documentId) throws IOException {
+        Document document = documents.get(documentId);
+        if (document == null) return null;
+
+        synchronized (lockOf(documentId)) {
+            //  The document may have been evicted or removed while waiting for its lock
+            if (documents.get(documentId) != document) return null;
+
+            WriteAheadLog log = document.getWriteAheadLog();
+            if (log == null) return null;
+            long appends = log.getAppendCount();
+
+            //  Only the roll and the capture block the edits, the content is built and written afterward
+            WriteAheadLog.Checkpoint checkpoint = document.checkpoint();
+            if (checkpoint == null) return null;
+
+            Path documentDirectory = getDocumentDirectory(documentId);
+            Snapshot snapshot = new Snapshot(documentId, document.getEngineType(), checkpoint.name(), checkpoint.segment(), checkpoint.content().get());
+            Path path = snapshot.write(documentDirectory);
+
+            synchronized (this) {
+                checkpointedAppends.put(documentId, appends);
+                deleteBefore(documentDirectory, checkpoint.segment());
+            }
+            return path;
+        }
+    }
+
+    /**
+     * Takes a snapshot of every document edited enough since its last snapshot
+     */
+    private void checkpointAll() {
+        for (Document document : documents.values()) {
+            WriteAheadLog log = document.getWriteAheadLog();
+            if (log == null) continue;
+
+            long edits = log.getAppendCount() - checkpointedAppends.getOrDefault(document.getUUID(), 0L);
+            if (edits < snapshotMinEdits) continue;
+
+            try {
+                checkpoint(document.getUUID());
+            } catch (IOException | RuntimeException e) {
+                logger.error("An error occurred while taking a snapshot of document {}, {}", document.getUUID(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments and the snapshots of a document preceding a segment
+     *
+     * @param documentDirectory The directory of the document
+     * @param segment           The first segment to keep
+     * @throws IOException If the directory cannot be listed
+     */
+    private static void deleteBefore(Path documentDirectory, long segment) throws IOException {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(documentDirectory)) {
+            for (Path path : paths) {
+                long logSegment = WriteAheadLog.segmentOf(path);
+                long snapshotSegment = Snapshot.segmentOf(path);
+                if ((logSegment >= 0 && logSegment < segment) || (snapshotSegment >= 0 && snapshotSegment < segment)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory and its content
+     *
+     * @param path  The directory
+     * @throws IOException If a file cannot be deleted
+     */
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds every document stored in the directory from its latest snapshot and the following segments
+     * A document which cannot be read is skipped and left untouched
+     *
+     * @return  The recovered documents, persisted from now on
+     * @throws IOException If the directory cannot be listed
+     */
+    public List<Document> recover() throws IOException {
+        List<Document> recovered = new ArrayList<>();
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path path : paths) {
+                try {
+                    recovered.add(recover(UUID.fromString(path.getFileName().toString()), path));
+                } catch (IOException | IllegalArgumentException e) {
+                    logger.error("An error occurred while recovering the document of {}, {}", path, e.getMessage());
+                }
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * Returns the numbers of the files of a kind in the directory of a document, in ascending order
+     *
+     * @param documentDirectory The directory of the document
+     * @param snapshots         True to list the snapshots, false to list the segments
+     * @return                  The numbers of the files
+     * @throws IOException If the directory cannot be listed
+     */
+    private static List<Long> list(Path documentDirectory, boolean snapshots) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(documentDirectory)) {
+            for (Path path : paths) {
+                long number = snapshots ? Snapshot.segmentOf(path) : WriteAheadLog.segmentOf(path);
+                if (number >= 0) numbers.add(number);
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /**
+     * Rebuilds a document from its latest valid snapshot and the segments following it
+     *
+     * @param documentId        The UUID of the document
+     * @param documentDirectory The directory of the document
+     * @return                  The recovered document, persisted from now on
+     * @throws IOException If the document cannot be read
+     */
+    private Document recover(UUID documentId, Path documentDirectory) throws IOException {
+        long start = System.nanoTime();
+
+        //  The latest readable snapshot, an older one is used if the latest is damaged
+        Snapshot.Mapped snapshot = null;
+        List<Long> snapshots = list(documentDirectory, true);
+        for (int i = snapshots.size() - 1; i >= 0 && snapshot == null; i--) {
+            try {
+                snapshot = Snapshot.map(Snapshot.path(documentDirectory, snapshots.get(i)));
+            } catch (IOException e) {
+                logger.warn("Ignoring snapshot {} of document {}, {}", snapshots.get(i), documentId, e.getMessage());
+            }
+        }
+
+        long firstSegment = snapshot == null ? 0 : snapshot.segment();
+        List<Long> segments = list(documentDirectory, false).stream().filter(segment -> segment >= firstSegment).toList();
+        if (snapshot == null && segments.isEmpty()) throw new IOException("No snapshot nor write-ahead log");
+        if (snapshot == null && segments.getFirst() != 0) throw new IOException("No valid snapshot before segment " + segments.getFirst());
+
+        Document document = null;
+        if (snapshot != null) {
+            if (!snapshot.documentId().equals(documentId)) throw new IOException("Snapshot of another document");
+            document = new Document(documentId, snapshot.name(), snapshot.engineType());
+            document.load(snapshot.lines());
+        }
+
+        int replayed = 0;
+        int rejected = 0;
+        WriteAheadLog.Recovery last = null;
+        for (long segment : segments) {
+            last = WriteAheadLog.read(WriteAheadLog.segmentPath(documentDirectory, segment));
+            if (!last.documentId().equals(documentId)) throw new IOException("Write-ahead log of another document");
+            if (document == null) document = new Document(documentId, last.name(), last.engineType());
+
+            for (Edit edit : last.edits()) {
+                if (!edit.applyTo(document)) rejected++;
+            }
+            replayed += last.edits().size();
+        }
+
+        WriteAheadLog log = last == null
+                ? WriteAheadLog.create(documentDirectory, firstSegment, documentId, document.getEngineType(), document.getName(), flushIntervalMillis, flushThresholdBytes)
+                : WriteAheadLog.open(last, documentDirectory, segments.getLast(), flushIntervalMillis, flushThresholdBytes);
+        attach(document, log);
+
+        //  Files left by a checkpoint interrupted before its cleanup
+        deleteBefore(documentDirectory, firstSegment);
+
+        logger.info("Recovered document {} from {} with {} edits in {} ms, {} rejected",
+                documentId, snapshot == null ? "its log" : "snapshot " + snapshot.segment(),
+                replayed, (System.nanoTime() - start) / 1_000_000, rejected);
+        return document;
+    }
+
+    /**
+     * Writes the buffered edits of every log and closes them
+     *
+     * @throws IOException If a log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (checkpointTask != null) checkpointTask.cancel(false);
+
+        IOException failure = null;
+        for (Document document : documents.values()) {
+            WriteAheadLog log = document.getWriteAheadLog();
+            if (log == null) continue;
+            try {
+                log.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        documents.clear();
+        checkpointedAppends.clear();
+        documentLocks.clear();
+        if (failure != null) throw failure;
+    }
+}
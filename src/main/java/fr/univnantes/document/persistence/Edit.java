@@ -0,0 +1,247 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.Document;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents an edit applied to a document.
+ * <p>
+ *     An edit holds the data of an applied instruction, without its author.
+ *     It is written to the write-ahead log of its document and replayed on the document when it is recovered.
+ *     Only the fields used by its type are meaningful, the others are 0 or null.
+ *
+ *     The binary form of an edit starts with the opcode of its type, followed by its fields:
+ *     INSERT_CHAR      opcode line(int) column(int) character(char)
+ *     INSERT_LINE_BRK  opcode line(int) column(int)
+ *     DELETE_CHAR      opcode line(int) column(int)
+ *     DELETE_LINE_BRK  opcode line(int)
+ *     RENAME           opcode length(int) name(UTF-8)
+ *     MODIFY_CHAR      opcode line(int) column(int) character(char)
+ *     INSERT_TEXT      opcode line(int) column(int) length(int) text(char[length])
+ *     DELETE_RANGE     opcode line(int) column(int) endLine(int) endColumn(int)
+ * </p>
+ *
+ * @param type      The type of the edit
+ * @param line      The line of the edit, starts at 0
+ * @param column    The column of the edit, starts at 0
+ * @param endLine   The line of the end of a deleted range, starts at 0
+ * @param endColumn The column of the end of a deleted range, starts at 0
+ * @param character The inserted character
+ * @param name      The new name of the document
+ * @param text      The inserted text, lines separated by line breaks
+ */
+public record Edit(EditType type, int line, int column, int endLine, int endColumn, char character, String name, String text) {
+
+    /**
+     * Creates a new edit
+     *
+     * @throws IllegalArgumentException If the type is null, a coordinate is negative, a rename has no name or an insertion of text has no text
+     */
+    public Edit {
+        if (type == null) throw new IllegalArgumentException("Edit type is null");
+        if (line < 0) throw new IllegalArgumentException("Line is negative");
+        if (column < 0) throw new IllegalArgumentException("Column is negative");
+        if (endLine < 0 || endColumn < 0) throw new IllegalArgumentException("End of the range is negative");
+        if (type == EditType.RENAME && name == null) throw new IllegalArgumentException("Name is null");
+        if (type == EditType.INSERT_TEXT && text == null) throw new IllegalArgumentException("Text is null");
+    }
+
+    /**
+     * Returns the insertion of a character
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     * @param character The inserted character
+     * @return          The edit
+     */
+    public static Edit insert(int line, int column, char character) {
+        return new Edit(EditType.INSERT_CHAR, line, column, 0, 0, character, null, null);
+    }
+
+    /**
+     * Returns the insertion of a text
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     * @param text      The inserted text, lines separated by line breaks
+     * @return          The edit
+     */
+    public static Edit insertText(int line, int column, String text) {
+        return new Edit(EditType.INSERT_TEXT, line, column, 0, 0, '\0', null, text);
+    }
+
+    /**
+     * Returns the replacement of a character
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     * @param character The new character
+     * @return          The edit
+     */
+    public static Edit modify(int line, int column, char character) {
+        return new Edit(EditType.MODIFY_CHAR, line, column, 0, 0, character, null, null);
+    }
+
+    /**
+     * Returns the deletion of a character
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     * @return          The edit
+     */
+    public static Edit delete(int line, int column) {
+        return new Edit(EditType.DELETE_CHAR, line, column, 0, 0, '\0', null, null);
+    }
+
+    /**
+     * Returns the insertion of a line break
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     * @return          The edit
+     */
+    public static Edit insertLineBreak(int line, int column) {
+        return new Edit(EditType.INSERT_LINE_BRK, line, column, 0, 0, '\0', null, null);
+    }
+
+    /**
+     * Returns the deletion of a line break, the line is merged with the previous one
+     *
+     * @param line  The line, starts at 1
+     * @return      The edit
+     */
+    public static Edit deleteLineBreak(int line) {
+        return new Edit(EditType.DELETE_LINE_BRK, line, 0, 0, 0, '\0', null, null);
+    }
+
+    /**
+     * Returns the deletion of the characters between two positions, line breaks included
+     *
+     * @param startLine     The line of the first deleted character, starts at 0
+     * @param startColumn   The column of the first deleted character, starts at 0
+     * @param endLine       The line of the end of the range, starts at 0
+     * @param endColumn     The column of the end of the range, starts at 0
+     * @return              The edit
+     */
+    public static Edit deleteRange(int startLine, int startColumn, int endLine, int endColumn) {
+        return new Edit(EditType.DELETE_RANGE, startLine, startColumn, endLine, endColumn, '\0', null, null);
+    }
+
+    /**
+     * Returns the renaming of the document
+     *
+     * @param name  The new name of the document
+     * @return      The edit
+     */
+    public static Edit rename(String name) {
+        return new Edit(EditType.RENAME, 0, 0, 0, 0, '\0', name, null);
+    }
+
+    /**
+     * Applies the edit to a document
+     *
+     * @param document  The document
+     * @return          True if the edit has been applied, false otherwise
+     */
+    public boolean applyTo(Document document) {
+        return switch (type) {
+            case INSERT_CHAR -> document.insert(line, column, character);
+            case INSERT_TEXT -> document.insertText(line, column, text);
+            case MODIFY_CHAR -> document.modify(line, column, character);
+            case INSERT_LINE_BRK -> document.insertLineBreak(line, column);
+            case DELETE_CHAR -> document.delete(line, column);
+            case DELETE_LINE_BRK -> document.deleteLineBreak(line);
+            case DELETE_RANGE -> document.deleteRange(line, column, endLine, endColumn);
+            case RENAME -> {
+                document.setName(name);
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Returns the size of the binary form of the edit
+     * @return  The number of bytes written by {@link #write(ByteBuffer)}
+     */
+    public int size() {
+        return switch (type) {
+            case INSERT_CHAR, MODIFY_CHAR -> 1 + 4 + 4 + 2;
+            case INSERT_LINE_BRK, DELETE_CHAR -> 1 + 4 + 4;
+            case DELETE_LINE_BRK -> 1 + 4;
+            case RENAME -> 1 + 4 + name.getBytes(StandardCharsets.UTF_8).length;
+            case INSERT_TEXT -> 1 + 4 + 4 + 4 + text.length() * 2;
+            case DELETE_RANGE -> 1 + 4 + 4 + 4 + 4;
+        };
+    }
+
+    /**
+     * Writes the binary form of the edit
+     *
+     * @param buffer    The buffer, with at least {@link #size()} remaining bytes
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.put(type.opcode);
+        switch (type) {
+            case INSERT_CHAR, MODIFY_CHAR -> buffer.putInt(line).putInt(column).putChar(character);
+            case INSERT_LINE_BRK, DELETE_CHAR -> buffer.putInt(line).putInt(column);
+            case DELETE_LINE_BRK -> buffer.putInt(line);
+            case DELETE_RANGE -> buffer.putInt(line).putInt(column).putInt(endLine).putInt(endColumn);
+            case RENAME -> {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length).put(bytes);
+            }
+            case INSERT_TEXT -> {
+                //  The characters are written as they are, so a text holding unpaired surrogates is replayed unchanged
+                buffer.putInt(line).putInt(column).putInt(text.length());
+                for (int i = 0; i < text.length(); i++) buffer.putChar(text.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Reads the binary form of an edit
+     *
+     * @param buffer    The buffer, positioned on the opcode of the edit
+     * @return          The edit
+     * @throws IllegalArgumentException If the buffer does not hold a valid edit
+     */
+    public static Edit read(ByteBuffer buffer) {
+        if (buffer.remaining() < 1) throw new IllegalArgumentException("Edit is empty");
+
+        EditType type = EditType.fromOpcode(buffer.get());
+        if (type == null) throw new IllegalArgumentException("Opcode is unknown");
+
+        try {
+            return switch (type) {
+                case INSERT_CHAR -> insert(buffer.getInt(), buffer.getInt(), buffer.getChar());
+                case MODIFY_CHAR -> modify(buffer.getInt(), buffer.getInt(), buffer.getChar());
+                case INSERT_LINE_BRK -> insertLineBreak(buffer.getInt(), buffer.getInt());
+                case DELETE_CHAR -> delete(buffer.getInt(), buffer.getInt());
+                case DELETE_LINE_BRK -> deleteLineBreak(buffer.getInt());
+                case DELETE_RANGE -> deleteRange(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                case RENAME -> {
+                    int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Name is truncated");
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    yield rename(new String(bytes, StandardCharsets.UTF_8));
+                }
+                case INSERT_TEXT -> {
+                    int line = buffer.getInt();
+                    int column = buffer.getInt();
+                    int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining() / 2) throw new IllegalArgumentException("Text is truncated");
+                    char[] chars = new char[length];
+                    buffer.asCharBuffer().get(chars);
+                    buffer.position(buffer.position() + length * 2);
+                    yield insertText(line, column, new String(chars));
+                }
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Edit is truncated");
+        }
+    }
+}
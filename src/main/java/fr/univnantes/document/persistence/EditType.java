@@ -0,0 +1,59 @@
+package fr.univnantes.document.persistence;
+
+/**
+ * Represents the types of edits recorded in the write-ahead log.
+ * <p>
+ *     The opcode of an edit type is the first byte of its records, it must never change once records are written.
+ * </p>
+ */
+public enum EditType {
+    INSERT_CHAR("INSERT_CHAR", (byte) 0x01),
+    INSERT_LINE_BRK("INSERT_LINE_BRK", (byte) 0x02),
+    DELETE_CHAR("DELETE_CHAR", (byte) 0x03),
+    DELETE_LINE_BRK("DELETE_LINE_BRK", (byte) 0x04),
+    RENAME("RENAME", (byte) 0x05),
+    MODIFY_CHAR("MODIFY_CHAR", (byte) 0x06),
+    INSERT_TEXT("INSERT_TEXT", (byte) 0x07),
+    DELETE_RANGE("DELETE_RANGE", (byte) 0x08);
+
+    private static final EditType[] BY_OPCODE = new EditType[256];
+
+    static {
+        for (EditType editType : values()) {
+            BY_OPCODE[editType.opcode & 0xFF] = editType;
+        }
+    }
+
+    public final String type;
+    public final byte opcode;
+
+    /**
+     * Creates a new edit type
+     *
+     * @param type      The name of the edit type
+     * @param opcode    The first byte of the records of this type
+     */
+    EditType(String type, byte opcode) {
+        this.type = type;
+        this.opcode = opcode;
+    }
+
+    /**
+     * Returns the edit type from its opcode
+     *
+     * @param opcode    The first byte of a record
+     * @return          The edit type, null if the opcode is unknown
+     */
+    public static EditType fromOpcode(byte opcode) {
+        return BY_OPCODE[opcode & 0xFF];
+    }
+
+    /**
+     * Returns the type of the edit.
+     * @return The type.
+     */
+    @Override
+    public String toString() {
+        return type;
+    }
+}
@@ -0,0 +1,93 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.ResidencyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Holds the persistence configuration.
+ * <p>
+ *     When the property persistence.enabled is true, the documents stored in persistence.directory are recovered on startup,
+ *     and every document created afterward is persisted.
+ *     The properties persistence.flush-interval-ms and persistence.flush-threshold-bytes select the group commit of the logs,
+ *     persistence.snapshot-interval-ms and persistence.snapshot-min-edits select how often the documents are checkpointed.
+ * </p>
+ * <p>
+ *     When persistence.residency.enabled is true, the stored documents are not loaded on startup but on their first request,
+ *     and the idle documents are evicted from memory by a {@link ResidencyManager}
+ *     after persistence.residency.idle-ms or beyond persistence.residency.max-documents.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "persistence.enabled", havingValue = "true")
+public class PersistenceConfig {
+
+    @Value("${persistence.directory:data}")
+    private String directory;
+
+    @Value("${persistence.flush-interval-ms:50}")
+    private long flushIntervalMillis;
+
+    @Value("${persistence.flush-threshold-bytes:65536}")
+    private int flushThresholdBytes;
+
+    @Value("${persistence.snapshot-interval-ms:60000}")
+    private long snapshotIntervalMillis;
+
+    @Value("${persistence.snapshot-min-edits:10000}")
+    private long snapshotMinEdits;
+
+    @Value("${persistence.residency.enabled:true}")
+    private boolean residencyEnabled;
+
+    @Value("${persistence.residency.idle-ms:600000}")
+    private long residencyIdleMillis;
+
+    @Value("${persistence.residency.max-documents:1000}")
+    private int residencyMaxDocuments;
+
+    @Value("${persistence.residency.interval-ms:10000}")
+    private long residencyIntervalMillis;
+
+    /**
+     * Creates the document store, recovers its documents into the document manager unless they are loaded on demand,
+     * and attaches it to the manager
+     *
+     * @return  The document store
+     * @throws IOException If the directory cannot be read
+     */
+    @Bean(destroyMethod = "close")
+    public DocumentStore documentStore() throws IOException {
+        DocumentStore store = new DocumentStore(Path.of(directory), flushIntervalMillis, flushThresholdBytes,
+                snapshotIntervalMillis, snapshotMinEdits);
+        DocumentManager documentManager = DocumentManager.getInstance();
+
+        //  With residency, the documents are loaded on their first request
+        if (!residencyEnabled) {
+            for (Document document : store.recover()) {
+                documentManager.addDocument(document);
+            }
+        }
+        documentManager.setStore(store);
+        return store;
+    }
+
+    /**
+     * Creates the residency manager evicting the idle documents to the store
+     *
+     * @param documentStore The document store, attached to the document manager
+     * @return              The residency manager
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "persistence.residency.enabled", havingValue = "true", matchIfMissing = true)
+    public ResidencyManager residencyManager(DocumentStore documentStore) {
+        return new ResidencyManager(DocumentManager.getInstance(), residencyIdleMillis, residencyMaxDocuments, residencyIntervalMillis);
+    }
+}
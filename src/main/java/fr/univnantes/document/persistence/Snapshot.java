@@ -0,0 +1,280 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.LineNode;
+import fr.univnantes.document.engine.DocumentEngineType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Represents the state of a document at a point of its write-ahead log.
+ * <p>
+ *     A snapshot holds the name and the content of a document before the edits of its segment,
+ *     so a document is recovered by loading its latest snapshot and replaying the segments from the one of the snapshot.
+ *
+ *     The file of a snapshot holds, in order:
+ *     magic(int) version(short) documentId(2 longs) engine(UTF) name(UTF) segment(long)
+ *     lineCount(int) lineStarts(lineCount ints) length(int) content(UTF-8) crc(int)
+ *     The line starts are the offsets of the lines in the content, so the lines are sliced without scanning it,
+ *     and the CRC32 covers every preceding byte.
+ *     The first version of the format had no line starts, its files are still read by scanning the content for line breaks.
+ *     A snapshot is written to a temporary file which is renamed once forced to the disk, so a snapshot file is never partial.
+ * </p>
+ * <p>
+ *     A snapshot is loaded by mapping its file in memory, the lines are slices of the mapping
+ *     which are only decoded by the engines when they are read or edited, see {@link Mapped}
+ * </p>
+ *
+ * @param documentId    The identifier of the document
+ * @param engineType    The engine of the document
+ * @param name          The name of the document
+ * @param segment       The first segment holding the edits applied after the snapshot
+ * @param content       The content of the document
+ */
+public record Snapshot(UUID documentId, DocumentEngineType engineType, String name, long segment, String content) {
+
+    public static final int MAGIC = 0x45534E50;
+    public static final short VERSION = 2;
+    public static final String EXTENSION = ".snap";
+
+    /**
+     * Represents a snapshot mapped in memory
+     *
+     * @param documentId    The identifier of the document
+     * @param engineType    The engine of the document
+     * @param name          The name of the document
+     * @param segment       The first segment holding the edits applied after the snapshot
+     * @param lines         The lines of the document encoded in UTF-8, without their line breaks, slices of the mapped file
+     */
+    public record Mapped(UUID documentId, DocumentEngineType engineType, String name, long segment, List<ByteBuffer> lines) {
+
+        /**
+         * Decodes the lines into a snapshot
+         * @return  The snapshot
+         */
+        public Snapshot decode() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) sb.append('\n');
+                sb.append(LineNode.decode(lines.get(i)));
+            }
+            return new Snapshot(documentId, engineType, name, segment, sb.toString());
+        }
+    }
+
+    /**
+     * Creates a new snapshot
+     *
+     * @throws IllegalArgumentException If a field is null or the segment is negative
+     */
+    public Snapshot {
+        if (documentId == null) throw new IllegalArgumentException("Document identifier is null");
+        if (engineType == null) throw new IllegalArgumentException("Engine type is null");
+        if (name == null) throw new IllegalArgumentException("Name is null");
+        if (segment < 0) throw new IllegalArgumentException("Segment is negative");
+        if (content == null) throw new IllegalArgumentException("Content is null");
+    }
+
+    /**
+     * Returns the file of the snapshot taken at a segment
+     *
+     * @param directory The directory of the document
+     * @param segment   The segment of the snapshot
+     * @return          The file of the snapshot
+     */
+    public static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%016d", segment) + EXTENSION);
+    }
+
+    /**
+     * Returns the segment of a snapshot from its file
+     *
+     * @param path  The file of the snapshot
+     * @return      The segment of the snapshot, -1 if the file is not a snapshot
+     */
+    public static long segmentOf(Path path) {
+        String fileName = path.getFileName().toString();
+        if (!fileName.endsWith(EXTENSION)) return -1;
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the snapshot in the directory of its document
+     *
+     * @param directory The directory of the document
+     * @return          The file of the snapshot
+     * @throws IOException If the snapshot cannot be written
+     */
+    public Path write(Path directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length() + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(documentId.getMostSignificantBits());
+            out.writeLong(documentId.getLeastSignificantBits());
+            out.writeUTF(engineType.type);
+            out.writeUTF(name);
+            out.writeLong(segment);
+            byte[] text = content.getBytes(StandardCharsets.UTF_8);
+
+            //  A line break byte never appears inside a multibyte UTF-8 sequence
+            int lineCount = 1;
+            for (byte b : text) {
+                if (b == '\n') lineCount++;
+            }
+            out.writeInt(lineCount);
+            out.writeInt(0);
+            for (int i = 0; i < text.length; i++) {
+                if (text[i] == '\n') out.writeInt(i + 1);
+            }
+            out.writeInt(text.length);
+            out.write(text);
+        }
+        CRC32 crc = new CRC32();
+        byte[] data = bytes.toByteArray();
+        crc.update(data);
+
+        Path target = path(directory, segment);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(data.length + 4).put(data).putInt((int) crc.getValue()).flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        return Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a snapshot, decoding its content
+     *
+     * @param path  The file of the snapshot
+     * @return      The snapshot
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static Snapshot read(Path path) throws IOException {
+        return map(path).decode();
+    }
+
+    /**
+     * Maps a snapshot in memory and slices its lines without decoding them
+     * The whole file is checked against its CRC32, which reads it once at the speed of the page cache
+     *
+     * @param path  The file of the snapshot
+     * @return      The mapped snapshot
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static Mapped map(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4) throw new IOException("Truncated snapshot: " + path);
+            if (size > Integer.MAX_VALUE) throw new IOException("Snapshot too large: " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int end = buffer.capacity() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, end));
+        if ((int) crc.getValue() != buffer.getInt(end)) throw new IOException("Corrupted snapshot: " + path);
+        buffer.limit(end);
+
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a snapshot: " + path);
+            short version = buffer.getShort();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported snapshot version: " + path);
+            UUID documentId = new UUID(buffer.getLong(), buffer.getLong());
+            DocumentEngineType engineType = DocumentEngineType.fromString(readUTF(buffer));
+            if (engineType == null) throw new IOException("Unknown engine in snapshot: " + path);
+            String name = readUTF(buffer);
+            long segment = buffer.getLong();
+
+            int[] lineStarts = null;
+            if (version != 1) {
+                int lineCount = buffer.getInt();
+                if (lineCount < 1 || lineCount > buffer.remaining() / 4) throw new IOException("Invalid line count in snapshot: " + path);
+                lineStarts = new int[lineCount];
+                for (int i = 0; i < lineCount; i++) lineStarts[i] = buffer.getInt();
+            }
+
+            int length = buffer.getInt();
+            if (length != buffer.remaining()) throw new IOException("Invalid content length in snapshot: " + path);
+            ByteBuffer text = buffer.slice(buffer.position(), length);
+            if (lineStarts == null) lineStarts = scanLineStarts(text);
+
+            return new Mapped(documentId, engineType, name, segment, slice(text, lineStarts, path));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Returns the offsets of the lines of a content by scanning it for line breaks
+     *
+     * @param text  The content encoded in UTF-8
+     * @return      The offsets of the lines
+     */
+    private static int[] scanLineStarts(ByteBuffer text) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < text.limit(); i++) {
+            if (text.get(i) == '\n') starts.add(i + 1);
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Slices the lines of a content, without their line breaks
+     *
+     * @param text          The content encoded in UTF-8
+     * @param lineStarts    The offsets of the lines, the first one is 0
+     * @param path          The file of the snapshot, for the error messages
+     * @return              The lines
+     * @throws IOException If the offsets do not match line breaks of the content
+     */
+    private static List<ByteBuffer> slice(ByteBuffer text, int[] lineStarts, Path path) throws IOException {
+        if (lineStarts[0] != 0) throw new IOException("Invalid line offsets in snapshot: " + path);
+
+        List<ByteBuffer> lines = new ArrayList<>(lineStarts.length);
+        for (int i = 0; i < lineStarts.length; i++) {
+            int start = lineStarts[i];
+            int end = i + 1 < lineStarts.length ? lineStarts[i + 1] - 1 : text.limit();
+            if (end < start || end > text.limit() || (i + 1 < lineStarts.length && text.get(end) != '\n')) {
+                throw new IOException("Invalid line offsets in snapshot: " + path);
+            }
+            lines.add(text.slice(start, end - start));
+        }
+        return lines;
+    }
+
+    /**
+     * Reads a string written by {@link DataOutputStream#writeUTF(String)}
+     *
+     * @param buffer    The buffer
+     * @return          The string
+     * @throws IOException If the string is truncated or malformed
+     */
+    private static String readUTF(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[2 + Short.toUnsignedInt(buffer.getShort(buffer.position()))];
+        buffer.get(bytes);
+        return DataInputStream.readUTF(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+}
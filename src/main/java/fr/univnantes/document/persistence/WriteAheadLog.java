@@ -0,0 +1,492 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of the edits of a document.
+ * <p>
+ *     Each segment starts with a header holding the identifier, the engine and the name of the document when the segment was created,
+ *     followed by one record per edit: the length of the edit, the CRC32 of the edit and the binary form of the {@link Edit}.
+ * </p>
+ * <p>
+ *     Appends only copy the record into a memory buffer, the buffer is written and forced to the disk by a group commit,
+ *     every flush interval or as soon as it holds the flush threshold, so an edit never waits for the disk.
+ *     The edits appended since the last group commit are lost if the process crashes.
+ *     With a flush interval of 0, every append is forced to the disk before returning.
+ * </p>
+ * <p>
+ *     The log is split in numbered segments, files of the directory of the document, each one starting with its own header.
+ *     Rolling the log starts a new segment, so the segments preceding a snapshot can be deleted as a whole.
+ * </p>
+ * <p>
+ *     A record cut by a crash is detected by its length or its CRC32 when the log is read,
+ *     the log is then truncated after the last valid record when it is opened again.
+ * </p>
+ */
+public class WriteAheadLog implements Closeable {
+
+    public static final int MAGIC = 0x4557414C;
+    public static final short VERSION = 1;
+    public static final String SEGMENT_EXTENSION = ".wal";
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("wal-flusher").daemon().factory());
+
+    private final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    private final Path directory;
+    private final UUID documentId;
+    private final DocumentEngineType engineType;
+    private final long flushIntervalMillis;
+    private final int flushThresholdBytes;
+    private final ScheduledFuture<?> flushTask;
+
+    private final Object ioLock = new Object();
+    private long segment;
+    private FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private boolean flushRequested = false;
+    private boolean closed = false;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+
+    /**
+     * Represents the content of a log read from the disk
+     *
+     * @param documentId    The identifier of the document
+     * @param engineType    The engine of the document
+     * @param name          The name of the document at its creation
+     * @param edits         The valid edits, in order
+     * @param validLength   The length of the log up to the end of the last valid record
+     */
+    public record Recovery(UUID documentId, DocumentEngineType engineType, String name, List<Edit> edits, long validLength) {
+    }
+
+    /**
+     * Represents the state of a document captured when its log is rolled
+     *
+     * @param segment   The first segment holding the edits applied after the capture
+     * @param name      The name of the document
+     * @param content   The supplier of the content of the document
+     */
+    public record Checkpoint(long segment, String name, Supplier<String> content) {
+    }
+
+    /**
+     * Opens a log for appending
+     *
+     * @param directory             The directory of the segments
+     * @param documentId            The identifier of the document
+     * @param engineType            The engine of the document
+     * @param segment               The number of the current segment
+     * @param channel               The channel of the current segment, positioned at the end of the valid records
+     * @param flushIntervalMillis   The interval between two group commits, in milliseconds, 0 to force every append
+     * @param flushThresholdBytes   The number of buffered bytes starting a group commit before the end of the interval
+     */
+    private WriteAheadLog(Path directory, UUID documentId, DocumentEngineType engineType, long segment, FileChannel channel,
+                          long flushIntervalMillis, int flushThresholdBytes) {
+        this.directory = directory;
+        this.documentId = documentId;
+        this.engineType = engineType;
+        this.segment = segment;
+        this.channel = channel;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushThresholdBytes = flushThresholdBytes;
+        flushTask = flushIntervalMillis == 0 ? null : flusher.scheduleWithFixedDelay(
+                this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks the group commit settings
+     *
+     * @param flushIntervalMillis   The interval between two group commits, in milliseconds
+     * @param flushThresholdBytes   The number of buffered bytes starting a group commit
+     */
+    private static void checkSettings(long flushIntervalMillis, int flushThresholdBytes) {
+        if (flushIntervalMillis < 0) throw new IllegalArgumentException("Flush interval is negative");
+        if (flushThresholdBytes < 1) throw new IllegalArgumentException("Flush threshold is not positive");
+    }
+
+    /**
+     * Returns the file of a segment
+     *
+     * @param directory The directory of the segments
+     * @param segment   The number of the segment
+     * @return          The file of the segment
+     */
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%016d", segment) + SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Returns the number of a segment from its file
+     *
+     * @param path  The file of the segment
+     * @return      The number of the segment, -1 if the file is not a segment
+     */
+    public static long segmentOf(Path path) {
+        String fileName = path.getFileName().toString();
+        if (!fileName.endsWith(SEGMENT_EXTENSION)) return -1;
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates the file of a segment, its header is forced to the disk before returning
+     *
+     * @param path          The file of the segment, must not exist
+     * @param documentId    The identifier of the document
+     * @param engineType    The engine of the document
+     * @param name          The name of the document
+     * @return              The channel of the segment, positioned after the header
+     * @throws IOException If the file cannot be created
+     */
+    private static FileChannel createSegment(Path path, UUID documentId, DocumentEngineType engineType, String name) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(documentId.getMostSignificantBits());
+            out.writeLong(documentId.getLeastSignificantBits());
+            out.writeUTF(engineType.type);
+            out.writeUTF(name);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(header.toByteArray());
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Creates a new log starting at the given segment
+     *
+     * @param directory             The directory of the segments
+     * @param segment               The number of the first segment, its file must not exist
+     * @param documentId            The identifier of the document
+     * @param engineType            The engine of the document
+     * @param name                  The name of the document
+     * @param flushIntervalMillis   The interval between two group commits, in milliseconds, 0 to force every append
+     * @param flushThresholdBytes   The number of buffered bytes starting a group commit before the end of the interval
+     * @return                      The log
+     * @throws IOException If the file cannot be created
+     */
+    public static WriteAheadLog create(Path directory, long segment, UUID documentId, DocumentEngineType engineType, String name,
+                                       long flushIntervalMillis, int flushThresholdBytes) throws IOException {
+        if (directory == null) throw new IllegalArgumentException("Directory is null");
+        if (segment < 0) throw new IllegalArgumentException("Segment is negative");
+        if (documentId == null) throw new IllegalArgumentException("Document identifier is null");
+        if (engineType == null) throw new IllegalArgumentException("Engine type is null");
+        if (name == null) throw new IllegalArgumentException("Name is null");
+        checkSettings(flushIntervalMillis, flushThresholdBytes);
+
+        FileChannel channel = createSegment(segmentPath(directory, segment), documentId, engineType, name);
+        return new WriteAheadLog(directory, documentId, engineType, segment, channel, flushIntervalMillis, flushThresholdBytes);
+    }
+
+    /**
+     * Opens an existing segment for appending, the bytes after the last valid record are removed
+     *
+     * @param recovery              The content of the segment, read by {@link #read(Path)}
+     * @param directory             The directory of the segments
+     * @param segment               The number of the segment
+     * @param flushIntervalMillis   The interval between two group commits, in milliseconds, 0 to force every append
+     * @param flushThresholdBytes   The number of buffered bytes starting a group commit before the end of the interval
+     * @return                      The log
+     * @throws IOException If the file cannot be opened
+     */
+    public static WriteAheadLog open(Recovery recovery, Path directory, long segment, long flushIntervalMillis, int flushThresholdBytes) throws IOException {
+        if (recovery == null) throw new IllegalArgumentException("Recovery is null");
+        if (directory == null) throw new IllegalArgumentException("Directory is null");
+        checkSettings(flushIntervalMillis, flushThresholdBytes);
+
+        FileChannel channel = FileChannel.open(segmentPath(directory, segment), StandardOpenOption.WRITE);
+        try {
+            if (channel.size() > recovery.validLength()) {
+                channel.truncate(recovery.validLength());
+                channel.force(true);
+            }
+            channel.position(recovery.validLength());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new WriteAheadLog(directory, recovery.documentId(), recovery.engineType(), segment, channel,
+                flushIntervalMillis, flushThresholdBytes);
+    }
+
+    /**
+     * Reads a segment from the disk
+     * The records following a truncated or corrupted record are ignored
+     *
+     * @param path  The file of the segment
+     * @return      The content of the segment
+     * @throws IOException If the file cannot be read or does not start with a valid header
+     */
+    public static Recovery read(Path path) throws IOException {
+        if (path == null) throw new IllegalArgumentException("Path is null");
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+
+        UUID documentId;
+        DocumentEngineType engineType;
+        String name;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a write-ahead log: " + path);
+            if (in.readShort() != VERSION) throw new IOException("Unsupported write-ahead log version: " + path);
+            documentId = new UUID(in.readLong(), in.readLong());
+            engineType = DocumentEngineType.fromString(in.readUTF());
+            if (engineType == null) throw new IOException("Unknown engine in write-ahead log: " + path);
+            name = in.readUTF();
+            buffer.position(buffer.capacity() - in.available());
+        } catch (EOFException e) {
+            throw new IOException("Truncated write-ahead log header: " + path, e);
+        }
+
+        List<Edit> edits = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        long validLength = buffer.position();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 1 || length > buffer.remaining()) break;
+
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) break;
+
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            try {
+                Edit edit = Edit.read(record);
+                if (record.hasRemaining()) break;
+                edits.add(edit);
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            validLength = buffer.position();
+        }
+
+        return new Recovery(documentId, engineType, name, edits, validLength);
+    }
+
+    /**
+     * Returns the file of the current segment
+     * @return  The file of the current segment
+     */
+    public Path getPath() {
+        synchronized (ioLock) {
+            return segmentPath(directory, segment);
+        }
+    }
+
+    /**
+     * Returns the number of the current segment
+     * @return  The number of the current segment
+     */
+    public long getSegment() {
+        synchronized (ioLock) {
+            return segment;
+        }
+    }
+
+    /**
+     * Writes the buffered records to the current segment and starts a new one
+     * The caller must prevent appends while the log is rolled, so the records before and after the roll are in distinct segments
+     *
+     * @param name  The current name of the document, written in the header of the new segment
+     * @return      The number of the new segment
+     * @throws IOException If the new segment cannot be created
+     */
+    public long roll(String name) throws IOException {
+        if (name == null) throw new IllegalArgumentException("Name is null");
+
+        synchronized (ioLock) {
+            flush();
+            long next = segment + 1;
+            FileChannel nextChannel = createSegment(segmentPath(directory, next), documentId, engineType, name);
+            channel.close();
+            channel = nextChannel;
+            segment = next;
+            return next;
+        }
+    }
+
+    /**
+     * Returns the number of edits appended since the log was opened
+     * @return  The number of edits appended
+     */
+    public long getAppendCount() {
+        return appends.sum();
+    }
+
+    /**
+     * Returns the number of group commits forced to the disk since the log was opened
+     * @return  The number of group commits
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Appends an edit to the log
+     * The edit is durable after the next group commit, or when this method returns if the flush interval is 0
+     *
+     * @param edit  The applied edit
+     * @throws IllegalStateException If the log is closed
+     */
+    public void append(Edit edit) {
+        if (edit == null) throw new IllegalArgumentException("Edit is null");
+
+        boolean startFlush = false;
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Write-ahead log is closed");
+
+            int size = edit.size();
+            if (pending.remaining() < RECORD_HEADER_SIZE + size) {
+                int capacity = Math.max(pending.capacity() * 2, pending.position() + RECORD_HEADER_SIZE + size);
+                pending = ByteBuffer.allocate(capacity).put(pending.flip());
+            }
+
+            int start = pending.position();
+            pending.putInt(size).putInt(0);
+            edit.write(pending);
+            crc.reset();
+            crc.update(pending.array(), start + RECORD_HEADER_SIZE, size);
+            pending.putInt(start + 4, (int) crc.getValue());
+            appends.increment();
+
+            if (flushIntervalMillis > 0 && pending.position() >= flushThresholdBytes && !flushRequested) {
+                flushRequested = true;
+                startFlush = true;
+            }
+        }
+
+        if (flushIntervalMillis == 0) {
+            flushQuietly();
+        } else if (startFlush) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Writes the buffered records and forces them to the disk
+     * Appends keep going into a second buffer while the group commit is written
+     *
+     * @throws IOException If the records cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (ioLock) {
+            ByteBuffer batch;
+            synchronized (this) {
+                flushRequested = false;
+                if (pending.position() == 0) return;
+                batch = pending;
+                pending = spare != null ? spare : ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+                spare = null;
+            }
+
+            batch.flip();
+            try {
+                while (batch.hasRemaining()) channel.write(batch);
+                channel.force(false);
+                syncs.increment();
+            } finally {
+                batch.clear();
+                synchronized (this) {
+                    spare = batch;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a group commit, logging its failure
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.error("An error occurred while writing the write-ahead log of document {}, {}", documentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the buffered records and closes the log
+     *
+     * @throws IOException If the records cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        if (flushTask != null) flushTask.cancel(false);
+
+        try {
+            flush();
+        } finally {
+            synchronized (ioLock) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the log, dropping the buffered records, and deletes the file of its current segment
+     *
+     * @throws IOException If the file cannot be deleted
+     */
+    public void delete() throws IOException {
+        synchronized (this) {
+            closed = true;
+            pending.clear();
+        }
+        if (flushTask != null) flushTask.cancel(false);
+
+        synchronized (ioLock) {
+            channel.close();
+            Files.deleteIfExists(segmentPath(directory, segment));
+        }
+    }
+}
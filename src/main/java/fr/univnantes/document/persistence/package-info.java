@@ -0,0 +1,13 @@
+/**
+ * Provides the classes necessary to persist the documents.
+ * <p>
+ * This package includes the following classes:
+ * <ul>
+ * <li>{@link fr.univnantes.document.persistence.Edit} - Represents an edit applied to a document.
+ * <li>{@link fr.univnantes.document.persistence.EditType} - Represents the types of edits.
+ * <li>{@link fr.univnantes.document.persistence.WriteAheadLog} - Appends the edits of a document to the disk with group commits.
+ * <li>{@link fr.univnantes.document.persistence.DocumentStore} - Creates, removes and recovers the logs of the documents.
+ * <li>{@link fr.univnantes.document.persistence.PersistenceConfig} - Recovers the documents on startup when persistence is enabled.
+ * </ul>
+ */
+package fr.univnantes.document.persistence;
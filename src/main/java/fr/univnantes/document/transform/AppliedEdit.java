@@ -0,0 +1,30 @@
+package fr.univnantes.document.transform;
+
+import fr.univnantes.document.persistence.Edit;
+
+import java.util.UUID;
+
+/**
+ * Represents an edit as it has been applied to a document
+ * <p>
+ *     The deletion of a line break also keeps the length the previous line had before the merge,
+ *     so the positions of the merged line can be moved to the previous one
+ * </p>
+ *
+ * @param revision      The revision of the document after the edit
+ * @param edit          The edit, with the positions it had when it was applied
+ * @param author        The user who made the edit, null if it is unknown
+ * @param joinColumn    The length of the previous line before the deletion of a line break, 0 for the other edits
+ */
+public record AppliedEdit(long revision, Edit edit, UUID author, int joinColumn) {
+
+    /**
+     * Creates a new applied edit
+     *
+     * @throws IllegalArgumentException If the edit is null or the join column is negative
+     */
+    public AppliedEdit {
+        if (edit == null) throw new IllegalArgumentException("Edit is null");
+        if (joinColumn < 0) throw new IllegalArgumentException("Join column is negative");
+    }
+}
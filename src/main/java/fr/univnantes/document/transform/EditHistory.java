@@ -0,0 +1,127 @@
+package fr.univnantes.document.transform;
+
+import fr.univnantes.document.persistence.Edit;
+
+import java.util.UUID;
+
+/**
+ * Keeps the last edits applied to a document, so an edit made by a client on an older revision is moved to the current one
+ * <p>
+ *     The history is a ring of a fixed capacity, once full recording an edit forgets the oldest one
+ *     An edit based on a revision before the forgotten ones cannot be transformed, see {@link StaleRevisionException}
+ * </p>
+ * <p>
+ *     Transforming an edit based on a revision walks the k edits applied since then and moves it past each one in constant time,
+ *     so it costs O(k) whatever the size of the document
+ * </p>
+ * <p>
+ *     A client has at most one edit in flight: it sends its next edit once it received the revision acknowledging the previous one,
+ *     buffering what is typed meanwhile
+ *     The edits applied since the base revision are then all made by other users on that revision, so they are in the coordinates of the edit
+ *     An edit based on a revision before the acknowledgement of a previous edit of its author is rejected,
+ *     its positions include an edit the history only knows moved past edits the client had not seen
+ * </p>
+ * <p>
+ *     This class is not thread safe, the owning {@link fr.univnantes.document.Document} records and transforms the edits under its lock
+ * </p>
+ */
+public class EditHistory {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final AppliedEdit[] edits;
+    private int next;
+    private int size;
+    private long floor;
+
+    /**
+     * Creates a new empty history
+     *
+     * @param capacity  The number of edits kept
+     * @param revision  The revision of the document when the history starts, the edits up to it are not known
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public EditHistory(int capacity, long revision) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity is not positive");
+
+        this.edits = new AppliedEdit[capacity];
+        this.next = 0;
+        this.size = 0;
+        this.floor = revision;
+    }
+
+    /**
+     * Returns the number of edits kept
+     * @return  The number of edits kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the oldest revision an edit can be based on
+     * @return  The revision of the oldest known state
+     */
+    public long getFloor() {
+        return floor;
+    }
+
+    /**
+     * Records an applied edit, forgetting the oldest one if the history is full
+     *
+     * @param edit  The applied edit, its revision not lower than the previous one
+     */
+    public void record(AppliedEdit edit) {
+        if (edit == null) throw new IllegalArgumentException("Edit is null");
+
+        if (size == edits.length) {
+            floor = edits[next].revision();
+        } else {
+            size++;
+        }
+        edits[next] = edit;
+        next = (next + 1) % edits.length;
+    }
+
+    /**
+     * Moves an edit made on an older revision past the edits applied since then
+     *
+     * @param edit          The edit, with the positions it had on its base revision
+     * @param author        The user who made the edit, null if it is unknown
+     * @param baseRevision  The revision of the document the edit was made on
+     * @return              The edit with its positions on the current revision, null if the edits since then made it vanish
+     * @throws StaleRevisionException If some of the edits since the base revision have been forgotten,
+     *                                or if the author made one of them, its edit being sent before the previous one was acknowledged
+     */
+    public Edit transform(Edit edit, UUID author, long baseRevision) {
+        if (edit == null) throw new IllegalArgumentException("Edit is null");
+        if (baseRevision < floor) throw new StaleRevisionException("Revision " + baseRevision + " is older than the kept edits");
+
+        //  Find the first edit applied after the base revision, walking back from the last one
+        int count = 0;
+        while (count < size && edits[slot(count)].revision() > baseRevision) count++;
+
+        if (author != null) {
+            for (int i = 0; i < count; i++) {
+                AppliedEdit applied = edits[slot(i)];
+                if (author.equals(applied.author())) throw new StaleRevisionException("Revision " + baseRevision + " is before the acknowledgement of revision " + applied.revision());
+            }
+        }
+
+        Edit transformed = edit;
+        for (int i = count - 1; i >= 0 && transformed != null; i--) {
+            transformed = EditTransformer.transform(transformed, edits[slot(i)]);
+        }
+        return transformed;
+    }
+
+    /**
+     * Returns the slot of an edit counted from the last recorded one
+     *
+     * @param age   The number of edits recorded after it
+     * @return      The slot of the edit
+     */
+    private int slot(int age) {
+        return (next - 1 - age + edits.length) % edits.length;
+    }
+}
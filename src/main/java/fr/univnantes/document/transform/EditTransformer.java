@@ -0,0 +1,163 @@
+package fr.univnantes.document.transform;
+
+import fr.univnantes.document.persistence.Edit;
+
+/**
+ * Moves an edit made concurrently with an applied edit to its positions after the applied edit
+ * <p>
+ *     Every applied edit either inserts text at a position, deletes the characters between two positions, or moves nothing:
+ *     an insertion of a character or of a line break is the insertion of a one character text,
+ *     the deletion of a character or of a line break is the deletion of a one character range
+ *     A position after an insertion moves by the inserted text, a position after a deletion moves back to its start
+ * </p>
+ * <p>
+ *     When both edits insert at the same position, the applied one stays first
+ *     An edit deleting or modifying a character deleted by the applied edit vanishes,
+ *     a deleted range only keeps the characters which have not been deleted yet, the text inserted inside it is deleted too
+ * </p>
+ */
+public class EditTransformer {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private EditTransformer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Transforms an edit made concurrently with an applied edit
+     *
+     * @param edit      The edit, with the positions it had before the applied edit
+     * @param applied   The applied edit
+     * @return          The edit with its positions after the applied edit, null if the applied edit made it vanish
+     */
+    public static Edit transform(Edit edit, AppliedEdit applied) {
+        if (edit == null) throw new IllegalArgumentException("Edit is null");
+        if (applied == null) throw new IllegalArgumentException("Applied edit is null");
+
+        Change change = Change.of(applied);
+        if (change == null) return edit;
+
+        return switch (edit.type()) {
+            case INSERT_CHAR, INSERT_TEXT, INSERT_LINE_BRK -> {
+                Position position = change.map(new Position(edit.line(), edit.column()), true);
+                yield new Edit(edit.type(), position.line, position.column, 0, 0, edit.character(), null, edit.text());
+            }
+            case DELETE_CHAR, MODIFY_CHAR -> {
+                Position position = new Position(edit.line(), edit.column());
+                if (change.deletes(position)) yield null;
+                position = change.map(position, true);
+                yield new Edit(edit.type(), position.line, position.column, 0, 0, edit.character(), null, null);
+            }
+            case DELETE_LINE_BRK -> {
+                //  The line break ends just before the start of its line, it vanishes if the applied edit deleted it
+                Position start = new Position(edit.line(), 0);
+                if (change.deletesBefore(start)) yield null;
+                yield Edit.deleteLineBreak(change.map(start, false).line);
+            }
+            case DELETE_RANGE -> {
+                Position start = change.map(new Position(edit.line(), edit.column()), true);
+                Position end = change.map(new Position(edit.endLine(), edit.endColumn()), false);
+                if (end.compareTo(start) <= 0) yield null;
+                yield Edit.deleteRange(start.line, start.column, end.line, end.column);
+            }
+            case RENAME -> edit;
+        };
+    }
+
+    /**
+     * Represents a position in a document, ordered by line then by column
+     *
+     * @param line      The line, starts at 0
+     * @param column    The column, starts at 0
+     */
+    private record Position(int line, int column) implements Comparable<Position> {
+
+        @Override
+        public int compareTo(Position other) {
+            return line != other.line ? Integer.compare(line, other.line) : Integer.compare(column, other.column);
+        }
+    }
+
+    /**
+     * Represents how an applied edit moves the positions of the document
+     *
+     * @param start         The position of the insertion, or of the first deleted character
+     * @param end           The position after the last deleted character, null for an insertion
+     * @param lines         The number of line breaks of the inserted text
+     * @param lastLength    The number of characters of the inserted text after its last line break, or of the whole text without line break
+     */
+    private record Change(Position start, Position end, int lines, int lastLength) {
+
+        /**
+         * Returns how an applied edit moves the positions of the document
+         *
+         * @param applied   The applied edit
+         * @return          The change, null if the edit moves nothing
+         */
+        static Change of(AppliedEdit applied) {
+            Edit edit = applied.edit();
+            Position start = new Position(edit.line(), edit.column());
+            return switch (edit.type()) {
+                case INSERT_CHAR -> new Change(start, null, 0, 1);
+                case INSERT_LINE_BRK -> new Change(start, null, 1, 0);
+                case INSERT_TEXT -> {
+                    String text = edit.text();
+                    int lines = 0;
+                    for (int i = 0; i < text.length(); i++) {
+                        if (text.charAt(i) == '\n') lines++;
+                    }
+                    yield new Change(start, null, lines, text.length() - text.lastIndexOf('\n') - 1);
+                }
+                case DELETE_CHAR -> new Change(start, new Position(edit.line(), edit.column() + 1), 0, 0);
+                case DELETE_LINE_BRK -> new Change(new Position(edit.line() - 1, applied.joinColumn()), new Position(edit.line(), 0), 0, 0);
+                case DELETE_RANGE -> new Change(start, new Position(edit.endLine(), edit.endColumn()), 0, 0);
+                case MODIFY_CHAR, RENAME -> null;
+            };
+        }
+
+        /**
+         * Returns true if the character at a position has been deleted
+         *
+         * @param position  The position of the character
+         * @return          True if the change deleted it
+         */
+        boolean deletes(Position position) {
+            return end != null && start.compareTo(position) <= 0 && position.compareTo(end) < 0;
+        }
+
+        /**
+         * Returns true if the character just before a position has been deleted
+         *
+         * @param position  The position after the character
+         * @return          True if the change deleted it
+         */
+        boolean deletesBefore(Position position) {
+            return end != null && start.compareTo(position) < 0 && position.compareTo(end) <= 0;
+        }
+
+        /**
+         * Returns the position after the change
+         * A position inside a deleted range moves to its start
+         *
+         * @param position  The position before the change
+         * @param after     True if a position equal to the one of an insertion moves after the inserted text
+         * @return          The position after the change
+         */
+        Position map(Position position, boolean after) {
+            int order = position.compareTo(start);
+            if (order < 0 || (order == 0 && (end != null || !after))) return position;
+
+            if (end == null) {
+                if (position.line != start.line) return new Position(position.line + lines, position.column);
+                if (lines == 0) return new Position(position.line, position.column + lastLength);
+                return new Position(position.line + lines, position.column - start.column + lastLength);
+            }
+
+            if (position.compareTo(end) < 0) return start;
+            if (position.line == end.line) return new Position(start.line, start.column + position.column - end.column);
+            return new Position(position.line - (end.line - start.line), position.column);
+        }
+    }
+}
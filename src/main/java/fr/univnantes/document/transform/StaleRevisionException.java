@@ -0,0 +1,22 @@
+package fr.univnantes.document.transform;
+
+/**
+ * Thrown when an edit is based on a revision older than the edits kept by the {@link EditHistory} of its document,
+ * or older than the acknowledgement of the previous edit of its author
+ * <p>
+ *     The edit has not been applied, the caller should tell the client and send it the whole document again
+ * </p>
+ */
+public class StaleRevisionException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception
+     *
+     * @param message   The message explaining why the revision is too old
+     */
+    public StaleRevisionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Provides the operational transformation of the edits made by clients on an older revision of a document.
+ * <p>
+ * This package includes the following classes:
+ * <ul>
+ * <li>{@link fr.univnantes.document.transform.EditTransformer} - Moves an edit past a concurrent edit applied before it.
+ * <li>{@link fr.univnantes.document.transform.EditHistory} - Keeps the last edits applied to a document and transforms the late ones.
+ * <li>{@link fr.univnantes.document.transform.AppliedEdit} - Represents an edit as it has been applied, with its revision and author.
+ * <li>{@link fr.univnantes.document.transform.StaleRevisionException} - Thrown when an edit is based on a forgotten revision.
+ * </ul>
+ */
+package fr.univnantes.document.transform;
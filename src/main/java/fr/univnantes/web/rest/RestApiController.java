@@ -2,8 +2,12 @@ package fr.univnantes.web.rest;
 
 import fr.univnantes.document.Document;
 import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.MemoryBudgetExceededException;
+import fr.univnantes.document.engine.DocumentEngineType;
 import fr.univnantes.user.User;
 import fr.univnantes.user.UserManager;
+import fr.univnantes.web.websocket.BroadcastMetrics;
+import fr.univnantes.web.websocket.WebSocketSessionManager;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +18,9 @@ import java.util.Date;
 import java.util.UUID;
 
 import static fr.univnantes.document.Document.isDocumentNameValid;
+import static fr.univnantes.web.rest.Utils.createJSONBroadcastMetrics;
+import static fr.univnantes.web.rest.Utils.createJSONMemory;
+import static fr.univnantes.web.rest.Utils.createJSONOutboundQueues;
 import static fr.univnantes.web.rest.Utils.createJSONUserDocument;
 
 /**
@@ -47,6 +54,7 @@ public class RestApiController {
      *
      * @param documentName  The name of the document
      * @param userName      The name of the user
+     * @param engine        The type of engine storing the document, optional, see {@link DocumentEngineType}
      * @return          The created document as a JSON object containing
      *                      - The document id
      *                      - The document name
@@ -67,11 +75,12 @@ public class RestApiController {
      *                  }
      *
      * @apiNote         If the document could not be created, returns an error as an HTTP 500 error code
+     *                  If the memory budget of the documents is exceeded, returns an error as an HTTP 503 error code
      */
     //  TODO:   CROSS ORIGIN, NEED TO NARROW IT DOWN TO THE FRONTEND, NOW JUST ACCEPTS EVERYTHING FOR TESTING PURPOSES
     @CrossOrigin(origins = "*")
     @PostMapping("/create")
-    public ResponseEntity<String> create(@RequestParam(name = "docName") String documentName, @RequestParam(name = "userName") String userName) {
+    public ResponseEntity<String> create(@RequestParam(name = "docName") String documentName, @RequestParam(name = "userName") String userName, @RequestParam(name = "engine", required = false) String engine) {
         if (documentName == null) return ResponseEntity.badRequest().body("HTTP 400 - Document name is null");
         if (userName == null) return ResponseEntity.badRequest().body("HTTP 400 - User name is null");
 
@@ -80,17 +89,30 @@ public class RestApiController {
 
         if (!isDocumentNameValid(documentName)) return ResponseEntity.badRequest().body("HTTP 400 - Document name is invalid");
 
-        Document document = documentManager.createDocument(documentName);
+        DocumentEngineType engineType = DocumentEngineType.LINKED_LINES;
+        if (engine != null) {
+            engineType = DocumentEngineType.fromString(engine);
+            if (engineType == null) return ResponseEntity.badRequest().body("HTTP 400 - Engine is invalid");
+        }
+
+        //  The creator joins the document before it is visible, so it cannot be evicted before the creator connects
+        User user = userManager.createUser(userName);
+        Document document;
+        try {
+            document = documentManager.createDocument(documentName, engineType, user);
+        } catch (MemoryBudgetExceededException e) {
+            userManager.removeUser(user.getUUID());
+            logger.warn("Document creation rejected, {}", e.getMessage());
+            return ResponseEntity.status(503).body("HTTP 503 - " + e.getMessage());
+        }
 
         //  Check if the document exists
         if (document == null) {
+            userManager.removeUser(user.getUUID());
             logger.error("Document could not be created");
             return ResponseEntity.internalServerError().body("HTTP 500 - The document could not be created");
         }
 
-        User user = userManager.createUser(userName);
-        document.addJoiningUser(user);
-
         logger.info("Document {} created by user {}", document.getUUID(), user.getUUID());
 
                 //  Create a JSON object to return
@@ -136,13 +158,16 @@ public class RestApiController {
         if (userName.isBlank()) return ResponseEntity.badRequest().body("HTTP 400 - User name is empty");
 
         UUID transformedDocumentId = UUID.fromString(documentId);
-        Document document = documentManager.getDocument(transformedDocumentId);
-
-        //  Check if the document exists
-        if (document == null)   return ResponseEntity.notFound().build();
 
+        //  The document is resolved and joined in one step, so it cannot be evicted before the user connects
         User user = userManager.createUser(userName);
-        document.addJoiningUser(user);
+        Document document = documentManager.joinDocument(transformedDocumentId, user);
+
+        //  Check if the document exists
+        if (document == null) {
+            userManager.removeUser(user.getUUID());
+            return ResponseEntity.notFound().build();
+        }
 
         logger.info("Document {} joined by user {}", document.getUUID(), user.getUUID());
 
@@ -150,4 +175,29 @@ public class RestApiController {
         JSONObject returnedJSON = createJSONUserDocument(user, document);
         return ResponseEntity.accepted().body(returnedJSON.toString());
     }
+
+    /**
+     * Returns the runtime statistics of the server
+     *
+     * @return          The statistics as a JSON object containing
+     *                      - The broadcast metrics, see {@link Utils#createJSONBroadcastMetrics(BroadcastMetrics)}
+     *                      - The outbound queue of each session, see {@link Utils#createJSONOutboundQueues(java.util.Collection)}
+     *                      - The memory used by the documents, see {@link Utils#createJSONMemory(DocumentManager)}
+     *                  In the form:
+     *                  {
+     *                      "broadcast": { ... },
+     *                      "sessions": [ ... ],
+     *                      "memory": { ... }
+     *                  }
+     */
+    //  TODO:   CROSS ORIGIN, NEED TO NARROW IT DOWN TO THE FRONTEND, NOW JUST ACCEPTS EVERYTHING FOR TESTING PURPOSES
+    @CrossOrigin(origins = "*")
+    @GetMapping("/stats")
+    public ResponseEntity<String> stats() {
+        JSONObject returnedJSON = new JSONObject();
+        returnedJSON.put("broadcast", createJSONBroadcastMetrics(BroadcastMetrics.getInstance()));
+        returnedJSON.put("sessions", createJSONOutboundQueues(WebSocketSessionManager.getInstance().getSessions().keySet()));
+        returnedJSON.put("memory", createJSONMemory(documentManager));
+        return ResponseEntity.ok().body(returnedJSON.toString());
+    }
 }
@@ -1,9 +1,18 @@
 package fr.univnantes.web.rest;
 
 import fr.univnantes.document.Document;
+import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.DocumentSnapshot;
+import fr.univnantes.document.MemoryBudget;
 import fr.univnantes.user.User;
+import fr.univnantes.web.websocket.BroadcastMetrics;
+import fr.univnantes.web.websocket.QueuedWebSocketSession;
+import org.springframework.web.socket.WebSocketSession;
+import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONString;
 
+import java.util.Collection;
 import java.util.UUID;
 
 /**
@@ -53,11 +62,19 @@ public class Utils {
      *          {
      *              "id": "documentId",
      *              "name": "documentName",
+     *              "revision": 42,
      *              "content": "documentContent"
      *          }
      */
     public static JSONObject createJSONDocument(Document document) {
-        return createJSONDocument(document.getUUID(), document.getName(), document.toString());
+        //  The content is serialized once per revision, however many users create or join the document
+        DocumentSnapshot snapshot = document.snapshot();
+        JSONObject documentJSON = new JSONObject();
+        documentJSON.put("id", document.getUUID());
+        documentJSON.put("name", snapshot.getName());
+        documentJSON.put("revision", snapshot.getRevision());
+        documentJSON.put("content", (JSONString) snapshot::getJson);
+        return documentJSON;
     }
 
     /**
@@ -148,4 +165,98 @@ public class Utils {
         returnedJSON.put("user", createJSONUser(user));
         return returnedJSON;
     }
+
+    /**
+     * Creates a JSON object representing the broadcast metrics
+     *
+     * @param metrics   The broadcast metrics
+     * @return          A JSON object representing the broadcast metrics
+     *                  In the form:
+     *                  {
+     *                      "batches": 12,
+     *                      "payloads": 40,
+     *                      "frames": 36,
+     *                      "bytes": 2048,
+     *                      "maxBatchSize": 9,
+     *                      "averageBatchSize": 3.33,
+     *                      "batchSizeHistogram": [
+     *                          { "upTo": 1, "count": 4 },
+     *                          ...
+     *                          { "upTo": null, "count": 0 }
+     *                      ]
+     *                  }
+     */
+    public static JSONObject createJSONBroadcastMetrics(BroadcastMetrics metrics) {
+        JSONArray histogramJSON = new JSONArray();
+        long[] histogram = metrics.getBatchSizeHistogram();
+        for (int i = 0; i < histogram.length; i++) {
+            JSONObject bucketJSON = new JSONObject();
+            bucketJSON.put("upTo", i < BroadcastMetrics.BUCKET_BOUNDS.length ? BroadcastMetrics.BUCKET_BOUNDS[i] : JSONObject.NULL);
+            bucketJSON.put("count", histogram[i]);
+            histogramJSON.put(bucketJSON);
+        }
+
+        JSONObject metricsJSON = new JSONObject();
+        metricsJSON.put("batches", metrics.getBatchCount());
+        metricsJSON.put("payloads", metrics.getPayloadCount());
+        metricsJSON.put("frames", metrics.getFrameCount());
+        metricsJSON.put("bytes", metrics.getByteCount());
+        metricsJSON.put("maxBatchSize", metrics.getMaxBatchSize());
+        metricsJSON.put("averageBatchSize", metrics.getAverageBatchSize());
+        metricsJSON.put("batchSizeHistogram", histogramJSON);
+        return metricsJSON;
+    }
+
+    /**
+     * Creates a JSON object representing the memory used by the documents
+     *
+     * @param documentManager   The document manager
+     * @return                  A JSON object representing the memory of the documents
+     *                          In the form:
+     *                          {
+     *                              "residentDocuments": 12,
+     *                              "usedBytes": 1048576,
+     *                              "limitBytes": 536870912
+     *                          }
+     *                          A limit of 0 means that the documents have no budget
+     */
+    public static JSONObject createJSONMemory(DocumentManager documentManager) {
+        MemoryBudget budget = documentManager.getMemoryBudget();
+
+        JSONObject memoryJSON = new JSONObject();
+        memoryJSON.put("residentDocuments", documentManager.getResidentCount());
+        memoryJSON.put("usedBytes", budget.getUsed());
+        memoryJSON.put("limitBytes", budget.getLimit());
+        return memoryJSON;
+    }
+
+    /**
+     * Creates a JSON array representing the outbound queue of each session
+     * The sessions are identified by their websocket session id, never by the user id which authenticates CONNECT
+     *
+     * @param sessions  The websocket sessions
+     * @return          A JSON array representing the outbound queues
+     *                  In the form:
+     *                  [
+     *                      {
+     *                          "sessionId": "sessionId",
+     *                          "queueDepth": 3,
+     *                          "dropped": 0
+     *                      },
+     *                      ...
+     *                  ]
+     */
+    public static JSONArray createJSONOutboundQueues(Collection<WebSocketSession> sessions) {
+        JSONArray queuesJSON = new JSONArray();
+        for (WebSocketSession webSocketSession : sessions) {
+            if (!(webSocketSession instanceof QueuedWebSocketSession session)) continue;
+
+            JSONObject queueJSON = new JSONObject();
+            queueJSON.put("sessionId", session.getId());
+            queueJSON.put("queueDepth", session.getQueueDepth());
+            queueJSON.put("dropped", session.getDroppedCount());
+            queuesJSON.put(queueJSON);
+        }
+        return queuesJSON;
+    }
 }
@@ -0,0 +1,417 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.user.User;
+import fr.univnantes.web.websocket.instruction.BinaryInstructionCodec;
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction.JSONAttributes;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the broadcasts of a document
+ * <p>
+ *     The broadcast payloads produced within a window are collected and sent as one frame to each user of the document
+ *     A batch holding a single payload is sent as a JSON object, a larger batch is sent as a JSON array of payloads
+ *     A batch is sent as soon as it reaches the maximum size, without waiting for the end of the window
+ * </p>
+ * <p>
+ *     The users of the binary protocol receive the binary records of the batch concatenated in one binary frame,
+ *     payloads without a binary form are sent to them as JSON text frames between the binary ones, keeping the order
+ *     The binary record of an instruction is only encoded once a user of the binary protocol receives it
+ * </p>
+ * <p>
+ *     With a window of 0, every payload is sent immediately as a JSON object
+ *     Batches of a document are always sent in order
+ * </p>
+ * <p>
+ *     The users whose session declares a {@link Viewport} receive their own version of each batch,
+ *     holding only the payloads their viewport routes to them
+ * </p>
+ * <p>
+ *     The edits are stamped with the revision of the document and kept in a {@link BroadcastHistory},
+ *     so a user reconnecting after a network failure receives only the edits it missed, see {@link #resume(User, long)}
+ * </p>
+ */
+public class BroadcastAggregator {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("broadcast-aggregator").daemon().factory());
+
+    private final Logger logger = LoggerFactory.getLogger(BroadcastAggregator.class);
+    private final Document document;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final BroadcastMetrics metrics;
+    private final BroadcastHistory history;
+
+    private final Object flushLock = new Object();
+    private List<Payload> pending = new ArrayList<>();
+
+    /**
+     * Represents a payload to broadcast
+     */
+    private static final class Payload {
+
+        private final WebSocketInstruction instruction;
+        private final JSONObject json;
+        private final int shortUserId;
+        private byte[] binary;
+        private boolean encoded;
+
+        /**
+         * Creates a new payload
+         *
+         * @param instruction   The instruction producing the payload, null for a control message
+         * @param json          The JSON version of the payload
+         * @param binary        The binary version of the payload, null to encode it from the instruction
+         * @param shortUserId   The short identifier of the author of the instruction
+         */
+        private Payload(WebSocketInstruction instruction, JSONObject json, byte[] binary, int shortUserId) {
+            this.instruction = instruction;
+            this.json = json;
+            this.shortUserId = shortUserId;
+            this.binary = binary;
+            this.encoded = binary != null || instruction == null;
+        }
+
+        /**
+         * Returns the instruction producing the payload
+         * @return  The instruction, null for a control message
+         */
+        private WebSocketInstruction instruction() {
+            return instruction;
+        }
+
+        /**
+         * Returns the JSON version of the payload
+         * @return  The JSON payload
+         */
+        private JSONObject json() {
+            return json;
+        }
+
+        /**
+         * Returns the binary version of the payload, encoded from the instruction the first time it is needed
+         * Only called under the flush lock
+         *
+         * @return  The binary record, null if the payload is only sent as JSON
+         */
+        private byte[] binary() {
+            if (!encoded) {
+                binary = BinaryInstructionCodec.encode(instruction, shortUserId);
+                encoded = true;
+            }
+            return binary;
+        }
+    }
+
+    /**
+     * Creates a new aggregator
+     *
+     * @param document      The document whose users receive the broadcasts
+     * @param windowMillis  The time a payload may wait for other payloads, in milliseconds, 0 to send it immediately
+     * @param maxBatchSize  The maximum number of payloads in a batch
+     * @param metrics       The metrics recording the size of the batches
+     */
+    public BroadcastAggregator(Document document, long windowMillis, int maxBatchSize, BroadcastMetrics metrics) {
+        this(document, windowMillis, maxBatchSize, metrics, BroadcastHistory.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new aggregator
+     *
+     * @param document          The document whose users receive the broadcasts
+     * @param windowMillis      The time a payload may wait for other payloads, in milliseconds, 0 to send it immediately
+     * @param maxBatchSize      The maximum number of payloads in a batch
+     * @param metrics           The metrics recording the size of the batches
+     * @param historyCapacity   The number of edits kept for the users reconnecting
+     */
+    public BroadcastAggregator(Document document, long windowMillis, int maxBatchSize, BroadcastMetrics metrics, int historyCapacity) {
+        if (document == null) throw new IllegalArgumentException("Document is null");
+        if (windowMillis < 0) throw new IllegalArgumentException("Window is negative");
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Maximum batch size is not positive");
+        if (metrics == null) throw new IllegalArgumentException("Metrics are null");
+
+        this.document = document;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.metrics = metrics;
+        this.history = new BroadcastHistory(historyCapacity, document.getRevision());
+    }
+
+    /**
+     * Returns the document whose users receive the broadcasts
+     * @return  The document
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Adds a payload without binary form to the current batch
+     * The batch is sent at the end of the window, or now if it is full or if there is no window
+     *
+     * @param payload   The payload to broadcast
+     */
+    public void add(JSONObject payload) {
+        add(payload, null);
+    }
+
+    /**
+     * Adds a payload to the current batch
+     * The batch is sent at the end of the window, or now if it is full or if there is no window
+     *
+     * @param payload   The payload to broadcast
+     * @param binary    The binary version of the payload, see {@link BinaryInstructionCodec}, null if it is only sent as JSON
+     */
+    public void add(JSONObject payload, byte[] binary) {
+        add(new Payload(null, payload, binary, 0));
+    }
+
+    /**
+     * Adds the payload of an executed instruction to the current batch
+     * The batch is sent at the end of the window, or now if it is full or if there is no window
+     *
+     * @param instruction   The instruction producing the payload, routed by the viewports of the sessions and encoded for the users
+     *                      of the binary protocol, see {@link BinaryInstructionCodec}
+     * @param payload       The payload to broadcast
+     */
+    public void add(WebSocketInstruction instruction, JSONObject payload) {
+        if (instruction == null) throw new IllegalArgumentException("Instruction is null");
+        add(new Payload(instruction, payload, null, shortUserIdOf(instruction)));
+    }
+
+    /**
+     * Adds a payload to the current batch
+     *
+     * @param payload   The payload to broadcast
+     */
+    private void add(Payload payload) {
+        if (payload.json() == null) throw new IllegalArgumentException("Payload is null");
+
+        boolean first;
+        boolean full;
+        synchronized (this) {
+            pending.add(payload);
+            first = pending.size() == 1;
+            full = pending.size() >= maxBatchSize;
+        }
+        schedule(first, full);
+    }
+
+    /**
+     * Adds the payload of an applied edit to the current batch, stamped with the revision of the document and kept in the history
+     * The batch is sent at the end of the window, or now if it is full or if there is no window
+     *
+     * @param instruction   The applied instruction, routed by the viewports of the sessions and encoded for the users
+     *                      of the binary protocol, see {@link BinaryInstructionCodec}
+     * @param payload       The payload to broadcast, the revision of the document is added to it unless it holds the revision of its edit
+     */
+    public void addEdit(WebSocketInstruction instruction, JSONObject payload) {
+        if (instruction == null) throw new IllegalArgumentException("Instruction is null");
+        if (payload == null) throw new IllegalArgumentException("Payload is null");
+
+        //  The author may leave before the batch is sent, its short identifier is read now
+        int shortUserId = shortUserIdOf(instruction);
+
+        boolean first;
+        boolean full;
+        synchronized (this) {
+            //  The revision is read under the lock, so the edits are recorded and sent in the order of their revisions
+            long revision = payload.optLong(JSONAttributes.REVISION, -1);
+            if (revision < 0) {
+                revision = document.getRevision();
+                payload.put(JSONAttributes.REVISION, revision);
+            }
+            history.record(revision, payload);
+
+            pending.add(new Payload(instruction, payload, null, shortUserId));
+            first = pending.size() == 1;
+            full = pending.size() >= maxBatchSize;
+        }
+        schedule(first, full);
+    }
+
+    /**
+     * Returns the short identifier of the author of an instruction, written in its binary records
+     *
+     * @param instruction   The instruction
+     * @return              The short identifier of the author, 0 if it is not connected
+     */
+    private static int shortUserIdOf(WebSocketInstruction instruction) {
+        return WebSocketSessionManager.getInstance().getShortUserId(instruction.getUserId());
+    }
+
+    /**
+     * Sends the current batch now if it is full or if there is no window, otherwise at the end of the window of its first payload
+     *
+     * @param first True if the payload just added is the first one of the batch
+     * @param full  True if the batch is full
+     */
+    private void schedule(boolean first, boolean full) {
+        if (windowMillis == 0 || full) {
+            flush();
+        } else if (first) {
+            scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds a reconnecting user to the document if the history holds every edit it missed, and returns them
+     * No batch is sent meanwhile, so the user receives every edit after the returned ones,
+     * an edit still pending is both returned and sent with its batch, the user ignores the revisions it already has
+     *
+     * @param user          The reconnecting user
+     * @param lastRevision  The last revision received by the user
+     * @return              The payloads the user missed, in order, null if the history does not hold all of them,
+     *                      in which case the user is not added
+     */
+    public List<JSONObject> resume(User user, long lastRevision) {
+        if (user == null) throw new IllegalArgumentException("User is null");
+
+        synchronized (flushLock) {
+            List<JSONObject> missed;
+            synchronized (this) {
+                missed = history.since(lastRevision);
+            }
+            if (missed != null) document.addUser(user);
+            return missed;
+        }
+    }
+
+    /**
+     * Sends the current batch to every connected user of the document
+     */
+    public void flush() {
+        //  The batch is taken and sent under the same lock, so two batches are never sent out of order
+        synchronized (flushLock) {
+            List<Payload> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+
+            //  Both versions are built at most once per batch, whatever the number of users
+            List<WebSocketMessage<?>> jsonFrames = null;
+            List<WebSocketMessage<?>> binaryFrames = null;
+
+            WebSocketSessionManager sessionManager = WebSocketSessionManager.getInstance();
+            int frames = 0;
+            long bytes = 0;
+            for (User u : document.getUsers().values()) {
+                WebSocketSession session = u.getSession();
+                if (session == null || !session.isOpen()) continue;
+
+                boolean binary = BinaryInstructionCodec.SUBPROTOCOL.equals(session.getAcceptedProtocol());
+                Viewport viewport = sessionManager.getViewport(session);
+                List<WebSocketMessage<?>> messages;
+                if (viewport != null) {
+                    List<Payload> visible = route(batch, viewport);
+                    if (visible.isEmpty()) continue;
+                    messages = binary ? binaryFrames(visible) : List.of(textFrame(visible));
+                } else if (binary) {
+                    if (binaryFrames == null) binaryFrames = binaryFrames(batch);
+                    messages = binaryFrames;
+                } else {
+                    if (jsonFrames == null) jsonFrames = List.of(textFrame(batch));
+                    messages = jsonFrames;
+                }
+
+                try {
+                    for (WebSocketMessage<?> message : messages) {
+                        session.sendMessage(message);
+                        frames++;
+                        bytes += message.getPayloadLength();
+                    }
+                } catch (IOException e) {
+                    logger.error("An error occurred while broadcasting to user {}, {}", u.getUUID(), e.getMessage());
+                }
+            }
+            metrics.recordBatch(batch.size(), frames, bytes);
+        }
+    }
+
+    /**
+     * Returns the payloads of a batch routed to a session by its viewport, in order
+     * A payload replaced by the viewport, a shift or the new content of the viewport, is only sent as JSON
+     *
+     * @param batch     The payloads of the batch
+     * @param viewport  The viewport of the session
+     * @return          The payloads to send to the session
+     */
+    private List<Payload> route(List<Payload> batch, Viewport viewport) {
+        List<Payload> visible = new ArrayList<>(batch.size());
+        for (Payload payload : batch) {
+            JSONObject routed = viewport.route(payload.instruction(), payload.json(), document);
+            if (routed == payload.json()) visible.add(payload);
+            else if (routed != null) visible.add(new Payload(null, routed, null, 0));
+        }
+        return visible;
+    }
+
+    /**
+     * Returns the JSON text frame of a batch, an object for a single payload, an array otherwise
+     *
+     * @param payloads  The payloads of the batch
+     * @return          The text frame
+     */
+    private static TextMessage textFrame(List<Payload> payloads) {
+        if (payloads.size() == 1) return new TextMessage(payloads.get(0).json().toString());
+
+        JSONArray array = new JSONArray();
+        for (Payload payload : payloads) {
+            array.put(payload.json());
+        }
+        return new TextMessage(array.toString());
+    }
+
+    /**
+     * Returns the frames of a batch for the users of the binary protocol
+     * Consecutive binary records are concatenated in one binary frame,
+     * consecutive payloads without binary form are sent in one JSON text frame
+     *
+     * @param batch The payloads of the batch
+     * @return      The frames, in order
+     */
+    private static List<WebSocketMessage<?>> binaryFrames(List<Payload> batch) {
+        List<WebSocketMessage<?>> frames = new ArrayList<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        List<Payload> jsonRun = new ArrayList<>();
+
+        for (Payload payload : batch) {
+            if (payload.binary() != null) {
+                if (!jsonRun.isEmpty()) {
+                    frames.add(textFrame(jsonRun));
+                    jsonRun = new ArrayList<>();
+                }
+                records.writeBytes(payload.binary());
+            } else {
+                if (records.size() > 0) {
+                    frames.add(new BinaryMessage(records.toByteArray()));
+                    records.reset();
+                }
+                jsonRun.add(payload);
+            }
+        }
+
+        if (records.size() > 0) frames.add(new BinaryMessage(records.toByteArray()));
+        if (!jsonRun.isEmpty()) frames.add(textFrame(jsonRun));
+        return frames;
+    }
+}
@@ -0,0 +1,100 @@
+package fr.univnantes.web.websocket;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last broadcast edits of a document, so a client reconnecting after a network failure receives only the ones it missed
+ * <p>
+ *     The history is a ring of a fixed capacity, each payload being stored with the revision of the document it produced
+ *     Once full, recording a payload forgets the oldest one, a client which missed it needs the whole document again
+ * </p>
+ * <p>
+ *     This class is not thread safe, the owning {@link BroadcastAggregator} is responsible for the synchronization
+ * </p>
+ */
+public class BroadcastHistory {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final long[] revisions;
+    private final JSONObject[] payloads;
+    private int next;
+    private int size;
+    private long floor;
+
+    /**
+     * Creates a new empty history
+     *
+     * @param capacity  The number of payloads kept
+     * @param revision  The revision of the document when the history starts, the edits up to it are not known
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public BroadcastHistory(int capacity, long revision) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity is not positive");
+
+        this.revisions = new long[capacity];
+        this.payloads = new JSONObject[capacity];
+        this.next = 0;
+        this.size = 0;
+        this.floor = revision;
+    }
+
+    /**
+     * Returns the number of payloads kept
+     * @return  The number of payloads kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the revision of the oldest known state, the payloads after it are all kept
+     * @return  The revision of the oldest known state
+     */
+    public long getFloor() {
+        return floor;
+    }
+
+    /**
+     * Records a broadcast payload, forgetting the oldest one if the history is full
+     *
+     * @param revision  The revision of the document after the edit
+     * @param payload   The broadcast payload
+     */
+    public void record(long revision, JSONObject payload) {
+        if (payload == null) throw new IllegalArgumentException("Payload is null");
+
+        if (size == payloads.length) {
+            floor = Math.max(floor, revisions[next]);
+        } else {
+            size++;
+        }
+        revisions[next] = revision;
+        payloads[next] = payload;
+        next = (next + 1) % payloads.length;
+    }
+
+    /**
+     * Returns the payloads recorded after a revision, in order
+     *
+     * @param revision  The last revision known by the client
+     * @return          The payloads the client missed, null if some of them have been forgotten
+     *                  or if the revision is not known by the history
+     */
+    public List<JSONObject> since(long revision) {
+        if (revision < floor) return null;
+
+        //  The edits applied in parallel may be recorded slightly out of the order of their revisions
+        long last = floor;
+        List<JSONObject> missed = new ArrayList<>();
+        for (int i = size; i > 0; i--) {
+            int slot = (next - i + payloads.length) % payloads.length;
+            last = Math.max(last, revisions[slot]);
+            if (revisions[slot] > revision) missed.add(payloads[slot]);
+        }
+        return revision > last ? null : missed;
+    }
+}
@@ -0,0 +1,146 @@
+package fr.univnantes.web.websocket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class used to measure the broadcasts sent to the users
+ * <p>
+ *     A batch is a group of broadcast payloads sent as a single frame to every user of a document
+ *     The sizes of the batches are counted in a histogram with power of two buckets
+ *     It is a singleton
+ * </p>
+ */
+public class BroadcastMetrics {
+
+    /**
+     * Upper bounds of the buckets of the batch size histogram, the last bucket holds every larger batch
+     */
+    public static final int[] BUCKET_BOUNDS = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    private static final AtomicReference<BroadcastMetrics> instance = new AtomicReference<>(null);
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder payloads = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong(0);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+    /**
+     * Creates new broadcast metrics
+     */
+    public BroadcastMetrics() {
+    }
+
+    /**
+     * Returns the instance of the broadcast metrics
+     * Creates it if it does not exist
+     *
+     * @return  The instance of the broadcast metrics
+     */
+    public static BroadcastMetrics getInstance() {
+        if (instance.get() == null) {
+            synchronized (BroadcastMetrics.class) {
+                instance.compareAndSet(null, new BroadcastMetrics());
+            }
+        }
+        return instance.get();
+    }
+
+    /**
+     * Records a batch sent to the users of a document
+     *
+     * @param batchSize     The number of payloads in the batch
+     * @param frameCount    The number of frames sent to the users
+     * @param byteCount     The number of payload bytes sent to the users
+     */
+    public void recordBatch(int batchSize, int frameCount, long byteCount) {
+        if (batchSize <= 0) return;
+
+        batches.increment();
+        payloads.add(batchSize);
+        frames.add(frameCount);
+        bytes.add(byteCount);
+        maxBatchSize.accumulateAndGet(batchSize, Math::max);
+        histogram.incrementAndGet(bucketOf(batchSize));
+    }
+
+    /**
+     * Returns the number of batches sent
+     * @return  The number of batches sent
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of payloads sent
+     * @return  The number of payloads sent
+     */
+    public long getPayloadCount() {
+        return payloads.sum();
+    }
+
+    /**
+     * Returns the number of frames sent, at least one per batch and per recipient
+     * @return  The number of frames sent
+     */
+    public long getFrameCount() {
+        return frames.sum();
+    }
+
+    /**
+     * Returns the number of payload bytes sent, characters for text frames
+     * @return  The number of payload bytes sent
+     */
+    public long getByteCount() {
+        return bytes.sum();
+    }
+
+    /**
+     * Returns the size of the largest batch sent
+     * @return  The size of the largest batch sent
+     */
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * Returns the average number of payloads per batch
+     * @return  The average number of payloads per batch, 0 if no batch has been sent
+     */
+    public double getAverageBatchSize() {
+        long batchCount = getBatchCount();
+        return batchCount == 0 ? 0 : (double) getPayloadCount() / batchCount;
+    }
+
+    /**
+     * Returns the number of batches in each bucket of the histogram
+     * The bucket i holds the batches larger than {@code BUCKET_BOUNDS[i - 1]} and at most {@code BUCKET_BOUNDS[i]}
+     *
+     * @return  The number of batches in each bucket
+     */
+    public long[] getBatchSizeHistogram() {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the bucket of the histogram holding the given batch size
+     *
+     * @param batchSize The number of payloads in the batch
+     * @return          The index of the bucket
+     */
+    private static int bucketOf(int batchSize) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (batchSize <= BUCKET_BOUNDS[i]) return i;
+        }
+        return BUCKET_BOUNDS.length;
+    }
+}
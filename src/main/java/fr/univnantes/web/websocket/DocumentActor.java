@@ -0,0 +1,115 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Single writer of a document
+ * <p>
+ *     The websocket threads push their parsed instructions in a lock free multi producer single consumer queue
+ *     A virtual thread drains the queue and executes the instructions one after the other,
+ *     so the instructions of a document are totally ordered and never contend with each other
+ * </p>
+ * <p>
+ *     The draining thread only lives while there are instructions to execute,
+ *     at most one thread drains the queue at any time
+ * </p>
+ */
+public class DocumentActor {
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentActor.class);
+    private final UUID documentId;
+    private final BiConsumer<WebSocketSession, WebSocketInstruction> executor;
+    private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /**
+     * Represents an instruction waiting to be executed
+     *
+     * @param session       The session which sent the instruction
+     * @param instruction   The parsed instruction
+     */
+    private record Command(WebSocketSession session, WebSocketInstruction instruction) {
+    }
+
+    /**
+     * Creates a new actor for a document
+     *
+     * @param documentId    The identifier of the document
+     * @param executor      Executes an instruction and hands its result to the broadcast stage
+     */
+    public DocumentActor(UUID documentId, BiConsumer<WebSocketSession, WebSocketInstruction> executor) {
+        if (executor == null) throw new IllegalArgumentException("Executor is null");
+
+        this.documentId = documentId;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the identifier of the document
+     * @return  The identifier of the document
+     */
+    public UUID getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * Returns the number of instructions waiting to be executed
+     * @return  The number of instructions waiting to be executed
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Queues an instruction, it will be executed after every instruction submitted before it
+     *
+     * @param session       The session which sent the instruction
+     * @param instruction   The parsed instruction
+     */
+    public void submit(WebSocketSession session, WebSocketInstruction instruction) {
+        if (instruction == null) throw new IllegalArgumentException("Instruction is null");
+
+        queue.offer(new Command(session, instruction));
+        scheduleDrain();
+    }
+
+    /**
+     * Starts a draining thread if none is running
+     */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            Thread.ofVirtual()
+                    .name("document-actor-" + documentId)
+                    .start(this::drain);
+        }
+    }
+
+    /**
+     * Executes the queued instructions until the queue is empty
+     */
+    private void drain() {
+        while (true) {
+            Command command;
+            while ((command = queue.poll()) != null) {
+                try {
+                    executor.accept(command.session(), command.instruction());
+                } catch (RuntimeException e) {
+                    logger.error("An error occurred while executing {} on document {}", command.instruction().getType(), documentId, e);
+                }
+            }
+
+            //  Release the queue, then check that no instruction was queued in between
+            //  If one was, take the queue back unless another thread already did
+            draining.set(false);
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) return;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package fr.univnantes.web.websocket;
+
+/**
+ * Represents what happens when the outbound queue of a session reaches its high water mark
+ * <p>
+ *     The available policies are:
+ *     <ul>
+ *         <li>DROP_AND_RESYNC - The queued messages are dropped and replaced by the whole document</li>
+ *         <li>DISCONNECT - The queued messages are dropped and the session is closed</li>
+ *     </ul>
+ * </p>
+ */
+public enum OverflowPolicy {
+    DROP_AND_RESYNC("DROP_AND_RESYNC"),
+    DISCONNECT("DISCONNECT");
+
+    public final String policy;
+
+    /**
+     * Creates a new overflow policy
+     *
+     * @param policy    The name of the policy
+     */
+    OverflowPolicy(String policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the overflow policy from its string representation
+     *
+     * @param text  The string representation of the overflow policy
+     * @return      The overflow policy, null if it does not exist
+     */
+    public static OverflowPolicy fromString(String text) {
+        for (OverflowPolicy b : OverflowPolicy.values()) {
+            if (b.policy.equalsIgnoreCase(text)) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the overflow policy
+     * @return  The name of the overflow policy
+     */
+    @Override
+    public String toString() {
+        return policy;
+    }
+}
@@ -0,0 +1,252 @@
+package fr.univnantes.web.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * WebSocket session sending its messages asynchronously
+ * <p>
+ *     {@link #sendMessage(WebSocketMessage)} only queues the message and never blocks on the socket,
+ *     a virtual thread drains the queue and writes the messages in order
+ *     A close request is applied once the messages queued before it are written
+ * </p>
+ * <p>
+ *     When the number of queued messages reaches the high water mark, the {@link OverflowPolicy} is applied
+ * </p>
+ * <p>
+ *     {@link #sendMessages(Iterator)} queues a stream of messages as one entry, its messages are built one at a time while they are written
+ *     and the messages queued after it wait for its end
+ * </p>
+ */
+public class QueuedWebSocketSession extends WebSocketSessionDecorator {
+
+    private final Logger logger = LoggerFactory.getLogger(QueuedWebSocketSession.class);
+    private final int highWaterMark;
+    private final OverflowPolicy overflowPolicy;
+    private final Function<WebSocketSession, WebSocketMessage<?>> resync;
+
+    //  Holds messages and streams of messages (iterators)
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    private volatile Iterator<?> stream = null;
+    private final AtomicInteger depth = new AtomicInteger(0);
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicReference<CloseStatus> closeStatus = new AtomicReference<>(null);
+
+    /**
+     * Creates a new queued session
+     *
+     * @param delegate          The session writing on the socket
+     * @param highWaterMark     The number of queued messages triggering the overflow policy
+     * @param overflowPolicy    What happens when the high water mark is reached
+     * @param resync            Returns the message replacing the dropped ones for {@link OverflowPolicy#DROP_AND_RESYNC},
+     *                          it may return null if there is nothing to resync
+     */
+    public QueuedWebSocketSession(WebSocketSession delegate, int highWaterMark, OverflowPolicy overflowPolicy, Function<WebSocketSession, WebSocketMessage<?>> resync) {
+        super(delegate);
+        if (highWaterMark < 1) throw new IllegalArgumentException("High water mark is not positive");
+        if (overflowPolicy == null) throw new IllegalArgumentException("Overflow policy is null");
+        if (resync == null) throw new IllegalArgumentException("Resync is null");
+
+        this.highWaterMark = highWaterMark;
+        this.overflowPolicy = overflowPolicy;
+        this.resync = resync;
+    }
+
+    /**
+     * Returns the number of messages waiting to be written
+     * @return  The number of messages waiting to be written
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Returns the number of messages dropped because the queue overflowed
+     * @return  The number of dropped messages
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns true if the session is open and no close has been requested
+     * @return  True if the session is open, false otherwise
+     */
+    @Override
+    public boolean isOpen() {
+        return closeStatus.get() == null && super.isOpen();
+    }
+
+    /**
+     * Queues a message, it is written after every message queued before it
+     * The message is discarded if the session is closed or closing
+     *
+     * @param message   The message to send
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (message == null) throw new IllegalArgumentException("Message is null");
+        enqueue(message);
+    }
+
+    /**
+     * Queues a stream of messages, counted as one queued message
+     * The messages are pulled from the iterator by the draining thread, one at a time, and written in order
+     * before every message queued after the stream
+     * The stream is abandoned if the queue overflows or the socket is closed
+     *
+     * @param messages  The messages to send
+     */
+    public void sendMessages(Iterator<? extends WebSocketMessage<?>> messages) {
+        if (messages == null) throw new IllegalArgumentException("Messages are null");
+        enqueue(messages);
+    }
+
+    /**
+     * Queues a message or a stream of messages, applying the overflow policy first if the high water mark is reached
+     *
+     * @param entry The message or the stream of messages
+     */
+    private void enqueue(Object entry) {
+        if (closeStatus.get() != null) return;
+
+        if (depth.get() >= highWaterMark) {
+            overflow();
+            if (closeStatus.get() != null) return;
+        }
+
+        queue.offer(entry);
+        depth.incrementAndGet();
+        scheduleDrain();
+    }
+
+    /**
+     * Closes the session once the queued messages are written
+     */
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    /**
+     * Closes the session once the queued messages are written
+     *
+     * @param status    The close status sent to the client
+     */
+    @Override
+    public void close(CloseStatus status) {
+        if (closeStatus.compareAndSet(null, status)) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Applies the overflow policy
+     */
+    private void overflow() {
+        int discarded = clear();
+        logger.warn("Outbound queue of session {} overflowed, {} messages dropped, applying {}", getId(), discarded, overflowPolicy);
+
+        switch (overflowPolicy) {
+            case DROP_AND_RESYNC -> {
+                WebSocketMessage<?> message = resync.apply(this);
+                if (message != null) {
+                    queue.offer(message);
+                    depth.incrementAndGet();
+                }
+            }
+            case DISCONNECT -> close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    /**
+     * Drops every queued message
+     *
+     * @return  The number of dropped messages
+     */
+    private int clear() {
+        stream = null;
+        int discarded = 0;
+        while (queue.poll() != null) {
+            depth.decrementAndGet();
+            discarded++;
+        }
+        dropped.add(discarded);
+        return discarded;
+    }
+
+    /**
+     * Starts a draining thread if none is running
+     */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            Thread.ofVirtual()
+                    .name("outbound-" + getId())
+                    .start(this::drain);
+        }
+    }
+
+    /**
+     * Writes the queued messages until the queue is empty, then applies the close request if any
+     */
+    private void drain() {
+        while (true) {
+            Object entry;
+            while ((entry = queue.poll()) != null) {
+                depth.decrementAndGet();
+                if (entry instanceof Iterator<?> messages) {
+                    //  The messages queued meanwhile wait behind the stream, an overflow clearing the queue abandons it
+                    stream = messages;
+                    while (stream == messages && getDelegate().isOpen() && messages.hasNext()) {
+                        write((WebSocketMessage<?>) messages.next());
+                    }
+                    stream = null;
+                } else {
+                    write((WebSocketMessage<?>) entry);
+                }
+            }
+
+            CloseStatus status = closeStatus.get();
+            if (status != null) {
+                clear();
+                try {
+                    getDelegate().close(status);
+                } catch (IOException e) {
+                    logger.error("An error occurred while closing session {}, {}", getId(), e.getMessage());
+                }
+                return;
+            }
+
+            //  Release the queue, then check that no message was queued in between
+            draining.set(false);
+            if ((queue.isEmpty() && closeStatus.get() == null) || !draining.compareAndSet(false, true)) return;
+        }
+    }
+
+    /**
+     * Writes a message on the socket if it is still open
+     *
+     * @param message   The message to write
+     */
+    private void write(WebSocketMessage<?> message) {
+        try {
+            if (getDelegate().isOpen()) getDelegate().sendMessage(message);
+        } catch (IOException | RuntimeException e) {
+            logger.error("An error occurred while sending a message to session {}, {}", getId(), e.getMessage());
+        }
+    }
+}
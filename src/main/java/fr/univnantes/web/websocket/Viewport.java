@@ -0,0 +1,157 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.web.websocket.instruction.DeleteCharInstruction;
+import fr.univnantes.web.websocket.instruction.DeleteLineBrkInstruction;
+import fr.univnantes.web.websocket.instruction.DeleteRangeInstruction;
+import fr.univnantes.web.websocket.instruction.InsertCharInstruction;
+import fr.univnantes.web.websocket.instruction.InsertLineBrkInstruction;
+import fr.univnantes.web.websocket.instruction.InsertTextInstruction;
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction.JSONAttributes;
+import org.json.JSONObject;
+
+import static fr.univnantes.web.websocket.instruction.Utils.generateViewportMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.generateViewportShiftMessage;
+
+/**
+ * Represents the lines of a document displayed by a session
+ * <p>
+ *     A session declaring a viewport holds only these lines, the broadcast edits are routed by {@link #route}:
+ *     an edit inside the viewport is delivered as is, an edit before it adding or removing lines is replaced by a shift,
+ *     an edit crossing one of its bounds is replaced by the new content of the viewport, and any other edit is not sent
+ * </p>
+ * <p>
+ *     The viewport follows the lines it holds, it moves with the lines added or removed before it
+ *     and grows or shrinks with the lines added or removed inside it
+ * </p>
+ * <p>
+ *     The content of the viewport is read at a revision which may be after the edits routed so far,
+ *     the edits up to that revision are already in the content and are no longer routed
+ * </p>
+ */
+public class Viewport {
+
+    private int start;
+    private int end;
+    private long revision = -1;
+
+    /**
+     * Represents the lines touched by an edit
+     *
+     * @param first The first touched line, before the edit
+     * @param last  The last touched line, before the edit
+     * @param delta The number of lines added by the edit, negative if lines are removed
+     */
+    private record Span(int first, int last, int delta) {
+    }
+
+    /**
+     * Creates a new viewport
+     *
+     * @param start The first visible line
+     * @param end   The line after the last visible line
+     * @throws IllegalArgumentException If the first line is negative or the viewport is empty
+     */
+    public Viewport(int start, int end) {
+        if (start < 0) throw new IllegalArgumentException("Viewport start is negative");
+        if (end <= start) throw new IllegalArgumentException("Viewport is empty");
+
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the first visible line
+     * @return  The first visible line
+     */
+    public synchronized int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the line after the last visible line
+     * @return  The line after the last visible line
+     */
+    public synchronized int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the revision of the last content of the viewport sent to the session
+     * @return  The revision, -1 if no content has been sent
+     */
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Returns the viewport message holding the current lines of the viewport
+     * The edits up to the revision of the message are no longer routed, the message holds them
+     *
+     * @param document  The document
+     * @return          The viewport message
+     */
+    public synchronized JSONObject content(Document document) {
+        JSONObject message = generateViewportMessage(document, start, end);
+        revision = Math.max(revision, message.getLong(JSONAttributes.REVISION));
+        return message;
+    }
+
+    /**
+     * Routes a broadcast to the session and moves the viewport with the lines it holds
+     * The broadcasts of a document must be routed in the order of their edits
+     *
+     * @param instruction   The executed instruction, null for a control message
+     * @param payload       The broadcast version of the instruction
+     * @param document      The edited document, read when the viewport must be sent again
+     * @return              The payload itself if it is delivered as is, the message replacing it,
+     *                      or null if the session does not need it or already holds the edit
+     */
+    public synchronized JSONObject route(WebSocketInstruction instruction, JSONObject payload, Document document) {
+        Span span = switch (instruction) {
+            case InsertCharInstruction i -> new Span(i.getLineIndex(), i.getLineIndex(), 0);
+            case DeleteCharInstruction i -> new Span(i.getLineIndex(), i.getLineIndex(), 0);
+            case InsertLineBrkInstruction i -> new Span(i.getLineIndex(), i.getLineIndex(), 1);
+            case DeleteLineBrkInstruction i -> new Span(i.getLineIndex() - 1, i.getLineIndex(), -1);
+            case InsertTextInstruction i -> new Span(i.getLineIndex(), i.getLineIndex(), (int) i.getText().chars().filter(c -> c == '\n').count());
+            case DeleteRangeInstruction i -> new Span(i.getLineIndex(), i.getEndLineIndex(), i.getLineIndex() - i.getEndLineIndex());
+            case null, default -> null;
+        };
+        //  Renaming, connections and control messages concern every session
+        if (span == null) return payload;
+
+        //  The edit is already in the content last sent, the bounds were read after it
+        long editRevision = payload.optLong(JSONAttributes.REVISION, -1);
+        if (editRevision >= 0 && editRevision <= revision) return null;
+
+        if (span.last() < start) {
+            if (span.delta() == 0) return null;
+            start = shift(start, span.delta());
+            end = shift(end, span.delta());
+            return generateViewportShiftMessage(span.delta(), start, end);
+        }
+        if (span.first() >= end) return null;
+
+        if (span.first() >= start && span.last() < end) {
+            end = Math.max(shift(end, span.delta()), start + 1);
+            return payload;
+        }
+
+        //  The edit crosses a bound, the session cannot apply it without the lines outside the viewport
+        start = Math.min(start, span.first());
+        end = Math.max(shift(Math.max(end, span.last() + 1), span.delta()), start + 1);
+        return content(document);
+    }
+
+    /**
+     * Moves a line by a number of lines, without overflowing
+     *
+     * @param line  The line
+     * @param delta The number of lines to move it by
+     * @return      The moved line
+     */
+    private static int shift(int line, int delta) {
+        return Math.clamp((long) line + delta, 0, Integer.MAX_VALUE);
+    }
+}
@@ -1,9 +1,12 @@
 package fr.univnantes.web.websocket;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 /**
  * Holds the websocket configuration.
@@ -11,11 +14,59 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
  *     The websocket configuration is used to register the websocket handler.
  *     It is used to handle the websocket requests.
  * </p>
+ * <p>
+ *     The property websocket.actor.enabled selects how the instructions targeting a document are executed,
+ *     by the websocket threads (false, default) or by the single writer actor of the document (true).
+ *     The properties websocket.broadcast.window-ms and websocket.broadcast.max-batch-size select how the broadcasts are coalesced.
+ *     The properties websocket.outbound.high-water-mark and websocket.outbound.overflow-policy bound the outbound queue of each session.
+ *     The property websocket.connect.chunk-size bounds the number of characters of the document sent in one message on CONNECT.
+ *     The properties websocket.history.size and websocket.resume.grace-ms select how the users reconnecting after a network failure are resumed.
+ *     The property websocket.max-message-size bounds the size of a received message, so a pasted text fits in one message.
+ * </p>
  */
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    @Value("${websocket.actor.enabled:false}")
+    private boolean actorEnabled;
+
+    @Value("${websocket.broadcast.window-ms:0}")
+    private long broadcastWindowMillis;
+
+    @Value("${websocket.broadcast.max-batch-size:64}")
+    private int broadcastMaxBatchSize;
+
+    @Value("${websocket.outbound.high-water-mark:1024}")
+    private int outboundHighWaterMark;
+
+    @Value("${websocket.outbound.overflow-policy:DROP_AND_RESYNC}")
+    private String outboundOverflowPolicy;
+
+    @Value("${websocket.connect.chunk-size:65536}")
+    private int connectChunkSize;
+
+    @Value("${websocket.history.size:1024}")
+    private int historySize;
+
+    @Value("${websocket.resume.grace-ms:30000}")
+    private long resumeGraceMillis;
+
+    @Value("${websocket.max-message-size:1048576}")
+    private int maxMessageSize;
+
+    /**
+     * Creates the websocket container, accepting messages up to the maximum message size
+     * @return  The factory of the websocket container
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxMessageSize);
+        container.setMaxBinaryMessageBufferSize(maxMessageSize);
+        return container;
+    }
+
     /**
      * Registers the websocket handler.
      * @param registry  The websocket handler registry
@@ -23,6 +74,18 @@ public class WebSocketConfig implements WebSocketConfigurer {
     //  TODO:   CROSS ORIGIN, NEED TO NARROW IT DOWN TO THE FRONTEND, NOW JUST ACCEPTS EVERYTHING FOR TESTING PURPOSES
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(new WebSocketHandler(), "/ws").setAllowedOrigins("*");
+        OverflowPolicy overflowPolicy = OverflowPolicy.fromString(outboundOverflowPolicy);
+        if (overflowPolicy == null) throw new IllegalArgumentException("Outbound overflow policy is invalid: " + outboundOverflowPolicy);
+
+        WebSocketSettings settings = new WebSocketSettings(
+                actorEnabled,
+                broadcastWindowMillis,
+                broadcastMaxBatchSize,
+                outboundHighWaterMark,
+                overflowPolicy,
+                connectChunkSize,
+                historySize,
+                resumeGraceMillis);
+        registry.addHandler(new WebSocketHandler(settings), "/ws").setAllowedOrigins("*");
     }
 }
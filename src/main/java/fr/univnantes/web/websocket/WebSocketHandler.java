@@ -2,25 +2,36 @@ package fr.univnantes.web.websocket;
 
 import fr.univnantes.document.Document;
 import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.MemoryBudgetExceededException;
+import fr.univnantes.document.transform.StaleRevisionException;
 import fr.univnantes.user.User;
 import fr.univnantes.user.UserManager;
+import fr.univnantes.web.websocket.instruction.BinaryInstructionCodec;
+import fr.univnantes.web.websocket.instruction.DecodeResult;
 import fr.univnantes.web.websocket.instruction.DisconnectInstruction;
+import fr.univnantes.web.websocket.instruction.InstructionContext;
 import fr.univnantes.web.websocket.instruction.InstructionType;
 import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.generateResyncMessage;
 
 /**
  * WebSocketHandler
@@ -29,33 +40,145 @@ import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage
  * It handles the requests to the WebSocket gets WebSocketInstructions and executes them.
  * It is used to insert and delete characters in a document.
  * </p>
+ * <p>
+ * In actor mode, the instructions targeting a document are not executed by the websocket thread
+ * but queued to the {@link DocumentActor} of the document, which executes them one after the other.
+ * </p>
+ * <p>
+ * Every session is wrapped in a {@link QueuedWebSocketSession}, so sending a message never blocks on the socket of a peer.
+ * </p>
+ * <p>
+ * The clients negotiating the {@link BinaryInstructionCodec#SUBPROTOCOL} sub-protocol may send their edits as binary frames
+ * and receive the edits of the others as binary frames, the other clients keep using JSON text frames.
+ * </p>
  */
-public class WebSocketHandler extends TextWebSocketHandler {
+public class WebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
 
     private final Logger logger = LoggerFactory.getLogger(WebSocketHandler.class);
     private final DocumentManager documentManager = DocumentManager.getInstance();
     private final UserManager userManager = UserManager.getInstance();
     private final WebSocketSessionManager webSocketSessionManager = WebSocketSessionManager.getInstance();
+    private final BroadcastMetrics broadcastMetrics = BroadcastMetrics.getInstance();
+    private final WebSocketSettings settings;
+    private final InstructionContext context;
+    private final Map<UUID, DocumentActor> actors = new ConcurrentHashMap<>();
+    private final Map<UUID, BroadcastAggregator> aggregators = new ConcurrentHashMap<>();
+    private final Map<WebSocketSession, QueuedWebSocketSession> queuedSessions = new ConcurrentHashMap<>();
+    private final Map<UUID, Object> graceTokens = new ConcurrentHashMap<>();
 
     /**
-     * Handles the TextMessage received from the WebSocket
+     * Creates a new handler with the default settings
+     */
+    public WebSocketHandler() {
+        this(WebSocketSettings.defaults());
+    }
+
+    /**
+     * Creates a new handler
+     *
+     * @param settings  The settings of the handler
+     */
+    public WebSocketHandler(WebSocketSettings settings) {
+        if (settings == null) throw new IllegalArgumentException("Settings are null");
+
+        this.settings = settings;
+        this.context = new InstructionContext(settings, aggregators::get);
+
+        //  An evicted document is loaded back as a new instance, its actor and aggregator must not outlive it
+        documentManager.addEvictionListener(this::release);
+    }
+
+    /**
+     * Releases the state kept for a document evicted from memory
+     *
+     * @param documentId    The UUID of the document
+     */
+    private void release(UUID documentId) {
+        actors.remove(documentId);
+        aggregators.remove(documentId);
+    }
+
+    /**
+     * Returns the settings of the handler
+     * @return  The settings of the handler
+     */
+    public WebSocketSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Returns the sub-protocols supported by the handler, a client requesting none uses the JSON protocol
+     * @return  The supported sub-protocols
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BinaryInstructionCodec.SUBPROTOCOL);
+    }
+
+    /**
+     * Wraps a new WebSocket session in an outbound queue
      *
      * @param session The WebSocket session
+     * @throws Exception If an error occurs
+     */
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        super.afterConnectionEstablished(session);
+
+        queuedSessions.put(session, new QueuedWebSocketSession(
+                session,
+                settings.outboundHighWaterMark(),
+                settings.outboundOverflowPolicy(),
+                this::generateResync));
+    }
+
+    /**
+     * Returns the queued version of a WebSocket session
+     *
+     * @param session The WebSocket session given by the container
+     * @return        The queued session, the given session if it has not been wrapped
+     */
+    private WebSocketSession queued(WebSocketSession session) {
+        WebSocketSession queuedSession = queuedSessions.get(session);
+        return queuedSession == null ? session : queuedSession;
+    }
+
+    /**
+     * Returns the message resynchronizing a session with its document
+     *
+     * @param session The queued WebSocket session
+     * @return        The resync message, null if the session is not connected to a document
+     */
+    private TextMessage generateResync(WebSocketSession session) {
+        UUID documentId = webSocketSessionManager.getDocumentId(session);
+        if (documentId == null) return null;
+
+        Document document = documentManager.getDocument(documentId);
+        if (document == null) return null;
+
+        return new TextMessage(generateResyncMessage(document));
+    }
+
+    /**
+     * Handles the TextMessage received from the WebSocket
+     *
+     * @param containerSession The WebSocket session
      * @param message The message received
      * @throws IOException If an I/O error occurs
      */
     @Override
-    public void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException, InvocationTargetException, NoSuchMethodException, InstantiationException, IllegalAccessException {
+    public void handleTextMessage(WebSocketSession containerSession, TextMessage message) throws IOException {
+        WebSocketSession session = queued(containerSession);
+
         //  Parse the message into a WebSocketInstruction
-        WebSocketInstruction parsedInstruction;
-        try {
-            parsedInstruction = InstructionType.getConstructedInstruction(message);
-        } catch (IllegalArgumentException e) {
-            session.sendMessage(new TextMessage(generateErrorMessage(e.getMessage())));
+        DecodeResult result = InstructionType.decode(message);
+        if (!result.isSuccess()) {
+            session.sendMessage(new TextMessage(generateErrorMessage(result.error())));
             session.close();
-            logger.error("An error occurred while parsing the message {}, {}", message.getPayload(), e.getMessage());
+            logger.error("An error occurred while parsing the message {}, {}", message.getPayload(), result.error());
             return;
         }
+        WebSocketInstruction parsedInstruction = result.instruction();
 
         //  Get instruction type
         InstructionType instructionType = parsedInstruction.getType();
@@ -89,6 +212,88 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
         }
 
+        dispatch(session, parsedInstruction);
+    }
+
+    /**
+     * Handles the BinaryMessage received from the WebSocket
+     * The instruction is executed on behalf of the user connected on the session
+     *
+     * @param containerSession The WebSocket session
+     * @param message The message received
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void handleBinaryMessage(WebSocketSession containerSession, BinaryMessage message) throws IOException {
+        WebSocketSession session = queued(containerSession);
+
+        //  The binary protocol does not carry the user identifier, the user must have connected with CONNECT
+        UUID sessionUserId = webSocketSessionManager.getUserId(session);
+        if (sessionUserId == null) {
+            session.sendMessage(new TextMessage(generateErrorMessage("User is not connected")));
+            session.close();
+            return;
+        }
+
+        //  Decode the message into a WebSocketInstruction
+        WebSocketInstruction parsedInstruction;
+        try {
+            parsedInstruction = BinaryInstructionCodec.decode(message.getPayload(), sessionUserId);
+        } catch (IllegalArgumentException e) {
+            session.sendMessage(new TextMessage(generateErrorMessage(e.getMessage())));
+            session.close();
+            logger.error("An error occurred while decoding a binary message of user {}, {}", sessionUserId, e.getMessage());
+            return;
+        }
+
+        dispatch(session, parsedInstruction);
+    }
+
+    /**
+     * Executes an instruction, or queues it to the actor of its document in actor mode
+     *
+     * @param session               The WebSocket session which sent the instruction
+     * @param parsedInstruction     The instruction to execute
+     * @throws IOException If an I/O error occurs
+     */
+    private void dispatch(WebSocketSession session, WebSocketInstruction parsedInstruction) throws IOException {
+        InstructionType instructionType = parsedInstruction.getType();
+
+        //  In actor mode, hand the instructions targeting a document to its single writer
+        UUID targetDocumentId = webSocketSessionManager.getDocumentId(session);
+        if (settings.actorEnabled() && instructionType.requiresActionTargetCheck && targetDocumentId != null) {
+            actors.computeIfAbsent(targetDocumentId, id -> new DocumentActor(id, this::executeQueued))
+                    .submit(session, parsedInstruction);
+            return;
+        }
+
+        execute(session, parsedInstruction);
+    }
+
+    /**
+     * Executes an instruction queued to a document actor
+     *
+     * @param session               The WebSocket session which sent the instruction
+     * @param parsedInstruction     The instruction to execute
+     */
+    private void executeQueued(WebSocketSession session, WebSocketInstruction parsedInstruction) {
+        try {
+            execute(session, parsedInstruction);
+        } catch (IOException e) {
+            logger.error("An error occurred while sending the result of {}, {}", parsedInstruction.getType(), e.getMessage());
+        }
+    }
+
+    /**
+     * Executes an instruction and broadcasts it to the users of the document if needed
+     *
+     * @param session               The WebSocket session which sent the instruction
+     * @param parsedInstruction     The instruction to execute
+     * @throws IOException If an I/O error occurs
+     */
+    private void execute(WebSocketSession session, WebSocketInstruction parsedInstruction) throws IOException {
+        InstructionType instructionType = parsedInstruction.getType();
+
         //  Execute the instruction depending on its type
         //  Store operation execution result
         boolean didOperationSucceeded = false;
@@ -100,8 +305,16 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     .getCallable(webSocketSessionManager,
                             session,
                             documentManager,
-                            userManager)
+                            userManager,
+                            context)
                     .call();
+        } catch (MemoryBudgetExceededException | StaleRevisionException e) {
+            //  The client already applied the edit locally, resynchronize it with the unchanged document
+            session.sendMessage(new TextMessage(generateErrorMessage(e.getMessage())));
+            TextMessage resync = generateResync(session);
+            if (resync != null) session.sendMessage(resync);
+            logger.warn("Rejected {}, {}", instructionType, e.getMessage());
+            return;
         } catch (Exception e) {
             session.sendMessage(new TextMessage(generateErrorMessage("An error occurred while executing the instruction. Cause: " + e.getMessage())));
             logger.error("An error occurred while executing the instruction. Cause: {}", e.getMessage());
@@ -116,28 +329,48 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
         //  Retrieve the document and broadcast the message to all users
         UUID documentId = webSocketSessionManager.getDocumentId(session);
-        Document document = documentManager.getDocument(documentId);
+        if (documentId == null) return;
 
-        TextMessage broadcastMessage = new TextMessage(parsedInstruction.getBroadcastVersion().toString());
+        Document document = documentManager.getDocument(documentId);
+        if (document == null) return;
 
-        //  Broadcast the message to all users but not the user who sent the message
-        for (User u : document.getUsers().values()) {
-            if (u.getSession() != null && u.getSession().isOpen()) {
-                u.getSession().sendMessage(broadcastMessage);
-            }
+        //  The edits are stamped with their revision and kept for the users reconnecting, the connections are not
+        if (instructionType == InstructionType.CONNECT) {
+            aggregatorOf(document).add(parsedInstruction, parsedInstruction.getBroadcastVersion());
+        } else {
+            aggregatorOf(document).addEdit(parsedInstruction, parsedInstruction.getBroadcastVersion());
         }
     }
 
+    /**
+     * Returns the aggregator broadcasting the payloads to all users of a document, creating it if needed
+     * A payload may be sent later with the following ones, see {@link BroadcastAggregator}
+     *
+     * @param document      The document whose users receive the payloads
+     * @return              The aggregator of the document
+     */
+    private BroadcastAggregator aggregatorOf(Document document) {
+        return aggregators.computeIfAbsent(document.getUUID(), id -> new BroadcastAggregator(
+                document,
+                settings.broadcastWindowMillis(),
+                settings.broadcastMaxBatchSize(),
+                broadcastMetrics,
+                settings.historySize()));
+    }
+
     /**
      * Handles the connection of a user to the WebSocket
      *
-     * @param session The WebSocket session
+     * @param containerSession The WebSocket session
      * @throws IOException If an I/O error occurs
      * @apiNote This method is not implemented for now
      */
     @Override
-    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        super.afterConnectionClosed(session, status);
+    public void afterConnectionClosed(WebSocketSession containerSession, CloseStatus status) throws Exception {
+        super.afterConnectionClosed(containerSession, status);
+
+        WebSocketSession session = queued(containerSession);
+        queuedSessions.remove(containerSession);
 
         //  Search for the document in memory
         UUID documentId = webSocketSessionManager.getDocumentId(session);
@@ -167,9 +400,20 @@ public class WebSocketHandler extends TextWebSocketHandler {
         //  If the user does exist, remove it from the document
         if (user != null)   document.removeUser(user);
 
-        //  Remove the session from the session manager and user from the user manager
+        //  Remove the session from the session manager
         webSocketSessionManager.removeSession(session);
-        userManager.removeUser(userIdentifier);
+
+        //  A user still known lost its connection without DISCONNECT, it may reconnect during the grace time without joining again
+        //  Only the timer of the latest disconnection may expire the user, the timers of the previous ones are outdated
+        if (user != null && settings.resumeGraceMillis() > 0) {
+            Object token = new Object();
+            graceTokens.put(userIdentifier, token);
+            document.addJoiningUser(user);
+            CompletableFuture.delayedExecutor(settings.resumeGraceMillis(), TimeUnit.MILLISECONDS)
+                    .execute(() -> expire(document, user, token));
+        } else {
+            userManager.removeUser(userIdentifier);
+        }
 
         //  Get the list of users in the document and broadcast the message to all users
         Map<UUID, User> usersMap = document.getUsers();
@@ -182,15 +426,29 @@ public class WebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        //  Broadcast the message to all users but not the user who sent the message
+        //  Broadcast the message to all users that are still connected
         String message = DisconnectInstruction.generateBroadcastMessage(userIdentifier);
+        aggregatorOf(document).add(new JSONObject(message));
+        logger.info("User {} disconnected from document {}", userIdentifier, documentId);
+    }
 
-        //  Broadcast the message to all users that are still connected
-        for (User u : users) {
-            if (u.getSession() != null && u.getSession().isOpen()) {
-                u.getSession().sendMessage(new TextMessage(message));
-            }
+    /**
+     * Forgets a user whose connection was lost if it has not reconnected during the grace time
+     * <p>
+     * A user reconnecting and losing its connection again starts a new grace time,
+     * the timer of the previous one no longer holds the latest token and does nothing.
+     * </p>
+     *
+     * @param document  The document the user was connected to
+     * @param user      The user
+     * @param token     The token of the disconnection which started the timer
+     */
+    private void expire(Document document, User user, Object token) {
+        if (!graceTokens.remove(user.getUUID(), token)) return;
+
+        if (document.removeJoiningUser(user)) {
+            userManager.removeUser(user.getUUID());
+            logger.info("User {} did not reconnect to document {}", user.getUUID(), document.getUUID());
         }
-        logger.info("User {} disconnected from document {}", userIdentifier, documentId);
     }
 }
\ No newline at end of file
@@ -2,14 +2,19 @@ package fr.univnantes.web.websocket;
 
 import org.springframework.web.socket.WebSocketSession;
 
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class is used to manage the WebSocket sessions.
  * It is used to store the document id and the user id of a session.
  * It is also used to check if a session is already connected.
+ * Each connected user gets a short identifier, used by the binary protocol instead of its UUID,
+ * it is valid as long as the session of the user is connected.
+ * A session may declare a {@link Viewport}, the lines it displays, to receive only the edits touching them.
  */
 public class WebSocketSessionManager {
 
@@ -17,6 +22,9 @@ public class WebSocketSessionManager {
     private final ConcurrentHashMap<WebSocketSession, UUID> documentsSessions;
     private final ConcurrentHashMap<WebSocketSession, UUID> sessionToUser;
     private final ConcurrentHashMap<UUID, WebSocketSession> userToSession;
+    private final ConcurrentHashMap<UUID, Integer> userToShortId;
+    private final ConcurrentHashMap<WebSocketSession, Viewport> sessionToViewport;
+    private final AtomicInteger nextShortId;
 
     /**
      * Creates a new WebSocketSessionManager
@@ -25,6 +33,9 @@ public class WebSocketSessionManager {
         documentsSessions = new ConcurrentHashMap<>();
         sessionToUser = new ConcurrentHashMap<>();
         userToSession = new ConcurrentHashMap<>();
+        userToShortId = new ConcurrentHashMap<>();
+        sessionToViewport = new ConcurrentHashMap<>();
+        nextShortId = new AtomicInteger(1);
     }
 
     /**
@@ -57,6 +68,7 @@ public class WebSocketSessionManager {
             documentsSessions.put(session, documentId);
             sessionToUser.put(session, userId);
             userToSession.put(userId, session);
+            userToShortId.put(userId, nextShortId.getAndIncrement());
 
             return true;
         }
@@ -74,11 +86,13 @@ public class WebSocketSessionManager {
                 return false;
             }
             documentsSessions.remove(session);
+            sessionToViewport.remove(session);
 
             if (sessionToUser.containsKey(session)) {
                 UUID userId = sessionToUser.remove(session);
                 if (userId != null) {
                     userToSession.remove(userId);
+                    userToShortId.remove(userId);
                 }
             }
 
@@ -106,6 +120,19 @@ public class WebSocketSessionManager {
         return sessionToUser.get(session);
     }
 
+    /**
+     * Returns the short identifier of a connected user
+     *
+     * @param userId    The user id
+     * @return          The short identifier of the user, 0 if the user is not in the WebSocketSessionManager
+     */
+    public int getShortUserId(UUID userId) {
+        if (userId == null) return 0;
+
+        Integer shortId = userToShortId.get(userId);
+        return shortId == null ? 0 : shortId;
+    }
+
     /**
      * Returns the session of a user
      *
@@ -129,6 +156,33 @@ public class WebSocketSessionManager {
         return getDocumentId(session);
     }
 
+    /**
+     * Sets the viewport of a session, replacing the previous one
+     *
+     * @param session   The session displaying the viewport
+     * @param viewport  The visible lines
+     * @return          True if the viewport was set, false if the session is not connected
+     */
+    public boolean setViewport(WebSocketSession session, Viewport viewport) {
+        if (viewport == null) throw new IllegalArgumentException("Viewport is null");
+
+        synchronized (WebSocketSessionManager.class) {
+            if (!documentsSessions.containsKey(session)) return false;
+            sessionToViewport.put(session, viewport);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the viewport of a session
+     *
+     * @param session   The session
+     * @return          The viewport of the session, null if it receives the whole document
+     */
+    public Viewport getViewport(WebSocketSession session) {
+        return sessionToViewport.get(session);
+    }
+
     /**
      * Checks if a session is already connected
      *
@@ -138,4 +192,13 @@ public class WebSocketSessionManager {
     public boolean isAlreadyConnected(WebSocketSession session) {
         return documentsSessions.containsKey(session) || sessionToUser.containsKey(session);
     }
+
+    /**
+     * Returns the connected sessions and the user id of each one
+     *
+     * @return  A copy of the connected sessions associated to their user id
+     */
+    public Map<WebSocketSession, UUID> getSessions() {
+        return Map.copyOf(sessionToUser);
+    }
 }
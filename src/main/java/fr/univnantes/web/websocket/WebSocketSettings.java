@@ -0,0 +1,53 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.web.websocket.instruction.DocumentChunks;
+
+/**
+ * Holds the settings of the websocket handler
+ *
+ * @param actorEnabled              True if the instructions targeting a document are executed by its actor,
+ *                                  false if they are executed by the websocket threads
+ * @param broadcastWindowMillis     The time a broadcast may wait to be sent with the following ones, in milliseconds,
+ *                                  0 to send every broadcast immediately
+ * @param broadcastMaxBatchSize     The maximum number of broadcasts sent in one frame
+ * @param outboundHighWaterMark     The number of messages queued for a session triggering the overflow policy
+ * @param outboundOverflowPolicy    What happens when the outbound queue of a session reaches its high water mark
+ * @param connectChunkSize          The maximum number of characters of the document sent in one message on CONNECT,
+ *                                  a larger document is streamed in chunks
+ * @param historySize               The number of edits of each document kept for the users reconnecting
+ * @param resumeGraceMillis         The time a user whose connection was lost may reconnect without joining again, in milliseconds,
+ *                                  0 to forget the user immediately
+ */
+public record WebSocketSettings(boolean actorEnabled, long broadcastWindowMillis, int broadcastMaxBatchSize,
+                                int outboundHighWaterMark, OverflowPolicy outboundOverflowPolicy, int connectChunkSize,
+                                int historySize, long resumeGraceMillis) {
+
+    /**
+     * Creates new settings
+     *
+     * @throws IllegalArgumentException If the window is negative, if the maximum batch size or the high water mark is not positive,
+     *                                  if the overflow policy is null, if the chunk size is lower than 2,
+     *                                  if the history size is not positive or if the grace time is negative
+     */
+    public WebSocketSettings {
+        if (broadcastWindowMillis < 0) throw new IllegalArgumentException("Broadcast window is negative");
+        if (broadcastMaxBatchSize < 1) throw new IllegalArgumentException("Broadcast maximum batch size is not positive");
+        if (outboundHighWaterMark < 1) throw new IllegalArgumentException("Outbound high water mark is not positive");
+        if (outboundOverflowPolicy == null) throw new IllegalArgumentException("Outbound overflow policy is null");
+        if (connectChunkSize < 2) throw new IllegalArgumentException("Connect chunk size is lower than 2");
+        if (historySize < 1) throw new IllegalArgumentException("History size is not positive");
+        if (resumeGraceMillis < 0) throw new IllegalArgumentException("Resume grace time is negative");
+    }
+
+    /**
+     * Returns the default settings, instructions executed by the websocket threads, broadcasts sent immediately
+     * clients which cannot keep up resynchronized, documents streamed by chunks of 64K characters
+     * and the last 1024 edits of each document replayed to the users reconnecting within 30 seconds
+     *
+     * @return  The default settings
+     */
+    public static WebSocketSettings defaults() {
+        return new WebSocketSettings(false, 0, 64, 1024, OverflowPolicy.DROP_AND_RESYNC, DocumentChunks.DEFAULT_CHUNK_SIZE,
+                BroadcastHistory.DEFAULT_CAPACITY, 30_000);
+    }
+}
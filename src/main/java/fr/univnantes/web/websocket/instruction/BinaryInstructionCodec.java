@@ -0,0 +1,197 @@
+package fr.univnantes.web.websocket.instruction;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Encodes and decodes the instructions of the binary websocket protocol.
+ * <p>
+ *     The binary protocol is negotiated with the {@link #SUBPROTOCOL} websocket sub-protocol.
+ *     An instruction starts with the one byte opcode of its {@link InstructionType},
+ *     followed by its fields, integers being unsigned LEB128 varints and strings being a varint length followed by UTF-8 bytes.
+ *
+ *     A client sends one instruction per binary frame, without user identifier, the user being the one connected on the session:
+ *     INSERT_CHAR      opcode lineIdx columnIdx char
+ *     INSERT_LINE_BRK  opcode lineIdx columnIdx
+ *     DELETE_CHAR      opcode lineIdx columnIdx
+ *     DELETE_LINE_BRK  opcode lineIdx
+ *     CHANGE_DOC_NAME  opcode newName
+ *     DISCONNECT       opcode
+ *     INSERT_TEXT      opcode lineIdx columnIdx text
+ *     DELETE_RANGE     opcode lineIdx columnIdx endLineIdx endColumnIdx
+ *     SET_VIEWPORT     opcode lineIdx endLineIdx
+ *
+ *     The server broadcasts the same records with the short identifier of the author after the opcode,
+ *     a frame may hold several records one after the other.
+ *     CONNECT, the control messages (errors, connections, disconnections) and the viewport messages stay JSON text frames.
+ * </p>
+ */
+public class BinaryInstructionCodec {
+
+    public static final String SUBPROTOCOL = "editor.binary.v1";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BinaryInstructionCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Decodes an instruction sent by a client
+     *
+     * @param buffer            The content of the binary frame
+     * @param userIdentifier    The user connected on the session which received the frame
+     * @return                  The decoded instruction
+     * @throws IllegalArgumentException If the frame is not a valid instruction
+     */
+    public static WebSocketInstruction decode(ByteBuffer buffer, UUID userIdentifier) {
+        if (buffer == null) throw new IllegalArgumentException("Payload is null");
+        if (!buffer.hasRemaining()) throw new IllegalArgumentException("Payload is empty");
+
+        InstructionType type = InstructionType.fromOpcode(buffer.get());
+        if (type == null) throw new IllegalArgumentException("Opcode is unknown");
+
+        WebSocketInstruction instruction = switch (type) {
+            case INSERT_CHAR -> {
+                int lineIndex = readVarint(buffer);
+                int columnIndex = readVarint(buffer);
+                int character = readVarint(buffer);
+                if (character > Character.MAX_VALUE) throw new IllegalArgumentException("char is not a single character");
+                yield new InsertCharInstruction(lineIndex, columnIndex, (char) character, userIdentifier);
+            }
+            case INSERT_LINE_BRK -> new InsertLineBrkInstruction(readVarint(buffer), readVarint(buffer), userIdentifier);
+            case DELETE_CHAR -> new DeleteCharInstruction(readVarint(buffer), readVarint(buffer), userIdentifier);
+            case DELETE_LINE_BRK -> new DeleteLineBrkInstruction(readVarint(buffer), userIdentifier);
+            case CHANGE_DOC_NAME -> new ChangeDocNameInstruction(readString(buffer), userIdentifier);
+            case DISCONNECT -> new DisconnectInstruction(userIdentifier);
+            case INSERT_TEXT -> new InsertTextInstruction(readVarint(buffer), readVarint(buffer), readString(buffer), userIdentifier);
+            case DELETE_RANGE -> new DeleteRangeInstruction(readVarint(buffer), readVarint(buffer), readVarint(buffer), readVarint(buffer), userIdentifier);
+            case SET_VIEWPORT -> {
+                int lineIndex = readVarint(buffer);
+                int endLineIndex = readVarint(buffer);
+                if (endLineIndex <= lineIndex) throw new IllegalArgumentException("endLineIdx is not after lineIdx");
+                yield new SetViewportInstruction(lineIndex, endLineIndex, userIdentifier);
+            }
+            case CONNECT -> throw new IllegalArgumentException("CONNECT must be sent as JSON");
+        };
+
+        if (buffer.hasRemaining()) throw new IllegalArgumentException("Payload contains trailing bytes");
+        return instruction;
+    }
+
+    /**
+     * Encodes the broadcast version of an instruction
+     *
+     * @param instruction   The executed instruction
+     * @param shortUserId   The short identifier of the author of the instruction
+     * @return              The encoded record, null if the instruction is only broadcast as JSON
+     */
+    public static byte[] encode(WebSocketInstruction instruction, int shortUserId) {
+        if (instruction == null) throw new IllegalArgumentException("Instruction is null");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        out.write(instruction.getType().opcode);
+        writeVarint(out, shortUserId);
+
+        switch (instruction) {
+            case InsertCharInstruction i -> {
+                writeVarint(out, i.getLineIndex());
+                writeVarint(out, i.getColumnIndex());
+                writeVarint(out, i.getCharacter());
+            }
+            case InsertLineBrkInstruction i -> {
+                writeVarint(out, i.getLineIndex());
+                writeVarint(out, i.getColumnIndex());
+            }
+            case DeleteCharInstruction i -> {
+                writeVarint(out, i.getLineIndex());
+                writeVarint(out, i.getColumnIndex());
+            }
+            case DeleteLineBrkInstruction i -> writeVarint(out, i.getLineIndex());
+            case ChangeDocNameInstruction i -> writeString(out, i.getNewName());
+            case InsertTextInstruction i -> {
+                writeVarint(out, i.getLineIndex());
+                writeVarint(out, i.getColumnIndex());
+                writeString(out, i.getText());
+            }
+            case DeleteRangeInstruction i -> {
+                writeVarint(out, i.getLineIndex());
+                writeVarint(out, i.getColumnIndex());
+                writeVarint(out, i.getEndLineIndex());
+                writeVarint(out, i.getEndColumnIndex());
+            }
+            default -> {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte, least significant group first
+     *
+     * @param out   The output
+     * @param value The value, must not be negative
+     */
+    public static void writeVarint(ByteArrayOutputStream out, int value) {
+        if (value < 0) throw new IllegalArgumentException("Varint is negative");
+
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an unsigned varint
+     *
+     * @param buffer    The input
+     * @return          The value
+     * @throws IllegalArgumentException If the varint is truncated or does not fit in a positive int
+     */
+    public static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buffer.hasRemaining()) throw new IllegalArgumentException("Varint is truncated");
+
+            byte b = buffer.get();
+            if (shift == 28 && (b & 0xF8) != 0) throw new IllegalArgumentException("Varint is too large");
+
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Varint is too large");
+    }
+
+    /**
+     * Writes a string as its varint length followed by its UTF-8 bytes
+     *
+     * @param out   The output
+     * @param value The string
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(ByteArrayOutputStream, String)}
+     *
+     * @param buffer    The input
+     * @return          The string
+     * @throws IllegalArgumentException If the string is truncated
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) throw new IllegalArgumentException("String is truncated");
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
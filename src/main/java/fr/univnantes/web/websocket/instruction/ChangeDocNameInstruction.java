@@ -15,6 +15,7 @@ import static fr.univnantes.document.Document.isDocumentNameValid;
 import static fr.univnantes.web.websocket.instruction.InstructionType.CHANGE_DOC_NAME;
 import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
 import static fr.univnantes.web.websocket.instruction.Utils.generateWarnMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
 
 /**
  * Represents a websocket document name change instruction.
@@ -39,34 +40,28 @@ public class ChangeDocNameInstruction implements WebSocketInstruction {
     /**
      * Creates a new document name change instruction
      *
-     * @param message   The message containing the TextMessage
+     * @param newName           The new document name
+     * @param userIdentifier    The user identifier
      */
-    public ChangeDocNameInstruction(TextMessage message) {
-        if (message == null) throw new IllegalArgumentException("Message is null");
-
-        String payload = message.getPayload();
-        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
-
-        //  Parse the payload type
-        JSONObject json = new JSONObject(payload);
-        if (!json.has(JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
-
-        String type = json.getString(JSONAttributes.TYPE);
-        if (type == null) throw new IllegalArgumentException("Does not contain a type");
-
-        if (!type.equals(TYPE.type)) throw new IllegalArgumentException("Type is not " + TYPE.type);
-
-        //  Parse the payload newName
-        if (!json.has(JSONAttributes.NEW_DOC_NAME)) throw new IllegalArgumentException("Does not contain a newName");
-        String newName = json.getString(JSONAttributes.NEW_DOC_NAME);
+    public ChangeDocNameInstruction(String newName, UUID userIdentifier) {
         if (newName == null) throw new IllegalArgumentException("newName is null");
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+
         this.newName = newName;
+        this.userIdentifier = userIdentifier;
+    }
 
-        //  Parse the payload userIdentifier
-        if (!json.has(JSONAttributes.USER_ID)) throw new IllegalArgumentException("Does not contain a userId");
-        String userId = json.getString(JSONAttributes.USER_ID);
-        if (userId == null) throw new IllegalArgumentException("userId is null");
-        this.userIdentifier = UUID.fromString(userId);
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
+     */
+    public static DecodeResult decode(JSONObject json) {
+        if (!(json.opt(JSONAttributes.NEW_DOC_NAME) instanceof String newName)) return DecodeResult.failure("newName is missing or not a string");
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        return DecodeResult.success(new ChangeDocNameInstruction(newName, userIdentifier));
     }
 
     /**
@@ -82,8 +77,8 @@ public class ChangeDocNameInstruction implements WebSocketInstruction {
      * Returns the new document name of the instruction
      * @return The new document name
      */
-    public int getNewName() {
-        return getNewName();
+    public String getNewName() {
+        return newName;
     }
 
     /**
@@ -102,11 +97,11 @@ public class ChangeDocNameInstruction implements WebSocketInstruction {
      * @param session         The session.
      * @param documentManager The document manager.
      * @param userManager     The user manager.
-     * @param args            The other arguments.
+     * @param context         The settings and the broadcast aggregators of the handler.
      * @return The callable.
      */
     @Override
-    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, Object... args) {
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
         return () -> {
             //  Check if the user is connected
             if (!sessionManager.isAlreadyConnected(session)) {
@@ -2,20 +2,29 @@ package fr.univnantes.web.websocket.instruction;
 
 import fr.univnantes.document.Document;
 import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.DocumentSnapshot;
 import fr.univnantes.user.User;
 import fr.univnantes.user.UserManager;
+import fr.univnantes.web.websocket.BroadcastAggregator;
+import fr.univnantes.web.websocket.QueuedWebSocketSession;
+import fr.univnantes.web.websocket.Viewport;
 import fr.univnantes.web.websocket.WebSocketSessionManager;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONString;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
 import static fr.univnantes.web.websocket.instruction.InstructionType.CONNECT;
 import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseIndex;
+import static fr.univnantes.web.websocket.instruction.Utils.parseRevision;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
 
 /**
  * Represents a websocket connect instruction.
@@ -32,6 +41,16 @@ import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage
  *     "userId": "user1",
  *     "docId": "doc1"
  *     }
+ *
+ *     The client may add "lineIdx" and "endLineIdx" to declare the lines it displays first,
+ *     it then receives only these lines and the edits touching them, as after a {@link SetViewportInstruction}.
+ *
+ *     A client reconnecting after losing its connection adds "lastRevision", the revision of the last edit it received.
+ *     If the edits since then are still kept, the reply holds them in "missed" instead of the document, see {@link BroadcastAggregator#resume}.
+ *     The client ignores the edits it receives afterwards with a revision it already has.
+ *
+ *     A document longer than the chunk size is not sent in the reply, which holds "chunked": true,
+ *     but streamed afterwards by {@link DocumentChunks}, the edits broadcast meanwhile being delivered after the last chunk.
  * </p>
  */
 public class ConnectInstruction implements WebSocketInstruction {
@@ -39,38 +58,93 @@ public class ConnectInstruction implements WebSocketInstruction {
     private static final InstructionType TYPE = CONNECT;
     private final UUID userIdentifier;
     private final UUID documentIdentifier;
+    private final int viewportStart;
+    private final int viewportEnd;
+    private final long lastRevision;
 
     /**
-     * Creates a new insert instruction
+     * Creates a new connect instruction
      *
-     * @param message   The message containing the TextMessage
+     * @param userIdentifier        The user identifier
+     * @param documentIdentifier    The document identifier
      */
-    public ConnectInstruction(TextMessage message) {
-        if (message == null) throw new IllegalArgumentException("Message is null");
-
-        String payload = message.getPayload();
-        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
-
-        //  Parse the payload type
-        JSONObject json = new JSONObject(payload);
-        if (!json.has(JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
+    public ConnectInstruction(UUID userIdentifier, UUID documentIdentifier) {
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+        if (documentIdentifier == null) throw new IllegalArgumentException("docIdentifier is null");
+
+        this.userIdentifier = userIdentifier;
+        this.documentIdentifier = documentIdentifier;
+        this.viewportStart = -1;
+        this.viewportEnd = -1;
+        this.lastRevision = -1;
+    }
 
-        String type = json.getString(JSONAttributes.TYPE);
-        if (type == null) throw new IllegalArgumentException("Does not contain a type");
+    /**
+     * Creates a new connect instruction declaring the lines displayed first
+     *
+     * @param userIdentifier        The user identifier
+     * @param documentIdentifier    The document identifier
+     * @param lineIndex             The first visible line, starts at 0
+     * @param endLineIndex          The line after the last visible line
+     */
+    public ConnectInstruction(UUID userIdentifier, UUID documentIdentifier, int lineIndex, int endLineIndex) {
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+        if (documentIdentifier == null) throw new IllegalArgumentException("docIdentifier is null");
+        if (lineIndex < 0) throw new IllegalArgumentException("lineIdx is negative");
+        if (endLineIndex <= lineIndex) throw new IllegalArgumentException("endLineIdx is not after lineIdx");
+
+        this.userIdentifier = userIdentifier;
+        this.documentIdentifier = documentIdentifier;
+        this.viewportStart = lineIndex;
+        this.viewportEnd = endLineIndex;
+        this.lastRevision = -1;
+    }
 
-        if (!type.equals(TYPE.type)) throw new IllegalArgumentException("Type is not " + TYPE.type);
+    /**
+     * Creates a new connect instruction of a user reconnecting after losing its connection
+     *
+     * @param userIdentifier        The user identifier
+     * @param documentIdentifier    The document identifier
+     * @param lastRevision          The revision of the last edit received by the user
+     */
+    public ConnectInstruction(UUID userIdentifier, UUID documentIdentifier, long lastRevision) {
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+        if (documentIdentifier == null) throw new IllegalArgumentException("docIdentifier is null");
+        if (lastRevision < 0) throw new IllegalArgumentException("lastRevision is negative");
+
+        this.userIdentifier = userIdentifier;
+        this.documentIdentifier = documentIdentifier;
+        this.viewportStart = -1;
+        this.viewportEnd = -1;
+        this.lastRevision = lastRevision;
+    }
 
-        //  Parse the payload userIdentifier
-        if (!json.has(JSONAttributes.USER_ID)) throw new IllegalArgumentException("Does not contain a userId");
-        String userId = json.getString(JSONAttributes.USER_ID);
-        if (userId == null) throw new IllegalArgumentException("userId is null");
-        this.userIdentifier = UUID.fromString(userId);
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
+     */
+    public static DecodeResult decode(JSONObject json) {
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        UUID documentIdentifier = parseUUID(json.opt(JSONAttributes.DOC_ID));
+        if (documentIdentifier == null) return DecodeResult.failure("docId is missing or invalid");
+        if (json.has(JSONAttributes.LAST_REVISION)) {
+            long lastRevision = parseRevision(json.opt(JSONAttributes.LAST_REVISION));
+            if (lastRevision < 0) return DecodeResult.failure("lastRevision is not a positive integer");
+            if (json.has(JSONAttributes.LINE_IDX) || json.has(JSONAttributes.END_LINE_IDX)) return DecodeResult.failure("lastRevision cannot be used with a viewport");
+            return DecodeResult.success(new ConnectInstruction(userIdentifier, documentIdentifier, lastRevision));
+        }
+        if (!json.has(JSONAttributes.LINE_IDX) && !json.has(JSONAttributes.END_LINE_IDX)) {
+            return DecodeResult.success(new ConnectInstruction(userIdentifier, documentIdentifier));
+        }
 
-        //  Parse the payload documentIdentifier
-        if (!json.has(JSONAttributes.DOC_ID)) throw new IllegalArgumentException("Does not contain a docId");
-        String documentId = json.getString(JSONAttributes.DOC_ID);
-        if (documentId == null) throw new IllegalArgumentException("docIdentifier is null");
-        this.documentIdentifier = UUID.fromString(documentId);
+        int lineIndex = parseIndex(json.opt(JSONAttributes.LINE_IDX));
+        if (lineIndex < 0) return DecodeResult.failure("lineIdx is missing or negative");
+        int endLineIndex = parseIndex(json.opt(JSONAttributes.END_LINE_IDX));
+        if (endLineIndex <= lineIndex) return DecodeResult.failure("endLineIdx is missing or not after lineIdx");
+        return DecodeResult.success(new ConnectInstruction(userIdentifier, documentIdentifier, lineIndex, endLineIndex));
     }
 
     /**
@@ -91,6 +165,30 @@ public class ConnectInstruction implements WebSocketInstruction {
         return userIdentifier;
     }
 
+    /**
+     * Returns the revision of the last edit received by a reconnecting client
+     * @return The last revision, -1 if the client is not reconnecting
+     */
+    public long getLastRevision() {
+        return lastRevision;
+    }
+
+    /**
+     * Returns the first line displayed by the client
+     * @return The first visible line, -1 if the client receives the whole document
+     */
+    public int getViewportStart() {
+        return viewportStart;
+    }
+
+    /**
+     * Returns the line after the last line displayed by the client
+     * @return The line after the last visible line, -1 if the client receives the whole document
+     */
+    public int getViewportEnd() {
+        return viewportEnd;
+    }
+
     /**
      * Returns a callable that will execute the instruction.
      *
@@ -98,11 +196,13 @@ public class ConnectInstruction implements WebSocketInstruction {
      * @param session         The session.
      * @param documentManager The document manager.
      * @param userManager     The user manager.
-     * @param args            The other arguments.
+     * @param context         The settings and the broadcast aggregators of the handler,
+     *                        the settings give the maximum number of characters of the document sent in one message.
      * @return The callable.
      */
     @Override
-    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, Object... args) {
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
+        int chunkSize = context.settings().connectChunkSize();
         return () -> {
             //  Verify that the session is not already connected
             if (sessionManager.isAlreadyConnected(session)) {
@@ -166,18 +266,72 @@ public class ConnectInstruction implements WebSocketInstruction {
 
                 return false;
             }
+            //  Declare the viewport before the user receives its first broadcast
+            Viewport declaredViewport = viewportStart >= 0 ? new Viewport(viewportStart, viewportEnd) : null;
+            if (declaredViewport != null) sessionManager.setViewport(session, declaredViewport);
+
             //  If everything went well, move the user from the joining list to the user list
             document.removeJoiningUser(user);
+
+            //  A reconnecting user receives only the edits it missed, if they are still kept
+            BroadcastAggregator aggregator = lastRevision >= 0 ? context.aggregatorOf(documentIdentifier) : null;
+            if (aggregator != null) {
+                List<JSONObject> missed = aggregator.resume(user, lastRevision);
+                if (missed != null) {
+                    session.sendMessage(new TextMessage(new JSONObject()
+                            .put(JSONAttributes.TYPE, CONNECT.type)
+                            .put(JSONAttributes.MESSAGE, "Resumed")
+                            .put(JSONAttributes.USER_ID, userIdentifier)
+                            .put(JSONAttributes.SHORT_USER_ID, sessionManager.getShortUserId(userIdentifier))
+                            .put(JSONAttributes.DOC_NAME, document.getName())
+                            .put(JSONAttributes.REVISION, missed.isEmpty() ? lastRevision : missed.getLast().getLong(JSONAttributes.REVISION))
+                            .put(JSONAttributes.MISSED, new JSONArray(missed))
+                            .toString()));
+                    return true;
+                }
+            }
             document.addUser(user);
 
-            //  And send the document to the user
-            session.sendMessage(new TextMessage(new JSONObject()
+            //  A client declaring a viewport only receives its lines
+            if (declaredViewport != null) {
+                JSONObject viewport = declaredViewport.content(document);
+                session.sendMessage(new TextMessage(new JSONObject()
+                        .put(JSONAttributes.TYPE, CONNECT.type)
+                        .put(JSONAttributes.MESSAGE, "Connected")
+                        .put(JSONAttributes.USER_ID, userIdentifier)
+                        .put(JSONAttributes.SHORT_USER_ID, sessionManager.getShortUserId(userIdentifier))
+                        .put(JSONAttributes.DOC_NAME, document.getName())
+                        .put(JSONAttributes.REVISION, viewport.get(JSONAttributes.REVISION))
+                        .put(JSONAttributes.LINE_IDX, viewportStart)
+                        .put(JSONAttributes.END_LINE_IDX, viewportEnd)
+                        .put(JSONAttributes.LINE_COUNT, viewport.get(JSONAttributes.LINE_COUNT))
+                        .put(JSONAttributes.CONTENT, viewport.get(JSONAttributes.CONTENT))
+                        .toString()));
+                return true;
+            }
+
+            //  And send the document to the user, the users joining at the same revision share its serialization
+            DocumentSnapshot snapshot = document.snapshot();
+            JSONObject reply = new JSONObject()
                     .put(JSONAttributes.TYPE, CONNECT.type)
                     .put(JSONAttributes.MESSAGE, "Connected")
                     .put(JSONAttributes.USER_ID, userIdentifier)
-                    .put(JSONAttributes.DOC_NAME, document.getName())
-                    .put(JSONAttributes.CONTENT, document.toString())
-                    .toString()));
+                    .put(JSONAttributes.SHORT_USER_ID, sessionManager.getShortUserId(userIdentifier))
+                    .put(JSONAttributes.DOC_NAME, snapshot.getName())
+                    .put(JSONAttributes.REVISION, snapshot.getRevision());
+            if (snapshot.getContent().length() <= chunkSize) {
+                session.sendMessage(new TextMessage(reply.put(JSONAttributes.CONTENT, (JSONString) snapshot::getJson).toString()));
+                return true;
+            }
+
+            //  A larger document is streamed in chunks built while they are written, the queued session delivers the edits after them
+            session.sendMessage(new TextMessage(reply.put(JSONAttributes.CHUNKED, true).toString()));
+            DocumentChunks chunks = new DocumentChunks(snapshot, chunkSize);
+            if (session instanceof QueuedWebSocketSession queuedSession) {
+                queuedSession.sendMessages(chunks);
+            } else {
+                while (chunks.hasNext()) session.sendMessage(chunks.next());
+            }
             return true;
 
         };
@@ -213,11 +367,15 @@ public class ConnectInstruction implements WebSocketInstruction {
         Map<UUID, User> userMap = document.getUsers();
         if (userMap == null) throw new IllegalStateException("User map is null");
 
+        //  Get the session manager, giving the short identifiers of the users
+        WebSocketSessionManager sessionManager = WebSocketSessionManager.getInstance();
+
         // Generate the user list
         JSONArray userList = new JSONArray();
         for (User u : userMap.values()) {
             userList.put(new JSONObject()
                     .put(JSONAttributes.USER_ID, u.getUUID())
+                    .put(JSONAttributes.SHORT_USER_ID, sessionManager.getShortUserId(u.getUUID()))
                     .put(JSONAttributes.USER_NAME, u.getName()));
         }
 
@@ -225,6 +383,7 @@ public class ConnectInstruction implements WebSocketInstruction {
         return new JSONObject()
                 .put(JSONAttributes.TYPE, TYPE.type)
                 .put(JSONAttributes.USER_ID, userIdentifier)
+                .put(JSONAttributes.SHORT_USER_ID, sessionManager.getShortUserId(userIdentifier))
                 .put(JSONAttributes.USER_NAME, userName)
                 .put(JSONAttributes.USERS_LIST, userList);
     }
@@ -235,10 +394,15 @@ public class ConnectInstruction implements WebSocketInstruction {
      */
     @Override
     public String toString() {
-        return new JSONObject()
+        JSONObject json = new JSONObject()
                 .put(JSONAttributes.TYPE, TYPE.type)
                 .put(JSONAttributes.USER_ID, userIdentifier)
-                .put(JSONAttributes.DOC_ID, documentIdentifier)
-                .toString();
+                .put(JSONAttributes.DOC_ID, documentIdentifier);
+        if (viewportStart >= 0) {
+            json.put(JSONAttributes.LINE_IDX, viewportStart)
+                    .put(JSONAttributes.END_LINE_IDX, viewportEnd);
+        }
+        if (lastRevision >= 0) json.put(JSONAttributes.LAST_REVISION, lastRevision);
+        return json.toString();
     }
 }
@@ -0,0 +1,45 @@
+package fr.univnantes.web.websocket.instruction;
+
+/**
+ * Represents the result of the decoding of a websocket instruction.
+ * <p>
+ *     Either the instruction or the error is set.
+ *     An invalid message is reported with a failure instead of an exception,
+ *     so rejecting a message costs no more than accepting it.
+ * </p>
+ *
+ * @param instruction   The decoded instruction, null if the decoding failed
+ * @param error         The reason of the failure, null if the decoding succeeded
+ */
+public record DecodeResult(WebSocketInstruction instruction, String error) {
+
+    /**
+     * Returns a successful result
+     *
+     * @param instruction   The decoded instruction
+     * @return              The result
+     */
+    public static DecodeResult success(WebSocketInstruction instruction) {
+        if (instruction == null) throw new IllegalArgumentException("Instruction is null");
+        return new DecodeResult(instruction, null);
+    }
+
+    /**
+     * Returns a failed result
+     *
+     * @param error The reason of the failure
+     * @return      The result
+     */
+    public static DecodeResult failure(String error) {
+        if (error == null) throw new IllegalArgumentException("Error is null");
+        return new DecodeResult(null, error);
+    }
+
+    /**
+     * Returns whether the decoding succeeded
+     * @return  True if the instruction is set, false otherwise
+     */
+    public boolean isSuccess() {
+        return instruction != null;
+    }
+}
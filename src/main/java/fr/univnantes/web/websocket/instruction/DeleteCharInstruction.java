@@ -2,6 +2,8 @@ package fr.univnantes.web.websocket.instruction;
 
 import fr.univnantes.document.Document;
 import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.persistence.Edit;
+import fr.univnantes.document.transform.AppliedEdit;
 import fr.univnantes.user.UserManager;
 import fr.univnantes.web.websocket.WebSocketSessionManager;
 import org.json.JSONObject;
@@ -13,6 +15,9 @@ import java.util.concurrent.Callable;
 
 import static fr.univnantes.web.websocket.instruction.InstructionType.DELETE_CHAR;
 import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseIndex;
+import static fr.univnantes.web.websocket.instruction.Utils.parseRevision;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
 
 /**
  * Represents a websocket char delete instruction.
@@ -27,52 +32,70 @@ import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage
  *     "columnIdx": 0,
  *     "userId": "user1"
  *     }
+ *
+ *     The optional "baseRevision" is the revision of the document the client made the instruction on,
+ *     its positions are then moved past the edits applied since then, see {@link Document#apply(Edit, UUID, long)}.
  * </p>
  */
 public class DeleteCharInstruction implements WebSocketInstruction {
 
     private static final InstructionType TYPE = DELETE_CHAR;
-    private final int lineIndex;
-    private final int columnIndex;
+    private int lineIndex;
+    private int columnIndex;
     private final UUID userIdentifier;
+    private final long baseRevision;
+    private long revision = -1;
+
+    /**
+     * Creates a new delete character instruction
+     *
+     * @param lineIndex         The line index, starts at 0
+     * @param columnIndex       The column index, starts at 0
+     * @param userIdentifier    The user identifier
+     */
+    public DeleteCharInstruction(int lineIndex, int columnIndex, UUID userIdentifier) {
+        this(lineIndex, columnIndex, userIdentifier, -1);
+    }
 
     /**
-     * Creates a new char delete instruction
+     * Creates a new delete character instruction made on a given revision of the document
      *
-     * @param message   The message containing the TextMessage
+     * @param lineIndex         The line index, starts at 0
+     * @param columnIndex       The column index, starts at 0
+     * @param userIdentifier    The user identifier
+     * @param baseRevision      The revision of the document the instruction was made on, -1 to apply it at its raw positions
      */
-    public DeleteCharInstruction(TextMessage message) {
-        if (message == null) throw new IllegalArgumentException("Message is null");
-
-        String payload = message.getPayload();
-        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
-
-        //  Parse the payload type
-        JSONObject json = new JSONObject(payload);
-        if (!json.has(JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
-
-        String type = json.getString(JSONAttributes.TYPE);
-        if (type == null) throw new IllegalArgumentException("Does not contain a type");
-
-        if (!type.equals(TYPE.type)) throw new IllegalArgumentException("Type is not " + TYPE.type);
-
-        //  Parse the payload lineIndex
-        if (!json.has(JSONAttributes.LINE_IDX)) throw new IllegalArgumentException("Does not contain a lineIdx");
-        int lineIdx = json.getInt(JSONAttributes.LINE_IDX);
-        if (lineIdx < 0) throw new IllegalArgumentException("lineIdx is negative");
-        this.lineIndex = lineIdx;
-
-        //  Parse the payload columnIndex
-        if (!json.has(JSONAttributes.COLUMN_IDX)) throw new IllegalArgumentException("Does not contain a columnIdx");
-        int columnIdx = json.getInt(JSONAttributes.COLUMN_IDX);
-        if (columnIdx < 0) throw new IllegalArgumentException("columnIdx is negative");
-        this.columnIndex = columnIdx;
-
-        //  Parse the payload userIdentifier
-        if (!json.has(JSONAttributes.USER_ID)) throw new IllegalArgumentException("Does not contain a userId");
-        String userId = json.getString(JSONAttributes.USER_ID);
-        if (userId == null) throw new IllegalArgumentException("userId is null");
-        this.userIdentifier = UUID.fromString(userId);
+    public DeleteCharInstruction(int lineIndex, int columnIndex, UUID userIdentifier, long baseRevision) {
+        if (lineIndex < 0) throw new IllegalArgumentException("lineIdx is negative");
+        if (columnIndex < 0) throw new IllegalArgumentException("columnIdx is negative");
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+        if (baseRevision < -1) throw new IllegalArgumentException("baseRevision is negative");
+
+        this.lineIndex = lineIndex;
+        this.columnIndex = columnIndex;
+        this.userIdentifier = userIdentifier;
+        this.baseRevision = baseRevision;
+    }
+
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
+     */
+    public static DecodeResult decode(JSONObject json) {
+        int lineIndex = parseIndex(json.opt(JSONAttributes.LINE_IDX));
+        if (lineIndex < 0) return DecodeResult.failure("lineIdx is missing or negative");
+        int columnIndex = parseIndex(json.opt(JSONAttributes.COLUMN_IDX));
+        if (columnIndex < 0) return DecodeResult.failure("columnIdx is missing or negative");
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        long baseRevision = -1;
+        if (json.has(JSONAttributes.BASE_REVISION)) {
+            baseRevision = parseRevision(json.opt(JSONAttributes.BASE_REVISION));
+            if (baseRevision < 0) return DecodeResult.failure("baseRevision is not a positive integer");
+        }
+        return DecodeResult.success(new DeleteCharInstruction(lineIndex, columnIndex, userIdentifier, baseRevision));
     }
 
     /**
@@ -109,6 +132,22 @@ public class DeleteCharInstruction implements WebSocketInstruction {
         return userIdentifier;
     }
 
+    /**
+     * Returns the revision of the document the instruction was made on
+     * @return The base revision, -1 if the instruction is applied at its raw positions
+     */
+    public long getBaseRevision() {
+        return baseRevision;
+    }
+
+    /**
+     * Returns the revision of the document after the instruction has been applied
+     * @return The revision, -1 if the instruction has not been applied
+     */
+    public long getRevision() {
+        return revision;
+    }
+
     /**
      * Returns a callable that will execute the instruction.
      *
@@ -116,11 +155,11 @@ public class DeleteCharInstruction implements WebSocketInstruction {
      * @param session         The session.
      * @param documentManager The document manager.
      * @param userManager     The user manager.
-     * @param args            The other arguments.
+     * @param context         The settings and the broadcast aggregators of the handler.
      * @return The callable.
      */
     @Override
-    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, Object... args) {
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
         return () -> {
             //  Check if the user is connected
             if (!sessionManager.isAlreadyConnected(session)) {
@@ -151,7 +190,14 @@ public class DeleteCharInstruction implements WebSocketInstruction {
             }
 
             //  If everything is ok, delete the char
-            return document.delete(lineIndex, columnIndex);
+            AppliedEdit applied = document.apply(Edit.delete(lineIndex, columnIndex), userIdentifier, baseRevision);
+            if (applied == null) return false;
+
+            //  Broadcast the positions the character has been deleted at and the revision it produced
+            lineIndex = applied.edit().line();
+            columnIndex = applied.edit().column();
+            revision = applied.revision();
+            return true;
         };
     }
 
@@ -163,11 +209,13 @@ public class DeleteCharInstruction implements WebSocketInstruction {
      */
     @Override
     public JSONObject getBroadcastVersion() {
-        return new JSONObject()
+        JSONObject json = new JSONObject()
                 .put(JSONAttributes.TYPE, TYPE.type)
                 .put(JSONAttributes.LINE_IDX, lineIndex)
                 .put(JSONAttributes.COLUMN_IDX, columnIndex)
                 .put(JSONAttributes.USER_ID, userIdentifier);
+        if (revision >= 0) json.put(JSONAttributes.REVISION, revision);
+        return json;
     }
 
     /**
@@ -176,6 +224,8 @@ public class DeleteCharInstruction implements WebSocketInstruction {
      */
     @Override
     public String toString() {
-        return getBroadcastVersion().toString();
+        JSONObject json = getBroadcastVersion();
+        if (baseRevision >= 0) json.put(JSONAttributes.BASE_REVISION, baseRevision);
+        return json.toString();
     }
 }
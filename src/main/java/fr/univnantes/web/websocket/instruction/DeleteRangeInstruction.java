@@ -0,0 +1,269 @@
+package fr.univnantes.web.websocket.instruction;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.persistence.Edit;
+import fr.univnantes.document.transform.AppliedEdit;
+import fr.univnantes.user.UserManager;
+import fr.univnantes.web.websocket.WebSocketSessionManager;
+import org.json.JSONObject;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static fr.univnantes.web.websocket.instruction.InstructionType.DELETE_RANGE;
+import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseIndex;
+import static fr.univnantes.web.websocket.instruction.Utils.parseRevision;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
+
+/**
+ * Represents a websocket delete range instruction.
+ * <p>
+ *     A delete range instruction is sent by a client when a user deletes a selection in a document.
+ *     It contains the line and column indexes of the start of the selection, the ones of its end and the user identifier.
+ *     The character at the end position is kept, the selection is deleted in one operation and broadcast once,
+ *     instead of one delete character or delete line break instruction per character.
+ *
+ *     The instruction in JSON format is as follows:
+ *     {
+ *     "type": "DELETE_RANGE",
+ *     "lineIdx": 0,
+ *     "columnIdx": 0,
+ *     "endLineIdx": 2,
+ *     "endColumnIdx": 4,
+ *     "userId": "user1"
+ *     }
+ *
+ *     The optional "baseRevision" is the revision of the document the client made the instruction on,
+ *     its positions are then moved past the edits applied since then, see {@link Document#apply(Edit, UUID, long)}.
+ * </p>
+ */
+public class DeleteRangeInstruction implements WebSocketInstruction {
+
+    private static final InstructionType TYPE = DELETE_RANGE;
+    private int lineIndex;
+    private int columnIndex;
+    private int endLineIndex;
+    private int endColumnIndex;
+    private final UUID userIdentifier;
+    private final long baseRevision;
+    private long revision = -1;
+
+    /**
+     * Creates a new delete range instruction
+     *
+     * @param lineIndex         The line index of the first deleted character, starts at 0
+     * @param columnIndex       The column index of the first deleted character, starts at 0
+     * @param endLineIndex      The line index of the end of the range, starts at 0
+     * @param endColumnIndex    The column index of the end of the range, starts at 0
+     * @param userIdentifier    The user identifier
+     */
+    public DeleteRangeInstruction(int lineIndex, int columnIndex, int endLineIndex, int endColumnIndex, UUID userIdentifier) {
+        this(lineIndex, columnIndex, endLineIndex, endColumnIndex, userIdentifier, -1);
+    }
+
+    /**
+     * Creates a new delete range instruction made on a given revision of the document
+     *
+     * @param lineIndex         The line index of the first deleted character, starts at 0
+     * @param columnIndex       The column index of the first deleted character, starts at 0
+     * @param endLineIndex      The line index of the end of the range, starts at 0
+     * @param endColumnIndex    The column index of the end of the range, starts at 0
+     * @param userIdentifier    The user identifier
+     * @param baseRevision      The revision of the document the instruction was made on, -1 to apply it at its raw positions
+     */
+    public DeleteRangeInstruction(int lineIndex, int columnIndex, int endLineIndex, int endColumnIndex, UUID userIdentifier, long baseRevision) {
+        if (lineIndex < 0) throw new IllegalArgumentException("lineIdx is negative");
+        if (columnIndex < 0) throw new IllegalArgumentException("columnIdx is negative");
+        if (endLineIndex < 0) throw new IllegalArgumentException("endLineIdx is negative");
+        if (endColumnIndex < 0) throw new IllegalArgumentException("endColumnIdx is negative");
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+        if (baseRevision < -1) throw new IllegalArgumentException("baseRevision is negative");
+
+        this.lineIndex = lineIndex;
+        this.columnIndex = columnIndex;
+        this.endLineIndex = endLineIndex;
+        this.endColumnIndex = endColumnIndex;
+        this.userIdentifier = userIdentifier;
+        this.baseRevision = baseRevision;
+    }
+
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
+     */
+    public static DecodeResult decode(JSONObject json) {
+        int lineIndex = parseIndex(json.opt(JSONAttributes.LINE_IDX));
+        if (lineIndex < 0) return DecodeResult.failure("lineIdx is missing or negative");
+        int columnIndex = parseIndex(json.opt(JSONAttributes.COLUMN_IDX));
+        if (columnIndex < 0) return DecodeResult.failure("columnIdx is missing or negative");
+        int endLineIndex = parseIndex(json.opt(JSONAttributes.END_LINE_IDX));
+        if (endLineIndex < 0) return DecodeResult.failure("endLineIdx is missing or negative");
+        int endColumnIndex = parseIndex(json.opt(JSONAttributes.END_COLUMN_IDX));
+        if (endColumnIndex < 0) return DecodeResult.failure("endColumnIdx is missing or negative");
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        long baseRevision = -1;
+        if (json.has(JSONAttributes.BASE_REVISION)) {
+            baseRevision = parseRevision(json.opt(JSONAttributes.BASE_REVISION));
+            if (baseRevision < 0) return DecodeResult.failure("baseRevision is not a positive integer");
+        }
+        return DecodeResult.success(new DeleteRangeInstruction(lineIndex, columnIndex, endLineIndex, endColumnIndex, userIdentifier, baseRevision));
+    }
+
+    /**
+     * Returns the type of the instruction
+     * @return The type
+     */
+    @Override
+    public InstructionType getType() {
+        return TYPE;
+    }
+
+    /**
+     * Returns the line index of the first deleted character
+     * @return The line index
+     */
+    public int getLineIndex() {
+        return lineIndex;
+    }
+
+    /**
+     * Returns the column index of the first deleted character
+     * @return The column index
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * Returns the line index of the end of the range
+     * @return The end line index
+     */
+    public int getEndLineIndex() {
+        return endLineIndex;
+    }
+
+    /**
+     * Returns the column index of the end of the range
+     * @return The end column index
+     */
+    public int getEndColumnIndex() {
+        return endColumnIndex;
+    }
+
+    /**
+     * Returns the user identifier of the instruction
+     * @return The user identifier
+     */
+    @Override
+    public UUID getUserId() {
+        return userIdentifier;
+    }
+
+    /**
+     * Returns the revision of the document the instruction was made on
+     * @return The base revision, -1 if the instruction is applied at its raw positions
+     */
+    public long getBaseRevision() {
+        return baseRevision;
+    }
+
+    /**
+     * Returns the revision of the document after the instruction has been applied
+     * @return The revision, -1 if the instruction has not been applied
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Returns a callable that will execute the instruction.
+     *
+     * @param sessionManager  The session manager.
+     * @param session         The session.
+     * @param documentManager The document manager.
+     * @param userManager     The user manager.
+     * @param context         The settings and the broadcast aggregators of the handler.
+     * @return The callable.
+     */
+    @Override
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
+        return () -> {
+            //  Check if the user is connected
+            if (!sessionManager.isAlreadyConnected(session)) {
+                session.sendMessage(new TextMessage(generateErrorMessage("User is not connected")));
+                return false;
+            }
+
+            //  Check if the user is connected to a document
+            UUID documentIdentifier = sessionManager.getDocumentId(session);
+
+            if (documentIdentifier == null) {
+                session.sendMessage(new TextMessage(generateErrorMessage("User is not connected to a document")));
+                return false;
+            }
+
+            //  Verify that the document exists
+            Document document = documentManager.getDocument(documentIdentifier);
+            //  If the document does not exist, unlink the user, close the session and return false
+            if (document == null) {
+                session.sendMessage(new TextMessage(generateErrorMessage("Document does not exist")));
+                session.close();
+
+                //  Remove the session from the session manager
+                sessionManager.removeSession(session);
+                userManager.removeUser(userIdentifier);
+
+                return false;
+            }
+
+            //  If everything is ok, delete the range
+            AppliedEdit applied = document.apply(Edit.deleteRange(lineIndex, columnIndex, endLineIndex, endColumnIndex), userIdentifier, baseRevision);
+            if (applied == null) return false;
+
+            //  Broadcast the positions the range has been deleted at and the revision it produced
+            lineIndex = applied.edit().line();
+            columnIndex = applied.edit().column();
+            endLineIndex = applied.edit().endLine();
+            endColumnIndex = applied.edit().endColumn();
+            revision = applied.revision();
+            return true;
+        };
+    }
+
+    /**
+     * Returns broadcastable version of the instruction.
+     * The one who will be sent to the other users.
+     *
+     * @return The broadcastable version of the instruction.
+     */
+    @Override
+    public JSONObject getBroadcastVersion() {
+        JSONObject json = new JSONObject()
+                .put(JSONAttributes.TYPE, TYPE.type)
+                .put(JSONAttributes.LINE_IDX, lineIndex)
+                .put(JSONAttributes.COLUMN_IDX, columnIndex)
+                .put(JSONAttributes.END_LINE_IDX, endLineIndex)
+                .put(JSONAttributes.END_COLUMN_IDX, endColumnIndex)
+                .put(JSONAttributes.USER_ID, userIdentifier);
+        if (revision >= 0) json.put(JSONAttributes.REVISION, revision);
+        return json;
+    }
+
+    /**
+     * Returns string representation of the instruction.
+     * @return A string representation
+     */
+    @Override
+    public String toString() {
+        JSONObject json = getBroadcastVersion();
+        if (baseRevision >= 0) json.put(JSONAttributes.BASE_REVISION, baseRevision);
+        return json.toString();
+    }
+}
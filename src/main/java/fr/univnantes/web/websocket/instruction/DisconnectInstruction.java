@@ -14,6 +14,7 @@ import java.util.concurrent.Callable;
 
 import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
 import static fr.univnantes.web.websocket.instruction.Utils.generateInfoMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
 
 /**
  * Represents a websocket user disconnection instruction.
@@ -33,30 +34,26 @@ public class DisconnectInstruction implements WebSocketInstruction {
     private final UUID userIdentifier;
 
     /**
-     * Creates a new document name change instruction
+     * Creates a new disconnect instruction
      *
-     * @param message The message containing the TextMessage
+     * @param userIdentifier The user identifier
      */
-    public DisconnectInstruction(TextMessage message) {
-        if (message == null) throw new IllegalArgumentException("Message is null");
+    public DisconnectInstruction(UUID userIdentifier) {
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
 
-        String payload = message.getPayload();
-        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
-
-        //  Parse the payload type
-        JSONObject json = new JSONObject(payload);
-        if (!json.has(JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
-
-        String type = json.getString(JSONAttributes.TYPE);
-        if (type == null) throw new IllegalArgumentException("Does not contain a type");
-
-        if (!type.equals(TYPE.type)) throw new IllegalArgumentException("Type is not " + TYPE.type);
+        this.userIdentifier = userIdentifier;
+    }
 
-        //  Parse the payload userIdentifier
-        if (!json.has(JSONAttributes.USER_ID)) throw new IllegalArgumentException("Does not contain a userId");
-        String userId = json.getString(JSONAttributes.USER_ID);
-        if (userId == null) throw new IllegalArgumentException("userId is null");
-        this.userIdentifier = UUID.fromString(userId);
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
+     */
+    public static DecodeResult decode(JSONObject json) {
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        return DecodeResult.success(new DisconnectInstruction(userIdentifier));
     }
 
     /**
@@ -86,11 +83,11 @@ public class DisconnectInstruction implements WebSocketInstruction {
      * @param session         The session.
      * @param documentManager The document manager.
      * @param userManager     The user manager.
-     * @param args            The other arguments.
+     * @param context         The settings and the broadcast aggregators of the handler.
      * @return The callable.
      */
     @Override
-    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, Object... args) {
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
         return () -> {
             //  Check if the user is connected
             if (!sessionManager.isAlreadyConnected(session)) {
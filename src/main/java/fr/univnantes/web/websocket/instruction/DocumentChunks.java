@@ -0,0 +1,101 @@
+package fr.univnantes.web.websocket.instruction;
+
+import fr.univnantes.document.DocumentSnapshot;
+import org.json.JSONObject;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits the content of a document snapshot in line range chunks, sent after a chunked CONNECT reply
+ * <p>
+ *     Each chunk holds at most the chunk size in characters, it ends after a line break when the limit falls inside a line
+ *     holding one, and is cut at the limit only when a single line is longer than a chunk.
+ *     The chunks are built one at a time when the outbound queue of the session writes them,
+ *     so a join holds one chunk besides the snapshot shared by every user joining at the same revision.
+ *
+ *     A chunk in JSON format is as follows, lineIdx being the line where its content starts:
+ *     {
+ *     "type": "DOC_CHUNK",
+ *     "revision": 42,
+ *     "lineIdx": 0,
+ *     "content": "Hello World !\n",
+ *     "last": false
+ *     }
+ * </p>
+ */
+public class DocumentChunks implements Iterator<TextMessage> {
+
+    public static final String TYPE = "DOC_CHUNK";
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final DocumentSnapshot snapshot;
+    private final int chunkSize;
+    private int offset;
+    private int lineIndex;
+    private boolean sent;
+
+    /**
+     * Creates the chunks of a snapshot
+     *
+     * @param snapshot  The snapshot to send
+     * @param chunkSize The maximum number of characters of a chunk
+     * @throws IllegalArgumentException If the snapshot is null or the chunk size is lower than 2
+     */
+    public DocumentChunks(DocumentSnapshot snapshot, int chunkSize) {
+        if (snapshot == null) throw new IllegalArgumentException("Snapshot is null");
+        if (chunkSize < 2) throw new IllegalArgumentException("Chunk size is lower than 2");
+
+        this.snapshot = snapshot;
+        this.chunkSize = chunkSize;
+        this.offset = 0;
+        this.lineIndex = 0;
+        this.sent = false;
+    }
+
+    /**
+     * Returns true if the last chunk has not been returned, an empty content is sent as one empty chunk
+     * @return  True if there is another chunk
+     */
+    @Override
+    public boolean hasNext() {
+        return !sent;
+    }
+
+    /**
+     * Returns the next chunk
+     * @return  The message holding the next chunk
+     * @throws NoSuchElementException If every chunk has been returned
+     */
+    @Override
+    public TextMessage next() {
+        if (!hasNext()) throw new NoSuchElementException("Every chunk has been sent");
+
+        String content = snapshot.getContent();
+        int start = offset;
+        int end = Math.min(content.length(), start + chunkSize);
+        if (end < content.length()) {
+            //  End the chunk after the last line break it holds, otherwise never split a surrogate pair
+            int lineBreak = content.lastIndexOf('\n', end - 1);
+            if (lineBreak >= start) end = lineBreak + 1;
+            else if (Character.isHighSurrogate(content.charAt(end - 1))) end--;
+        }
+
+        String chunk = content.substring(start, end);
+        int startLine = lineIndex;
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) == '\n') lineIndex++;
+        }
+        offset = end;
+        sent = end == content.length();
+
+        return new TextMessage(new JSONObject()
+                .put(WebSocketInstruction.JSONAttributes.TYPE, TYPE)
+                .put(WebSocketInstruction.JSONAttributes.REVISION, snapshot.getRevision())
+                .put(WebSocketInstruction.JSONAttributes.LINE_IDX, startLine)
+                .put(WebSocketInstruction.JSONAttributes.CONTENT, chunk)
+                .put(WebSocketInstruction.JSONAttributes.LAST, sent)
+                .toString());
+    }
+}
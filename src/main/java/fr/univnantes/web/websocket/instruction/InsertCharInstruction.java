@@ -2,6 +2,8 @@ package fr.univnantes.web.websocket.instruction;
 
 import fr.univnantes.document.Document;
 import fr.univnantes.document.DocumentManager;
+import fr.univnantes.document.persistence.Edit;
+import fr.univnantes.document.transform.AppliedEdit;
 import fr.univnantes.user.UserManager;
 import fr.univnantes.web.websocket.WebSocketSessionManager;
 import org.json.JSONObject;
@@ -13,6 +15,9 @@ import java.util.concurrent.Callable;
 
 import static fr.univnantes.web.websocket.instruction.InstructionType.INSERT_CHAR;
 import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseIndex;
+import static fr.univnantes.web.websocket.instruction.Utils.parseRevision;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
 
 /**
  * Represents a websocket insert character instruction.
@@ -28,60 +33,75 @@ import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage
  *     "char": "a",
  *     "userId": "user1"
  *     }
+ *
+ *     The optional "baseRevision" is the revision of the document the client made the instruction on,
+ *     its positions are then moved past the edits applied since then, see {@link Document#apply(Edit, UUID, long)}.
  * </p>
  */
 public class InsertCharInstruction implements WebSocketInstruction {
 
     private static final InstructionType TYPE = INSERT_CHAR;
-    private final int lineIndex;
-    private final int columnIndex;
+    private int lineIndex;
+    private int columnIndex;
     private final char character;
     private final UUID userIdentifier;
+    private final long baseRevision;
+    private long revision = -1;
 
     /**
      * Creates a new insert character instruction
      *
-     * @param message   The message containing the TextMessage
+     * @param lineIndex         The line index, starts at 0
+     * @param columnIndex       The column index, starts at 0
+     * @param character         The character to insert
+     * @param userIdentifier    The user identifier
+     */
+    public InsertCharInstruction(int lineIndex, int columnIndex, char character, UUID userIdentifier) {
+        this(lineIndex, columnIndex, character, userIdentifier, -1);
+    }
+
+    /**
+     * Creates a new insert character instruction made on a given revision of the document
+     *
+     * @param lineIndex         The line index, starts at 0
+     * @param columnIndex       The column index, starts at 0
+     * @param character         The character to insert
+     * @param userIdentifier    The user identifier
+     * @param baseRevision      The revision of the document the instruction was made on, -1 to apply it at its raw positions
+     */
+    public InsertCharInstruction(int lineIndex, int columnIndex, char character, UUID userIdentifier, long baseRevision) {
+        if (lineIndex < 0) throw new IllegalArgumentException("lineIdx is negative");
+        if (columnIndex < 0) throw new IllegalArgumentException("columnIdx is negative");
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+        if (baseRevision < -1) throw new IllegalArgumentException("baseRevision is negative");
+
+        this.lineIndex = lineIndex;
+        this.columnIndex = columnIndex;
+        this.character = character;
+        this.userIdentifier = userIdentifier;
+        this.baseRevision = baseRevision;
+    }
+
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
      */
-    public InsertCharInstruction(TextMessage message) {
-        if (message == null) throw new IllegalArgumentException("Message is null");
-
-        String payload = message.getPayload();
-        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
-
-        //  Parse the payload type
-        JSONObject json = new JSONObject(payload);
-        if (!json.has(JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
-
-        String type = json.getString(JSONAttributes.TYPE);
-        if (type == null) throw new IllegalArgumentException("Does not contain a type");
-
-        if (!type.equals(TYPE.type)) throw new IllegalArgumentException("Type is not " + TYPE.type);
-
-        //  Parse the payload lineIndex
-        if (!json.has(JSONAttributes.LINE_IDX)) throw new IllegalArgumentException("Does not contain a lineIdx");
-        int lineIdx = json.getInt(JSONAttributes.LINE_IDX);
-        if (lineIdx < 0) throw new IllegalArgumentException("lineIdx is negative");
-        this.lineIndex = lineIdx;
-
-        //  Parse the payload columnIndex
-        if (!json.has(JSONAttributes.COLUMN_IDX)) throw new IllegalArgumentException("Does not contain a columnIdx");
-        int columnIdx = json.getInt(JSONAttributes.COLUMN_IDX);
-        if (columnIdx < 0) throw new IllegalArgumentException("columnIdx is negative");
-        this.columnIndex = columnIdx;
-
-        //  Parse the payload character
-        if (!json.has(JSONAttributes.CHAR)) throw new IllegalArgumentException("Does not contain a char");
-        String chr = json.getString(JSONAttributes.CHAR);
-        if (chr == null) throw new IllegalArgumentException("char is null");
-        if (chr.length() != 1) throw new IllegalArgumentException("char is not a single character");
-        this.character = chr.charAt(0);
-
-        //  Parse the payload userIdentifier
-        if (!json.has(JSONAttributes.USER_ID)) throw new IllegalArgumentException("Does not contain a userId");
-        String userId = json.getString(JSONAttributes.USER_ID);
-        if (userId == null) throw new IllegalArgumentException("userId is null");
-        this.userIdentifier = UUID.fromString(userId);
+    public static DecodeResult decode(JSONObject json) {
+        int lineIndex = parseIndex(json.opt(JSONAttributes.LINE_IDX));
+        if (lineIndex < 0) return DecodeResult.failure("lineIdx is missing or negative");
+        int columnIndex = parseIndex(json.opt(JSONAttributes.COLUMN_IDX));
+        if (columnIndex < 0) return DecodeResult.failure("columnIdx is missing or negative");
+        if (!(json.opt(JSONAttributes.CHAR) instanceof String chr) || chr.length() != 1) return DecodeResult.failure("char is missing or not a single character");
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        long baseRevision = -1;
+        if (json.has(JSONAttributes.BASE_REVISION)) {
+            baseRevision = parseRevision(json.opt(JSONAttributes.BASE_REVISION));
+            if (baseRevision < 0) return DecodeResult.failure("baseRevision is not a positive integer");
+        }
+        return DecodeResult.success(new InsertCharInstruction(lineIndex, columnIndex, chr.charAt(0), userIdentifier, baseRevision));
     }
 
     /**
@@ -126,6 +146,22 @@ public class InsertCharInstruction implements WebSocketInstruction {
         return userIdentifier;
     }
 
+    /**
+     * Returns the revision of the document the instruction was made on
+     * @return The base revision, -1 if the instruction is applied at its raw positions
+     */
+    public long getBaseRevision() {
+        return baseRevision;
+    }
+
+    /**
+     * Returns the revision of the document after the instruction has been applied
+     * @return The revision, -1 if the instruction has not been applied
+     */
+    public long getRevision() {
+        return revision;
+    }
+
     /**
      * Returns a callable that will execute the instruction.
      *
@@ -133,11 +169,11 @@ public class InsertCharInstruction implements WebSocketInstruction {
      * @param session         The session.
      * @param documentManager The document manager.
      * @param userManager     The user manager.
-     * @param args            The other arguments.
+     * @param context         The settings and the broadcast aggregators of the handler.
      * @return The callable.
      */
     @Override
-    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, Object... args) {
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
         return () -> {
             //  Check if the user is connected
             if (!sessionManager.isAlreadyConnected(session)) {
@@ -168,7 +204,14 @@ public class InsertCharInstruction implements WebSocketInstruction {
             }
 
             //  Insert the character
-            return document.insert(lineIndex, columnIndex, character);
+            AppliedEdit applied = document.apply(Edit.insert(lineIndex, columnIndex, character), userIdentifier, baseRevision);
+            if (applied == null) return false;
+
+            //  Broadcast the positions the character has been inserted at and the revision it produced
+            lineIndex = applied.edit().line();
+            columnIndex = applied.edit().column();
+            revision = applied.revision();
+            return true;
         };
     }
 
@@ -180,12 +223,14 @@ public class InsertCharInstruction implements WebSocketInstruction {
      */
     @Override
     public JSONObject getBroadcastVersion() {
-        return new JSONObject()
+        JSONObject json = new JSONObject()
                 .put(JSONAttributes.TYPE, TYPE.type)
                 .put(JSONAttributes.LINE_IDX, lineIndex)
                 .put(JSONAttributes.COLUMN_IDX, columnIndex)
                 .put(JSONAttributes.CHAR, String.valueOf(character))
                 .put(JSONAttributes.USER_ID, userIdentifier);
+        if (revision >= 0) json.put(JSONAttributes.REVISION, revision);
+        return json;
     }
 
     /**
@@ -194,12 +239,13 @@ public class InsertCharInstruction implements WebSocketInstruction {
      */
     @Override
     public String toString() {
-        return new JSONObject()
+        JSONObject json = new JSONObject()
                 .put(JSONAttributes.TYPE, TYPE.type)
                 .put(JSONAttributes.LINE_IDX, lineIndex)
                 .put(JSONAttributes.COLUMN_IDX, columnIndex)
                 .put(JSONAttributes.CHAR, String.valueOf(character))
-                .put(JSONAttributes.USER_ID, userIdentifier)
-                .toString();
+                .put(JSONAttributes.USER_ID, userIdentifier);
+        if (baseRevision >= 0) json.put(JSONAttributes.BASE_REVISION, baseRevision);
+        return json.toString();
     }
 }
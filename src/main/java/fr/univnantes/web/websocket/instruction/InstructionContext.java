@@ -0,0 +1,37 @@
+package fr.univnantes.web.websocket.instruction;
+
+import fr.univnantes.web.websocket.BroadcastAggregator;
+import fr.univnantes.web.websocket.WebSocketSettings;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Holds what the websocket handler provides to the instructions it executes besides the managers
+ *
+ * @param settings      The settings of the handler
+ * @param aggregators   The lookup of the broadcast aggregator of a document by its identifier,
+ *                      returning null if the document has none yet
+ */
+public record InstructionContext(WebSocketSettings settings, Function<UUID, BroadcastAggregator> aggregators) {
+
+    /**
+     * Creates a new context
+     *
+     * @throws IllegalArgumentException If the settings or the aggregator lookup are null
+     */
+    public InstructionContext {
+        if (settings == null) throw new IllegalArgumentException("Settings are null");
+        if (aggregators == null) throw new IllegalArgumentException("Aggregator lookup is null");
+    }
+
+    /**
+     * Returns the broadcast aggregator of a document
+     *
+     * @param documentId    The identifier of the document
+     * @return              The aggregator of the document, null if it has none yet
+     */
+    public BroadcastAggregator aggregatorOf(UUID documentId) {
+        return aggregators.apply(documentId);
+    }
+}
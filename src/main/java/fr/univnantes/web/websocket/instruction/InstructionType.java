@@ -1,9 +1,13 @@
 package fr.univnantes.web.websocket.instruction;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.web.socket.TextMessage;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Represents a websocket instruction.
@@ -13,33 +17,52 @@ import java.lang.reflect.InvocationTargetException;
  * </p>
  */
 public enum InstructionType {
-    INSERT_CHAR("INSERT_CHAR", true, true, InsertCharInstruction.class),
-    INSERT_LINE_BRK("INSERT_LINE_BRK", true, true, InsertLineBrkInstruction.class),
-    DELETE_CHAR("DELETE_CHAR", true, true, DeleteCharInstruction.class),
-    DELETE_LINE_BRK("DELETE_LINE_BRK", true, true, DeleteLineBrkInstruction.class),
-    CONNECT("CONNECT", false, true, ConnectInstruction.class),
-    CHANGE_DOC_NAME("CHANGE_DOC_NAME", true, true, ChangeDocNameInstruction.class),
-    DISCONNECT("DISCONNECT", true, false, DisconnectInstruction.class);
+    INSERT_CHAR("INSERT_CHAR", (byte) 0x01, true, true, InsertCharInstruction.class, InsertCharInstruction::decode),
+    INSERT_LINE_BRK("INSERT_LINE_BRK", (byte) 0x02, true, true, InsertLineBrkInstruction.class, InsertLineBrkInstruction::decode),
+    DELETE_CHAR("DELETE_CHAR", (byte) 0x03, true, true, DeleteCharInstruction.class, DeleteCharInstruction::decode),
+    DELETE_LINE_BRK("DELETE_LINE_BRK", (byte) 0x04, true, true, DeleteLineBrkInstruction.class, DeleteLineBrkInstruction::decode),
+    CONNECT("CONNECT", (byte) 0x05, false, true, ConnectInstruction.class, ConnectInstruction::decode),
+    CHANGE_DOC_NAME("CHANGE_DOC_NAME", (byte) 0x06, true, true, ChangeDocNameInstruction.class, ChangeDocNameInstruction::decode),
+    DISCONNECT("DISCONNECT", (byte) 0x07, true, false, DisconnectInstruction.class, DisconnectInstruction::decode),
+    INSERT_TEXT("INSERT_TEXT", (byte) 0x08, true, true, InsertTextInstruction.class, InsertTextInstruction::decode),
+    DELETE_RANGE("DELETE_RANGE", (byte) 0x09, true, true, DeleteRangeInstruction.class, DeleteRangeInstruction::decode),
+    SET_VIEWPORT("SET_VIEWPORT", (byte) 0x0A, true, false, SetViewportInstruction.class, SetViewportInstruction::decode);
+
+    private static final InstructionType[] BY_OPCODE = new InstructionType[256];
+    private static final Map<String, InstructionType> BY_TYPE = new HashMap<>();
+
+    static {
+        for (InstructionType instructionType : values()) {
+            BY_OPCODE[instructionType.opcode & 0xFF] = instructionType;
+            BY_TYPE.put(instructionType.type, instructionType);
+        }
+    }
 
     public final String type;
+    public final byte opcode;
     public final boolean requiresActionTargetCheck;
     public final boolean needsBroadcast;
     public final Class<? extends WebSocketInstruction> instructionClass;
+    public final Function<JSONObject, DecodeResult> decoder;
 
     /**
      * Creates a new instruction type
      *
      * @param type              The type of the instruction
+     * @param opcode            The one byte code of the instruction in the binary protocol
      * @param requiresActionTargetCheck Whether the instruction requires an action target check or not
      *                                  (The user action can only be performed on the user not on another user)
      * @param needsBroadcast            Whether the instruction needs to be broadcasted to all users or not after execution
      * @param instructionClass          The class of the instruction which extends WebSocketInstruction
+     * @param decoder                   The function decoding the instruction from its parsed JSON message
      */
-    InstructionType(String type, boolean requiresActionTargetCheck, boolean needsBroadcast, Class<? extends WebSocketInstruction> instructionClass) {
+    InstructionType(String type, byte opcode, boolean requiresActionTargetCheck, boolean needsBroadcast, Class<? extends WebSocketInstruction> instructionClass, Function<JSONObject, DecodeResult> decoder) {
         this.type = type;
+        this.opcode = opcode;
         this.requiresActionTargetCheck = requiresActionTargetCheck;
         this.needsBroadcast = needsBroadcast;
         this.instructionClass = instructionClass;
+        this.decoder = decoder;
     }
 
     /**
@@ -49,12 +72,21 @@ public enum InstructionType {
      * @return      The instruction type
      */
     public static InstructionType fromString(String text) {
-        for (InstructionType b : InstructionType.values()) {
-            if (b.type.equalsIgnoreCase(text)) {
-                return b;
-            }
-        }
-        return null;
+        if (text == null) return null;
+
+        InstructionType instructionType = BY_TYPE.get(text);
+        if (instructionType != null) return instructionType;
+        return BY_TYPE.get(text.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the instruction type from its binary opcode
+     *
+     * @param opcode    The one byte code of the instruction type
+     * @return          The instruction type, null if the opcode is unknown
+     */
+    public static InstructionType fromOpcode(byte opcode) {
+        return BY_OPCODE[opcode & 0xFF];
     }
 
     /**
@@ -67,33 +99,51 @@ public enum InstructionType {
     }
 
     /**
-     * Returns the instruction from the TextMessage
+     * Decodes the instruction from the TextMessage
+     * <p>
+     *     The payload is parsed once, the type is looked up in a table and the fields are read by the decoder of the type.
+     *     An invalid message is reported in the result instead of being thrown.
+     * </p>
      *
      * @param message   The message containing the TextMessage
-     * @return          The constructed instruction
-     *
-     * @throws NoSuchMethodException     If the constructor does not exist
-     * @throws InvocationTargetException If the constructor throws an exception
-     * @throws InstantiationException    If the constructor is not accessible
-     * @throws IllegalAccessException    If the constructor is not accessible
-     * @throws IllegalArgumentException  If the message is null
+     * @return          The decoded instruction, or the reason why the message is invalid
      */
-    public static WebSocketInstruction getConstructedInstruction(TextMessage message) throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        if (message == null) throw new IllegalArgumentException("Message is null");
+    public static DecodeResult decode(TextMessage message) {
+        if (message == null) return DecodeResult.failure("Message is null");
 
         String payload = message.getPayload();
-        if (payload.isBlank() || payload.isEmpty()) throw new IllegalArgumentException("Payload is empty or blank");
+        if (payload.isBlank()) return DecodeResult.failure("Payload is empty or blank");
 
-        //  Parse the payload type
-        JSONObject json = new JSONObject(payload);
-        if (!json.has(WebSocketInstruction.JSONAttributes.TYPE)) throw new IllegalArgumentException("Does not contain a type");
+        //  Parse the payload, the only step which may throw on a malformed message
+        JSONObject json;
+        try {
+            json = new JSONObject(payload);
+        } catch (JSONException e) {
+            return DecodeResult.failure("Payload is not a JSON object");
+        }
 
-        String type = json.getString(WebSocketInstruction.JSONAttributes.TYPE);
-        if (type == null || type.isBlank()) throw new IllegalArgumentException("Does not contain a type");
+        //  Parse the payload type
+        if (!(json.opt(WebSocketInstruction.JSONAttributes.TYPE) instanceof String type) || type.isBlank()) {
+            return DecodeResult.failure("Does not contain a type");
+        }
 
         InstructionType instructionType = InstructionType.fromString(type);
-        if (instructionType == null) throw new IllegalArgumentException("Type is not INSERT, DELETE or CONNECT");
+        if (instructionType == null) return DecodeResult.failure("Type is not INSERT, DELETE or CONNECT");
 
-        return instructionType.instructionClass.getConstructor(TextMessage.class).newInstance(message);
+        return instructionType.decoder.apply(json);
+    }
+
+    /**
+     * Returns the instruction from the TextMessage
+     *
+     * @param message   The message containing the TextMessage
+     * @return          The constructed instruction
+     *
+     * @throws IllegalArgumentException  If the message is not a valid instruction
+     */
+    public static WebSocketInstruction getConstructedInstruction(TextMessage message) {
+        DecodeResult result = decode(message);
+        if (!result.isSuccess()) throw new IllegalArgumentException(result.error());
+        return result.instruction();
     }
 }
@@ -0,0 +1,188 @@
+package fr.univnantes.web.websocket.instruction;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.DocumentManager;
+import fr.univnantes.user.UserManager;
+import fr.univnantes.web.websocket.Viewport;
+import fr.univnantes.web.websocket.WebSocketSessionManager;
+import org.json.JSONObject;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static fr.univnantes.web.websocket.instruction.InstructionType.SET_VIEWPORT;
+import static fr.univnantes.web.websocket.instruction.Utils.generateErrorMessage;
+import static fr.univnantes.web.websocket.instruction.Utils.parseIndex;
+import static fr.univnantes.web.websocket.instruction.Utils.parseUUID;
+
+/**
+ * Represents a websocket set viewport instruction.
+ * <p>
+ *     A set viewport instruction is sent by a client when the lines displayed to its user change, when scrolling for example.
+ *     It contains the first visible line, the line after the last visible line and the user identifier.
+ *     The server answers with the content of these lines, then only sends the edits touching them, see {@link Viewport}.
+ *     It is not broadcast to the other users.
+ *
+ *     The instruction in JSON format is as follows:
+ *     {
+ *     "type": "SET_VIEWPORT",
+ *     "lineIdx": 100,
+ *     "endLineIdx": 150,
+ *     "userId": "user1"
+ *     }
+ * </p>
+ */
+public class SetViewportInstruction implements WebSocketInstruction {
+
+    private static final InstructionType TYPE = SET_VIEWPORT;
+    private final int lineIndex;
+    private final int endLineIndex;
+    private final UUID userIdentifier;
+
+    /**
+     * Creates a new set viewport instruction
+     *
+     * @param lineIndex         The first visible line, starts at 0
+     * @param endLineIndex      The line after the last visible line
+     * @param userIdentifier    The user identifier
+     */
+    public SetViewportInstruction(int lineIndex, int endLineIndex, UUID userIdentifier) {
+        if (lineIndex < 0) throw new IllegalArgumentException("lineIdx is negative");
+        if (endLineIndex <= lineIndex) throw new IllegalArgumentException("endLineIdx is not after lineIdx");
+        if (userIdentifier == null) throw new IllegalArgumentException("userId is null");
+
+        this.lineIndex = lineIndex;
+        this.endLineIndex = endLineIndex;
+        this.userIdentifier = userIdentifier;
+    }
+
+    /**
+     * Decodes the fields of the instruction from its parsed JSON message, without throwing
+     *
+     * @param json  The parsed message, its type having already been checked
+     * @return      The decoded instruction, or the reason why the message is invalid
+     */
+    public static DecodeResult decode(JSONObject json) {
+        int lineIndex = parseIndex(json.opt(JSONAttributes.LINE_IDX));
+        if (lineIndex < 0) return DecodeResult.failure("lineIdx is missing or negative");
+        int endLineIndex = parseIndex(json.opt(JSONAttributes.END_LINE_IDX));
+        if (endLineIndex <= lineIndex) return DecodeResult.failure("endLineIdx is missing or not after lineIdx");
+        UUID userIdentifier = parseUUID(json.opt(JSONAttributes.USER_ID));
+        if (userIdentifier == null) return DecodeResult.failure("userId is missing or invalid");
+        return DecodeResult.success(new SetViewportInstruction(lineIndex, endLineIndex, userIdentifier));
+    }
+
+    /**
+     * Returns the type of the instruction
+     * @return The type
+     */
+    @Override
+    public InstructionType getType() {
+        return TYPE;
+    }
+
+    /**
+     * Returns the first visible line of the instruction
+     * @return The first visible line
+     */
+    public int getLineIndex() {
+        return lineIndex;
+    }
+
+    /**
+     * Returns the line after the last visible line of the instruction
+     * @return The line after the last visible line
+     */
+    public int getEndLineIndex() {
+        return endLineIndex;
+    }
+
+    /**
+     * Returns the user identifier of the instruction
+     * @return The user identifier
+     */
+    @Override
+    public UUID getUserId() {
+        return userIdentifier;
+    }
+
+    /**
+     * Returns a callable that will execute the instruction.
+     *
+     * @param sessionManager  The session manager.
+     * @param session         The session.
+     * @param documentManager The document manager.
+     * @param userManager     The user manager.
+     * @param context         The settings and the broadcast aggregators of the handler.
+     * @return The callable.
+     */
+    @Override
+    public Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context) {
+        return () -> {
+            //  Check if the user is connected
+            if (!sessionManager.isAlreadyConnected(session)) {
+                session.sendMessage(new TextMessage(generateErrorMessage("User is not connected")));
+                return false;
+            }
+
+            //  Check if the user is connected to a document
+            UUID documentIdentifier = sessionManager.getDocumentId(session);
+
+            if (documentIdentifier == null) {
+                session.sendMessage(new TextMessage(generateErrorMessage("User is not connected to a document")));
+                return false;
+            }
+
+            //  Verify that the document exists
+            Document document = documentManager.getDocument(documentIdentifier);
+            //  If the document does not exist, unlink the user, close the session and return false
+            if (document == null) {
+                session.sendMessage(new TextMessage(generateErrorMessage("Document does not exist")));
+                session.close();
+
+                //  Remove the session from the session manager
+                sessionManager.removeSession(session);
+                userManager.removeUser(userIdentifier);
+
+                return false;
+            }
+
+            //  If everything is ok, replace the viewport and send its lines
+            Viewport viewport = new Viewport(lineIndex, endLineIndex);
+            if (!sessionManager.setViewport(session, viewport)) return false;
+            session.sendMessage(new TextMessage(viewport.content(document).toString()));
+            return true;
+        };
+    }
+
+    /**
+     * Returns broadcastable version of the instruction.
+     * The instruction is not broadcast, it only changes what its session receives.
+     *
+     * @return The broadcastable version of the instruction.
+     */
+    @Override
+    public JSONObject getBroadcastVersion() {
+        return new JSONObject()
+                .put(JSONAttributes.TYPE, TYPE.type)
+                .put(JSONAttributes.LINE_IDX, lineIndex)
+                .put(JSONAttributes.END_LINE_IDX, endLineIndex)
+                .put(JSONAttributes.USER_ID, userIdentifier);
+    }
+
+    /**
+     * Returns string representation of the instruction.
+     * @return A string representation
+     */
+    @Override
+    public String toString() {
+        return new JSONObject()
+                .put(JSONAttributes.TYPE, TYPE.type)
+                .put(JSONAttributes.LINE_IDX, lineIndex)
+                .put(JSONAttributes.END_LINE_IDX, endLineIndex)
+                .put(JSONAttributes.USER_ID, userIdentifier)
+                .toString();
+    }
+}
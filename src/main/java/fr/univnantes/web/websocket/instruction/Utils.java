@@ -1,6 +1,12 @@
 package fr.univnantes.web.websocket.instruction;
 
+import fr.univnantes.document.Document;
+import fr.univnantes.document.DocumentLines;
+import fr.univnantes.document.DocumentSnapshot;
 import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.util.UUID;
 
 /**
  * Utility class of the websocket instructions package.
@@ -56,4 +62,102 @@ public class Utils {
                 .put(WebSocketInstruction.JSONAttributes.MESSAGE, message)
                 .toString();
     }
+
+    /**
+     * Generates a resync message holding the whole document.
+     * It replaces the messages dropped when the client could not keep up.
+     *
+     * @param document The document
+     * @return The resync message as a JSON string
+     */
+    public static String generateResyncMessage(Document document) {
+        DocumentSnapshot snapshot = document.snapshot();
+        return new JSONObject()
+                .put(WebSocketInstruction.JSONAttributes.TYPE, "RESYNC")
+                .put(WebSocketInstruction.JSONAttributes.DOC_NAME, snapshot.getName())
+                .put(WebSocketInstruction.JSONAttributes.REVISION, snapshot.getRevision())
+                .put(WebSocketInstruction.JSONAttributes.CONTENT, (JSONString) snapshot::getJson)
+                .toString();
+    }
+
+    /**
+     * Generates a viewport message holding the lines of a document visible by a user.
+     * It answers SET_VIEWPORT and replaces the edits crossing the bounds of the viewport.
+     *
+     * @param document  The document
+     * @param start     The first visible line
+     * @param end       The line after the last visible line
+     * @return The viewport message as a JSON object
+     */
+    public static JSONObject generateViewportMessage(Document document, int start, int end) {
+        //  The lines are read at the revision sent with them
+        DocumentLines lines = document.readLines(start, end);
+        return new JSONObject()
+                .put(WebSocketInstruction.JSONAttributes.TYPE, "VIEWPORT")
+                .put(WebSocketInstruction.JSONAttributes.REVISION, lines.revision())
+                .put(WebSocketInstruction.JSONAttributes.LINE_IDX, start)
+                .put(WebSocketInstruction.JSONAttributes.END_LINE_IDX, end)
+                .put(WebSocketInstruction.JSONAttributes.LINE_COUNT, lines.lineCount())
+                .put(WebSocketInstruction.JSONAttributes.CONTENT, lines.content());
+    }
+
+    /**
+     * Generates a viewport shift message, sent instead of an edit before the viewport which adds or removes lines.
+     *
+     * @param delta The number of lines added (positive) or removed (negative) before the viewport
+     * @param start The first visible line after the shift
+     * @param end   The line after the last visible line after the shift
+     * @return The viewport shift message as a JSON object
+     */
+    public static JSONObject generateViewportShiftMessage(int delta, int start, int end) {
+        return new JSONObject()
+                .put(WebSocketInstruction.JSONAttributes.TYPE, "VIEWPORT_SHIFT")
+                .put(WebSocketInstruction.JSONAttributes.DELTA, delta)
+                .put(WebSocketInstruction.JSONAttributes.LINE_IDX, start)
+                .put(WebSocketInstruction.JSONAttributes.END_LINE_IDX, end);
+    }
+
+    /**
+     * Returns the index held by a field of a JSON instruction, without throwing.
+     *
+     * @param value The value of the field
+     * @return The index, -1 if the value is not a positive or zero integer
+     */
+    public static int parseIndex(Object value) {
+        if (value instanceof Integer index && index >= 0) return index;
+        return -1;
+    }
+
+    /**
+     * Returns the revision held by a field of a JSON instruction, without throwing.
+     *
+     * @param value The value of the field
+     * @return The revision, -1 if the value is not a positive or zero integer
+     */
+    public static long parseRevision(Object value) {
+        if (value instanceof Integer revision && revision >= 0) return revision;
+        if (value instanceof Long revision && revision >= 0) return revision;
+        return -1;
+    }
+
+    /**
+     * Returns the UUID held by a field of a JSON instruction, without throwing.
+     * Only the canonical 36 characters form is accepted.
+     *
+     * @param value The value of the field
+     * @return The UUID, null if the value is not a valid UUID
+     */
+    public static UUID parseUUID(Object value) {
+        if (!(value instanceof String text) || text.length() != 36) return null;
+
+        for (int i = 0; i < 36; i++) {
+            char c = text.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return null;
+            } else if (Character.digit(c, 16) < 0) {
+                return null;
+            }
+        }
+        return UUID.fromString(text);
+    }
 }
@@ -27,13 +27,25 @@ public interface WebSocketInstruction {
         public static final String DOC_ID = "docId";
         public static final String DOC_NAME = "docName";
         public static final String CONTENT = "content";
+        public static final String REVISION = "revision";
+        public static final String LAST_REVISION = "lastRevision";
+        public static final String BASE_REVISION = "baseRevision";
+        public static final String MISSED = "missed";
+        public static final String CHUNKED = "chunked";
+        public static final String LAST = "last";
         public static final String USERS_LIST = "users";
         public static final String USER_NAME = "userName";
         public static final String MESSAGE = "message";
         public static final String LINE_IDX = "lineIdx";
         public static final String COLUMN_IDX = "columnIdx";
+        public static final String END_LINE_IDX = "endLineIdx";
+        public static final String END_COLUMN_IDX = "endColumnIdx";
+        public static final String LINE_COUNT = "lineCount";
+        public static final String DELTA = "delta";
         public static final String CHAR = "char";
+        public static final String TEXT = "text";
         public static final String NEW_DOC_NAME = "newName";
+        public static final String SHORT_USER_ID = "sid";
 
         /**
          * Private constructor to prevent instantiation.
@@ -62,10 +74,10 @@ public interface WebSocketInstruction {
      * @param session         The session.
      * @param documentManager The document manager.
      * @param userManager     The user manager.
-     * @param args            The other arguments.
+     * @param context         The settings and the broadcast aggregators of the handler.
      * @return The callable.
      */
-    Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, Object... args);
+    Callable<Boolean> getCallable(WebSocketSessionManager sessionManager, WebSocketSession session, DocumentManager documentManager, UserManager userManager, InstructionContext context);
 
     /**
      * Returns broadcastable version of the instruction.
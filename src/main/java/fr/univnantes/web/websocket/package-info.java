@@ -6,6 +6,7 @@
  *
  * <ul>
  * <li>{@link fr.univnantes.web.websocket.instruction} - Contains all instructions for encapsulate all informations to communicates.
+ * <li>{@link fr.univnantes.web.websocket.DocumentActor} - The class executing the instructions of a document one after the other.
  * <li>{@link fr.univnantes.web.websocket.WebSocketConfig} - The class for the websockets configuration.
  * <li>{@link fr.univnantes.web.websocket.WebSocketHandler} - The class for the websocket handler.
  * <li>{@link fr.univnantes.web.websocket.WebSocketSessionManager} - The class representing the websockets manager.
@@ -1,5 +1,6 @@
 package fr.univnantes.document;
 
+import fr.univnantes.document.engine.DocumentEngineType;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -49,6 +50,25 @@ public class DocumentManagerTest {
         assertEquals("Test", document.getName());
     }
 
+    /**
+     * Test creating a document with a chosen engine using the DocumentManager.
+     * <p>
+     * This test creates a document backed by the rope engine, inserts characters in it,
+     * and asserts that the document uses the requested engine and holds the expected content.
+     * </p>
+     */
+    @Test
+    public void testCreateDocumentWithEngine() {
+        DocumentManager documentManager = DocumentManager.getInstance();
+        Document document = documentManager.createDocument("Test", DocumentEngineType.ROPE);
+        assertEquals(DocumentEngineType.ROPE, document.getEngineType());
+
+        document.insert(1, 0, 'a');
+        document.insertLineBreak(1, 0);
+        assertEquals("\n\na", document.toString());
+        assertEquals(3, document.getLineCount());
+    }
+
     /**
      * Test removing a document from the DocumentManager.
      * <p>
@@ -63,4 +83,29 @@ public class DocumentManagerTest {
         assertTrue(documentManager.removeDocument(document.getUUID()));
     }
 
+    /**
+     * Test that no document is created once the memory budget is exceeded.
+     * <p>
+     * This test lowers the limit of the memory budget below the used amount, asserts that the creation of a document is rejected,
+     * then removes the limit and asserts that documents are created again.
+     * </p>
+     */
+    @Test
+    public void testCreateDocumentOverBudget() {
+        DocumentManager documentManager = DocumentManager.getInstance();
+        Document document = documentManager.createDocument("Budget");
+        MemoryBudget budget = documentManager.getMemoryBudget();
+        long limit = budget.getLimit();
+        try {
+            budget.setLimit(1);
+            assertThrows(MemoryBudgetExceededException.class, () -> documentManager.createDocument("Rejected"));
+        } finally {
+            budget.setLimit(limit);
+        }
+
+        long used = budget.getUsed();
+        assertTrue(documentManager.removeDocument(document.getUUID()));
+        assertTrue(budget.getUsed() < used);
+        assertNotNull(documentManager.createDocument("Accepted"));
+    }
 }
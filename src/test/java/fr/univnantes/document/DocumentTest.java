@@ -1,13 +1,27 @@
 package fr.univnantes.document;
 
+import fr.univnantes.document.engine.DocumentEngineType;
+import fr.univnantes.document.persistence.Edit;
+import fr.univnantes.document.transform.AppliedEdit;
+import fr.univnantes.document.transform.EditHistory;
 import fr.univnantes.user.User;
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class DocumentTest {
+
+    private static final UUID USER = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+
     /**
      * Test the generation of a unique UUID for a document.
      * <p>
@@ -131,6 +145,129 @@ public class DocumentTest {
     }
 
 
+    /**
+     * Test inserting a text holding line breaks into a document.
+     * <p>
+     * This test pastes texts of several lines into a document of each engine, inside a line, past its end
+     * and on missing lines, and asserts the content and the line count after each insertion.
+     * </p>
+     */
+    @Test
+    public void testInsertText() {
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Paste", engineType);
+            assertTrue(document.insertText(0, 0, "Hello World"));
+            assertTrue(document.insertText(0, 5, ",\ndear\n"));
+            assertEquals("Hello,\ndear\n World", document.toString(), engineType.type);
+            assertEquals(3, document.getLineCount());
+
+            assertTrue(document.insertText(0, 50, "\nend"));
+            assertEquals("Hello,\nend\ndear\n World", document.toString(), engineType.type);
+
+            assertTrue(document.insertText(5, 2, "x\ny\n"));
+            assertEquals("Hello,\nend\ndear\n World\n\n  x\ny\n", document.toString(), engineType.type);
+            assertEquals(8, document.getLineCount());
+
+            assertFalse(document.insertText(0, 0, ""));
+            assertThrows(IllegalArgumentException.class, () -> document.insertText(0, 0, null));
+        }
+    }
+
+    /**
+     * Test that the insertions whose line or column overflows an int are rejected.
+     * <p>
+     * This test inserts characters, texts and line breaks at the last int line and column in a document of each engine,
+     * and asserts that they are rejected and leave the document unchanged and still editable.
+     * </p>
+     */
+    @Test
+    public void testInsertOverflow() {
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Test", engineType);
+            document.insertText(0, 0, "ab\ncd");
+
+            assertFalse(document.insert(Integer.MAX_VALUE, 0, 'x'), engineType.name());
+            assertFalse(document.insert(0, Integer.MAX_VALUE, 'x'), engineType.name());
+            assertFalse(document.insertText(Integer.MAX_VALUE, 0, "x"), engineType.name());
+            assertFalse(document.insertText(Integer.MAX_VALUE - 1, 0, "x\ny"), engineType.name());
+            assertFalse(document.insertText(1, Integer.MAX_VALUE - 1, "xy"), engineType.name());
+
+            assertEquals(2, document.getLineCount(), engineType.name());
+            assertEquals("ab\ncd", document.toString(), engineType.name());
+            assertTrue(document.insert(1, 2, 'e'), engineType.name());
+            assertEquals("ab\ncde", document.toString(), engineType.name());
+        }
+    }
+
+    /**
+     * Test deleting a selection from a document.
+     * <p>
+     * This test deletes a range inside a line and a range across lines from a document of each engine,
+     * and asserts the content, the line count, and that invalid ranges are rejected.
+     * </p>
+     */
+    @Test
+    public void testDeleteRange() {
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Selection", engineType);
+            document.insertText(0, 0, "Hello World\nfirst\nsecond\nthird");
+            assertTrue(document.deleteRange(0, 5, 0, 11));
+            assertEquals("Hello\nfirst\nsecond\nthird", document.toString(), engineType.type);
+
+            assertTrue(document.deleteRange(0, 2, 3, 3));
+            assertEquals("Herd", document.toString(), engineType.type);
+            assertEquals(1, document.getLineCount());
+
+            assertFalse(document.deleteRange(0, 1, 0, 1));
+            assertFalse(document.deleteRange(0, 0, 1, 0));
+            assertFalse(document.deleteRange(0, 0, 0, 5));
+        }
+    }
+
+    /**
+     * Test that the snapshot of a document is built once per revision.
+     * <p>
+     * This test asserts that applied edits and renamings increment the revision while rejected edits do not,
+     * that reading the snapshot twice at the same revision gives the same instance with the same encodings,
+     * and that concurrent readers of the same revision share one snapshot.
+     * </p>
+     */
+    @Test
+    public void testSnapshot() throws InterruptedException {
+        Document document = new Document("Snapshot");
+        long revision = document.getRevision();
+        document.insertText(0, 0, "Hello \"World\"\nà bientôt");
+        assertEquals(revision + 1, document.getRevision());
+        assertFalse(document.delete(5, 0));
+        assertEquals(revision + 1, document.getRevision());
+
+        DocumentSnapshot snapshot = document.snapshot();
+        assertEquals(revision + 1, snapshot.getRevision());
+        assertEquals(document.toString(), snapshot.getContent());
+        assertSame(snapshot, document.snapshot());
+        assertSame(snapshot.getJson(), document.snapshot().getJson());
+        assertEquals(document.toString(), new JSONObject("{\"content\":" + snapshot.getJson() + "}").getString("content"));
+        assertArrayEquals(document.toString().getBytes(StandardCharsets.UTF_8), snapshot.getUtf8());
+
+        document.setName("Renamed");
+        DocumentSnapshot renamed = document.snapshot();
+        assertNotSame(snapshot, renamed);
+        assertEquals("Renamed", renamed.getName());
+        assertEquals(revision + 2, renamed.getRevision());
+
+        document.insert(1, 0, '!');
+        DocumentSnapshot[] snapshots = new DocumentSnapshot[16];
+        Thread[] readers = new Thread[snapshots.length];
+        for (int i = 0; i < readers.length; i++) {
+            int reader = i;
+            readers[i] = new Thread(() -> snapshots[reader] = document.snapshot());
+            readers[i].start();
+        }
+        for (Thread reader : readers) reader.join();
+        for (DocumentSnapshot shared : snapshots) assertSame(snapshots[0], shared);
+        assertEquals("Hello \"World\"\n!à bientôt", snapshots[0].getContent());
+    }
+
     /**
      * Test the concurrent insertion of characters into a document from multiple threads.
      * <p>
@@ -180,4 +317,129 @@ public class DocumentTest {
         assertEquals(1000, d.toString().length());
     }
 
+    /**
+     * Test the estimated footprint of a document.
+     * <p>
+     * This test edits a document of each engine and asserts that its footprint grows with the inserted characters,
+     * but not with the virtual padding of an insertion beyond the end of a line, and shrinks back when they are deleted.
+     * </p>
+     */
+    @Test
+    public void testFootprint() {
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Footprint", engineType);
+            long empty = document.getFootprint();
+
+            for (int i = 0; i < 1000; i++) document.insert(0, i, 'a');
+            long filled = document.getFootprint();
+            assertTrue(filled >= empty + 2000, engineType.type);
+
+            document.insert(0, 2000, 'b');
+            assertTrue(document.getFootprint() < filled + 1000, engineType.type);
+
+            for (int i = 0; i < 2001; i++) document.delete(0, 0);
+            assertEquals("", document.toString());
+            assertTrue(document.getFootprint() < empty + 100, engineType.type);
+        }
+    }
+
+    /**
+     * Test that a document refuses to grow beyond its memory budget.
+     * <p>
+     * This test attaches a document to a small budget, inserts characters until an insertion is rejected,
+     * and asserts that the rejected insertion was not applied, that deleting is still accepted,
+     * and that detaching the document releases its footprint from the budget.
+     * </p>
+     */
+    @Test
+    public void testMemoryBudget() {
+        MemoryBudget budget = new MemoryBudget(16 * 1024);
+        Document document = new Document("Budget");
+        document.setMemoryBudget(budget);
+        assertEquals(document.getFootprint(), budget.getUsed());
+
+        int inserted = 0;
+        try {
+            while (inserted < 100_000) {
+                document.insert(0, inserted, 'a');
+                inserted++;
+            }
+            fail("The budget has not been enforced");
+        } catch (MemoryBudgetExceededException e) {
+            assertTrue(e.getMessage().contains("rejected"));
+        }
+        assertEquals(inserted, document.toString().length());
+        assertTrue(budget.isExceeded());
+        assertThrows(MemoryBudgetExceededException.class, () -> document.insertLineBreak(0, 0));
+
+        assertTrue(document.delete(0, 0));
+        document.setMemoryBudget(null);
+        assertEquals(0, budget.getUsed());
+        assertTrue(document.insert(0, 0, 'a'));
+    }
+
+    /**
+     * Test that a snapshot holds exactly the edits counted by its revision while the document is edited.
+     * <p>
+     * This test types characters in a document with an edit history on every engine while another thread takes snapshots,
+     * like users joining the document. Each joining user then applies the edits after the revision of its snapshot,
+     * and the test asserts that it ends with the content of the document, so no edit is applied twice.
+     * </p>
+     */
+    @Test
+    public void testSnapshotMatchesItsRevision() throws InterruptedException {
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Snapshot", engineType);
+            document.setEditHistory(new EditHistory(16, document.getRevision()));
+            int edits = 20_000;
+
+            Thread editor = new Thread(() -> {
+                for (int i = 0; i < edits; i++) document.insert(0, 0, 'a');
+            });
+            List<DocumentSnapshot> snapshots = new ArrayList<>();
+            editor.start();
+            while (editor.isAlive()) snapshots.add(document.snapshot());
+            editor.join();
+
+            String expected = document.toString();
+            for (DocumentSnapshot snapshot : snapshots) {
+                String joined = snapshot.getContent() + "a".repeat((int) (document.getRevision() - snapshot.getRevision()));
+                assertEquals(expected.length(), joined.length(), engineType + " at revision " + snapshot.getRevision());
+            }
+        }
+    }
+
+    /**
+     * Test that concurrent edits applied without edit history get distinct revisions.
+     * <p>
+     * This test applies edits on distinct lines from several threads to a document without history nor log,
+     * so the edits are not applied one at a time, and asserts that their revisions are exactly 1 to the number of edits.
+     * </p>
+     */
+    @Test
+    public void testConcurrentEditsGetDistinctRevisions() throws InterruptedException {
+        Document document = new Document("Revisions", DocumentEngineType.STRIPED_LINES);
+        int threads = 4;
+        int edits = 5_000;
+        for (int t = 0; t < threads; t++) assertTrue(document.insertLineBreak(0, 0));
+        long base = document.getRevision();
+
+        Set<Long> revisions = ConcurrentHashMap.newKeySet();
+        List<Thread> editors = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int line = t;
+            editors.add(new Thread(() -> {
+                for (int i = 0; i < edits; i++) {
+                    AppliedEdit applied = document.apply(Edit.insert(line, i, 'a'), USER, -1);
+                    revisions.add(applied.revision());
+                }
+            }));
+        }
+        editors.forEach(Thread::start);
+        for (Thread editor : editors) editor.join();
+
+        assertEquals(threads * edits, revisions.size());
+        assertEquals(base + 1, revisions.stream().mapToLong(Long::longValue).min().orElseThrow());
+        assertEquals(base + threads * edits, revisions.stream().mapToLong(Long::longValue).max().orElseThrow());
+    }
 }
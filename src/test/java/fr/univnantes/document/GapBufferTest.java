@@ -0,0 +1,288 @@
+package fr.univnantes.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GapBufferTest {
+    /**
+     * Test the insert() method of GapBuffer at the start, in the middle and at the end.
+     * <p>
+     * This test inserts characters at different positions, forcing the gap to move,
+     * and asserts that the resulting content and length are as expected.
+     * </p>
+     */
+    @Test
+    public void testInsert() {
+        GapBuffer buffer = new GapBuffer();
+        buffer.insert(0, 'b');
+        buffer.insert(0, 'a');
+        buffer.insert(2, 'd');
+        buffer.insert(2, 'c');
+        assertEquals("abcd", buffer.toString());
+        assertEquals(4, buffer.length());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.insert(5, 'e'));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.insert(-1, 'e'));
+    }
+
+    /**
+     * Test that sequential typing grows the buffer geometrically.
+     * <p>
+     * This test appends many characters at the end of the buffer and asserts that
+     * the capacity stays within twice the length, proving amortized constant time insertion.
+     * </p>
+     */
+    @Test
+    public void testSequentialTyping() {
+        GapBuffer buffer = new GapBuffer();
+        for (int i = 0; i < 10_000; i++) {
+            buffer.insert(i, (char) ('a' + i % 26));
+        }
+        assertEquals(10_000, buffer.length());
+        assertTrue(buffer.capacity() < 2 * 10_000 + 16);
+        assertEquals('a', buffer.charAt(0));
+        assertEquals('z', buffer.charAt(25));
+    }
+
+    /**
+     * Test the set() and charAt() methods on both sides of the gap.
+     * <p>
+     * This test moves the gap in the middle of the buffer and modifies characters before and after it.
+     * </p>
+     */
+    @Test
+    public void testSet() {
+        GapBuffer buffer = new GapBuffer("abcd");
+        buffer.insert(2, 'x');
+        buffer.set(0, 'A');
+        buffer.set(4, 'D');
+        assertEquals("AbxcD", buffer.toString());
+        assertEquals('x', buffer.charAt(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.set(5, 'e'));
+    }
+
+    /**
+     * Test the delete() method of GapBuffer.
+     * <p>
+     * This test deletes characters at the start, in the middle and at the end of the buffer.
+     * </p>
+     */
+    @Test
+    public void testDelete() {
+        GapBuffer buffer = new GapBuffer("abcde");
+        buffer.delete(2);
+        assertEquals("abde", buffer.toString());
+        buffer.delete(0);
+        assertEquals("bde", buffer.toString());
+        buffer.delete(2);
+        assertEquals("bd", buffer.toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.delete(2));
+    }
+
+    /**
+     * Test the fill() method of GapBuffer.
+     * <p>
+     * This test fills the end of the buffer with blank characters while the gap is elsewhere.
+     * </p>
+     */
+    @Test
+    public void testFill() {
+        GapBuffer buffer = new GapBuffer("ab");
+        buffer.insert(0, '>');
+        buffer.fill(' ', 3);
+        assertEquals(">ab   ", buffer.toString());
+    }
+
+    /**
+     * Test the split() and append() methods of GapBuffer.
+     * <p>
+     * This test splits a buffer in two and joins the parts back together.
+     * </p>
+     */
+    @Test
+    public void testSplitAndAppend() {
+        GapBuffer buffer = new GapBuffer("Hello World");
+        GapBuffer tail = buffer.split(5);
+        assertEquals("Hello", buffer.toString());
+        assertEquals(" World", tail.toString());
+
+        tail.insert(0, ',');
+        buffer.append(tail);
+        assertEquals("Hello, World", buffer.toString());
+        assertEquals(", World", tail.toString());
+
+        GapBuffer empty = buffer.split(buffer.length());
+        assertEquals(0, empty.length());
+        assertEquals("Hello, World", buffer.toString());
+    }
+
+    /**
+     * Test that the padding of the fill() method is kept virtual.
+     * <p>
+     * This test pads a buffer up to a far index, asserts that nothing is stored for the padding,
+     * then edits around and inside the padding and asserts that only the shorter side of the padding is stored.
+     * </p>
+     */
+    @Test
+    public void testVirtualPadding() {
+        GapBuffer buffer = new GapBuffer("ab");
+        buffer.fill(' ', 50_000_000);
+        buffer.insert(buffer.length(), 'c');
+        assertEquals(50_000_003, buffer.length());
+        assertEquals(3, buffer.storedLength());
+        assertTrue(buffer.capacity() < 100);
+        assertEquals(' ', buffer.charAt(25_000_000));
+        assertEquals('c', buffer.charAt(50_000_002));
+
+        buffer.insert(10, 'x');
+        assertEquals('x', buffer.charAt(10));
+        assertEquals(12, buffer.storedLength());
+        buffer.set(50_000_000, 'y');
+        assertEquals('y', buffer.charAt(50_000_000));
+        assertEquals('c', buffer.charAt(50_000_003));
+        assertTrue(buffer.storedLength() < 20);
+
+        buffer.delete(1_000);
+        assertEquals(50_000_003, buffer.length());
+        assertEquals('y', buffer.charAt(49_999_999));
+    }
+
+    /**
+     * Test that inserting far past the end of an empty buffer does not allocate the padding.
+     * <p>
+     * This test pads an empty buffer up to a far index then inserts a character and a text after the padding,
+     * and asserts that the capacity only grows with the stored characters.
+     * </p>
+     */
+    @Test
+    public void testVirtualPaddingOfAnEmptyBuffer() {
+        GapBuffer buffer = new GapBuffer();
+        buffer.fill(' ', 50_000_000);
+        buffer.insert(buffer.length(), 'z');
+        assertEquals(50_000_001, buffer.length());
+        assertEquals(1, buffer.storedLength());
+        assertTrue(buffer.capacity() < 100);
+
+        buffer.insert(buffer.length(), "after the padding");
+        assertEquals('z', buffer.charAt(50_000_000));
+        assertEquals(18, buffer.storedLength());
+        assertTrue(buffer.capacity() < 100);
+    }
+
+    /**
+     * Test that a buffer with virtual padding behaves like a string builder.
+     * <p>
+     * This test applies the same random edits, padding, splits and appends included,
+     * to a gap buffer and to a string builder, and asserts that they always hold the same characters.
+     * </p>
+     */
+    @Test
+    public void testVirtualPaddingSameBehaviorAsStringBuilder() {
+        Random random = new Random(42);
+        GapBuffer buffer = new GapBuffer();
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 20_000; i++) {
+            int length = expected.length();
+            char c = random.nextInt(4) == 0 ? ' ' : (char) ('a' + random.nextInt(26));
+
+            switch (random.nextInt(7)) {
+                case 0 -> {
+                    int count = random.nextInt(40);
+                    buffer.fill(' ', count);
+                    expected.repeat(' ', count);
+                }
+                case 1, 2 -> {
+                    int index = random.nextInt(length + 1);
+                    buffer.insert(index, c);
+                    expected.insert(index, c);
+                }
+                case 3 -> {
+                    if (length == 0) continue;
+                    int index = random.nextInt(length);
+                    buffer.set(index, c);
+                    expected.setCharAt(index, c);
+                }
+                case 4 -> {
+                    if (length == 0) continue;
+                    int index = random.nextInt(length);
+                    buffer.delete(index);
+                    expected.deleteCharAt(index);
+                }
+                default -> {
+                    //  Split at a random index, pad both parts and join them back
+                    int index = random.nextInt(length + 1);
+                    GapBuffer tail = buffer.split(index);
+                    String tailExpected = expected.substring(index);
+                    expected.setLength(index);
+                    assertEquals(expected.toString(), buffer.toString());
+                    assertEquals(tailExpected, tail.toString());
+
+                    int count = random.nextInt(20);
+                    buffer.fill(' ', count);
+                    expected.repeat(' ', count);
+                    buffer.append(tail);
+                    expected.append(tailExpected);
+                }
+            }
+            assertEquals(expected.length(), buffer.length());
+        }
+        assertEquals(expected.toString(), buffer.toString());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals(expected.charAt(i), buffer.charAt(i));
+        }
+    }
+
+    /**
+     * Test that deleting a range behaves like a string builder, across the virtual padding.
+     * <p>
+     * This test pads a buffer, inserts characters around and inside the padding, deletes random ranges
+     * from it and from a string builder, and asserts that they hold the same characters
+     * and that the deleted padding is never stored.
+     * </p>
+     */
+    @Test
+    public void testDeleteRange() {
+        Random random = new Random(11);
+        GapBuffer buffer = new GapBuffer();
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 20_000; i++) {
+            int length = expected.length();
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    int count = random.nextInt(100);
+                    buffer.fill(' ', count);
+                    expected.repeat(' ', count);
+                }
+                case 1 -> {
+                    int index = random.nextInt(length + 1);
+                    char c = (char) ('a' + random.nextInt(26));
+                    buffer.insert(index, c);
+                    expected.insert(index, c);
+                }
+                default -> {
+                    int from = random.nextInt(length + 1);
+                    int to = from + random.nextInt(length - from + 1);
+                    buffer.delete(from, to);
+                    expected.delete(from, to);
+                }
+            }
+            assertEquals(expected.toString(), buffer.toString());
+        }
+
+        GapBuffer padded = new GapBuffer("ab");
+        padded.fill(' ', 1_000_000);
+        padded.insert(padded.length(), 'z');
+        padded.delete(1, 999_000);
+        assertEquals(1_004, padded.length());
+        assertEquals(2, padded.storedLength());
+        assertEquals('z', padded.charAt(1_003));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> padded.delete(2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> padded.delete(0, 1_005));
+    }
+}
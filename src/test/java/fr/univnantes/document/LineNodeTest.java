@@ -104,5 +104,39 @@ public class LineNodeTest {
         assertTrue(lineNode.insertLineBreak(1));
     }
 
+    /**
+     * Test that insertLineBreak() splits the characters of the line between the two line nodes.
+     * <p>
+     * This test creates a LineNode containing "Hello", inserts a line break in the middle,
+     * and asserts that each line node holds its own part of the characters.
+     * </p>
+     */
+    @Test
+    public void testInsertLineBreakSplitsContent() {
+        LineNode lineNode = new LineNode();
+        for (char c : "Hello".toCharArray()) {
+            lineNode.insert(lineNode.getLength(), c);
+        }
+        assertTrue(lineNode.insertLineBreak(2));
+        assertEquals("He\n", lineNode.toString());
+        assertEquals("llo\n", lineNode.getNext().toString());
+        assertSame(lineNode, lineNode.getNext().getPrevious());
+    }
+
+    /**
+     * Test that insert() fills the gap with blank characters when the index is past the end of the line.
+     * <p>
+     * This test inserts a character far after the end of a line and asserts the line is padded with spaces.
+     * </p>
+     */
+    @Test
+    public void testInsertPastEnd() {
+        LineNode lineNode = new LineNode();
+        lineNode.insert(0, 'A');
+        assertTrue(lineNode.insert(4, 'B'));
+        assertEquals("A   B\n", lineNode.toString());
+        assertEquals(5, lineNode.getLength());
+    }
+
 
 }
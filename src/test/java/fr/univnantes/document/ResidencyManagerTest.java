@@ -0,0 +1,183 @@
+package fr.univnantes.document;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import fr.univnantes.document.persistence.DocumentStore;
+import fr.univnantes.user.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResidencyManagerTest {
+
+    @TempDir
+    Path directory;
+
+    private final DocumentManager documentManager = DocumentManager.getInstance();
+    private DocumentStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        store = new DocumentStore(directory, 60_000, 1 << 20);
+        documentManager.setStore(store);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        documentManager.setStore(null);
+        store.close();
+    }
+
+    /**
+     * Test that the idle documents are evicted and loaded back on their next request.
+     * <p>
+     * This test creates an edited document without users, a document with a user and a document with a joining user,
+     * evicts the idle documents, and asserts that only the first one left the memory and that the listeners were told.
+     * It then requests the evicted document and asserts that it is loaded back with its name and content, and still persisted.
+     * </p>
+     */
+    @Test
+    public void testEvictIdle() {
+        List<UUID> evicted = new CopyOnWriteArrayList<>();
+        documentManager.addEvictionListener(evicted::add);
+
+        Document idle = documentManager.createDocument("Idle");
+        idle.insert(0, 0, 'a');
+        idle.insertLineBreak(0, 1);
+        idle.insert(1, 0, 'b');
+        Document used = documentManager.createDocument("Used");
+        used.addUser(new User("Alice"));
+        Document joined = documentManager.createDocument("Joined");
+        joined.addJoiningUser(new User("Bob"));
+
+        try (ResidencyManager residencyManager = new ResidencyManager(documentManager, 0, Integer.MAX_VALUE, 0)) {
+            residencyManager.evict();
+        }
+
+        assertFalse(documentManager.getResidentDocuments().contains(idle));
+        assertTrue(documentManager.getResidentDocuments().contains(used));
+        assertTrue(documentManager.getResidentDocuments().contains(joined));
+        assertTrue(evicted.contains(idle.getUUID()));
+        assertFalse(evicted.contains(used.getUUID()));
+        assertNull(store.getLog(idle.getUUID()));
+
+        Document loaded = documentManager.getDocument(idle.getUUID());
+        assertNotSame(idle, loaded);
+        assertEquals("Idle", loaded.getName());
+        assertEquals("a\nb", loaded.toString());
+        assertNotNull(loaded.getWriteAheadLog());
+        assertSame(used, documentManager.getDocument(used.getUUID()));
+
+        assertTrue(documentManager.removeDocument(used.getUUID()));
+        assertTrue(documentManager.removeDocument(joined.getUUID()));
+        assertTrue(documentManager.evictDocument(loaded.getUUID()));
+        assertTrue(documentManager.removeDocument(loaded.getUUID()));
+        assertNull(documentManager.getDocument(loaded.getUUID()));
+    }
+
+    /**
+     * Test that joining a document registers the joining user on the resident document, loading it back if it was evicted.
+     * <p>
+     * This test evicts an idle document, joins it and asserts that the loaded document is resident and holds the joining user,
+     * so that it is no longer idle and cannot be evicted before the user connects. It also asserts that an unknown document is not joined.
+     * </p>
+     */
+    @Test
+    public void testJoinEvictedDocument() {
+        Document idle = documentManager.createDocument("Idle");
+        idle.insert(0, 0, 'a');
+        assertTrue(documentManager.evictDocument(idle.getUUID()));
+
+        User user = new User("Alice");
+        Document joined = documentManager.joinDocument(idle.getUUID(), user);
+        assertNotNull(joined);
+        assertEquals("a", joined.toString());
+        assertTrue(joined.isJoiningUserInDocument(user));
+        assertTrue(documentManager.getResidentDocuments().contains(joined));
+        assertFalse(joined.isIdle());
+        assertFalse(documentManager.evictDocument(joined.getUUID()));
+
+        Document created = documentManager.createDocument("Created", DocumentEngineType.LINKED_LINES, user);
+        assertTrue(created.isJoiningUserInDocument(user));
+        assertFalse(documentManager.evictDocument(created.getUUID()));
+
+        assertNull(documentManager.joinDocument(UUID.randomUUID(), user));
+
+        assertTrue(documentManager.removeDocument(joined.getUUID()));
+        assertTrue(documentManager.removeDocument(created.getUUID()));
+    }
+
+    /**
+     * Test that a document joined while it is evicted is the resident one.
+     * <p>
+     * This test evicts a document in a loop while another thread joins it, asserts that every joined document is the resident one
+     * and holds its joining user, then removes the user so that the document can be evicted again.
+     * </p>
+     */
+    @Test
+    public void testJoinWhileEvicting() throws InterruptedException {
+        Document document = documentManager.createDocument("Evicted");
+        document.insert(0, 0, 'a');
+        UUID documentId = document.getUUID();
+
+        Thread evictor = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) documentManager.evictDocument(documentId);
+        });
+        evictor.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                User user = new User("User" + i);
+                Document joined = documentManager.joinDocument(documentId, user);
+                assertNotNull(joined);
+                assertEquals("a", joined.toString());
+                assertTrue(joined.isJoiningUserInDocument(user));
+                assertSame(joined, documentManager.getDocument(documentId));
+                joined.removeJoiningUser(user);
+            }
+        } finally {
+            evictor.interrupt();
+            evictor.join();
+        }
+
+        assertTrue(documentManager.removeDocument(documentId));
+    }
+
+    /**
+     * Test that the least recently used idle documents are evicted beyond the budget.
+     * <p>
+     * This test creates three idle documents, accesses them in order, sets a budget of one document less than the resident ones,
+     * and asserts that only the least recently accessed one is evicted although none exceeded the idle time.
+     * </p>
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() throws InterruptedException {
+        Document first = documentManager.createDocument("First");
+        Document second = documentManager.createDocument("Second");
+        Document third = documentManager.createDocument("Third");
+        for (Document document : List.of(first, second, third)) {
+            Thread.sleep(5);
+            documentManager.getDocument(document.getUUID());
+        }
+
+        int budget = documentManager.getResidentCount() - 1;
+        try (ResidencyManager residencyManager = new ResidencyManager(documentManager, 60_000, budget, 0)) {
+            assertEquals(1, residencyManager.evict());
+        }
+
+        assertFalse(documentManager.getResidentDocuments().contains(first));
+        assertTrue(documentManager.getResidentDocuments().contains(second));
+        assertTrue(documentManager.getResidentDocuments().contains(third));
+
+        for (Document document : List.of(first, second, third)) {
+            documentManager.removeDocument(document.getUUID());
+        }
+    }
+}
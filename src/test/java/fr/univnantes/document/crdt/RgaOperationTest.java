@@ -0,0 +1,49 @@
+package fr.univnantes.document.crdt;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RgaOperationTest {
+
+    /**
+     * Test that the operations are decoded as they were encoded.
+     * <p>
+     * This test encodes an insertion and a deletion in the same buffer, decodes them,
+     * and asserts that they are equal and that an insertion with small identifiers takes 7 bytes.
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() {
+        RgaOperation insertion = RgaOperation.insert(RgaSequence.id(3, 1), RgaSequence.HEAD, 'é');
+        RgaOperation deletion = RgaOperation.delete(RgaSequence.id(1L << 40, 65535), RgaSequence.id(3, 1));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        insertion.write(out);
+        int insertionSize = out.size();
+        deletion.write(out);
+
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(insertion, RgaOperation.read(buffer));
+        assertEquals(deletion, RgaOperation.read(buffer));
+        assertFalse(buffer.hasRemaining());
+        assertEquals(7, insertionSize);
+    }
+
+    /**
+     * Test that invalid operations are rejected.
+     * <p>
+     * This test creates an operation without identifier and decodes an unknown opcode and a truncated identifier,
+     * and asserts that each throws an {@link IllegalArgumentException}.
+     * </p>
+     */
+    @Test
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> RgaOperation.insert(0, RgaSequence.HEAD, 'a'));
+        assertThrows(IllegalArgumentException.class, () -> RgaOperation.read(ByteBuffer.wrap(new byte[]{0x7F, 0x01})));
+        assertThrows(IllegalArgumentException.class, () -> RgaOperation.read(ByteBuffer.wrap(new byte[]{0x02, (byte) 0x81})));
+    }
+}
@@ -0,0 +1,235 @@
+package fr.univnantes.document.crdt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RgaSequenceTest {
+
+    /**
+     * Test that the local insertions and deletions are applied at their positions.
+     * <p>
+     * This test inserts a text, a character and deletes another one on a single replica,
+     * and asserts the content, the length and the positions of the lines.
+     * </p>
+     */
+    @Test
+    public void testLocalEdits() {
+        RgaSequence sequence = new RgaSequence(1);
+        sequence.insertText(0, "Hello\nWorld");
+        sequence.insert(5, '!');
+        sequence.delete(0);
+
+        assertEquals("ello!\nWorld", sequence.toString());
+        assertEquals(11, sequence.length());
+        assertEquals(6, sequence.indexOf(1, 0));
+        assertEquals(5, sequence.indexOf(0, 5));
+        assertEquals(-1, sequence.indexOf(0, 6));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.insert(12, 'a'));
+    }
+
+    /**
+     * Test that concurrent insertions at the same position converge.
+     * <p>
+     * This test makes two replicas insert a different text at the same position,
+     * exchanges their operations in opposite orders, and asserts that both replicas hold the same content.
+     * </p>
+     */
+    @Test
+    public void testConcurrentInsertionsConverge() {
+        RgaSequence first = new RgaSequence(1);
+        RgaSequence second = new RgaSequence(2);
+        for (RgaOperation operation : first.load("ab")) second.apply(operation);
+
+        List<RgaOperation> fromFirst = first.insertText(1, "xy");
+        List<RgaOperation> fromSecond = second.insertText(1, "12");
+        RgaOperation deletion = second.delete(0);
+
+        for (RgaOperation operation : fromSecond) assertTrue(first.apply(operation));
+        assertTrue(first.apply(deletion));
+        for (RgaOperation operation : fromFirst) assertTrue(second.apply(operation));
+
+        assertEquals(first.toString(), second.toString());
+        assertEquals(5, first.length());
+        assertFalse(first.apply(deletion));
+        assertFalse(first.apply(fromSecond.get(0)));
+    }
+
+    /**
+     * Test that replicas applying random operations in different orders converge.
+     * <p>
+     * This test makes three replicas edit randomly, delivers the operations of each round to the other replicas in shuffled orders
+     * keeping the order of each replica, and asserts that all the replicas hold the same content.
+     * </p>
+     */
+    @Test
+    public void testRandomEditsConverge() {
+        Random random = new Random(42);
+        RgaSequence[] replicas = {new RgaSequence(1), new RgaSequence(2), new RgaSequence(3)};
+
+        for (int round = 0; round < 50; round++) {
+            List<List<RgaOperation>> produced = new ArrayList<>();
+            for (RgaSequence replica : replicas) {
+                List<RgaOperation> operations = new ArrayList<>();
+                for (int i = 0; i < 5; i++) {
+                    if (replica.length() > 0 && random.nextInt(3) == 0) {
+                        RgaOperation operation = replica.delete(random.nextInt(replica.length()));
+                        if (operation != null) operations.add(operation);
+                    } else {
+                        operations.add(replica.insert(random.nextInt(replica.length() + 1), (char) ('a' + random.nextInt(26))));
+                    }
+                }
+                produced.add(operations);
+            }
+
+            for (int target = 0; target < replicas.length; target++) {
+                List<Integer> sources = new ArrayList<>(List.of(0, 1, 2));
+                Collections.shuffle(sources, random);
+                for (int source : sources) {
+                    if (source == target) continue;
+                    for (RgaOperation operation : produced.get(source)) replicas[target].apply(operation);
+                }
+            }
+        }
+
+        assertEquals(replicas[0].toString(), replicas[1].toString());
+        assertEquals(replicas[0].toString(), replicas[2].toString());
+    }
+
+    /**
+     * Test that operations applied by several threads without lock converge.
+     * <p>
+     * This test makes 4 threads insert and delete on their own replica while applying the operations of a shared queue
+     * on a common replica, then applies every operation to a last replica in another order,
+     * and asserts that both hold the same content.
+     * </p>
+     */
+    @Test
+    public void testConcurrentApply() throws InterruptedException {
+        RgaSequence shared = new RgaSequence(0);
+        ConcurrentLinkedQueue<List<RgaOperation>> batches = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 1; t <= 4; t++) {
+            RgaSequence local = new RgaSequence(t);
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                List<RgaOperation> operations = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    RgaOperation operation = i % 4 == 3
+                            ? local.delete(local.length() / 2)
+                            : local.insert(local.length() / 2, (char) ('a' + i % 26));
+                    operations.add(operation);
+                    shared.apply(operation);
+                }
+                batches.add(operations);
+            }));
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        RgaSequence replay = new RgaSequence(5);
+        List<List<RgaOperation>> ordered = new ArrayList<>(batches);
+        Collections.reverse(ordered);
+        for (List<RgaOperation> operations : ordered) {
+            for (RgaOperation operation : operations) assertTrue(replay.apply(operation));
+        }
+
+        assertEquals(4 * 500 / 2, shared.length());
+        assertEquals(replay.toString(), shared.toString());
+    }
+
+    /**
+     * Test that the stable tombstones are collected without changing the content.
+     * <p>
+     * This test deletes characters on a replica, collects its tombstones with the version vector of another replica
+     * taken before, between and after it applied the deletions, and asserts that each is only removed once applied everywhere,
+     * that the content is kept, and that later insertions still converge.
+     * </p>
+     */
+    @Test
+    public void testCollect() {
+        RgaSequence first = new RgaSequence(1);
+        RgaSequence second = new RgaSequence(2);
+        for (RgaOperation operation : first.load("abcdef")) second.apply(operation);
+
+        RgaOperation firstDeletion = first.delete(1);
+        RgaOperation secondDeletion = first.delete(1);
+        assertEquals(0, first.collect(Map.of(2, second.getVersionVector())));
+
+        second.apply(firstDeletion);
+        assertEquals(1, first.collect(Map.of(2, second.getVersionVector())));
+        second.apply(secondDeletion);
+        assertEquals(1, first.collect(Map.of(2, second.getVersionVector())));
+        assertEquals(4, first.size());
+        assertEquals("adef", first.toString());
+
+        second.apply(first.insert(1, 'x'));
+        first.apply(second.insert(4, 'y'));
+        assertEquals("axdeyf", first.toString());
+        assertEquals(first.toString(), second.toString());
+    }
+
+    /**
+     * Test that a tombstone used as origin by a concurrent insertion is not collected before the insertion is applied.
+     * <p>
+     * This test deletes a character on a replica while another replica appends a character then inserts after the deleted one,
+     * exchanges the deletion and the first insertion only, and asserts that the tombstone is kept until the second insertion is applied,
+     * then collected, and that both replicas converge.
+     * </p>
+     */
+    @Test
+    public void testCollectKeepsConcurrentOrigin() {
+        RgaSequence first = new RgaSequence(1);
+        RgaSequence second = new RgaSequence(2);
+        for (RgaOperation operation : first.load("ab")) second.apply(operation);
+
+        RgaOperation deletion = first.delete(0);
+        RgaOperation append = second.insert(2, 'q');
+        RgaOperation insertion = second.insert(1, 'z');
+        assertEquals(RgaSequence.clockOf(deletion.id()), RgaSequence.clockOf(append.id()));
+
+        assertTrue(first.apply(append));
+        assertTrue(second.apply(deletion));
+        assertEquals(0, first.collect(Map.of(2, second.getVersionVector())));
+
+        assertTrue(first.apply(insertion));
+        assertEquals(1, first.collect(Map.of(2, second.getVersionVector())));
+        assertEquals("zbq", first.toString());
+        assertEquals(first.toString(), second.toString());
+    }
+
+    /**
+     * Test that the bulk load only fills an empty sequence.
+     * <p>
+     * This test loads a text, asserts that its operations rebuild it on another replica,
+     * and that a second load is rejected.
+     * </p>
+     */
+    @Test
+    public void testLoad() {
+        RgaSequence first = new RgaSequence(1);
+        List<RgaOperation> operations = first.load("line\nnext");
+
+        RgaSequence second = new RgaSequence(2);
+        for (RgaOperation operation : operations) assertTrue(second.apply(operation));
+
+        assertEquals("line\nnext", second.toString());
+        assertEquals(first.getClock(), second.getClock());
+        assertThrows(IllegalStateException.class, () -> first.load("again"));
+    }
+}
@@ -0,0 +1,69 @@
+package fr.univnantes.document.engine;
+
+import fr.univnantes.document.LineNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineIndexTest {
+    /**
+     * Test the add() and get() methods of LineIndex.
+     * <p>
+     * This test appends line nodes and asserts that each one is found at its position,
+     * and that positions outside of the index return null.
+     * </p>
+     */
+    @Test
+    public void testAddAndGet() {
+        LineIndex index = new LineIndex();
+        LineNode[] lines = new LineNode[100];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = new LineNode();
+            index.add(lines[i]);
+        }
+
+        assertEquals(100, index.size());
+        for (int i = 0; i < lines.length; i++) {
+            assertSame(lines[i], index.get(i));
+        }
+        assertNull(index.get(-1));
+        assertNull(index.get(100));
+    }
+
+    /**
+     * Test that LineIndex behaves like a list under random insertions and removals.
+     * <p>
+     * This test applies the same random insertions and removals to a LineIndex and an ArrayList
+     * and asserts that both hold the same line nodes in the same order.
+     * </p>
+     */
+    @Test
+    public void testInsertAndRemove() {
+        Random random = new Random(7);
+        LineIndex index = new LineIndex();
+        List<LineNode> reference = new ArrayList<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            if (reference.isEmpty() || random.nextInt(3) > 0) {
+                int position = random.nextInt(reference.size() + 1);
+                LineNode line = new LineNode();
+                index.insert(position, line);
+                reference.add(position, line);
+            } else {
+                int position = random.nextInt(reference.size());
+                assertSame(reference.remove(position), index.remove(position));
+            }
+        }
+
+        assertEquals(reference.size(), index.size());
+        for (int i = 0; i < reference.size(); i++) {
+            assertSame(reference.get(i), index.get(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> index.remove(reference.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.insert(reference.size() + 1, new LineNode()));
+    }
+}
@@ -0,0 +1,396 @@
+package fr.univnantes.document.engine;
+
+import fr.univnantes.document.LineNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LinkedLineEngineTest {
+    /**
+     * Test edits at the bottom of a long document.
+     * <p>
+     * This test creates a document of 50 000 lines, then inserts, splits and merges lines
+     * near its end, and asserts that the line index stays consistent with the linked list.
+     * </p>
+     */
+    @Test
+    public void testEditsAtTheBottomOfALongDocument() {
+        LinkedLineEngine engine = new LinkedLineEngine();
+        assertTrue(engine.insert(49_999, 0, 'z'));
+        assertEquals(50_000, engine.getLineCount());
+
+        assertTrue(engine.insert(49_998, 0, 'a'));
+        assertTrue(engine.insert(49_998, 1, 'b'));
+        assertTrue(engine.insertLineBreak(49_998, 1));
+        assertEquals(50_001, engine.getLineCount());
+        assertTrue(engine.modify(49_999, 0, 'B'));
+
+        assertTrue(engine.deleteLineBreak(50_000));
+        assertEquals(50_000, engine.getLineCount());
+        assertTrue(engine.toString().endsWith("\na\nBz"));
+
+        assertFalse(engine.delete(50_000, 0));
+        assertFalse(engine.insertLineBreak(50_000, 0));
+    }
+
+    /**
+     * Test that the padding of an insertion far past the end of the document is not stored.
+     * <p>
+     * This test inserts a character millions of lines and columns away, asserts that the footprint stays small,
+     * then edits the missing lines and the padding near the inserted character, and asserts the content around the edits.
+     * </p>
+     */
+    @Test
+    public void testSparsePadding() {
+        LinkedLineEngine engine = new LinkedLineEngine();
+        assertTrue(engine.insert(0, 0, 'a'));
+        assertTrue(engine.insert(5_000_000, 50_000_000, 'z'));
+        assertEquals(5_000_001, engine.getLineCount());
+        assertTrue(engine.getFootprint() < 10_000);
+
+        assertTrue(engine.insert(2_500_000, 3, 'm'));
+        assertTrue(engine.insertLineBreak(3_000_000, 0));
+        assertEquals(5_000_002, engine.getLineCount());
+        assertFalse(engine.modify(4_000_000, 0, 'x'));
+        assertTrue(engine.deleteLineBreak(4_000_000));
+        assertTrue(engine.deleteLineBreak(5_000_000));
+        assertEquals(5_000_000, engine.getLineCount());
+        assertTrue(engine.modify(4_999_999, 49_999_990, 'y'));
+        assertTrue(engine.getFootprint() < 10_000);
+
+        assertEquals("   m\n", engine.getLineNode(2_500_000).toString());
+        assertEquals(0, engine.getLineNode(4_999_998).getLength());
+        String last = engine.getLineNode(4_999_999).toString();
+        assertEquals(50_000_002, last.length());
+        assertEquals('y', last.charAt(49_999_990));
+        assertEquals('z', last.charAt(50_000_000));
+    }
+
+    /**
+     * Test that inserting a text gives the same document as typing it.
+     * <p>
+     * This test inserts random texts holding line breaks at random positions of existing lines,
+     * types the same texts character by character in another engine, and asserts that both documents are equal.
+     * </p>
+     */
+    @Test
+    public void testInsertTextSameAsTyping() {
+        Random random = new Random(17);
+        LinkedLineEngine pasted = new LinkedLineEngine();
+        LinkedLineEngine typed = new LinkedLineEngine();
+
+        for (int i = 0; i < 2_000; i++) {
+            int line = random.nextInt(typed.getLineCount());
+            int column = random.nextInt(typed.getLineNode(line).getLength() + 1);
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(20); j >= 0; j--) {
+                text.append(random.nextInt(5) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+            }
+
+            assertTrue(pasted.insertText(line, column, text));
+            for (int j = 0; j < text.length(); j++) {
+                if (text.charAt(j) == '\n') {
+                    assertTrue(typed.insertLineBreak(line++, column));
+                    column = 0;
+                } else {
+                    assertTrue(typed.insert(line, column++, text.charAt(j)));
+                }
+            }
+            assertEquals(typed.getLineCount(), pasted.getLineCount());
+        }
+        assertEquals(typed.toString(), pasted.toString());
+    }
+
+    /**
+     * Test deleting a block of thousands of lines in one operation.
+     * <p>
+     * This test deletes 5 000 lines from the middle of a document, then a range of missing lines,
+     * and asserts the content, the line count, the footprint and that the following lines can still be edited.
+     * </p>
+     */
+    @Test
+    public void testDeleteRangeOfALongBlock() {
+        LinkedLineEngine engine = new LinkedLineEngine();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) text.append("line ").append(i).append('\n');
+        assertTrue(engine.insertText(0, 0, text));
+        long footprint = engine.getFootprint();
+
+        String[] lines = text.toString().split("\n", -1);
+        assertTrue(engine.deleteRange(1_000, 2, 6_000, 3));
+        assertEquals(5_001, engine.getLineCount());
+        assertEquals(String.join("\n", Arrays.copyOfRange(lines, 0, 1_000)) + "\n"
+                + lines[1_000].substring(0, 2) + lines[6_000].substring(3) + "\n"
+                + String.join("\n", Arrays.copyOfRange(lines, 6_001, lines.length)), engine.toString());
+        assertTrue(engine.getFootprint() < footprint - 5_000L * LinkedLineEngine.LINE_OVERHEAD);
+
+        assertTrue(engine.insert(1_001, 0, 'x'));
+        assertEquals("x" + lines[6_001] + "\n", engine.getLineNode(1_001).toString());
+
+        assertTrue(engine.insert(2_000_000, 0, 'z'));
+        assertTrue(engine.deleteRange(5_000, 0, 1_999_999, 0));
+        assertEquals(5_002, engine.getLineCount());
+        assertTrue(engine.toString().endsWith(lines[9_999] + "\n\nz"));
+
+        assertFalse(engine.deleteRange(5_001, 0, 5_001, 0));
+        assertFalse(engine.deleteRange(0, 0, 5_002, 0));
+        assertFalse(engine.deleteRange(0, 50, 1, 0));
+        assertFalse(engine.deleteRange(2, 0, 1, 0));
+    }
+
+    /**
+     * Test that, in striped mode, an edit on a line does not wait for another line.
+     * <p>
+     * This test holds the monitor of the first line node, then edits the second line from another thread
+     * and asserts that the edit completes while the monitor is still held.
+     * With the default mode, the same edit waits for the engine lock taken by an edit on the first line.
+     * </p>
+     */
+    @Test
+    public void testStripedEditsDoNotWaitForOtherLines() throws InterruptedException {
+        LinkedLineEngine engine = new LinkedLineEngine(true);
+        assertTrue(engine.insert(1, 0, 'b'));
+        LineNode first = engine.getLineNode(0);
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread editor = new Thread(() -> {
+            engine.insert(1, 1, 'c');
+            done.countDown();
+        });
+
+        synchronized (first) {
+            editor.start();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+        editor.join();
+        assertEquals("\nbc", engine.toString());
+    }
+
+    /**
+     * Test concurrent edits on distinct lines and line breaks in striped mode.
+     * <p>
+     * This test runs 1, 2, 4 and 8 threads, each one typing on its own line while line breaks are
+     * inserted and removed at the end of the document, and asserts that no character is lost.
+     * </p>
+     */
+    @Test
+    public void testStripedStress() throws InterruptedException {
+        int operations = 20_000;
+
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            LinkedLineEngine engine = new LinkedLineEngine(true);
+            assertTrue(engine.insert(threads, 0, '#'));
+
+            List<Thread> editors = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int line = t;
+                editors.add(new Thread(() -> {
+                    int length = 0;
+                    for (int i = 0; i < operations; i++) {
+                        engine.insert(line, length++, (char) ('a' + line));
+                        if (i % 2 == 1) engine.delete(line, --length);
+                    }
+                }));
+            }
+            int lastLine = threads;
+            Thread structure = new Thread(() -> {
+                for (int i = 0; i < operations / 100; i++) {
+                    engine.insertLineBreak(lastLine, 0);
+                    engine.deleteLineBreak(lastLine + 1);
+                }
+            });
+
+            editors.forEach(Thread::start);
+            structure.start();
+            for (Thread editor : editors) editor.join();
+            structure.join();
+
+            String[] lines = engine.toString().split("\n", -1);
+            assertEquals(threads + 1, lines.length);
+            for (int t = 0; t < threads; t++) {
+                assertEquals(String.valueOf((char) ('a' + t)).repeat(operations / 2), lines[t]);
+            }
+            assertEquals("#", lines[threads]);
+        }
+    }
+
+    /**
+     * Test that a finger follows its line when other users add or remove lines.
+     * <p>
+     * This test types on a line with a finger while lines are split and merged above it,
+     * and asserts that the finger is moved with its line and reaches the neighbouring lines.
+     * </p>
+     */
+    @Test
+    public void testFingerFollowsStructuralChanges() {
+        LinkedLineEngine engine = new LinkedLineEngine(true);
+        engine.load("zero\none\ntwo\nthree");
+        Finger finger = new Finger();
+
+        assertTrue(engine.insert(finger, 2, 3, '!'));
+        assertEquals(2, finger.getLine());
+
+        assertTrue(engine.insertLineBreak(0, 2));
+        assertTrue(engine.insert(finger, 3, 4, '?'));
+        assertEquals(3, finger.getLine());
+
+        assertTrue(engine.insertText(1, 0, "a\nb\n"));
+        assertTrue(engine.deleteLineBreak(1));
+        assertTrue(engine.delete(finger, 4, 0));
+        assertTrue(engine.insert(finger, 5, 0, 'T'));
+        assertEquals(5, finger.getLine());
+        assertTrue(engine.modify(finger, 4, 0, 'W'));
+
+        assertEquals("zea\nb\nro\none\nWo!?\nTthree", engine.toString());
+    }
+
+    /**
+     * Test that a finger never edits a removed line.
+     * <p>
+     * This test removes the line remembered by a finger, or changes the structure more times than the engine remembers,
+     * and asserts that the next edits with the finger land on the right line.
+     * </p>
+     */
+    @Test
+    public void testFingerForgetsRemovedLine() {
+        LinkedLineEngine engine = new LinkedLineEngine();
+        engine.load("a\nb\nc\nd");
+        Finger finger = new Finger();
+
+        assertTrue(engine.insert(finger, 2, 1, '1'));
+        assertTrue(engine.deleteLineBreak(2));
+        assertTrue(engine.insert(finger, 2, 1, '2'));
+        assertEquals("a\nbc1\nd2", engine.toString());
+
+        assertTrue(engine.deleteRange(0, 1, 2, 0));
+        assertTrue(engine.insert(finger, 0, 0, '3'));
+        assertEquals("3ad2", engine.toString());
+
+        for (int i = 0; i < LinkedLineEngine.SHIFT_CAPACITY + 1; i++) assertTrue(engine.insertLineBreak(0, 0));
+        assertTrue(engine.insert(finger, 0, 0, '4'));
+        assertEquals(LinkedLineEngine.SHIFT_CAPACITY + 2, engine.getLineCount());
+        assertTrue(engine.toString().startsWith("4\n\n"));
+    }
+
+    /**
+     * Test that the edits made with fingers give the same content as the edits made without.
+     * <p>
+     * This test applies the same random edits of three users to two engines, with fingers on the first one only,
+     * and asserts that both engines hold the same content.
+     * </p>
+     */
+    @Test
+    public void testFingerSameAsLookup() {
+        Random random = new Random(7);
+        LinkedLineEngine withFingers = new LinkedLineEngine(true);
+        LinkedLineEngine withoutFingers = new LinkedLineEngine(true);
+        Finger[] fingers = {new Finger(), new Finger(), new Finger()};
+        int[] lines = {0, 5, 10};
+
+        for (int i = 0; i < 20_000; i++) {
+            int user = random.nextInt(fingers.length);
+            int line = Math.max(0, lines[user] + random.nextInt(3) - 1);
+            lines[user] = line;
+            int column = random.nextInt(4);
+            switch (random.nextInt(10)) {
+                case 0 -> assertEquals(withoutFingers.insertLineBreak(line, column), withFingers.insertLineBreak(line, column));
+                case 1 -> assertEquals(withoutFingers.deleteLineBreak(line), withFingers.deleteLineBreak(line));
+                case 2, 3 -> assertEquals(withoutFingers.delete(line, column), withFingers.delete(fingers[user], line, column));
+                case 4 -> assertEquals(withoutFingers.modify(line, column, 'm'), withFingers.modify(fingers[user], line, column, 'm'));
+                default -> assertEquals(withoutFingers.insert(line, column, (char) ('a' + user)), withFingers.insert(fingers[user], line, column, (char) ('a' + user)));
+            }
+        }
+
+        assertEquals(withoutFingers.toString(), withFingers.toString());
+    }
+
+    /**
+     * Test that a capture keeps the content of the engine at the time it was taken.
+     * <p>
+     * This test fills an engine with encoded, edited and padded lines, captures it, then edits, splits and merges its lines
+     * the same way as a second engine never captured. It asserts that the capture builds the content at the time of the capture
+     * and that the captured engine holds the same content as the other one, so sharing the lines did not leak edits either way.
+     * </p>
+     */
+    @Test
+    public void testCaptureIsolatedFromLaterEdits() {
+        List<LinkedLineEngine> engines = List.of(new LinkedLineEngine(), new LinkedLineEngine());
+        for (LinkedLineEngine engine : engines) {
+            engine.load(List.of(ByteBuffer.wrap("héllo".getBytes(StandardCharsets.UTF_8)), ByteBuffer.wrap("wörld".getBytes(StandardCharsets.UTF_8))));
+            engine.insertText(1, 5, "!\nthird");
+            engine.insert(5, 2, 'x');
+        }
+        String before = engines.getFirst().toString();
+        Supplier<String> capture = engines.getFirst().capture();
+
+        for (LinkedLineEngine engine : engines) {
+            engine.insert(0, 0, '>');
+            engine.modify(1, 0, 'W');
+            engine.delete(2, 0);
+            engine.insertLineBreak(1, 2);
+            engine.deleteLineBreak(4);
+            engine.insert(4, 0, 'y');
+        }
+
+        assertEquals("héllo\nwörld!\nthird\n\n\n  x", before);
+        assertEquals(before, capture.get());
+        assertEquals(engines.get(1).toString(), engines.getFirst().toString());
+        assertEquals(engines.getFirst().toString(), engines.getFirst().capture().get());
+    }
+
+    /**
+     * Test that the footprint of a loaded line counts its characters once it is decoded.
+     * <p>
+     * This test loads two lines of accented characters, counted by their encoded length, edits the first one
+     * and asserts that the footprint counts its decoded characters. It then deletes every character of the edited line
+     * and asserts that the footprint is back to the one of an engine holding only the still encoded line.
+     * </p>
+     */
+    @Test
+    public void testFootprintCorrectedOnDecode() {
+        byte[] accented = "ééé".getBytes(StandardCharsets.UTF_8);
+        LinkedLineEngine engine = new LinkedLineEngine();
+        engine.load(List.of(ByteBuffer.wrap(accented), ByteBuffer.wrap(accented)));
+        long loaded = engine.getFootprint();
+
+        assertTrue(engine.insert(0, 3, 'e'));
+        assertEquals(loaded + (4 - accented.length) * Character.BYTES, engine.getFootprint());
+
+        for (int i = 0; i < 4; i++) assertTrue(engine.delete(0, 0));
+        assertEquals(loaded - accented.length * Character.BYTES, engine.getFootprint());
+    }
+
+    /**
+     * Test that a text whose split would overflow the length of a line is rejected before the line is split.
+     * <p>
+     * This test pads a line close to the maximum length, then inserts texts whose first or last line,
+     * joined with the part of the line it is inserted next to, would not fit in an int.
+     * It asserts that they are rejected and that the line is left as it was, and that a fitting text is still inserted.
+     * </p>
+     */
+    @Test
+    public void testInsertTextOverflowRejectedBeforeSplit() {
+        LinkedLineEngine engine = new LinkedLineEngine();
+        assertTrue(engine.insert(0, Integer.MAX_VALUE - 10, 'x'));
+        long footprint = engine.getFootprint();
+
+        assertFalse(engine.insertText(0, 0, "a\n0123456789abcdef"));
+        assertFalse(engine.insertText(0, 5, "0123456789abcdef\nb"));
+        assertEquals(1, engine.getLineCount());
+        assertEquals(footprint, engine.getFootprint());
+
+        assertTrue(engine.insertText(0, 0, "a\nb"));
+        assertEquals(2, engine.getLineCount());
+        assertEquals("a", engine.getLines(0, 1));
+    }
+}
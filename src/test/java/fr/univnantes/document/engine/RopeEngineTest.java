@@ -0,0 +1,305 @@
+package fr.univnantes.document.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RopeEngineTest {
+    /**
+     * Test the insert() method of RopeEngine.
+     * <p>
+     * This test inserts characters in an existing line, after the end of a line
+     * and after the last line, and asserts the resulting content and line count.
+     * </p>
+     */
+    @Test
+    public void testInsert() {
+        RopeEngine engine = new RopeEngine();
+        assertTrue(engine.insert(0, 0, 'b'));
+        assertTrue(engine.insert(0, 0, 'a'));
+        assertEquals("ab", engine.toString());
+
+        assertTrue(engine.insert(0, 4, 'c'));
+        assertEquals("ab  c", engine.toString());
+
+        assertTrue(engine.insert(2, 1, 'd'));
+        assertEquals("ab  c\n\n d", engine.toString());
+        assertEquals(3, engine.getLineCount());
+
+        assertFalse(engine.insert(-1, 0, 'e'));
+        assertFalse(engine.insert(0, -1, 'e'));
+    }
+
+    /**
+     * Test the modify() and delete() methods of RopeEngine.
+     * <p>
+     * This test modifies and deletes characters of a two lines document
+     * and asserts that positions outside of the lines are rejected.
+     * </p>
+     */
+    @Test
+    public void testModifyAndDelete() {
+        RopeEngine engine = new RopeEngine();
+        engine.insert(0, 0, 'a');
+        engine.insert(1, 0, 'b');
+        engine.insert(1, 1, 'c');
+
+        assertTrue(engine.modify(1, 1, 'C'));
+        assertEquals("a\nbC", engine.toString());
+        assertFalse(engine.modify(0, 1, 'x'));
+
+        assertTrue(engine.delete(1, 0));
+        assertEquals("a\nC", engine.toString());
+        assertFalse(engine.delete(0, 1));
+        assertFalse(engine.delete(2, 0));
+    }
+
+    /**
+     * Test the insertLineBreak() and deleteLineBreak() methods of RopeEngine.
+     * <p>
+     * This test splits a line in two, merges it back and checks the line count at each step.
+     * </p>
+     */
+    @Test
+    public void testLineBreaks() {
+        RopeEngine engine = new RopeEngine();
+        for (char c : "Hello".toCharArray()) {
+            engine.insert(0, engine.toString().length(), c);
+        }
+
+        assertTrue(engine.insertLineBreak(0, 2));
+        assertEquals("He\nllo", engine.toString());
+        assertEquals(2, engine.getLineCount());
+
+        assertTrue(engine.insertLineBreak(1, 10));
+        assertEquals("He\nllo\n", engine.toString());
+        assertEquals(3, engine.getLineCount());
+        assertFalse(engine.insertLineBreak(3, 0));
+
+        assertTrue(engine.deleteLineBreak(1));
+        assertEquals("Hello\n", engine.toString());
+        assertFalse(engine.deleteLineBreak(0));
+        assertFalse(engine.deleteLineBreak(2));
+    }
+
+    /**
+     * Test that a long document spanning many chunks stays consistent.
+     * <p>
+     * This test types several thousand lines, then edits the last one,
+     * and asserts that the content matches the expected text.
+     * </p>
+     */
+    @Test
+    public void testManyLines() {
+        RopeEngine engine = new RopeEngine();
+        StringBuilder expected = new StringBuilder();
+        for (int line = 0; line < 5_000; line++) {
+            if (line > 0) {
+                assertTrue(engine.insertLineBreak(line - 1, 10));
+                expected.append('\n');
+            }
+            for (int column = 0; column < 10; column++) {
+                char c = (char) ('a' + (line + column) % 26);
+                engine.insert(line, column, c);
+                expected.append(c);
+            }
+        }
+        engine.modify(4_999, 0, '#');
+        expected.setCharAt(expected.lastIndexOf("\n") + 1, '#');
+
+        assertEquals(5_000, engine.getLineCount());
+        assertEquals(expected.toString(), engine.toString());
+    }
+
+    /**
+     * Test that RopeEngine behaves exactly like LinkedLineEngine.
+     * <p>
+     * This test applies the same random edits to both engines
+     * and asserts that they return the same results and hold the same content.
+     * </p>
+     */
+    @Test
+    public void testSameBehaviorAsLinkedLineEngine() {
+        Random random = new Random(42);
+        DocumentEngine reference = new LinkedLineEngine();
+        DocumentEngine rope = new RopeEngine();
+
+        for (int i = 0; i < 20_000; i++) {
+            int line = random.nextInt(reference.getLineCount() + 2);
+            int column = random.nextInt(12);
+            char c = (char) ('a' + random.nextInt(26));
+
+            switch (random.nextInt(6)) {
+                case 0, 1 -> assertEquals(reference.insert(line, column, c), rope.insert(line, column, c));
+                case 2 -> assertEquals(reference.modify(line, column, c), rope.modify(line, column, c));
+                case 3 -> assertEquals(reference.delete(line, column), rope.delete(line, column));
+                case 4 -> assertEquals(reference.insertLineBreak(line, column), rope.insertLineBreak(line, column));
+                default -> assertEquals(reference.deleteLineBreak(line), rope.deleteLineBreak(line));
+            }
+            assertEquals(reference.getLineCount(), rope.getLineCount());
+        }
+        assertEquals(reference.toString(), rope.toString());
+    }
+
+    /**
+     * Test that the padding of an insertion far past the end of the document is not stored.
+     * <p>
+     * This test inserts a character millions of lines and columns away, asserts that the footprint stays small,
+     * then edits inside the padding and asserts the content around the edits.
+     * </p>
+     */
+    @Test
+    public void testSparsePadding() {
+        RopeEngine engine = new RopeEngine();
+        assertTrue(engine.insert(0, 0, 'a'));
+        assertTrue(engine.insert(5_000_000, 50_000_000, 'z'));
+        assertEquals(5_000_001, engine.getLineCount());
+        assertTrue(engine.getFootprint() < 10_000);
+
+        assertTrue(engine.insert(2_500_000, 3, 'm'));
+        assertTrue(engine.modify(5_000_000, 25_000_000, 'y'));
+        assertFalse(engine.modify(4_000_000, 0, 'x'));
+        assertTrue(engine.deleteLineBreak(4_000_000));
+        assertEquals(5_000_000, engine.getLineCount());
+        assertTrue(engine.getFootprint() < 10_000);
+
+        String content = engine.toString();
+        assertTrue(content.startsWith("a\n\n"));
+        assertEquals("   m\n", content.substring(2_500_001, 2_500_006));
+        String last = content.substring(content.lastIndexOf('\n') + 1);
+        assertEquals(50_000_001, last.length());
+        assertEquals('y', last.charAt(25_000_000));
+        assertEquals('z', last.charAt(50_000_000));
+    }
+
+    /**
+     * Test that RopeEngine pads like LinkedLineEngine when edits land far from the content.
+     * <p>
+     * This test applies the same random edits, many of them past the end of the lines and of the document,
+     * to both engines and asserts that they return the same results and hold the same content.
+     * </p>
+     */
+    @Test
+    public void testSparsePaddingSameBehaviorAsLinkedLineEngine() {
+        Random random = new Random(7);
+        DocumentEngine reference = new LinkedLineEngine();
+        DocumentEngine rope = new RopeEngine();
+
+        for (int i = 0; i < 5_000; i++) {
+            int line = random.nextInt(reference.getLineCount() + 30);
+            int column = random.nextInt(60);
+            char c = (char) ('a' + random.nextInt(26));
+
+            switch (random.nextInt(6)) {
+                case 0 -> assertEquals(reference.insert(line, column, c), rope.insert(line, column, c));
+                case 1 -> assertEquals(reference.modify(line, column, c), rope.modify(line, column, c));
+                case 2 -> assertEquals(reference.delete(line, column), rope.delete(line, column));
+                case 3 -> assertEquals(reference.insertLineBreak(line, column), rope.insertLineBreak(line, column));
+                default -> assertEquals(reference.deleteLineBreak(line), rope.deleteLineBreak(line));
+            }
+            assertEquals(reference.getLineCount(), rope.getLineCount());
+        }
+        assertEquals(reference.toString(), rope.toString());
+    }
+
+    /**
+     * Test that the rope engine inserts texts like the linked line engine.
+     * <p>
+     * This test inserts random texts holding line breaks at random positions, some of them past the end
+     * of the document, in both engines and asserts that they return the same results and contents.
+     * </p>
+     */
+    @Test
+    public void testInsertTextSameBehaviorAsLinkedLineEngine() {
+        Random random = new Random(23);
+        DocumentEngine reference = new LinkedLineEngine();
+        DocumentEngine rope = new RopeEngine();
+
+        for (int i = 0; i < 5_000; i++) {
+            int line = random.nextInt(reference.getLineCount() + 3);
+            int column = random.nextInt(30);
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(20); j >= 0; j--) {
+                text.append(random.nextInt(5) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+            }
+
+            switch (random.nextInt(4)) {
+                case 0 -> assertEquals(reference.delete(line, column), rope.delete(line, column));
+                case 1 -> assertEquals(reference.deleteLineBreak(line), rope.deleteLineBreak(line));
+                default -> assertEquals(reference.insertText(line, column, text), rope.insertText(line, column, text));
+            }
+            assertEquals(reference.getLineCount(), rope.getLineCount());
+        }
+        assertEquals(reference.toString(), rope.toString());
+    }
+
+    /**
+     * Test that the rope engine deletes ranges like the linked line engine.
+     * <p>
+     * This test deletes random ranges, some of them invalid or across missing lines and padding,
+     * between random insertions in both engines, and asserts that they return the same results and contents.
+     * </p>
+     */
+    @Test
+    public void testDeleteRangeSameBehaviorAsLinkedLineEngine() {
+        Random random = new Random(29);
+        DocumentEngine reference = new LinkedLineEngine();
+        DocumentEngine rope = new RopeEngine();
+
+        for (int i = 0; i < 5_000; i++) {
+            int line = random.nextInt(reference.getLineCount() + 10);
+            int column = random.nextInt(30);
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(40); j >= 0; j--) {
+                text.append(random.nextInt(4) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+            }
+
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.insertText(line, column, text), rope.insertText(line, column, text));
+            } else {
+                int endLine = line + random.nextInt(4);
+                int endColumn = random.nextInt(30);
+                assertEquals(reference.deleteRange(line, column, endLine, endColumn), rope.deleteRange(line, column, endLine, endColumn));
+            }
+            assertEquals(reference.getLineCount(), rope.getLineCount());
+        }
+        assertEquals(reference.toString(), rope.toString());
+    }
+
+    /**
+     * Test that both engines read ranges of lines like the lines of their whole content.
+     * <p>
+     * This test inserts random texts, some of them far after the last line so the engines keep blank lines virtual,
+     * then reads random ranges of lines, some of them past the end, and asserts that they match the lines of the full content.
+     * </p>
+     */
+    @Test
+    public void testGetLinesMatchesContent() {
+        Random random = new Random(31);
+        DocumentEngine reference = new LinkedLineEngine();
+        DocumentEngine rope = new RopeEngine();
+
+        for (int i = 0; i < 300; i++) {
+            int line = random.nextInt(reference.getLineCount() + 20);
+            int column = random.nextInt(10);
+            String text = random.nextInt(3) == 0 ? "ligne\nsuivante" : "mot";
+            reference.insertText(line, column, text);
+            rope.insertText(line, column, text);
+        }
+
+        String[] lines = reference.toString().split("\n", -1);
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(lines.length + 5);
+            int to = from + random.nextInt(30);
+            String expected = from >= lines.length ? "" : String.join("\n", Arrays.copyOfRange(lines, from, Math.min(to, lines.length)));
+            assertEquals(expected, reference.getLines(from, to));
+            assertEquals(expected, rope.getLines(from, to));
+        }
+        assertEquals("", rope.getLines(3, 3));
+        assertThrows(IllegalArgumentException.class, () -> reference.getLines(-1, 2));
+        assertThrows(IllegalArgumentException.class, () -> rope.getLines(4, 2));
+    }
+}
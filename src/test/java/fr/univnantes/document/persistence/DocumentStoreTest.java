@@ -0,0 +1,182 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DocumentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that a persisted document is rebuilt identically after a restart.
+     * <p>
+     * This test edits a persisted document of each engine, closes the store as on shutdown,
+     * recovers the documents with a new store and asserts that their name and content are the same,
+     * and that the recovered documents keep being persisted.
+     * </p>
+     */
+    @Test
+    public void testRecover() throws IOException {
+        DocumentStore store = new DocumentStore(directory, 60_000, 1 << 20);
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Document", engineType);
+            store.create(document);
+
+            for (char c : "Hello World".toCharArray()) {
+                document.insert(0, document.toString().length(), c);
+            }
+            document.insertLineBreak(0, 5);
+            document.delete(1, 0);
+            document.modify(1, 0, 'w');
+            document.insertText(2, 0, "Bonjour\nle monde");
+            document.deleteRange(2, 3, 3, 2);
+            document.setName("Renamed");
+            assertFalse(document.delete(5, 0));
+        }
+        store.close();
+
+        DocumentStore recovered = new DocumentStore(directory, 60_000, 1 << 20);
+        List<Document> documents = recovered.recover();
+        assertEquals(DocumentEngineType.values().length, documents.size());
+        for (Document document : documents) {
+            assertEquals("Renamed", document.getName());
+            assertEquals("Hello\nworld\nBon monde", document.toString());
+            assertNotNull(document.getWriteAheadLog());
+            document.insert(1, 5, '!');
+        }
+        recovered.close();
+
+        for (Document document : new DocumentStore(directory, 60_000, 1 << 20).recover()) {
+            assertEquals("Hello\nworld!\nBon monde", document.toString());
+        }
+    }
+
+    /**
+     * Test that removing a document deletes its directory, and that an unreadable document is skipped.
+     * <p>
+     * This test creates and removes a document, writes an invalid log, and asserts that nothing is recovered.
+     * </p>
+     */
+    @Test
+    public void testRemove() throws IOException {
+        DocumentStore store = new DocumentStore(directory, 60_000, 1 << 20);
+        Document document = new Document("Removed");
+        store.create(document);
+        Path documentDirectory = store.getDocumentDirectory(document.getUUID());
+        assertTrue(Files.exists(WriteAheadLog.segmentPath(documentDirectory, 0)));
+
+        store.remove(document.getUUID());
+        assertFalse(Files.exists(documentDirectory));
+        assertNull(store.getLog(document.getUUID()));
+
+        Path invalid = Files.createDirectories(directory.resolve(UUID.randomUUID().toString()));
+        Files.write(WriteAheadLog.segmentPath(invalid, 0), new byte[]{0, 1});
+        assertTrue(new DocumentStore(directory, 60_000, 1 << 20).recover().isEmpty());
+    }
+
+    /**
+     * Test that a checkpoint truncates the log and that a document is recovered from its snapshot and the following edits.
+     * <p>
+     * This test checkpoints an edited document of each engine, edits it again, and asserts that the previous segment is deleted,
+     * that the snapshot holds the content at the checkpoint, and that the recovered document holds every edit.
+     * It then damages the latest snapshot and asserts that the documents are skipped rather than rebuilt from a partial log.
+     * </p>
+     */
+    @Test
+    public void testCheckpoint() throws IOException {
+        DocumentStore store = new DocumentStore(directory, 60_000, 1 << 20);
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Document", engineType);
+            store.create(document);
+            for (char c : "Hello".toCharArray()) {
+                document.insert(0, document.toString().length(), c);
+            }
+
+            Path snapshot = store.checkpoint(document.getUUID());
+            Path documentDirectory = store.getDocumentDirectory(document.getUUID());
+            assertEquals(Snapshot.path(documentDirectory, 1), snapshot);
+            assertFalse(Files.exists(WriteAheadLog.segmentPath(documentDirectory, 0)));
+            assertEquals("Hello", Snapshot.read(snapshot).content());
+
+            //  The content captured at the checkpoint is not affected by the edits made afterward
+            document.insertLineBreak(0, 5);
+            document.insert(1, 0, 'W');
+            document.setName("Renamed");
+            assertEquals("Hello", Snapshot.read(snapshot).content());
+        }
+        store.close();
+
+        DocumentStore recovered = new DocumentStore(directory, 60_000, 1 << 20);
+        List<Document> documents = recovered.recover();
+        assertEquals(DocumentEngineType.values().length, documents.size());
+        for (Document document : documents) {
+            assertEquals("Renamed", document.getName());
+            assertEquals("Hello\nW", document.toString());
+            recovered.checkpoint(document.getUUID());
+            document.insert(1, 1, '!');
+        }
+        recovered.close();
+
+        for (Document document : documents) {
+            Path documentDirectory = directory.resolve(document.getUUID().toString());
+            assertFalse(Files.exists(Snapshot.path(documentDirectory, 1)));
+            Files.write(Snapshot.path(documentDirectory, 2), new byte[]{1, 2, 3});
+        }
+        assertTrue(new DocumentStore(directory, 60_000, 1 << 20).recover().isEmpty());
+    }
+
+    /**
+     * Test that documents checkpointed concurrently with their edits are recovered with every edit.
+     * <p>
+     * This test edits a persisted document of each engine in its own thread, checkpointing it every few edits,
+     * while another thread checkpoints every document in a loop, then recovers the documents and asserts that no edit is lost.
+     * </p>
+     */
+    @Test
+    public void testConcurrentCheckpoints() throws IOException, InterruptedException {
+        DocumentStore store = new DocumentStore(directory, 60_000, 1 << 20);
+        List<Document> documents = new ArrayList<>();
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document("Document", engineType);
+            store.create(document);
+            documents.add(document);
+        }
+
+        List<Thread> editors = new ArrayList<>();
+        for (Document document : documents) {
+            editors.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 200; i++) {
+                    document.insert(0, i, 'a');
+                    if (i % 20 == 0) assertDoesNotThrow(() -> store.checkpoint(document.getUUID()));
+                }
+            }));
+        }
+        Thread checkpointer = Thread.ofPlatform().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (Document document : documents) assertDoesNotThrow(() -> store.checkpoint(document.getUUID()));
+            }
+        });
+        for (Thread editor : editors) editor.join();
+        checkpointer.interrupt();
+        checkpointer.join();
+        store.close();
+
+        List<Document> recovered = new DocumentStore(directory, 60_000, 1 << 20).recover();
+        assertEquals(documents.size(), recovered.size());
+        for (Document document : recovered) {
+            assertEquals("a".repeat(200), document.toString());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+
+    private static final UUID DOC_ID = UUID.fromString("6d1f0a52-93c7-4b0e-8f3a-2c9e7d41b5a0");
+    private static final String CONTENT = "héllo\n\nwörld €";
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that a mapped snapshot gives its lines and loads a document of each engine.
+     * <p>
+     * This test writes a snapshot holding multibyte characters and an empty line, maps it,
+     * and asserts that each line is sliced without its line break,
+     * then loads a document of each engine and asserts that it can be read and edited.
+     * </p>
+     */
+    @Test
+    public void testMap() throws IOException {
+        Path path = new Snapshot(DOC_ID, DocumentEngineType.LINKED_LINES, "Mapped", 3, CONTENT).write(directory);
+        assertEquals(Snapshot.path(directory, 3), path);
+
+        Snapshot.Mapped mapped = Snapshot.map(path);
+        assertEquals(DOC_ID, mapped.documentId());
+        assertEquals("Mapped", mapped.name());
+        assertEquals(3, mapped.segment());
+        assertEquals(3, mapped.lines().size());
+        assertEquals(0, mapped.lines().get(1).remaining());
+        assertEquals(CONTENT, mapped.decode().content());
+
+        for (DocumentEngineType engineType : DocumentEngineType.values()) {
+            Document document = new Document(DOC_ID, "Mapped", engineType);
+            document.load(Snapshot.map(path).lines());
+            assertEquals(CONTENT, document.toString());
+
+            assertTrue(document.modify(2, 1, 'o'));
+            assertTrue(document.insert(1, 0, '!'));
+            assertTrue(document.deleteLineBreak(2));
+            assertEquals("héllo\n!world €", document.toString());
+        }
+    }
+
+    /**
+     * Test that a snapshot of the first version, without line offsets, is still read.
+     * <p>
+     * This test writes a snapshot in the first format and asserts that its lines are found by scanning its content.
+     * </p>
+     */
+    @Test
+    public void testVersion1() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(Snapshot.MAGIC);
+            out.writeShort(1);
+            out.writeLong(DOC_ID.getMostSignificantBits());
+            out.writeLong(DOC_ID.getLeastSignificantBits());
+            out.writeUTF(DocumentEngineType.ROPE.type);
+            out.writeUTF("Old");
+            out.writeLong(0);
+            byte[] text = CONTENT.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        new DataOutputStream(bytes).writeInt((int) crc.getValue());
+        Path path = Files.write(Snapshot.path(directory, 0), bytes.toByteArray());
+
+        Snapshot.Mapped mapped = Snapshot.map(path);
+        assertEquals(DocumentEngineType.ROPE, mapped.engineType());
+        assertEquals(3, mapped.lines().size());
+        assertEquals(new Snapshot(DOC_ID, DocumentEngineType.ROPE, "Old", 0, CONTENT), Snapshot.read(path));
+    }
+
+    /**
+     * Test that a damaged snapshot is rejected.
+     * <p>
+     * This test flips a byte of the content of a snapshot and truncates another one,
+     * and asserts that both are rejected.
+     * </p>
+     */
+    @Test
+    public void testCorrupted() throws IOException {
+        Path path = new Snapshot(DOC_ID, DocumentEngineType.ROPE, "Damaged", 0, CONTENT).write(directory);
+        byte[] bytes = Files.readAllBytes(path);
+
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> Snapshot.map(path));
+
+        Files.write(path, new byte[]{1, 2});
+        assertThrows(IOException.class, () -> Snapshot.map(path));
+    }
+}
@@ -0,0 +1,114 @@
+package fr.univnantes.document.persistence;
+
+import fr.univnantes.document.engine.DocumentEngineType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+
+    private static final UUID DOC_ID = UUID.fromString("0b6f3c4e-21a4-4f39-9d8e-5f0f1b7a9c11");
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that the appended edits are read back in order with the header of the log.
+     * <p>
+     * This test appends one edit of each type, closes the log and asserts that reading it gives the same edits.
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = WriteAheadLog.segmentPath(directory, 0);
+        List<Edit> edits = List.of(
+                Edit.insert(0, 0, 'é'),
+                Edit.insertLineBreak(0, 1),
+                Edit.delete(1, 0),
+                Edit.deleteLineBreak(1),
+                Edit.modify(0, 0, 'e'),
+                Edit.rename("Recette secrète"),
+                Edit.insertText(0, 2, "Œufs\nFarine"),
+                Edit.deleteRange(0, 1, 1, 3));
+
+        try (WriteAheadLog log = WriteAheadLog.create(directory, 0, DOC_ID, DocumentEngineType.ROPE, "Recette", 60_000, 1 << 20)) {
+            edits.forEach(log::append);
+            assertEquals(8, log.getAppendCount());
+            assertEquals(0, log.getSyncCount());
+        }
+
+        WriteAheadLog.Recovery recovery = WriteAheadLog.read(path);
+        assertEquals(DOC_ID, recovery.documentId());
+        assertEquals(DocumentEngineType.ROPE, recovery.engineType());
+        assertEquals("Recette", recovery.name());
+        assertEquals(edits, recovery.edits());
+        assertEquals(Files.size(path), recovery.validLength());
+    }
+
+    /**
+     * Test the group commit of the appended edits.
+     * <p>
+     * This test asserts that a flush interval of 0 forces every append, that reaching the threshold starts
+     * a group commit without waiting for the interval, and that an explicit flush writes the buffered edits.
+     * </p>
+     */
+    @Test
+    public void testGroupCommit() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.create(directory, 0, DOC_ID, DocumentEngineType.LINKED_LINES, "Sync", 0, 1)) {
+            for (int i = 0; i < 3; i++) log.append(Edit.insert(0, i, 'a'));
+            assertEquals(3, log.getSyncCount());
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.create(directory, 1, DOC_ID, DocumentEngineType.LINKED_LINES, "Threshold", 60_000, 190)) {
+            //  A record of an inserted character takes 19 bytes, the tenth one reaches the threshold
+            for (int i = 0; i < 10; i++) log.append(Edit.insert(0, i, 'a'));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (log.getSyncCount() == 0 && System.currentTimeMillis() < deadline) Thread.onSpinWait();
+            assertEquals(1, log.getSyncCount());
+            assertEquals(10, WriteAheadLog.read(log.getPath()).edits().size());
+
+            log.append(Edit.delete(0, 0));
+            log.flush();
+            assertEquals(11, WriteAheadLog.read(log.getPath()).edits().size());
+        }
+    }
+
+    /**
+     * Test that a record cut by a crash is ignored, then removed when the log is opened again.
+     * <p>
+     * This test cuts the last record of a log, and asserts that it is not read,
+     * and that the edits appended after reopening the log are read after the valid ones.
+     * </p>
+     */
+    @Test
+    public void testTornTail() throws IOException {
+        Path path = WriteAheadLog.segmentPath(directory, 0);
+        try (WriteAheadLog log = WriteAheadLog.create(directory, 0, DOC_ID, DocumentEngineType.LINKED_LINES, "Torn", 60_000, 1 << 20)) {
+            log.append(Edit.insert(0, 0, 'a'));
+            log.append(Edit.insert(0, 1, 'b'));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        WriteAheadLog.Recovery recovery = WriteAheadLog.read(path);
+        assertEquals(List.of(Edit.insert(0, 0, 'a')), recovery.edits());
+
+        try (WriteAheadLog log = WriteAheadLog.open(recovery, directory, 0, 60_000, 1 << 20)) {
+            log.append(Edit.insert(0, 1, 'c'));
+        }
+        assertEquals(List.of(Edit.insert(0, 0, 'a'), Edit.insert(0, 1, 'c')), WriteAheadLog.read(path).edits());
+
+        Files.write(path, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> WriteAheadLog.read(path));
+    }
+}
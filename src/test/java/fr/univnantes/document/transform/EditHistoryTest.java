@@ -0,0 +1,84 @@
+package fr.univnantes.document.transform;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.persistence.Edit;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EditHistoryTest {
+
+    private static final UUID FIRST = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+    private static final UUID SECOND = UUID.fromString("0b1e2a3c-4d5e-4f60-8a7b-9c0d1e2f3a4b");
+
+    /**
+     * Test that an edit is only moved past the edits applied after its base revision.
+     * <p>
+     * This test records 3 insertions at the start of the line and transforms an edit based on each revision,
+     * and asserts that it is moved by the number of insertions it did not see.
+     * </p>
+     */
+    @Test
+    public void testTransformSinceRevision() {
+        EditHistory history = new EditHistory(8, 10);
+        for (int i = 1; i <= 3; i++) {
+            history.record(new AppliedEdit(10 + i, Edit.insert(0, 0, 'a'), FIRST, 0));
+        }
+
+        for (int seen = 0; seen <= 3; seen++) {
+            Edit transformed = history.transform(Edit.insert(0, 5, 'b'), SECOND, 10 + seen);
+            assertEquals(5 + 3 - seen, transformed.column());
+        }
+    }
+
+    /**
+     * Test that a client editing again before its previous edit is acknowledged is rejected.
+     * <p>
+     * This test applies an insertion of a second user and two insertions of a first user on the same base revision to a document,
+     * and asserts that the second insertion of the first user is rejected, while the same insertion based on the revision
+     * acknowledging its first one lands between the characters it was typed between.
+     * </p>
+     */
+    @Test
+    public void testInterleavedEditsOfTheSameAuthor() {
+        Document document = new Document("Test");
+        document.setEditHistory(new EditHistory(8, document.getRevision()));
+        document.insertText(0, 0, "abc");
+        long base = document.getRevision();
+
+        AppliedEdit other = document.apply(Edit.insert(0, 2, 'Z'), SECOND, base);
+        assertNotNull(other);
+        AppliedEdit first = document.apply(Edit.insert(0, 0, 'X'), FIRST, base);
+        assertNotNull(first);
+        assertThrows(StaleRevisionException.class, () -> document.apply(Edit.insert(0, 2, 'Y'), FIRST, base));
+        assertEquals("XabZc", document.toString());
+
+        //  The second user deletes c without having seen X, then the first user, acknowledged, types Y between a and b
+        assertNotNull(document.apply(Edit.delete(0, 3), SECOND, other.revision()));
+        assertNotNull(document.apply(Edit.insert(0, 2, 'Y'), FIRST, first.revision()));
+        assertEquals("XaYbZ", document.toString());
+    }
+
+    /**
+     * Test that an edit based on a forgotten revision is rejected.
+     * <p>
+     * This test records 5 edits in a history of 3, and asserts that the revisions before the oldest kept edit
+     * throw a {@link StaleRevisionException} while the following ones are transformed.
+     * </p>
+     */
+    @Test
+    public void testOverrun() {
+        EditHistory history = new EditHistory(3, 0);
+        for (int i = 1; i <= 5; i++) {
+            history.record(new AppliedEdit(i, Edit.insert(0, 0, 'a'), FIRST, 0));
+        }
+
+        assertEquals(3, history.size());
+        assertEquals(2, history.getFloor());
+        assertThrows(StaleRevisionException.class, () -> history.transform(Edit.delete(0, 0), SECOND, 1));
+        assertEquals(Edit.delete(0, 3), history.transform(Edit.delete(0, 0), SECOND, 2));
+        assertEquals(Edit.delete(0, 0), history.transform(Edit.delete(0, 0), SECOND, 5));
+    }
+}
@@ -0,0 +1,97 @@
+package fr.univnantes.document.transform;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.document.persistence.Edit;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EditTransformerTest {
+
+    private static final UUID FIRST = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+    private static final UUID SECOND = UUID.fromString("0b1e2a3c-4d5e-4f60-8a7b-9c0d1e2f3a4b");
+
+    /**
+     * Applies two edits made concurrently on the same revision of a document, the second one being transformed
+     *
+     * @param text      The content of the document
+     * @param first     The edit applied first
+     * @param second    The edit applied second, made without seeing the first one
+     * @return          The content of the document after both edits
+     */
+    private static String applyConcurrently(String text, Edit first, Edit second) {
+        Document document = new Document("test");
+        document.load(text);
+        document.setEditHistory(new EditHistory(16, document.getRevision()));
+        long base = document.getRevision();
+
+        assertNotNull(document.apply(first, FIRST, base));
+        document.apply(second, SECOND, base);
+        return document.toString();
+    }
+
+    /**
+     * Test that concurrent insertions in the same line keep the intent of both users.
+     * <p>
+     * This test inserts a character before the position of another insertion, then two characters at the same position,
+     * and asserts that the second character is moved after the first one in both cases.
+     * </p>
+     */
+    @Test
+    public void testInsertions() {
+        assertEquals("aXbcYd", applyConcurrently("abcd", Edit.insert(0, 1, 'X'), Edit.insert(0, 3, 'Y')));
+        assertEquals("abXYcd", applyConcurrently("abcd", Edit.insert(0, 2, 'X'), Edit.insert(0, 2, 'Y')));
+        assertEquals("aXYbcd", applyConcurrently("abcd", Edit.insertText(0, 1, "X"), Edit.insertText(0, 1, "Y")));
+    }
+
+    /**
+     * Test that the positions follow the line breaks inserted and deleted before them.
+     * <p>
+     * This test inserts a character after a line break inserted concurrently, in the split line and in the next line,
+     * then in a line merged concurrently with the previous one, and asserts that the character lands next to the same neighbours.
+     * </p>
+     */
+    @Test
+    public void testLineBreaks() {
+        assertEquals("a\nbY\ncd", applyConcurrently("ab\ncd", Edit.insertLineBreak(0, 1), Edit.insert(0, 2, 'Y')));
+        assertEquals("a\nb\ncYd", applyConcurrently("ab\ncd", Edit.insertLineBreak(0, 1), Edit.insert(1, 1, 'Y')));
+        assertEquals("abcYd", applyConcurrently("ab\ncd", Edit.deleteLineBreak(1), Edit.insert(1, 1, 'Y')));
+        assertEquals("aX\nYZbd", applyConcurrently("abcd", Edit.insertText(0, 1, "X\nYZ"), Edit.delete(0, 2)));
+    }
+
+    /**
+     * Test that the deletions made concurrently do not delete more than both users wanted.
+     * <p>
+     * This test deletes the same character twice, deletes two overlapping ranges, inserts inside a deleted range
+     * and deletes a line break already deleted by a range, and asserts the content after each pair.
+     * </p>
+     */
+    @Test
+    public void testDeletions() {
+        assertEquals("acd", applyConcurrently("abcd", Edit.delete(0, 1), Edit.delete(0, 1)));
+        assertEquals("af", applyConcurrently("abcdef", Edit.deleteRange(0, 1, 0, 3), Edit.deleteRange(0, 2, 0, 5)));
+        assertEquals("aYef", applyConcurrently("abcdef", Edit.deleteRange(0, 1, 0, 4), Edit.insert(0, 2, 'Y')));
+        assertEquals("ad", applyConcurrently("ab\ncd", Edit.deleteRange(0, 1, 1, 1), Edit.deleteLineBreak(1)));
+        assertEquals("cd", applyConcurrently("ab\ncd", Edit.deleteLineBreak(1), Edit.deleteRange(0, 0, 0, 2)));
+    }
+
+    /**
+     * Test that an edit vanishes when the applied edit deleted its target.
+     * <p>
+     * This test transforms the deletion and the modification of a deleted character, and a range inside a deleted range,
+     * and asserts that they vanish while an insertion at the same position is kept.
+     * </p>
+     */
+    @Test
+    public void testVanishedEdits() {
+        AppliedEdit applied = new AppliedEdit(1, Edit.deleteRange(0, 1, 0, 4), FIRST, 0);
+
+        assertNull(EditTransformer.transform(Edit.delete(0, 2), applied));
+        assertNull(EditTransformer.transform(Edit.modify(0, 1, 'Z'), applied));
+        assertNull(EditTransformer.transform(Edit.deleteRange(0, 2, 0, 3), applied));
+        assertEquals(Edit.insert(0, 1, 'Y'), EditTransformer.transform(Edit.insert(0, 3, 'Y'), applied));
+        assertEquals(Edit.delete(0, 1), EditTransformer.transform(Edit.delete(0, 4), applied));
+    }
+}
@@ -0,0 +1,267 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.user.User;
+import fr.univnantes.web.websocket.instruction.BinaryInstructionCodec;
+import fr.univnantes.web.websocket.instruction.InsertCharInstruction;
+import fr.univnantes.web.websocket.instruction.InsertLineBrkInstruction;
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BroadcastAggregatorTest {
+
+    private static final UUID USER_ID = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+
+    /**
+     * Creates a user with an open mocked session and adds it to the document
+     *
+     * @param document  The document
+     * @return          The mocked session of the user
+     */
+    private static WebSocketSession addConnectedUser(Document document) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        User user = new User("user");
+        user.setSession(session);
+        document.addUser(user);
+        return session;
+    }
+
+    /**
+     * Test that the payloads are sent as one JSON array frame when the batch is full.
+     * <p>
+     * This test uses a long window and a maximum batch size of 3, adds 3 payloads,
+     * and asserts that each user receives a single frame holding the 3 payloads in order.
+     * </p>
+     */
+    @Test
+    public void testFullBatch() throws IOException {
+        Document document = new Document("test");
+        WebSocketSession first = addConnectedUser(document);
+        WebSocketSession second = addConnectedUser(document);
+        BroadcastMetrics metrics = new BroadcastMetrics();
+        BroadcastAggregator aggregator = new BroadcastAggregator(document, 60_000, 3, metrics);
+
+        for (int i = 0; i < 3; i++) {
+            aggregator.add(new JSONObject().put("index", i));
+        }
+
+        for (WebSocketSession session : new WebSocketSession[]{first, second}) {
+            ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+            verify(session, times(1)).sendMessage(captor.capture());
+            JSONArray frame = new JSONArray(captor.getValue().getPayload());
+            assertEquals(3, frame.length());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i, frame.getJSONObject(i).getInt("index"));
+            }
+        }
+
+        assertEquals(1, metrics.getBatchCount());
+        assertEquals(3, metrics.getPayloadCount());
+        assertEquals(2, metrics.getFrameCount());
+        assertEquals(3, metrics.getMaxBatchSize());
+        assertEquals(1, metrics.getBatchSizeHistogram()[2]);
+    }
+
+    /**
+     * Test that the payloads are sent at the end of the window.
+     * <p>
+     * This test uses a window of 20 ms, adds 2 payloads, and asserts that they are received in one frame.
+     * </p>
+     */
+    @Test
+    public void testWindow() throws IOException {
+        Document document = new Document("test");
+        WebSocketSession session = addConnectedUser(document);
+        BroadcastMetrics metrics = new BroadcastMetrics();
+        BroadcastAggregator aggregator = new BroadcastAggregator(document, 20, 64, metrics);
+
+        aggregator.add(new JSONObject().put("index", 0));
+        aggregator.add(new JSONObject().put("index", 1));
+
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(5_000).times(1)).sendMessage(captor.capture());
+        assertEquals(2, new JSONArray(captor.getValue().getPayload()).length());
+        assertEquals(2.0, metrics.getAverageBatchSize());
+    }
+
+    /**
+     * Test that, without a window, every payload is sent immediately as a JSON object.
+     * <p>
+     * This test uses a window of 0, adds 2 payloads, and asserts that 2 object frames are sent.
+     * </p>
+     */
+    @Test
+    public void testWithoutWindow() throws IOException {
+        Document document = new Document("test");
+        WebSocketSession session = addConnectedUser(document);
+        BroadcastMetrics metrics = new BroadcastMetrics();
+        BroadcastAggregator aggregator = new BroadcastAggregator(document, 0, 64, metrics);
+
+        aggregator.add(new JSONObject().put("index", 0));
+        aggregator.add(new JSONObject().put("index", 1));
+
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(2)).sendMessage(captor.capture());
+        assertEquals(1, new JSONObject(captor.getAllValues().get(1).getPayload()).getInt("index"));
+        assertEquals(2, metrics.getBatchSizeHistogram()[0]);
+
+        assertThrows(IllegalArgumentException.class, () -> new BroadcastAggregator(document, -1, 64, metrics));
+        assertThrows(IllegalArgumentException.class, () -> new BroadcastAggregator(document, 0, 0, metrics));
+    }
+
+    /**
+     * Test that the users of the binary protocol receive binary frames, keeping the order with JSON only payloads.
+     * <p>
+     * This test batches two binary payloads, a JSON only payload and a binary payload, and asserts that a binary user
+     * receives a binary frame, a text frame and a binary frame, while a JSON user receives a single JSON array.
+     * </p>
+     */
+    @Test
+    public void testBinaryRecipients() throws IOException {
+        Document document = new Document("test");
+        WebSocketSession jsonSession = addConnectedUser(document);
+        WebSocketSession binarySession = addConnectedUser(document);
+        when(binarySession.getAcceptedProtocol()).thenReturn(BinaryInstructionCodec.SUBPROTOCOL);
+        BroadcastAggregator aggregator = new BroadcastAggregator(document, 60_000, 4, new BroadcastMetrics());
+
+        aggregator.add(new JSONObject().put("index", 0), new byte[]{1, 2});
+        aggregator.add(new JSONObject().put("index", 1), new byte[]{3});
+        aggregator.add(new JSONObject().put("index", 2));
+        aggregator.add(new JSONObject().put("index", 3), new byte[]{4});
+
+        ArgumentCaptor<TextMessage> jsonCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(jsonSession, times(1)).sendMessage(jsonCaptor.capture());
+        assertEquals(4, new JSONArray(jsonCaptor.getValue().getPayload()).length());
+
+        ArgumentCaptor<WebSocketMessage<?>> binaryCaptor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(binarySession, times(3)).sendMessage(binaryCaptor.capture());
+        BinaryMessage first = (BinaryMessage) binaryCaptor.getAllValues().get(0);
+        assertArrayEquals(new byte[]{1, 2, 3}, first.getPayload().array());
+        assertEquals(2, new JSONObject(((TextMessage) binaryCaptor.getAllValues().get(1)).getPayload()).getInt("index"));
+        assertArrayEquals(new byte[]{4}, ((BinaryMessage) binaryCaptor.getAllValues().get(2)).getPayload().array());
+    }
+
+    /**
+     * Test that the edits are encoded from their instruction for the users of the binary protocol.
+     * <p>
+     * This test batches two edits given only with their instruction, and asserts that a binary user receives
+     * their encoded records concatenated in one binary frame, while a JSON user receives their JSON payloads.
+     * </p>
+     */
+    @Test
+    public void testBinaryEncodedFromInstruction() throws IOException {
+        Document document = new Document("test");
+        WebSocketSession jsonSession = addConnectedUser(document);
+        WebSocketSession binarySession = addConnectedUser(document);
+        when(binarySession.getAcceptedProtocol()).thenReturn(BinaryInstructionCodec.SUBPROTOCOL);
+        BroadcastAggregator aggregator = new BroadcastAggregator(document, 60_000, 2, new BroadcastMetrics());
+
+        WebSocketInstruction first = new InsertCharInstruction(0, 0, 'a', USER_ID);
+        WebSocketInstruction second = new InsertLineBrkInstruction(0, 1, USER_ID);
+        aggregator.addEdit(first, first.getBroadcastVersion());
+        aggregator.addEdit(second, second.getBroadcastVersion());
+
+        ArgumentCaptor<TextMessage> jsonCaptor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(jsonSession, times(1)).sendMessage(jsonCaptor.capture());
+        assertEquals(2, new JSONArray(jsonCaptor.getValue().getPayload()).length());
+
+        ArgumentCaptor<BinaryMessage> binaryCaptor = ArgumentCaptor.forClass(BinaryMessage.class);
+        verify(binarySession, times(1)).sendMessage(binaryCaptor.capture());
+        byte[] firstRecord = BinaryInstructionCodec.encode(first, 0);
+        byte[] secondRecord = BinaryInstructionCodec.encode(second, 0);
+        byte[] expected = new byte[firstRecord.length + secondRecord.length];
+        System.arraycopy(firstRecord, 0, expected, 0, firstRecord.length);
+        System.arraycopy(secondRecord, 0, expected, firstRecord.length, secondRecord.length);
+        assertArrayEquals(expected, binaryCaptor.getValue().getPayload().array());
+    }
+
+    /**
+     * Test that a session declaring a viewport only receives the edits touching it.
+     * <p>
+     * This test batches an edit inside the viewport of a session, an edit after it and an edit before it adding a line,
+     * and asserts that the session receives the first edit and a shift while another session receives the three edits.
+     * </p>
+     */
+    @Test
+    public void testViewportRecipients() throws IOException {
+        Document document = new Document("test");
+        WebSocketSession everything = addConnectedUser(document);
+        WebSocketSession scoped = addConnectedUser(document);
+        WebSocketSessionManager sessionManager = WebSocketSessionManager.getInstance();
+        sessionManager.addSession(scoped, document.getUUID(), UUID.randomUUID());
+        try {
+            assertTrue(sessionManager.setViewport(scoped, new Viewport(10, 20)));
+            BroadcastAggregator aggregator = new BroadcastAggregator(document, 60_000, 3, new BroadcastMetrics());
+
+            WebSocketInstruction[] instructions = {
+                    new InsertCharInstruction(15, 0, 'a', USER_ID),
+                    new InsertCharInstruction(30, 0, 'b', USER_ID),
+                    new InsertLineBrkInstruction(2, 0, USER_ID)
+            };
+            for (WebSocketInstruction instruction : instructions) {
+                aggregator.add(instruction, instruction.getBroadcastVersion());
+            }
+
+            ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+            verify(everything, times(1)).sendMessage(captor.capture());
+            assertEquals(3, new JSONArray(captor.getValue().getPayload()).length());
+
+            captor = ArgumentCaptor.forClass(TextMessage.class);
+            verify(scoped, times(1)).sendMessage(captor.capture());
+            JSONArray frame = new JSONArray(captor.getValue().getPayload());
+            assertEquals(2, frame.length());
+            assertEquals(15, frame.getJSONObject(0).getInt("lineIdx"));
+            assertEquals("VIEWPORT_SHIFT", frame.getJSONObject(1).getString("type"));
+        } finally {
+            sessionManager.removeSession(scoped);
+        }
+    }
+
+    /**
+     * Test that the edits are stamped with the revision of the document and replayed to a reconnecting user.
+     * <p>
+     * This test applies 3 edits with a history of 2, asserts that each payload holds the revision of the document after it,
+     * that a user which received the first edit is given the last two and added to the document,
+     * and that a user which received none of them is refused and not added.
+     * </p>
+     */
+    @Test
+    public void testResume() {
+        Document document = new Document("test");
+        BroadcastAggregator aggregator = new BroadcastAggregator(document, 60_000, 10, new BroadcastMetrics(), 2);
+        long start = document.getRevision();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(document.insert(0, i, 'a'));
+            WebSocketInstruction instruction = new InsertCharInstruction(0, i, 'a', USER_ID);
+            aggregator.addEdit(instruction, instruction.getBroadcastVersion());
+        }
+
+        User resumed = new User("resumed");
+        List<JSONObject> missed = aggregator.resume(resumed, start + 1);
+        assertNotNull(missed);
+        assertEquals(2, missed.size());
+        assertEquals(start + 2, missed.get(0).getLong("revision"));
+        assertEquals(start + 3, missed.get(1).getLong("revision"));
+        assertTrue(document.isUserInDocument(resumed));
+
+        User late = new User("late");
+        assertNull(aggregator.resume(late, start));
+        assertFalse(document.isUserInDocument(late));
+    }
+}
@@ -0,0 +1,75 @@
+package fr.univnantes.web.websocket;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BroadcastHistoryTest {
+
+    /**
+     * Test that the payloads after a known revision are returned in order.
+     * <p>
+     * This test records 3 payloads and asserts that a client at the first revision receives the last two,
+     * and that a client at the last revision receives nothing.
+     * </p>
+     */
+    @Test
+    public void testSince() {
+        BroadcastHistory history = new BroadcastHistory(8, 0);
+        for (long revision = 1; revision <= 3; revision++) {
+            history.record(revision, new JSONObject().put("revision", revision));
+        }
+
+        List<JSONObject> missed = history.since(1);
+        assertNotNull(missed);
+        assertEquals(2, missed.size());
+        assertEquals(2, missed.get(0).getLong("revision"));
+        assertEquals(3, missed.get(1).getLong("revision"));
+
+        assertEquals(List.of(), history.since(3));
+        assertEquals(3, history.since(0).size());
+    }
+
+    /**
+     * Test that a client which missed a forgotten payload needs the whole document.
+     * <p>
+     * This test records 5 payloads in a history of 3 and asserts that the revisions before the oldest kept state are refused,
+     * while the ones after it are still answered, then that a revision never produced is refused.
+     * </p>
+     */
+    @Test
+    public void testOverrun() {
+        BroadcastHistory history = new BroadcastHistory(3, 0);
+        for (long revision = 1; revision <= 5; revision++) {
+            history.record(revision, new JSONObject().put("revision", revision));
+        }
+
+        assertEquals(3, history.size());
+        assertEquals(2, history.getFloor());
+        assertNull(history.since(0));
+        assertNull(history.since(1));
+        assertEquals(3, history.since(2).size());
+        assertEquals(5, history.since(4).getFirst().getLong("revision"));
+        assertNull(history.since(6));
+    }
+
+    /**
+     * Test that an empty history only knows the revision it started at.
+     * <p>
+     * This test creates a history at revision 7 and asserts that a client at revision 7 misses nothing,
+     * while a client at another revision is refused.
+     * </p>
+     */
+    @Test
+    public void testEmpty() {
+        BroadcastHistory history = new BroadcastHistory(3, 7);
+
+        assertEquals(List.of(), history.since(7));
+        assertNull(history.since(6));
+        assertNull(history.since(8));
+        assertThrows(IllegalArgumentException.class, () -> new BroadcastHistory(0, 0));
+    }
+}
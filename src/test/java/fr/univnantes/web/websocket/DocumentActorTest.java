@@ -0,0 +1,94 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class DocumentActorTest {
+    /**
+     * Test that the instructions submitted by several threads are executed one at a time and in order.
+     * <p>
+     * This test submits instructions from 4 threads concurrently, and asserts that every instruction is executed,
+     * that no two instructions are executed at the same time, and that the instructions of each thread keep their order.
+     * </p>
+     */
+    @Test
+    public void testSubmitFromSeveralThreads() throws InterruptedException {
+        int producers = 4;
+        int instructionsPerProducer = 5_000;
+
+        List<List<WebSocketInstruction>> submitted = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            List<WebSocketInstruction> instructions = new ArrayList<>();
+            for (int i = 0; i < instructionsPerProducer; i++) {
+                instructions.add(mock(WebSocketInstruction.class));
+            }
+            submitted.add(instructions);
+        }
+
+        List<WebSocketInstruction> executed = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger overlaps = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(producers * instructionsPerProducer);
+
+        DocumentActor actor = new DocumentActor(UUID.randomUUID(), (session, instruction) -> {
+            if (running.incrementAndGet() != 1) overlaps.incrementAndGet();
+            executed.add(instruction);
+            running.decrementAndGet();
+            done.countDown();
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (List<WebSocketInstruction> instructions : submitted) {
+            threads.add(new Thread(() -> instructions.forEach(instruction -> actor.submit(null, instruction))));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        assertEquals(producers * instructionsPerProducer, executed.size());
+        assertEquals(0, actor.getPendingCount());
+
+        for (List<WebSocketInstruction> instructions : submitted) {
+            int previous = -1;
+            for (WebSocketInstruction instruction : instructions) {
+                int position = executed.indexOf(instruction);
+                assertTrue(position > previous);
+                previous = position;
+            }
+        }
+    }
+
+    /**
+     * Test that an instruction throwing an exception does not stop the actor.
+     * <p>
+     * This test submits a failing instruction followed by a valid one, and asserts that the second one is executed.
+     * </p>
+     */
+    @Test
+    public void testFailingInstruction() throws InterruptedException {
+        WebSocketInstruction failing = mock(WebSocketInstruction.class);
+        WebSocketInstruction valid = mock(WebSocketInstruction.class);
+        CountDownLatch done = new CountDownLatch(1);
+
+        DocumentActor actor = new DocumentActor(UUID.randomUUID(), (session, instruction) -> {
+            if (instruction == failing) throw new IllegalStateException("Failing instruction");
+            done.countDown();
+        });
+
+        actor.submit(null, failing);
+        actor.submit(null, valid);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> actor.submit(null, null));
+    }
+}
@@ -0,0 +1,172 @@
+package fr.univnantes.web.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class QueuedWebSocketSessionTest {
+
+    /**
+     * Creates an open mocked session whose writes block until the latch is released
+     *
+     * @param latch The latch releasing the writes
+     * @return      The mocked session
+     */
+    private static WebSocketSession slowSession(CountDownLatch latch) throws IOException {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn("slow");
+        doAnswer(invocation -> {
+            latch.await();
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    /**
+     * Test that sending to a slow client does not block, and that messages are written in order.
+     * <p>
+     * This test queues messages to a session whose writes are blocked, asserts that the calls return
+     * and that the queue depth grows, then releases the writes and asserts the order of the written messages.
+     * </p>
+     */
+    @Test
+    public void testSendDoesNotBlock() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession delegate = slowSession(latch);
+        QueuedWebSocketSession session = new QueuedWebSocketSession(delegate, 100, OverflowPolicy.DISCONNECT, s -> null);
+
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(new TextMessage(String.valueOf(i)));
+        }
+        assertTrue(session.getQueueDepth() >= 9);
+        assertTrue(session.isOpen());
+
+        latch.countDown();
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(delegate, timeout(5_000).times(10)).sendMessage(captor.capture());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), captor.getAllValues().get(i).getPayload());
+        }
+        assertEquals(0, session.getQueueDepth());
+        assertEquals(0, session.getDroppedCount());
+    }
+
+    /**
+     * Test the DROP_AND_RESYNC overflow policy.
+     * <p>
+     * This test fills the queue of a blocked session past its high water mark,
+     * and asserts that the queued messages are replaced by the resync message.
+     * </p>
+     */
+    @Test
+    public void testDropAndResync() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession delegate = slowSession(latch);
+        TextMessage resync = new TextMessage("resync");
+        QueuedWebSocketSession session = new QueuedWebSocketSession(delegate, 5, OverflowPolicy.DROP_AND_RESYNC, s -> resync);
+
+        //  The first message is taken by the draining thread, wait for it so the queue depth is deterministic
+        session.sendMessage(new TextMessage("first"));
+        verify(delegate, timeout(5_000)).sendMessage(any());
+
+        for (int i = 0; i < 6; i++) {
+            session.sendMessage(new TextMessage(String.valueOf(i)));
+        }
+        assertEquals(5, session.getDroppedCount());
+        assertEquals(2, session.getQueueDepth());
+
+        latch.countDown();
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(delegate, timeout(5_000).times(3)).sendMessage(captor.capture());
+        assertSame(resync, captor.getAllValues().get(1));
+        assertEquals("5", captor.getAllValues().get(2).getPayload());
+        assertTrue(session.isOpen());
+    }
+
+    /**
+     * Test the DISCONNECT overflow policy.
+     * <p>
+     * This test fills the queue of a blocked session past its high water mark,
+     * and asserts that the session is closed and stops accepting messages.
+     * </p>
+     */
+    @Test
+    public void testDisconnect() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession delegate = slowSession(latch);
+        QueuedWebSocketSession session = new QueuedWebSocketSession(delegate, 3, OverflowPolicy.DISCONNECT, s -> null);
+
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(new TextMessage(String.valueOf(i)));
+        }
+        assertFalse(session.isOpen());
+        assertEquals(0, session.getQueueDepth());
+
+        latch.countDown();
+        verify(delegate, timeout(5_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * Test that a close request is applied after the queued messages are written.
+     * <p>
+     * This test queues a message then closes the session, and asserts that the message is written before the close.
+     * </p>
+     */
+    @Test
+    public void testCloseAfterQueuedMessages() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession delegate = slowSession(latch);
+        QueuedWebSocketSession session = new QueuedWebSocketSession(delegate, 10, OverflowPolicy.DISCONNECT, s -> null);
+
+        session.sendMessage(new TextMessage("error"));
+        session.close();
+        session.sendMessage(new TextMessage("ignored"));
+        latch.countDown();
+
+        verify(delegate, timeout(5_000)).close(CloseStatus.NORMAL);
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).sendMessage(new TextMessage("error"));
+        inOrder.verify(delegate).close(CloseStatus.NORMAL);
+        verify(delegate, times(1)).sendMessage(any());
+    }
+
+    /**
+     * Test that a stream of messages is written before the messages queued after it.
+     * <p>
+     * This test queues a message, a stream of three messages and another message on a blocked session,
+     * asserts that the stream counts as one queued message, then releases the writes and asserts the order of the written messages.
+     * </p>
+     */
+    @Test
+    public void testStreamBeforeLaterMessages() throws IOException {
+        CountDownLatch latch = new CountDownLatch(1);
+        WebSocketSession delegate = slowSession(latch);
+        QueuedWebSocketSession session = new QueuedWebSocketSession(delegate, 10, OverflowPolicy.DISCONNECT, s -> null);
+
+        session.sendMessage(new TextMessage("reply"));
+        session.sendMessages(List.of(new TextMessage("chunk 0"), new TextMessage("chunk 1"), new TextMessage("chunk 2")).iterator());
+        session.sendMessage(new TextMessage("edit"));
+        assertTrue(session.getQueueDepth() <= 3);
+
+        latch.countDown();
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(delegate, timeout(5_000).times(5)).sendMessage(captor.capture());
+        assertEquals(List.of("reply", "chunk 0", "chunk 1", "chunk 2", "edit"),
+                captor.getAllValues().stream().map(TextMessage::getPayload).toList());
+        assertEquals(0, session.getQueueDepth());
+    }
+}
@@ -0,0 +1,124 @@
+package fr.univnantes.web.websocket;
+
+import fr.univnantes.document.Document;
+import fr.univnantes.web.websocket.instruction.ChangeDocNameInstruction;
+import fr.univnantes.web.websocket.instruction.DeleteLineBrkInstruction;
+import fr.univnantes.web.websocket.instruction.DeleteRangeInstruction;
+import fr.univnantes.web.websocket.instruction.InsertCharInstruction;
+import fr.univnantes.web.websocket.instruction.InsertLineBrkInstruction;
+import fr.univnantes.web.websocket.instruction.InsertTextInstruction;
+import fr.univnantes.web.websocket.instruction.WebSocketInstruction;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ViewportTest {
+
+    private static final UUID USER_ID = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+
+    /**
+     * Test that the edits are routed depending on their position relative to the viewport.
+     * <p>
+     * This test routes edits inside, before, after and across the bounds of a viewport,
+     * and asserts that they are delivered, replaced by a shift, skipped or replaced by the new content of the viewport,
+     * and that the viewport follows the lines it holds.
+     * </p>
+     */
+    @Test
+    public void testRoute() {
+        Document document = new Document("test");
+        for (int i = 0; i < 20; i++) {
+            document.insertText(i, 0, i < 19 ? "l" + i + "\n" : "l" + i);
+        }
+        Viewport viewport = new Viewport(5, 10);
+
+        //  Inside, delivered as is
+        InsertCharInstruction inside = new InsertCharInstruction(7, 0, 'a', USER_ID);
+        JSONObject payload = inside.getBroadcastVersion();
+        assertSame(payload, viewport.route(inside, payload, document));
+
+        //  Before without new lines, and after, skipped
+        assertNull(viewport.route(new InsertCharInstruction(2, 0, 'a', USER_ID), new JSONObject(), document));
+        assertNull(viewport.route(new InsertLineBrkInstruction(12, 0, USER_ID), new JSONObject(), document));
+
+        //  Before with new lines, replaced by a shift
+        JSONObject shift = viewport.route(new InsertLineBrkInstruction(2, 0, USER_ID), new JSONObject(), document);
+        assertEquals("VIEWPORT_SHIFT", shift.getString("type"));
+        assertEquals(1, shift.getInt("delta"));
+        assertEquals(6, viewport.getStart());
+        assertEquals(11, viewport.getEnd());
+
+        shift = viewport.route(new DeleteRangeInstruction(0, 0, 2, 0, USER_ID), new JSONObject(), document);
+        assertEquals(-2, shift.getInt("delta"));
+        assertEquals(4, shift.getInt("lineIdx"));
+        assertEquals(9, shift.getInt("endLineIdx"));
+
+        //  Inside with new lines, the viewport grows
+        InsertTextInstruction paste = new InsertTextInstruction(4, 0, "a\nb", USER_ID);
+        payload = paste.getBroadcastVersion();
+        assertSame(payload, viewport.route(paste, payload, document));
+        assertEquals(4, viewport.getStart());
+        assertEquals(10, viewport.getEnd());
+
+        //  Across the first line, replaced by the new content of the viewport
+        JSONObject refresh = viewport.route(new DeleteLineBrkInstruction(4, USER_ID), new JSONObject(), document);
+        assertEquals("VIEWPORT", refresh.getString("type"));
+        assertEquals(3, viewport.getStart());
+        assertEquals(9, viewport.getEnd());
+        assertEquals(document.getLines(3, 9), refresh.getString("content"));
+        assertEquals(document.getLineCount(), refresh.getInt("lineCount"));
+
+        //  Not an edit of the content, delivered as is
+        ChangeDocNameInstruction rename = new ChangeDocNameInstruction("Recette", USER_ID);
+        payload = rename.getBroadcastVersion();
+        assertSame(payload, viewport.route(rename, payload, document));
+        payload = new JSONObject().put("type", "DISCONNECT");
+        assertSame(payload, viewport.route(null, payload, document));
+
+        assertThrows(IllegalArgumentException.class, () -> new Viewport(-1, 3));
+        assertThrows(IllegalArgumentException.class, () -> new Viewport(3, 3));
+    }
+
+    /**
+     * Test that the edits already in the content of a viewport message are not routed after it.
+     * <p>
+     * This test applies an edit crossing the first line of a viewport and an edit inside it before routing them,
+     * like two edits of the same batch. It asserts that the first one is replaced by the content of the viewport
+     * read at the revision of the second one, that the second one is then skipped since the content holds it,
+     * and that a later edit is delivered again.
+     * </p>
+     */
+    @Test
+    public void testEditsInTheContentAreNotRouted() {
+        Document document = new Document("test");
+        for (int i = 0; i < 20; i++) {
+            document.insertText(i, 0, i < 19 ? "l" + i + "\n" : "l" + i);
+        }
+        Viewport viewport = new Viewport(5, 10);
+
+        DeleteLineBrkInstruction crossing = new DeleteLineBrkInstruction(5, USER_ID);
+        assertTrue(document.deleteLineBreak(5));
+        JSONObject crossingPayload = crossing.getBroadcastVersion().put("revision", document.getRevision());
+        InsertCharInstruction inside = new InsertCharInstruction(6, 0, 'a', USER_ID);
+        assertTrue(document.insert(6, 0, 'a'));
+        JSONObject insidePayload = inside.getBroadcastVersion().put("revision", document.getRevision());
+
+        JSONObject refresh = viewport.route(crossing, crossingPayload, document);
+        assertEquals("VIEWPORT", refresh.getString("type"));
+        assertEquals(document.getRevision(), refresh.getLong("revision"));
+        assertEquals(document.getLines(4, 9), refresh.getString("content"));
+        assertEquals(document.getRevision(), viewport.getRevision());
+
+        assertNull(viewport.route(inside, insidePayload, document));
+        assertEquals(4, viewport.getStart());
+        assertEquals(9, viewport.getEnd());
+
+        InsertCharInstruction later = new InsertCharInstruction(6, 1, 'b', USER_ID);
+        assertTrue(document.insert(6, 1, 'b'));
+        JSONObject laterPayload = later.getBroadcastVersion().put("revision", document.getRevision());
+        assertSame(laterPayload, viewport.route(later, laterPayload, document));
+    }
+}
@@ -0,0 +1,147 @@
+package fr.univnantes.web.websocket.instruction;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryInstructionCodecTest {
+
+    private static final UUID USER_ID = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+
+    /**
+     * Test that varints are written and read back for small and large values.
+     * <p>
+     * This test encodes values around the 7 bits boundaries and asserts their size and their decoded value.
+     * </p>
+     */
+    @Test
+    public void testVarint() {
+        int[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 5};
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryInstructionCodec.writeVarint(out, values[i]);
+            assertEquals(sizes[i], out.size());
+            assertEquals(values[i], BinaryInstructionCodec.readVarint(ByteBuffer.wrap(out.toByteArray())));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.writeVarint(new ByteArrayOutputStream(), -1));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.readVarint(ByteBuffer.wrap(new byte[]{(byte) 0x80})));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.readVarint(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1, 0x0F})));
+    }
+
+    /**
+     * Test that a binary insert character instruction decodes to the same instruction as its JSON version.
+     * <p>
+     * This test decodes the same insertion from JSON and from binary, and asserts that the fields are equal
+     * and that the binary frame is an order of magnitude smaller.
+     * </p>
+     */
+    @Test
+    public void testInsertCharMatchesJson() {
+        String json = new JSONObject()
+                .put("type", "INSERT_CHAR")
+                .put("lineIdx", 12)
+                .put("columnIdx", 300)
+                .put("char", "é")
+                .put("userId", USER_ID)
+                .toString();
+        InsertCharInstruction fromJson = (InsertCharInstruction) InstructionType.getConstructedInstruction(new TextMessage(json));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(InstructionType.INSERT_CHAR.opcode);
+        BinaryInstructionCodec.writeVarint(out, 12);
+        BinaryInstructionCodec.writeVarint(out, 300);
+        BinaryInstructionCodec.writeVarint(out, 'é');
+        byte[] frame = out.toByteArray();
+
+        InsertCharInstruction fromBinary = (InsertCharInstruction) BinaryInstructionCodec.decode(ByteBuffer.wrap(frame), USER_ID);
+        assertEquals(fromJson.getLineIndex(), fromBinary.getLineIndex());
+        assertEquals(fromJson.getColumnIndex(), fromBinary.getColumnIndex());
+        assertEquals(fromJson.getCharacter(), fromBinary.getCharacter());
+        assertEquals(fromJson.getUserId(), fromBinary.getUserId());
+        assertTrue(frame.length * 10 < json.length());
+    }
+
+    /**
+     * Test that every instruction with a binary form decodes back from its broadcast record.
+     * <p>
+     * This test encodes each instruction with a short user identifier, skips the identifier
+     * and asserts that the client form of the record decodes to an equivalent instruction.
+     * </p>
+     */
+    @Test
+    public void testRoundTrip() {
+        WebSocketInstruction[] instructions = {
+                new InsertCharInstruction(0, 0, 'a', USER_ID),
+                new DeleteCharInstruction(3, 200, USER_ID),
+                new InsertLineBrkInstruction(70_000, 5, USER_ID),
+                new DeleteLineBrkInstruction(1, USER_ID),
+                new ChangeDocNameInstruction("Recette secrète", USER_ID),
+                new InsertTextInstruction(4, 2, "Œufs\nFarine\n", USER_ID),
+                new DeleteRangeInstruction(4, 2, 5_000, 0, USER_ID)
+        };
+
+        for (WebSocketInstruction instruction : instructions) {
+            byte[] record = BinaryInstructionCodec.encode(instruction, 300);
+            assertNotNull(record);
+            assertEquals(instruction.getType().opcode, record[0]);
+
+            //  Remove the short user identifier to get the client form
+            ByteBuffer buffer = ByteBuffer.wrap(record, 1, record.length - 1);
+            assertEquals(300, BinaryInstructionCodec.readVarint(buffer));
+            ByteBuffer clientForm = ByteBuffer.allocate(1 + buffer.remaining()).put(record[0]).put(buffer).flip();
+
+            WebSocketInstruction decoded = BinaryInstructionCodec.decode(clientForm, USER_ID);
+            assertEquals(instruction.getType(), decoded.getType());
+            assertTrue(instruction.getBroadcastVersion().similar(decoded.getBroadcastVersion()));
+        }
+
+        assertNull(BinaryInstructionCodec.encode(new DisconnectInstruction(USER_ID), 1));
+    }
+
+    /**
+     * Test that a binary set viewport instruction is decoded, and that it has no broadcast record.
+     * <p>
+     * This test decodes a viewport from its binary frame, asserts its fields, and asserts that an empty viewport is rejected.
+     * </p>
+     */
+    @Test
+    public void testSetViewport() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(InstructionType.SET_VIEWPORT.opcode);
+        BinaryInstructionCodec.writeVarint(out, 1_000);
+        BinaryInstructionCodec.writeVarint(out, 1_060);
+
+        SetViewportInstruction decoded = (SetViewportInstruction) BinaryInstructionCodec.decode(ByteBuffer.wrap(out.toByteArray()), USER_ID);
+        assertEquals(1_000, decoded.getLineIndex());
+        assertEquals(1_060, decoded.getEndLineIndex());
+        assertEquals(USER_ID, decoded.getUserId());
+        assertNull(BinaryInstructionCodec.encode(decoded, 1));
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{InstructionType.SET_VIEWPORT.opcode, 3, 3}), USER_ID));
+    }
+
+    /**
+     * Test that invalid binary frames are rejected.
+     * <p>
+     * This test decodes empty, unknown, truncated, CONNECT and oversized frames and asserts that they are rejected.
+     * </p>
+     */
+    @Test
+    public void testInvalidFrames() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.allocate(0), USER_ID));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{0x7F}), USER_ID));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{InstructionType.DELETE_CHAR.opcode, 1}), USER_ID));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{InstructionType.CONNECT.opcode}), USER_ID));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{InstructionType.DELETE_LINE_BRK.opcode, 1, 2}), USER_ID));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{InstructionType.CHANGE_DOC_NAME.opcode, 5, 'a'}), USER_ID));
+        assertThrows(IllegalArgumentException.class, () -> BinaryInstructionCodec.decode(ByteBuffer.wrap(new byte[]{InstructionType.INSERT_TEXT.opcode, 1, 2, 0}), USER_ID));
+    }
+}
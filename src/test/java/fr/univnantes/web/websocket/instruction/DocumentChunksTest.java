@@ -0,0 +1,63 @@
+package fr.univnantes.web.websocket.instruction;
+
+import fr.univnantes.document.DocumentSnapshot;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DocumentChunksTest {
+
+    /**
+     * Test that the chunks rebuild the content, tagged with the revision and the line where they start.
+     * <p>
+     * This test splits a content of short lines and of a line longer than a chunk, asserts that every chunk is bounded,
+     * ends after a line break unless it cuts the long line, starts at the announced line, and that their concatenation is the content.
+     * </p>
+     */
+    @Test
+    public void testChunksRebuildContent() {
+        String content = "Œufs\nFarine\nLait\n" + "x".repeat(25) + "\nSucre";
+        DocumentChunks chunks = new DocumentChunks(new DocumentSnapshot(42, "Recette", content), 10);
+
+        StringBuilder rebuilt = new StringBuilder();
+        int count = 0;
+        boolean last = false;
+        while (chunks.hasNext()) {
+            assertFalse(last);
+            JSONObject chunk = new JSONObject(chunks.next().getPayload());
+            assertEquals(DocumentChunks.TYPE, chunk.getString("type"));
+            assertEquals(42, chunk.getLong("revision"));
+
+            String part = chunk.getString("content");
+            assertTrue(part.length() <= 10);
+            assertEquals(rebuilt.chars().filter(c -> c == '\n').count(), chunk.getInt("lineIdx"));
+            rebuilt.append(part);
+            last = chunk.getBoolean("last");
+            count++;
+        }
+
+        assertTrue(last);
+        assertEquals(content, rebuilt.toString());
+        assertEquals(7, count);
+        assertThrows(NoSuchElementException.class, chunks::next);
+    }
+
+    /**
+     * Test that an empty content is sent as one empty last chunk.
+     * <p>
+     * This test splits an empty content and asserts that a single chunk is returned.
+     * </p>
+     */
+    @Test
+    public void testEmptyContent() {
+        DocumentChunks chunks = new DocumentChunks(new DocumentSnapshot(0, "Vide", ""), 10);
+
+        JSONObject chunk = new JSONObject(chunks.next().getPayload());
+        assertEquals("", chunk.getString("content"));
+        assertTrue(chunk.getBoolean("last"));
+        assertFalse(chunks.hasNext());
+    }
+}
@@ -0,0 +1,115 @@
+package fr.univnantes.web.websocket.instruction;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstructionTypeTest {
+
+    private static final UUID USER_ID = UUID.fromString("c4ba80fe-ded0-450c-83f3-6fe0605ee94f");
+    private static final UUID DOC_ID = UUID.fromString("0b6f3c4e-21a4-4f39-9d8e-5f0f1b7a9c11");
+
+    /**
+     * Test that the decoding pipeline builds the instructions described by the messages.
+     * <p>
+     * This test decodes a message of every type and asserts that the result is a success
+     * of the type of the message, whose JSON representation holds the same attributes as the message.
+     * </p>
+     */
+    @Test
+    public void testDecode() {
+        JSONObject[] messages = {
+                new JSONObject().put("type", "INSERT_CHAR").put("lineIdx", 1).put("columnIdx", 2).put("char", "é").put("userId", USER_ID),
+                new JSONObject().put("type", "INSERT_LINE_BRK").put("lineIdx", 1).put("columnIdx", 2).put("userId", USER_ID),
+                new JSONObject().put("type", "DELETE_CHAR").put("lineIdx", 1).put("columnIdx", 2).put("userId", USER_ID),
+                new JSONObject().put("type", "DELETE_LINE_BRK").put("lineIdx", 1).put("userId", USER_ID),
+                new JSONObject().put("type", "CHANGE_DOC_NAME").put("newName", "Recette").put("userId", USER_ID),
+                new JSONObject().put("type", "DISCONNECT").put("userId", USER_ID),
+                new JSONObject().put("type", "CONNECT").put("userId", USER_ID).put("docId", DOC_ID),
+                new JSONObject().put("type", "INSERT_TEXT").put("lineIdx", 1).put("columnIdx", 2).put("text", "a\nb").put("userId", USER_ID),
+                new JSONObject().put("type", "DELETE_RANGE").put("lineIdx", 1).put("columnIdx", 2).put("endLineIdx", 3).put("endColumnIdx", 4).put("userId", USER_ID),
+                new JSONObject().put("type", "SET_VIEWPORT").put("lineIdx", 100).put("endLineIdx", 150).put("userId", USER_ID),
+                new JSONObject().put("type", "CONNECT").put("userId", USER_ID).put("docId", DOC_ID).put("lineIdx", 0).put("endLineIdx", 50),
+                new JSONObject().put("type", "CONNECT").put("userId", USER_ID).put("docId", DOC_ID).put("lastRevision", 42),
+                new JSONObject().put("type", "INSERT_CHAR").put("lineIdx", 1).put("columnIdx", 2).put("char", "a").put("userId", USER_ID).put("baseRevision", 7),
+                new JSONObject().put("type", "DELETE_RANGE").put("lineIdx", 1).put("columnIdx", 2).put("endLineIdx", 3).put("endColumnIdx", 4).put("userId", USER_ID).put("baseRevision", 0)
+        };
+
+        for (JSONObject json : messages) {
+            TextMessage message = new TextMessage(json.toString());
+            DecodeResult result = InstructionType.decode(message);
+            assertTrue(result.isSuccess(), result.error());
+            assertNull(result.error());
+
+            InstructionType type = InstructionType.fromString(json.getString("type"));
+            assertEquals(type, result.instruction().getType());
+            assertEquals(type.instructionClass, result.instruction().getClass());
+            assertEquals(USER_ID, result.instruction().getUserId());
+
+            assertTrue(new JSONObject(message.getPayload()).similar(new JSONObject(result.instruction().toString())), message.getPayload());
+        }
+    }
+
+    /**
+     * Test that invalid messages are reported as failures instead of exceptions.
+     * <p>
+     * This test decodes malformed, untyped, unknown and incomplete messages,
+     * and asserts that each one is a failure with a reason, and that the throwing API still throws.
+     * </p>
+     */
+    @Test
+    public void testDecodeFailures() {
+        String[] payloads = {
+                " ",
+                "{not json",
+                "[]",
+                "{\"lineIdx\": 0}",
+                "{\"type\": 3}",
+                "{\"type\": \"UNKNOWN\"}",
+                "{\"type\": \"INSERT_CHAR\", \"lineIdx\": -1, \"columnIdx\": 0, \"char\": \"a\", \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"INSERT_CHAR\", \"lineIdx\": \"0\", \"columnIdx\": 0, \"char\": \"a\", \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"INSERT_CHAR\", \"lineIdx\": 0, \"columnIdx\": 0, \"char\": \"ab\", \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"DELETE_LINE_BRK\", \"lineIdx\": 0, \"userId\": \"not-a-uuid\"}",
+                "{\"type\": \"DELETE_LINE_BRK\", \"lineIdx\": 0, \"userId\": \"c4ba80fe-ded0-450c-83f3-6fe0605ee9zz\"}",
+                "{\"type\": \"CONNECT\", \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"INSERT_TEXT\", \"lineIdx\": 0, \"columnIdx\": 0, \"text\": \"\", \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"DELETE_RANGE\", \"lineIdx\": 0, \"columnIdx\": 0, \"endLineIdx\": 1, \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"SET_VIEWPORT\", \"lineIdx\": 10, \"endLineIdx\": 10, \"userId\": \"" + USER_ID + "\"}",
+                "{\"type\": \"CONNECT\", \"userId\": \"" + USER_ID + "\", \"docId\": \"" + DOC_ID + "\", \"lineIdx\": 5}",
+                "{\"type\": \"CONNECT\", \"userId\": \"" + USER_ID + "\", \"docId\": \"" + DOC_ID + "\", \"lastRevision\": -1}",
+                "{\"type\": \"CONNECT\", \"userId\": \"" + USER_ID + "\", \"docId\": \"" + DOC_ID + "\", \"lastRevision\": 3, \"lineIdx\": 0, \"endLineIdx\": 5}",
+                "{\"type\": \"DELETE_CHAR\", \"lineIdx\": 0, \"columnIdx\": 0, \"userId\": \"" + USER_ID + "\", \"baseRevision\": -2}"
+        };
+
+        for (String payload : payloads) {
+            DecodeResult result = InstructionType.decode(new TextMessage(payload));
+            assertFalse(result.isSuccess(), payload);
+            assertNull(result.instruction());
+            assertNotNull(result.error());
+            assertThrows(IllegalArgumentException.class, () -> InstructionType.getConstructedInstruction(new TextMessage(payload)));
+        }
+        assertFalse(InstructionType.decode(null).isSuccess());
+    }
+
+    /**
+     * Test that the types are found by name and by opcode.
+     * <p>
+     * This test looks up every type by its name, in lower case, and by its opcode, and asserts that unknown values give null.
+     * </p>
+     */
+    @Test
+    public void testLookup() {
+        for (InstructionType type : InstructionType.values()) {
+            assertEquals(type, InstructionType.fromString(type.type));
+            assertEquals(type, InstructionType.fromString(type.type.toLowerCase()));
+            assertEquals(type, InstructionType.fromOpcode(type.opcode));
+        }
+        assertNull(InstructionType.fromString(null));
+        assertNull(InstructionType.fromString("RESYNC"));
+        assertNull(InstructionType.fromOpcode((byte) 0));
+    }
+}